@@ -39,9 +39,11 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import cytoscape.CyNode;
 import cytoscape.Cytoscape;
@@ -74,6 +76,12 @@ public abstract class AbstractAttributeClusterAlgorithm {
 	protected boolean initializeNearCenter = false;
 	private Silhouettes[] silhouetteResults = null;
 
+	// The pairwise distances of the matrix we're clustering, shared by
+	// the silhouette calculations
+	private double[][] distanceMatrix = null;
+	private Matrix distanceSource = null;
+	private DistanceMetric distanceMetric = null;
+
 	protected boolean adjustDiagonals = false;
 	protected boolean debug = false;
 	protected boolean createGroups = false;
@@ -296,6 +304,75 @@ public abstract class AbstractAttributeClusterAlgorithm {
 	                       DistanceMetric metric, int[] clusters) {
 		return 0;
 	}
+
+	/**
+ 	 * A k-cluster run for the silhouette search, split into parts (e.g. the
+ 	 * restarts of k-means) that may run in any order and on different threads.
+ 	 */
+	protected interface KClusterJob {
+		/**
+ 		 * @return the number of parts of this job
+ 		 */
+		public int getParts();
+
+		/**
+ 		 * Run one part.  This may be called from several threads at once.
+ 		 *
+ 		 * @param part the part to run
+ 		 */
+		public void runPart(int part);
+
+		/**
+ 		 * Get the result once all of the parts have run.
+ 		 *
+ 		 * @param clusters the array to put the cluster of each element in
+ 		 * @return the number of times the solution was found
+ 		 */
+		public int finish(int[] clusters);
+	}
+
+	/**
+ 	 * Get the job that clusters the matrix into nClusters for the silhouette
+ 	 * search.  By default this is a single call to kcluster, algorithms with
+ 	 * independent restarts should override this so that the restarts can be
+ 	 * spread over the threads.
+ 	 */
+	protected KClusterJob getKClusterJob(final int nClusters, final int nIterations,
+	                                     final Matrix matrix, final DistanceMetric metric) {
+		return new KClusterJob() {
+			int[] result = new int[matrix.nRows()];
+			int ifound = 0;
+
+			public int getParts() { return 1; }
+
+			public void runPart(int part) {
+				ifound = kcluster(nClusters, nIterations, matrix, metric, result);
+			}
+
+			public int finish(int[] clusters) {
+				System.arraycopy(result, 0, clusters, 0, result.length);
+				return ifound;
+			}
+		};
+	}
+
+	/**
+ 	 * Get the pairwise distances between the rows of a matrix.  The distances
+ 	 * are only calculated once for the matrix we're clustering, so the result
+ 	 * must not be changed.
+ 	 *
+ 	 * @param matrix the matrix
+ 	 * @param metric the distance metric to use
+ 	 * @return the distance matrix
+ 	 */
+	protected synchronized double[][] getDistanceMatrix(Matrix matrix, DistanceMetric metric) {
+		if (distanceMatrix == null || matrix != distanceSource || metric != distanceMetric) {
+			distanceMatrix = matrix.getDistanceMatrix(metric);
+			distanceSource = matrix;
+			distanceMetric = metric;
+		}
+		return distanceMatrix;
+	}
 	/**
  	 * This is the common entry point for k-cluster algorithms.
  	 *
@@ -333,12 +410,12 @@ public abstract class AbstractAttributeClusterAlgorithm {
 			silhouetteResults = new Silhouettes[kMax];
 
 			int nThreads = Runtime.getRuntime().availableProcessors()-1;
-			if (nThreads > 1)
-				runThreadedSilhouette(kMax, nIterations, nThreads, saveMonitor);
-			else
-				runLinearSilhouette(kMax, nIterations, saveMonitor);
+			runSilhouette(kMax, nIterations, nThreads, saveMonitor);
 
-			if (halted()) return "Halted by user";
+			if (halted()) {
+				releaseDistanceMatrix();
+				return "Halted by user";
+			}
 
 			// Now get the results and find our best k
 			double maxSil = Double.MIN_VALUE;
@@ -356,17 +433,19 @@ public abstract class AbstractAttributeClusterAlgorithm {
 
 		int[] clusters = new int[matrix.nRows()];
 
-		if (halted()) return "Halted by user";
-
 		// Cluster
 		int nClustersFound = kcluster(nClusters, nIterations, matrix, metric, clusters);
-		if (halted()) return "Halted by user";
+		if (halted()) {
+			releaseDistanceMatrix();
+			return "Halted by user";
+		}
 		
 		// TODO Change other algorithms s.t. the number of clusters found is returned
 		if (nClusters == 0) nClusters = nClustersFound;
 
 		// OK, now run our silhouette on our final result
-		Silhouettes sResult = SilhouetteCalculator.calculate(matrix, metric, clusters);
+		Silhouettes sResult = SilhouetteCalculator.calculate(getDistanceMatrix(matrix, metric), clusters);
+		releaseDistanceMatrix();
 		// System.out.println("Average silhouette = "+sResult.getAverageSilhouette());
 		// SilhouetteUtil.printSilhouette(sResult, clusters);
 
@@ -476,36 +555,69 @@ public abstract class AbstractAttributeClusterAlgorithm {
 		
 	}
 
-	private void runThreadedSilhouette(int kMax, int nIterations, int nThreads, TaskMonitor saveMonitor) {
-		// Set up the thread pools
-		ExecutorService[] threadPools = new ExecutorService[nThreads];
-		for (int pool = 0; pool < threadPools.length; pool++)
-			threadPools[pool] = Executors.newFixedThreadPool(1);
-
-		// Dispatch a kmeans calculation to each pool
-		for (int kEstimate = 2; kEstimate < kMax; kEstimate++) {
-			int[] clusters = new int[matrix.nRows()];
-			Runnable r = new RunKMeans(matrix, clusters, kEstimate, nIterations, saveMonitor);
-			threadPools[(kEstimate-2)%nThreads].submit(r);
-			// threadPools[0].submit(r);
+	private synchronized void releaseDistanceMatrix() {
+		distanceMatrix = null;
+		distanceSource = null;
+		distanceMetric = null;
+	}
+
+	private void runSilhouette(int kMax, int nIterations, int nThreads, final TaskMonitor saveMonitor) {
+		final double[][] distances = getDistanceMatrix(matrix, metric);
+
+		// Split every k estimate into its parts.  The largest k's take the
+		// longest, so they go first and the small ones fill in at the end.
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		for (int kEstimate = kMax-1; kEstimate >= 2; kEstimate--) {
+			final int k = kEstimate;
+			final KClusterJob job = getKClusterJob(k, nIterations, matrix, metric);
+			final AtomicInteger remaining = new AtomicInteger(job.getParts());
+			for (int part = 0; part < job.getParts(); part++) {
+				final int p = part;
+				tasks.add(new Runnable() {
+					public void run() {
+						if (halted()) return;
+						job.runPart(p);
+						// Whoever finishes the last part gets the silhouette for this k
+						if (remaining.decrementAndGet() == 0) {
+							int[] clusters = new int[matrix.nRows()];
+							job.finish(clusters);
+							silhouetteResults[k] = SilhouetteCalculator.calculate(distances, clusters);
+						}
+					}
+				});
+			}
 		}
 
-		// OK, now wait for each thread to complete
-		for (int pool = 0; pool < threadPools.length; pool++) {
-			threadPools[pool].shutdown();
-			try {
-				boolean result = threadPools[pool].awaitTermination(7, TimeUnit.DAYS);
-			} catch (Exception e) {}
+		if (saveMonitor != null)
+			saveMonitor.setStatus("Getting silhouettes for k estimates from 2 to "+(kMax-1));
+
+		if (nThreads <= 1) {
+			for (int task = 0; task < tasks.size(); task++) {
+				if (saveMonitor != null)
+					saveMonitor.setPercentCompleted((int)(((double)task/(double)tasks.size())*100));
+				tasks.get(task).run();
+			}
+			return;
 		}
-	}
 
-	private void runLinearSilhouette(int kMax, int nIterations, TaskMonitor saveMonitor) {
-		for (int kEstimate = 2; kEstimate < kMax; kEstimate++) {
-			int[] clusters = new int[matrix.nRows()];
-			if (halted()) return;
-			if (saveMonitor != null) saveMonitor.setStatus("Getting silhouette with a k estimate of "+kEstimate);
-			int ifound = kcluster(kEstimate, nIterations, matrix, metric, clusters);
-			silhouetteResults[kEstimate] = SilhouetteCalculator.calculate(matrix, metric, clusters);
+		// All of the threads take their work from the same queue, so no thread
+		// sits idle while there are parts left
+		ExecutorService threadPool = Executors.newFixedThreadPool(nThreads);
+		List<Future<?>> results = new ArrayList<Future<?>>(tasks.size());
+		for (Runnable task: tasks)
+			results.add(threadPool.submit(task));
+		try {
+			for (int task = 0; task < results.size(); task++) {
+				results.get(task).get();
+				if (saveMonitor != null)
+					saveMonitor.setPercentCompleted((int)(((double)(task+1)/(double)results.size())*100));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Silhouette calculation failed", e.getCause());
+		} finally {
+			threadPool.shutdownNow();
 		}
 	}
 
@@ -547,30 +659,4 @@ public abstract class AbstractAttributeClusterAlgorithm {
 			return 0;
 		}
 	}
-
-	private class RunKMeans implements Runnable {
-		Matrix matrix;
-		int[] clusters;
-		int kEstimate;
-		int nIterations;
-		TaskMonitor saveMonitor = null;
-
-		public RunKMeans (Matrix matrix, int[] clusters, int k, int nIterations, TaskMonitor saveMonitor) {
-			this.matrix = matrix;
-			this.clusters = clusters;
-			this.kEstimate = k;
-			this.nIterations = nIterations;
-			this.saveMonitor = saveMonitor;
-		}
-
-		public void run() {
-			int[] clusters = new int[matrix.nRows()];
-			if (halted()) return;
-			if (saveMonitor != null) saveMonitor.setStatus("Getting silhouette with a k estimate of "+kEstimate);
-			int ifound = kcluster(kEstimate, nIterations, matrix, metric, clusters);
-			try {
-				silhouetteResults[kEstimate] = SilhouetteCalculator.calculate(matrix, metric, clusters);
-			} catch (Exception e) { e.printStackTrace(); }
-		}
-	}
 }
@@ -38,11 +38,18 @@ import java.util.List;
 /**
  *  BaseMatrix is a basic numeric matrix.
  *  Independent of Cytoscape.
+ *
+ *  The values are kept in a single row-major array of primitives, and
+ *  missing values are tracked in a separate bitmask rather than as nulls.
+ *  Each row's bits start on a new word of the mask, so the masks of two rows
+ *  can be combined a word at a time.
  */
 public class BaseMatrix {
 	protected int nRows;
 	protected int nColumns;
-	protected Double matrix[][];
+	protected double data[];
+	protected long present[];
+	protected int words;
 	protected double colWeights[];
 	protected double rowWeights[];
 	protected double maxAttribute;
@@ -103,15 +110,13 @@ public class BaseMatrix {
 		int k = 0;
 		for (int i = 0; i < rows; ++i) {
 			for (int j = 0; j < cols; ++j) {
-				matrix[i][j] = data[k++];
+				setValue(i, j, data[k++]);
 			}
 		}
 	}
 	
 	private void init(int rows, int cols) {
-		this.nRows = rows;
-		this.nColumns = cols;
-		this.matrix = new Double[rows][cols];
+		allocate(rows, cols);
 		this.colWeights = new double[cols];
 		this.rowWeights = new double[rows];
 		this.columnLabels = new String[cols];
@@ -120,32 +125,76 @@ public class BaseMatrix {
 		setUniformWeights();
 	}
 	
+	/**
+	 * Allocate the storage for an empty matrix (all values missing) and
+	 * set the dimensions.
+	 *
+	 * @param rows number of rows
+	 * @param cols number of columns
+	 */
+	protected void allocate(int rows, int cols) {
+		if ((long)rows * (long)cols > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Matrix of "+rows+"x"+cols+" is too large");
+		this.nRows = rows;
+		this.nColumns = cols;
+		this.words = (cols + 63) >>> 6;
+		this.data = new double[rows*cols];
+		this.present = new long[rows*words];
+	}
+
+	/**
+	 * Shrink the matrix, keeping the values in the top left corner.
+	 *
+	 * @param rows new number of rows
+	 * @param cols new number of columns
+	 */
+	protected void resize(int rows, int cols) {
+		double[] oldData = data;
+		long[] oldPresent = present;
+		int oldColumns = nColumns;
+		int oldWords = words;
+		allocate(rows, cols);
+		for (int row = 0; row < rows; row++) {
+			System.arraycopy(oldData, row*oldColumns, data, row*cols, cols);
+			System.arraycopy(oldPresent, row*oldWords, present, row*words, words);
+			// Clear any bits beyond the new last column
+			if ((cols & 63) != 0)
+				present[row*words+words-1] &= (1L << cols) - 1;
+		}
+	}
+
 	public int nRows() { return this.nRows; }
 
 	public int nColumns() { return this.nColumns; }
 
 	public Double getValue(int row, int column) {
-		return matrix[row][column];
+		if (!hasValue(row, column))
+			return null;
+		return Double.valueOf(data[row*nColumns+column]);
 	}
 	
 	public double doubleValue(int row, int column) {
-		if (matrix[row][column] != null)
-			return matrix[row][column].doubleValue();
+		if (hasValue(row, column))
+			return data[row*nColumns+column];
 		return Double.NaN;
 	}
 	
 	public void setValue(int row, int column, double value) {
-		matrix[row][column] = new Double(value);
+		data[row*nColumns+column] = value;
+		present[row*words+(column>>>6)] |= 1L << column;
 	}
 
 	public void setValue(int row, int column, Double value) {
-		matrix[row][column] = value;
+		if (value == null) {
+			data[row*nColumns+column] = 0.0;
+			present[row*words+(column>>>6)] &= ~(1L << column);
+		} else {
+			setValue(row, column, value.doubleValue());
+		}
 	}
 
 	public boolean hasValue(int row, int column) {
-		if (matrix[row][column] != null)
-			return true;
-		return false;
+		return (present[row*words+(column>>>6)] & (1L << column)) != 0;
 	}
 	
 	public void setUniformWeights() {
@@ -235,7 +284,7 @@ public class BaseMatrix {
 		int nVals = 0;
 		for (int column = 0; column < nColumns; column++) {
 			if (hasValue(row,column))
-				tData[nVals++] = matrix[row][column].doubleValue();
+				tData[nVals++] = data[row*nColumns+column];
 		}
 
 		if (nVals == 0)
@@ -264,17 +313,8 @@ public class BaseMatrix {
 	}
 
 	public double[][] getDistanceMatrix(DistanceMetric metric) {
-		double[][] result = new double[this.nRows][this.nRows];
-		for (int row = 0; row < this.nRows; row++) {
-			for (int column = row; column < this.nRows; column++) {
-				result[row][column] = 
-				   metric.getMetric(this, this, this.getWeights(), row, column);
-				if (row != column)
-					result[column][row] = result[row][column];  // Assumes symmetrical distances
-				//System.out.println("distanceMatrix["+row+"]["+column+"] = "+result[row][column]);
-			}
-		}
-		return result;
+		// Assumes symmetrical distances
+		return new DistanceKernel(this, metric).getDistanceMatrix();
 	}
 
 	public void printMatrix() {
@@ -285,8 +325,8 @@ public class BaseMatrix {
 		for (int row = 0; row < nRows; row++) {
 			System.out.print(rowLabels[row]+"\t");
 			for (int col = 0; col < nColumns; col++) {
-				if (matrix[row][col] != null)
-					System.out.print(matrix[row][col]+"\t");
+				if (hasValue(row, col))
+					System.out.print(getValue(row, col)+"\t");
 				else
 					System.out.print("\t");
 			}
@@ -317,15 +357,15 @@ public class BaseMatrix {
 	public void setMissingToZero() {
 		for (int row = 0; row < this.nRows; row++) {
 			for (int col = 0; col < this.nColumns; col++ ) {
-				if (matrix[row][col] == null)
-					matrix[row][col] = new Double(0.0);
+				if (!hasValue(row, col))
+					setValue(row, col, 0.0);
 			}
 		}
 	}
 	
 	public void adjustDiagonals() {
 		for (int col = 0; col < nColumns; col++ ) {
-			matrix[col][col] = new Double(maxAttribute);
+			setValue(col, col, maxAttribute);
 		}
 	}
 	
@@ -0,0 +1,508 @@
+/**
+ * Copyright (c) 2008 The Regents of the University of California.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions, and the following disclaimer.
+ *   2. Redistributions in binary form must reproduce the above
+ *      copyright notice, this list of conditions, and the following
+ *      disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *   3. Redistributions must acknowledge that this software was
+ *      originally developed by the UCSF Computer Graphics Laboratory
+ *      under support by the NIH National Center for Research Resources,
+ *      grant P41-RR01081.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package clusterMaker.algorithms.attributeClusterers;
+
+import java.lang.Math;
+
+/**
+ * DistanceKernel calculates the same distances as {@link DistanceMetric}, but
+ * is meant for the case where we need the distances between many pairs of
+ * rows of the same matrix.  It works directly on the matrix's primitive
+ * row array and bitmask of the values that are present, and everything that
+ * only depends on a single row (ranks, means and norms) is calculated up
+ * front.  For rows that have no missing values the correlation metrics then
+ * reduce to a single dot product between two pre-scaled rows, and Spearman's
+ * rank doesn't need to re-rank the rows for every pair.  Rows with missing
+ * values fall back to the pairwise loops, which only visit the columns that
+ * are present in both rows.
+ *
+ * A kernel is read-only once it's been built, so it's safe to share it
+ * between threads that each calculate a different range of rows.  Since the
+ * kernel shares the matrix's storage, the matrix must not be changed while
+ * the kernel is in use.
+ */
+public class DistanceKernel {
+	private static final int BLOCK_SIZE = 64;
+
+	/**
+	 * Receives the distances calculated by {@link #forEachPair}.
+	 */
+	public interface PairVisitor {
+		public void visit(int row1, int row2, double distance);
+	}
+
+	private DistanceMetric metric;
+	private int nRows;
+	private int nColumns;
+	private int words;
+	private double[] weights;
+	private double totalWeight;
+
+	// The matrix's row-major data and the bitmask of present values
+	private double[] data;
+	private long[] present;
+	private boolean[] complete;
+
+	// For the correlation metrics: the complete rows, weighted, centered
+	// (for Pearson) and scaled to unit length, and whether the row has no
+	// variance (in which case the distance is always 1)
+	private double[] unit;
+	private boolean[] flat;
+
+	// For Spearman's rank
+	private double[][] ranks;
+	private double[] rankDenom;
+
+	/**
+	 * Build a kernel using the column weights of the matrix.
+	 *
+	 * @param matrix the data
+	 * @param metric the distance metric to use
+	 */
+	public DistanceKernel(BaseMatrix matrix, DistanceMetric metric) {
+		this(matrix, metric, matrix.getWeights());
+	}
+
+	/**
+	 * Build a kernel.  When distances are calculated between two
+	 * kernels, both must have been built with the same metric and weights.
+	 *
+	 * @param matrix the data
+	 * @param metric the distance metric to use
+	 * @param weights the column weights
+	 */
+	public DistanceKernel(BaseMatrix matrix, DistanceMetric metric, double[] weights) {
+		this.metric = metric;
+		this.nRows = matrix.nRows();
+		this.nColumns = matrix.nColumns();
+		this.words = matrix.words;
+		this.data = matrix.data;
+		this.present = matrix.present;
+		this.weights = weights;
+
+		totalWeight = 0.0;
+		for (int col = 0; col < nColumns; col++)
+			totalWeight += weights[col];
+
+		// A row is complete if all of its words are full, except for the
+		// last one, which only needs the bits for the remaining columns
+		long lastWord = ((nColumns & 63) == 0) ? -1L : (1L << nColumns) - 1;
+		complete = new boolean[nRows];
+		for (int row = 0; row < nRows; row++) {
+			int maskOffset = row*words;
+			boolean full = true;
+			for (int w = 0; w < words && full; w++)
+				full = (present[maskOffset+w] == ((w == words-1) ? lastWord : -1L));
+			complete[row] = full;
+		}
+
+		switch (metric) {
+			case CORRELATION:
+			case ABS_CORRELATION:
+				scaleRows(true);
+				break;
+			case UNCENTERED_CORRELATION:
+			case ABS_UNCENTERED_CORRELATION:
+				scaleRows(false);
+				break;
+			case SPEARMANS_RANK:
+				rankRows(matrix);
+				break;
+		}
+	}
+
+	public int nRows() { return nRows; }
+
+	public int nColumns() { return nColumns; }
+
+	public DistanceMetric getMetric() { return metric; }
+
+	/**
+	 * Return true if none of the row's values are missing.
+	 */
+	public boolean isComplete(int row) { return complete[row]; }
+
+	/**
+	 * Get the distance between two rows of this kernel's matrix.
+	 */
+	public double distance(int row1, int row2) {
+		return distance(row1, this, row2);
+	}
+
+	/**
+	 * Get the distance between a row of this kernel's matrix and a row of
+	 * another kernel's matrix (e.g. a matrix of cluster centroids).  This is
+	 * the equivalent of metric.getMetric(thisMatrix, otherMatrix, weights, row1, row2).
+	 */
+	public double distance(int row1, DistanceKernel other, int row2) {
+		switch (metric) {
+			case EUCLIDEAN:
+				return euclid(row1, other, row2, false);
+			case CITYBLOCK:
+				return euclid(row1, other, row2, true);
+			case CORRELATION:
+				return correlation(row1, other, row2, false);
+			case ABS_CORRELATION:
+				return correlation(row1, other, row2, true);
+			case UNCENTERED_CORRELATION:
+				return uncentered(row1, other, row2, false);
+			case ABS_UNCENTERED_CORRELATION:
+				return uncentered(row1, other, row2, true);
+			case SPEARMANS_RANK:
+				return spearman(row1, other, row2);
+			case KENDALLS_TAU:
+				return kendall(row1, other, row2);
+			case VALUE_IS_CORRELATION:
+				return 1.0 - value(row1, row2);
+		}
+		return euclid(row1, other, row2, false);
+	}
+
+	/**
+	 * Calculate the distances between each row in [rowStart, rowEnd) and all of
+	 * the rows before it, i.e. the strict lower triangle of the distance matrix
+	 * for those rows.  The pairs are visited in square blocks so that the rows
+	 * we're working on stay in the cache.  As in BaseMatrix.getDistanceMatrix, the
+	 * distance is calculated from the lower numbered row to the higher one, which
+	 * only matters for VALUE_IS_CORRELATION with an unsymmetrical matrix.
+	 *
+	 * @param rowStart the first row
+	 * @param rowEnd one past the last row
+	 * @param visitor the visitor that gets each (row1, row2, distance) with row1 &gt; row2
+	 */
+	public void forEachPair(int rowStart, int rowEnd, PairVisitor visitor) {
+		for (int blockRow = rowStart; blockRow < rowEnd; blockRow += BLOCK_SIZE) {
+			int blockRowEnd = Math.min(blockRow+BLOCK_SIZE, rowEnd);
+			for (int blockCol = 0; blockCol < blockRowEnd-1; blockCol += BLOCK_SIZE) {
+				int blockColEnd = Math.min(blockCol+BLOCK_SIZE, blockRowEnd-1);
+				for (int row = blockRow; row < blockRowEnd; row++) {
+					int colEnd = Math.min(blockColEnd, row);
+					for (int col = blockCol; col < colEnd; col++)
+						visitor.visit(row, col, distance(col, row));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculate the full, symmetric distance matrix.
+	 */
+	public double[][] getDistanceMatrix() {
+		final double[][] result = new double[nRows][nRows];
+		for (int row = 0; row < nRows; row++)
+			result[row][row] = distance(row, row);
+
+		forEachPair(0, nRows, new PairVisitor() {
+			public void visit(int row1, int row2, double distance) {
+				result[row1][row2] = distance;
+				result[row2][row1] = distance;
+			}
+		});
+		return result;
+	}
+
+	private double value(int row, int col) {
+		if (!present(row, col))
+			return Double.NaN;
+		return data[row*nColumns+col];
+	}
+
+	private double euclid(int row1, DistanceKernel other, int row2, boolean cityblock) {
+		double[] data2 = other.data;
+		int offset1 = row1*nColumns;
+		int offset2 = row2*nColumns;
+		double result = 0.0;
+		double tweight;
+
+		if (complete[row1] && other.complete[row2]) {
+			for (int i = 0; i < nColumns; i++) {
+				double term = data[offset1+i] - data2[offset2+i];
+				if (cityblock)
+					result += weights[i]*Math.abs(term);
+				else
+					result += weights[i]*term*term;
+			}
+			tweight = totalWeight;
+		} else {
+			tweight = 0.0;
+			long[] present2 = other.present;
+			for (int w = 0; w < words; w++) {
+				long bits = present[row1*words+w] & present2[row2*words+w];
+				while (bits != 0) {
+					int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					double term = data[offset1+i] - data2[offset2+i];
+					if (cityblock)
+						result += weights[i]*Math.abs(term);
+					else
+						result += weights[i]*term*term;
+					tweight += weights[i];
+				}
+			}
+		}
+		if (tweight == 0.0) return 0;
+		return (result/tweight);
+	}
+
+	private double correlation(int row1, DistanceKernel other, int row2, boolean absolute) {
+		if (complete[row1] && other.complete[row2]) {
+			if (totalWeight == 0.0) return 0;
+			if (flat[row1] || other.flat[row2]) return 1;
+			double result = dot(row1, other, row2);
+			if (absolute) result = Math.abs(result);
+			return (1.0 - result);
+		}
+
+		double[] data2 = other.data;
+		long[] present2 = other.present;
+		int offset1 = row1*nColumns;
+		int offset2 = row2*nColumns;
+		double result = 0.0;
+		double sum1 = 0.0;
+		double sum2 = 0.0;
+		double denom1 = 0.0;
+		double denom2 = 0.0;
+		double tweight = 0.0;
+		for (int w = 0; w < words; w++) {
+			long bits = present[row1*words+w] & present2[row2*words+w];
+			while (bits != 0) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				double term1 = data[offset1+i];
+				double term2 = data2[offset2+i];
+				double wt = weights[i];
+				sum1 += wt*term1;
+				sum2 += wt*term2;
+				result += wt*term1*term2;
+				denom1 += wt*term1*term1;
+				denom2 += wt*term2*term2;
+				tweight += wt;
+			}
+		}
+		if (tweight == 0.0) return 0;
+		result -= sum1 * sum2 / tweight;
+		denom1 -= sum1 * sum1 / tweight;
+		denom2 -= sum2 * sum2 / tweight;
+		if (denom1 <= 0) return 1;
+		if (denom2 <= 0) return 1;
+		if (absolute) result = Math.abs(result);
+		result = result / Math.sqrt(denom1*denom2);
+		return (1.0 - result);
+	}
+
+	private double uncentered(int row1, DistanceKernel other, int row2, boolean absolute) {
+		if (complete[row1] && other.complete[row2]) {
+			if (nColumns == 0) return 0.0;
+			if (flat[row1] || other.flat[row2]) return 1;
+			double result = dot(row1, other, row2);
+			if (absolute) result = Math.abs(result);
+			return (1.0 - result);
+		}
+
+		double[] data2 = other.data;
+		long[] present2 = other.present;
+		int offset1 = row1*nColumns;
+		int offset2 = row2*nColumns;
+		double result = 0.0;
+		double denom1 = 0.0;
+		double denom2 = 0.0;
+		boolean flag = false;
+		for (int w = 0; w < words; w++) {
+			long bits = present[row1*words+w] & present2[row2*words+w];
+			while (bits != 0) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				double term1 = data[offset1+i];
+				double term2 = data2[offset2+i];
+				double wt = weights[i];
+				result += wt*term1*term2;
+				denom1 += wt*term1*term1;
+				denom2 += wt*term2*term2;
+				flag = true;
+			}
+		}
+		if (!flag) return 0.0;
+		if (denom1 == 0) return 1;
+		if (denom2 == 0) return 1;
+		if (absolute) result = Math.abs(result);
+		result = result / Math.sqrt(denom1*denom2);
+		return (1.0 - result);
+	}
+
+	private double spearman(int row1, DistanceKernel other, int row2) {
+		double[] rank1 = ranks[row1];
+		double[] rank2 = other.ranks[row2];
+		if (rank1 == null || rank2 == null)
+			return 0.0;
+
+		int length = Math.min(rank1.length, rank2.length);
+		double avgrank = 0.5*(rank1.length-1);
+		double result = 0.0;
+		for (int i = 0; i < length; i++)
+			result += rank1[i] * rank2[i];
+		result /= rank1.length;
+		result -= avgrank * avgrank;
+
+		double denom1 = rankDenom[row1];
+		double denom2 = other.rankDenom[row2];
+		if (rank1.length != rank2.length) {
+			// The rows have different numbers of values, so the second
+			// row's denominator has to be done with the first row's length
+			denom2 = 0.0;
+			for (int i = 0; i < length; i++)
+				denom2 += rank2[i] * rank2[i];
+			denom2 /= rank1.length;
+			denom2 -= avgrank * avgrank;
+		}
+		if (denom1 <= 0) return 1;
+		if (denom2 <= 0) return 1;
+		result = result / Math.sqrt(denom1*denom2);
+		return (1.0 - result);
+	}
+
+	private double kendall(int row1, DistanceKernel other, int row2) {
+		double[] data2 = other.data;
+		int offset1 = row1*nColumns;
+		int offset2 = row2*nColumns;
+		boolean both = complete[row1] && other.complete[row2];
+		int con = 0;
+		int dis = 0;
+		int exx = 0;
+		int exy = 0;
+		boolean flag = false;
+		for (int i = 0; i < nColumns; i++) {
+			if (!both && !(present(row1, i) && other.present(row2, i)))
+				continue;
+			double x1 = data[offset1+i];
+			double y1 = data2[offset2+i];
+			for (int j = 0; j < i; j++) {
+				if (!both && !(present(row1, j) && other.present(row2, j)))
+					continue;
+				double x2 = data[offset1+j];
+				double y2 = data2[offset2+j];
+				if (x1 < x2 && y1 < y2) con++;
+				if (x1 > x2 && y1 > y2) con++;
+				if (x1 < x2 && y1 > y2) dis++;
+				if (x1 > x2 && y1 < y2) dis++;
+				if (x1 == x2 && y1 != y2) exx++;
+				if (x1 != x2 && y1 == y2) exy++;
+				flag = true;
+			}
+		}
+		if (!flag) return 0.0;
+		double denomx = con + dis + exx;
+		double denomy = con + dis + exy;
+		if (denomx == 0) return 1;
+		if (denomy == 0) return 1;
+		double tau = (con-dis)/Math.sqrt(denomx*denomy);
+		return 1.-tau;
+	}
+
+	private boolean present(int row, int col) {
+		return (present[row*words+(col>>>6)] & (1L << col)) != 0;
+	}
+
+	private double dot(int row1, DistanceKernel other, int row2) {
+		double[] unit2 = other.unit;
+		int offset1 = row1*nColumns;
+		int offset2 = row2*nColumns;
+		double result = 0.0;
+		for (int i = 0; i < nColumns; i++)
+			result += unit[offset1+i]*unit2[offset2+i];
+		return result;
+	}
+
+	/**
+	 * Pre-scale the complete rows for the correlation metrics: each value is
+	 * multiplied by the square root of its weight and the row is scaled to unit
+	 * length, after subtracting the weighted mean if the correlation is centered.
+	 * The correlation between two complete rows is then just the dot product.
+	 * The denominators are calculated the same way as in DistanceMetric so that
+	 * we agree on which rows are flat.
+	 */
+	private void scaleRows(boolean centered) {
+		unit = new double[nRows*nColumns];
+		flat = new boolean[nRows];
+		double[] sqrtWeights = new double[nColumns];
+		for (int col = 0; col < nColumns; col++)
+			sqrtWeights[col] = Math.sqrt(weights[col]);
+
+		for (int row = 0; row < nRows; row++) {
+			if (!complete[row]) continue;
+			int offset = row*nColumns;
+			double sum = 0.0;
+			double denom = 0.0;
+			for (int col = 0; col < nColumns; col++) {
+				double term = data[offset+col];
+				sum += weights[col]*term;
+				denom += weights[col]*term*term;
+			}
+
+			double mean = 0.0;
+			if (centered) {
+				if (totalWeight == 0.0) continue;
+				denom -= sum * sum / totalWeight;
+				mean = sum / totalWeight;
+				flat[row] = (denom <= 0);
+			} else {
+				flat[row] = (denom == 0);
+			}
+			if (flat[row]) continue;
+
+			double scale = 1.0/Math.sqrt(denom);
+			for (int col = 0; col < nColumns; col++)
+				unit[offset+col] = sqrtWeights[col]*(data[offset+col]-mean)*scale;
+		}
+	}
+
+	/**
+	 * Rank each row once, and calculate the part of the Spearman denominator
+	 * that only depends on the row.
+	 */
+	private void rankRows(BaseMatrix matrix) {
+		ranks = new double[nRows][];
+		rankDenom = new double[nRows];
+		for (int row = 0; row < nRows; row++) {
+			double[] rank = matrix.getRank(row);
+			ranks[row] = rank;
+			if (rank == null) continue;
+
+			double avgrank = 0.5*(rank.length-1);
+			double denom = 0.0;
+			for (int i = 0; i < rank.length; i++)
+				denom += rank[i] * rank[i];
+			denom /= rank.length;
+			denom -= avgrank * avgrank;
+			rankDenom[row] = denom;
+		}
+	}
+}
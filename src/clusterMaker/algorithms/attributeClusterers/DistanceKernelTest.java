@@ -0,0 +1,81 @@
+package clusterMaker.algorithms.attributeClusterers;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class DistanceKernelTest {
+
+	private static double epsilon = 1e-12;
+
+	private BaseMatrix createMatrix(boolean missing) {
+		BaseMatrix test = new BaseMatrix(
+			6, 5,
+			new Double[]{
+				 1.,  2.,  3.,  4.,  5.,
+				 2.,  4.,  6.,  8., 11.,
+				 5.,  4.,  3.,  2.,  1.,
+				 3.,  3.,  3.,  3.,  3.,
+				 0., -1.,  2., -3.,  4.,
+				 1.,  1.,  2.,  2.,  1.,
+			}
+		);
+		if (missing) {
+			test.setValue(1, 2, null);
+			test.setValue(4, 0, null);
+			test.setValue(4, 4, null);
+		}
+		test.setColWeight(3, 2.0);
+		return test;
+	}
+
+	private void compare(BaseMatrix test, DistanceMetric metric) {
+		DistanceKernel kernel = new DistanceKernel(test, metric);
+		double[][] distances = kernel.getDistanceMatrix();
+		for (int i = 0; i < test.nRows(); i++) {
+			for (int j = i; j < test.nRows(); j++) {
+				double expected = metric.getMetric(test, test, test.getWeights(), i, j);
+				assertEquals(metric + "[" + i + "][" + j + "]", expected, distances[i][j], epsilon);
+				assertEquals(metric + "[" + j + "][" + i + "]", expected, distances[j][i], epsilon);
+			}
+		}
+	}
+
+	@Test
+	public void testCompleteRows() {
+		BaseMatrix test = createMatrix(false);
+		for (DistanceMetric metric: BaseMatrix.distanceTypes) {
+			if (metric != DistanceMetric.VALUE_IS_CORRELATION)
+				compare(test, metric);
+		}
+	}
+
+	@Test
+	public void testMissingValues() {
+		BaseMatrix test = createMatrix(true);
+		compare(test, DistanceMetric.EUCLIDEAN);
+		compare(test, DistanceMetric.CITYBLOCK);
+		compare(test, DistanceMetric.CORRELATION);
+		compare(test, DistanceMetric.ABS_CORRELATION);
+		compare(test, DistanceMetric.UNCENTERED_CORRELATION);
+		compare(test, DistanceMetric.ABS_UNCENTERED_CORRELATION);
+	}
+
+	@Test
+	public void testCentroids() {
+		BaseMatrix test = createMatrix(true);
+		BaseMatrix centroids = new BaseMatrix(1, 5, new Double[]{ 2., 2., null, 3., 4. });
+		for (DistanceMetric metric: BaseMatrix.distanceTypes) {
+			if (metric == DistanceMetric.VALUE_IS_CORRELATION || metric == DistanceMetric.KENDALLS_TAU ||
+			    metric == DistanceMetric.SPEARMANS_RANK)
+				continue;
+			DistanceKernel kernel = new DistanceKernel(test, metric);
+			DistanceKernel other = new DistanceKernel(centroids, metric, test.getWeights());
+			for (int i = 0; i < test.nRows(); i++) {
+				double expected = metric.getMetric(test, centroids, test.getWeights(), i, 0);
+				assertEquals(metric + "[" + i + "]", expected, kernel.distance(i, other, 0), epsilon);
+			}
+		}
+	}
+
+}
@@ -39,6 +39,11 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.JPanel;
 
 // Cytoscape imports
@@ -59,6 +64,7 @@ import cytoscape.task.TaskMonitor;
 import clusterMaker.algorithms.AbstractClusterAlgorithm;
 import clusterMaker.algorithms.ClusterAlgorithm;
 import clusterMaker.algorithms.attributeClusterers.AbstractAttributeClusterer;
+import clusterMaker.algorithms.attributeClusterers.DistanceKernel;
 import clusterMaker.algorithms.attributeClusterers.DistanceMetric;
 import clusterMaker.algorithms.attributeClusterers.Matrix;
 import clusterMaker.ui.ClusterViz;
@@ -73,6 +79,9 @@ public class FeatureVectorCluster extends AbstractAttributeClusterer implements
 	String edgeAttribute = null;
 	final static String interaction = "distance";
 
+	// The number of rows that a worker takes at a time
+	final static int BLOCK_SIZE = 64;
+
 	public FeatureVectorCluster() {
 		super();
 		logger = CyLogger.getLogger(FeatureVectorCluster.class);
@@ -265,85 +274,52 @@ public class FeatureVectorCluster extends AbstractAttributeClusterer implements
 
 		CyAttributes edgeAttributes = Cytoscape.getEdgeAttributes();
 
-		// For each node, get the distance to all other nodes
-		double maxdistance = Double.MIN_VALUE;
-		double mindistance = Double.MAX_VALUE;
-
-		double distanceMatrix[][] = new double[nNodes][nNodes];
-		for (int i = 0; i < nNodes; i++) {
-			for (int j = i+1; j < nNodes; j++) {
- 				double distance = distanceMetric.getMetric(matrix, matrix, matrix.getWeights(), i, j);
-				maxdistance = Math.max(maxdistance, distance);
-				mindistance = Math.min(mindistance, distance);
-				distanceMatrix[i][j] = distance;
-			}
+		// Distances are scaled to [0,1] before we compare them to the cutoff, so
+		// we need a first pass over all of the pairs to get the range.  We
+		// then go over the pairs again and keep only the ones that are going to
+		// be edges, so we never need to hold all n^2 distances.
+		DistanceKernel kernel = new DistanceKernel(matrix, distanceMetric);
+		double[] range = new double[2];
+		if (computeDistances(kernel, range, null, 0, 25) == null)
+			return;
+
+		double mindistance = range[0];
+		double maxdistance = range[1];
+		double scale = maxdistance - mindistance;
+
+		if (createNewNetwork) {
+			EdgeBuffer[] edgeBuffers = computeDistances(kernel, range, new EdgeBuffer[nBlocks(nNodes)], 25, 50);
+			if (edgeBuffers == null)
+				return;
+
 			if (monitor != null) {
-				if (canceled) return;
-				monitor.setPercentCompleted((int)(25 * (double)i/(double)nNodes));
+				monitor.setStatus("Creating edges");
 			}
-		}
 
-		if (monitor != null) {
-			monitor.setStatus("Assigning values to edges");
-		}
+			// Look up each node once, rather than once per edge
+			CyNode[] nodes = new CyNode[nNodes];
+			for (int row = 0; row < nNodes; row++)
+				nodes[row] = Cytoscape.getCyNode(matrix.getRowLabel(row));
 
-		int[] nodeArray = new int[2];
-		List<CyEdge> edgeList = new ArrayList<CyEdge>();
-		double scale = maxdistance - mindistance;
+			int nEdges = 0;
+			for (EdgeBuffer buffer: edgeBuffers)
+				nEdges += buffer.size;
 
-		/* Performance tuning -- what's taking all the time!
-		long time = System.currentTimeMillis();
-		long nodeFetchTime = 0L;
-		long edgeFetchTime = 0L;
-		long edgeCreateTime = 0L;
-		long networkAddTime = 0L;
-		long setAttributeTime = 0L;
-		int newEdges = 0;
-		*/
-
-		for (int i = 0; i < nNodes; i++) {
-			for (int j = i+1; j < nNodes; j++) {
-				// time = System.currentTimeMillis();
-				double distance = (distanceMatrix[i][j]-mindistance)/scale;
-				CyNode source = Cytoscape.getCyNode(matrix.getRowLabel(i));
-				CyNode target = Cytoscape.getCyNode(matrix.getRowLabel(j));
-				nodeArray[0] = source.getRootGraphIndex();
-				nodeArray[1] = target.getRootGraphIndex();
-
-				// nodeFetchTime += System.currentTimeMillis()-time;
-
-				if (createNewNetwork == true && distance > edgeCutoff)
-					continue;
-
-				// time = System.currentTimeMillis();
-				CyEdge edge;
-				if (createNewNetwork == true) {
-					edge = myCreateEdge(source, target, edgeAttributes);
+			List<CyEdge> edgeList = new ArrayList<CyEdge>(nEdges);
+			int created = 0;
+			for (EdgeBuffer buffer: edgeBuffers) {
+				for (int k = 0; k < buffer.size; k++) {
+					CyEdge edge = myCreateEdge(nodes[buffer.sources[k]], nodes[buffer.targets[k]], edgeAttributes);
 					edgeList.add(edge);
-				} else {
-					int[] edgeArray = network.getConnectingEdgeIndicesArray(nodeArray);
-					// edgeFetchTime += System.currentTimeMillis()-time;
-					// time = System.currentTimeMillis();
-					if (edgeArray == null || edgeArray.length == 0) {
-						continue;
-					} else {
-						edge = (CyEdge)network.getEdge(edgeArray[0]);
-						// edgeFetchTime += System.currentTimeMillis()-time;
-					}
+					edgeAttributes.setAttribute(edge.getIdentifier(), edgeAttribute, buffer.distances[k]);
+				}
+				created += buffer.size;
+				if (monitor != null) {
+					if (canceled) return;
+					monitor.setPercentCompleted((int)(50 + (50 * (double)created/(double)Math.max(nEdges,1))));
 				}
-				if (edge == null) continue;
-				// time = System.currentTimeMillis();
-				edgeAttributes.setAttribute(edge.getIdentifier(), edgeAttribute, distance);
-				// setAttributeTime += System.currentTimeMillis()-time;
-			}
-			if (monitor != null)  {
-				if (canceled) return;
-				monitor.setPercentCompleted((int)(25 + (75 * (double)i/(double)nNodes)));
 			}
-		}
 
-		// If we're supposed to, create the new network
-		if (createNewNetwork) {
 			List nodeList = network.nodesList();
 			CyNetwork net = Cytoscape.createNetwork(nodeList, edgeList, network.getTitle()+"--clustered",network,false);
 			// Create the network view
@@ -352,16 +328,33 @@ public class FeatureVectorCluster extends AbstractAttributeClusterer implements
 			CyLayoutAlgorithm alg = CyLayouts.getLayout("force-directed");
 			if (alg != null)
 				view.applyLayout(alg);
-		}
+		} else {
+			if (monitor != null) {
+				monitor.setStatus("Assigning values to edges");
+			}
 
-		/*
-		System.out.println("Created "+newEdges+" edges");
-		System.out.println("Edge creation time: "+edgeCreateTime+"ms");
-		System.out.println("Network add time: "+networkAddTime+"ms");
-		System.out.println("Edge fetch time: "+edgeFetchTime+"ms");
-		System.out.println("Node fetch time: "+nodeFetchTime+"ms");
-		System.out.println("Set attribute time: "+setAttributeTime+"ms");
-		*/
+			// We only need the distances for the edges we already have
+			Map<String,Integer> rowMap = new HashMap<String,Integer>();
+			for (int row = 0; row < nNodes; row++)
+				rowMap.put(matrix.getRowLabel(row), new Integer(row));
+
+			List<CyEdge> edgeList = (List<CyEdge>)network.edgesList();
+			int edgeCount = 0;
+			for (CyEdge edge: edgeList) {
+				Integer source = rowMap.get(edge.getSource().getIdentifier());
+				Integer target = rowMap.get(edge.getTarget().getIdentifier());
+				if (source != null && target != null && !source.equals(target)) {
+					int i = Math.min(source.intValue(), target.intValue());
+					int j = Math.max(source.intValue(), target.intValue());
+					double distance = (kernel.distance(i, j)-mindistance)/scale;
+					edgeAttributes.setAttribute(edge.getIdentifier(), edgeAttribute, distance);
+				}
+				if (monitor != null && (++edgeCount % 1000) == 0) {
+					if (canceled) return;
+					monitor.setPercentCompleted((int)(25 + (75 * (double)edgeCount/(double)edgeList.size())));
+				}
+			}
+		}
 
 		if (monitor != null)
 			monitor.setStatus("Complete");
@@ -374,6 +367,147 @@ public class FeatureVectorCluster extends AbstractAttributeClusterer implements
 		return false;
 	}
 
+	private static int nBlocks(int nNodes) {
+		return (nNodes + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	/**
+ 	 * Calculate the distances between all pairs of rows, in parallel.  The rows are
+ 	 * split into blocks, and each worker takes the next block and calculates the
+ 	 * distances from its rows to all of the rows before them.  If edgeBuffers is null,
+ 	 * we're just finding the range of the distances, which is returned in range.
+ 	 * Otherwise, range holds the minimum and maximum distance and the pairs whose
+ 	 * scaled distance is within the cutoff are saved in the buffer for their block.
+ 	 *
+ 	 * @return the edge buffers (or an empty array if we were only getting the range), or
+ 	 * null if we were canceled
+ 	 */
+	private EdgeBuffer[] computeDistances(DistanceKernel kernel, double[] range, EdgeBuffer[] edgeBuffers,
+	                                      int startPercent, int endPercent) {
+		int nNodes = kernel.nRows();
+		int nThreads = Runtime.getRuntime().availableProcessors();
+		AtomicInteger nextBlock = new AtomicInteger(0);
+		AtomicInteger doneBlocks = new AtomicInteger(0);
+
+		List<PairWorker> workers = new ArrayList<PairWorker>(nThreads);
+		for (int i = 0; i < nThreads; i++)
+			workers.add(new PairWorker(kernel, nextBlock, doneBlocks, range, edgeBuffers, startPercent, endPercent));
+
+		ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+		double minDistance = Double.MAX_VALUE;
+		double maxDistance = Double.MIN_VALUE;
+		try {
+			for (Future<double[]> f: pool.invokeAll(workers)) {
+				double[] workerRange = f.get();
+				minDistance = Math.min(minDistance, workerRange[0]);
+				maxDistance = Math.max(maxDistance, workerRange[1]);
+			}
+		} catch (Exception e) {
+			logger.error("Unable to calculate distances: "+e.getMessage(), e);
+			return null;
+		} finally {
+			pool.shutdown();
+		}
+
+		if (canceled) return null;
+
+		if (edgeBuffers == null) {
+			range[0] = minDistance;
+			range[1] = maxDistance;
+			return new EdgeBuffer[0];
+		}
+		return edgeBuffers;
+	}
+
+	/**
+ 	 * Worker for computeDistances.  Returns the range of the distances it saw.
+ 	 */
+	private class PairWorker implements Callable<double[]>, DistanceKernel.PairVisitor {
+		DistanceKernel kernel;
+		AtomicInteger nextBlock;
+		AtomicInteger doneBlocks;
+		EdgeBuffer[] edgeBuffers;
+		EdgeBuffer buffer = null;
+		double mindistance;
+		double scale;
+		int startPercent;
+		int endPercent;
+		double minSeen = Double.MAX_VALUE;
+		double maxSeen = Double.MIN_VALUE;
+
+		public PairWorker(DistanceKernel kernel, AtomicInteger nextBlock, AtomicInteger doneBlocks,
+		                  double[] range, EdgeBuffer[] edgeBuffers, int startPercent, int endPercent) {
+			this.kernel = kernel;
+			this.nextBlock = nextBlock;
+			this.doneBlocks = doneBlocks;
+			this.edgeBuffers = edgeBuffers;
+			this.mindistance = range[0];
+			this.scale = range[1] - range[0];
+			this.startPercent = startPercent;
+			this.endPercent = endPercent;
+		}
+
+		public double[] call() {
+			int nNodes = kernel.nRows();
+			int nBlocks = nBlocks(nNodes);
+			int block;
+			while ((block = nextBlock.getAndIncrement()) < nBlocks) {
+				if (canceled) break;
+				if (edgeBuffers != null) {
+					buffer = new EdgeBuffer();
+					edgeBuffers[block] = buffer;
+				}
+
+				int rowStart = block*BLOCK_SIZE;
+				kernel.forEachPair(rowStart, Math.min(rowStart+BLOCK_SIZE, nNodes), this);
+
+				// Later blocks have more pairs, so weight the progress accordingly
+				int done = doneBlocks.incrementAndGet();
+				if (monitor != null) {
+					double fraction = (double)done*done/((double)nBlocks*nBlocks);
+					monitor.setPercentCompleted((int)(startPercent + (endPercent-startPercent)*fraction));
+				}
+			}
+			return new double[] {minSeen, maxSeen};
+		}
+
+		public void visit(int row, int col, double distance) {
+			if (buffer == null) {
+				minSeen = Math.min(minSeen, distance);
+				maxSeen = Math.max(maxSeen, distance);
+				return;
+			}
+
+			double scaled = (distance-mindistance)/scale;
+			if (scaled > edgeCutoff)
+				return;
+			buffer.add(col, row, scaled);
+		}
+	}
+
+	/**
+ 	 * A growable list of the edges we're going to create, kept as primitives.
+ 	 */
+	private static class EdgeBuffer {
+		int size = 0;
+		int[] sources = new int[256];
+		int[] targets = new int[256];
+		double[] distances = new double[256];
+
+		void add(int source, int target, double distance) {
+			if (size == sources.length) {
+				int capacity = size*2;
+				sources = Arrays.copyOf(sources, capacity);
+				targets = Arrays.copyOf(targets, capacity);
+				distances = Arrays.copyOf(distances, capacity);
+			}
+			sources[size] = source;
+			targets[size] = target;
+			distances[size] = distance;
+			size++;
+		}
+	}
+
 	/**
  	 * Cytoscape doesn't provide us with an easy way to create an edge without searching
  	 * for it first.  Since we've already searched for it, we are absolutely certain
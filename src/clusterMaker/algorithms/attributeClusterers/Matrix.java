@@ -102,9 +102,7 @@ public class Matrix extends BaseMatrix {
 	}
 
 	public Matrix(Matrix duplicate) {
-		this.nRows = duplicate.nRows();
-		this.nColumns = duplicate.nColumns();
-		this.matrix = new Double[nRows][nColumns];
+		allocate(duplicate.nRows(), duplicate.nColumns());
 		this.colWeights = new double[nColumns];
 		this.rowWeights = new double[nRows];
 		this.columnLabels = new String[nColumns];
@@ -136,17 +134,16 @@ public class Matrix extends BaseMatrix {
 					if (columnNodes != null)
 						columnNodes[col] = duplicate.getColNode(col);
 				}
-				if (duplicate.getValue(row, col) != null)
-					this.matrix[row][col] = new Double(duplicate.getValue(row, col));
 			}
 		}
+
+		System.arraycopy(duplicate.data, 0, this.data, 0, data.length);
+		System.arraycopy(duplicate.present, 0, this.present, 0, present.length);
 	}
 
 	public Matrix(int rows, int cols) {
 		CyNetwork network = Cytoscape.getCurrentNetwork();
-		this.nRows = rows;
-		this.nColumns = cols;
-		this.matrix = new Double[rows][cols];
+		allocate(rows, cols);
 		this.colWeights = new double[cols];
 		this.rowWeights = new double[rows];
 		this.columnLabels = new String[cols];
@@ -183,10 +180,7 @@ public class Matrix extends BaseMatrix {
 		// For debugging purposes, sort the node list by identifier
 		nodeList = sortNodeList(nodeList);
 
-		this.nRows = nodeList.size();
-		this.nColumns = this.nRows;
-		this.matrix = new Double[nRows][nColumns];
-		// this.matrix = DoubleFactory2D.sparse.make(nRows,nColumns);
+		allocate(nodeList.size(), nodeList.size());
 		this.rowLabels = new String[nRows];
 		this.columnLabels = new String[nColumns];
 		this.rowNodes = new CyNode[nRows];
@@ -226,11 +220,11 @@ public class Matrix extends BaseMatrix {
 					maxAttribute = Math.max(maxAttribute, val);
 					if (edge.getSource() == node) {
 						column = nodeList.indexOf(edge.getTarget());
-						matrix[index][column] = val;
+						setValue(index, column, val);
 						//matrix.set(index,column,val);
 					} else {
 						column = nodeList.indexOf(edge.getSource());
-						matrix[index][column] = val;
+						setValue(index, column, val);
 						// matrix.set(index,column,val);
 					}
 				}
@@ -241,10 +235,8 @@ public class Matrix extends BaseMatrix {
 
 		// At this point, if we're ignoring missing values, we only have part of the matrix
 		// in use.  Update nRows and nColumns to reflect the new size.
-		if (ignoreMissing) {
-			this.nRows = index;
-			this.nColumns = index;
-		}
+		if (ignoreMissing)
+			resize(index, index);
 	}
 
 	// XXX Do we need a new constructor to clusterMaker.algorithms.DistanceMatrix?
@@ -300,10 +292,7 @@ public class Matrix extends BaseMatrix {
 		// We've got all of the information, get our counts and create the
 		// matrix
 		if (transpose) {
-			this.nRows = condList.size();
-			this.nColumns = nodeCondMap.size();
-			this.matrix = new Double[nRows][nColumns];
-			// this.matrix = DoubleFactory2D.sparse.make(nRows,nColumns);
+			allocate(condList.size(), nodeCondMap.size());
 			this.rowLabels = new String[nRows];
 			this.columnLabels = new String[nColumns];
 			this.columnNodes = new CyNode[nColumns];
@@ -320,20 +309,17 @@ public class Matrix extends BaseMatrix {
 				for (int row=0; row < this.nRows; row++) {
 					String rowLabel = this.rowLabels[row];
 					if (thisCondMap.containsKey(rowLabel)) {
-						matrix[row][column] = thisCondMap.get(rowLabel);
+						setValue(row, column, thisCondMap.get(rowLabel));
 						// matrix.set(row,column,thisCondMap.get(rowLabel));
 					}
 				}
 				column++;
 			}
 		} else {
-			this.nRows = nodeCondMap.size();
-			this.nColumns = condList.size();
+			allocate(nodeCondMap.size(), condList.size());
 			this.rowLabels = new String[nRows];
 			this.rowNodes = new CyNode[nRows];
 			this.columnLabels = new String[nColumns];
-			this.matrix = new Double[nRows][nColumns];
-			// this.matrix = DoubleFactory2D.sparse.make(nRows,nColumns);
 			setColumnLabels(condList);
 
 			int row = 0;
@@ -347,7 +333,7 @@ public class Matrix extends BaseMatrix {
 					String columnLabel = this.columnLabels[column];
 					if (thisCondMap.containsKey(columnLabel)) {
 						// System.out.println("Setting matrix["+rowLabels[row]+"]["+columnLabel+"] to "+thisCondMap.get(columnLabel));
-						matrix[row][column] = thisCondMap.get(columnLabel);
+						setValue(row, column, thisCondMap.get(columnLabel));
 						// matrix.set(row,column,thisCondMap.get(columnLabel));
 					}
 				}
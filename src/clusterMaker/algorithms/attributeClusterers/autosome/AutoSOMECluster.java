@@ -196,7 +196,7 @@ public class AutoSOMECluster extends AbstractNetworkClusterer implements Tunable
 
 		clusterProperties.add(new Tunable("tunables_panel",
 						  "AutoSOME Basic Tuning",
-						  Tunable.GROUP, new Integer(4)));
+						  Tunable.GROUP, new Integer(5)));
 
 		Tunable tun = new Tunable("mode","Running Mode",
 						   Tunable.LIST, 0,
@@ -222,6 +222,11 @@ public class AutoSOMECluster extends AbstractNetworkClusterer implements Tunable
 						  "Number of Threads (No. CPUs)",
 						  Tunable.INTEGER, new Integer(settings.threads),
 						  new Integer(1), (Object)null, 0));
+
+		// SOM training mode
+		clusterProperties.add(new Tunable("somBatch",
+						  "Batch SOM Training",
+						  Tunable.BOOLEAN, new Boolean(settings.som_batch)));
 	      
 
 		//normalization tunables
@@ -353,12 +358,15 @@ public class AutoSOMECluster extends AbstractNetworkClusterer implements Tunable
 			AutoSOME_Mode = mode[index];
 			if(AutoSOME_Mode.equals("Normal")){
 			    settings.som_iters=500;
+			    settings.som_epochs=5;
 			    settings.de_resolution=32;
 			}else if(AutoSOME_Mode.equals("Speed")){
 			    settings.som_iters=250;
+			    settings.som_epochs=3;
 			    settings.de_resolution=16;
 			}else{
 			    settings.som_iters=1000;
+			    settings.som_epochs=10;
 			    settings.de_resolution=64;
 			}
 		}
@@ -375,6 +383,10 @@ public class AutoSOMECluster extends AbstractNetworkClusterer implements Tunable
 		if ((t != null) && (t.valueChanged() || force))
 			settings.threads = ((Integer) t.getValue()).intValue();
 
+		t = clusterProperties.get("somBatch");
+		if ((t != null) && (t.valueChanged() || force))
+			settings.som_batch = ((Boolean) t.getValue()).booleanValue();
+
 		t = clusterProperties.get("logScaling");
 		if ((t != null) && (t.valueChanged() || force))
 			settings.logNorm = ((Boolean) t.getValue()).booleanValue();
@@ -163,6 +163,8 @@ public class RunAutoSOME {
                 s.sumSqrRows=settings.sumSqrRows;
                 s.sumSqrCol=settings.sumSqrCol;
                 s.som_iters=settings.som_iters;
+                s.som_batch=settings.som_batch;
+                s.som_epochs=settings.som_epochs;
                 s.de_resolution=settings.de_resolution;
                 s.distMatrix=settings.distMatrix;
                 s.dmDist=settings.dmDist;
@@ -44,6 +44,8 @@ public class Settings implements Serializable{
     public boolean som_circle = true; //use SOM circular topology if true, square if false
     public double som_theta = 1.5; //error dampening factor; error is divided by theta
     public double som_DEScale = 3; //set error to this number as an exponent
+    public boolean som_batch = false; //train SOM in batch mode: one update from all data per epoch
+    public int som_epochs = 5; //number of SOM batch epochs for each of 2 stages
     public int de_resolution = 32; //diffusion resolution: must be a power of 2
     public boolean doCart = true; //perform density-equalization
     public int sm_iters = 100; //number of sammon mapping iterations
@@ -141,6 +143,11 @@ public class Settings implements Serializable{
                         som_circle = false;
                         System.out.println(">SOM Topology Set To Square");
                     break;
+                    case 'a':
+                        som_batch = true;
+                        if(setting.length() > 1) som_epochs = Integer.valueOf(setting.substring(1));
+                        System.out.println(">SOM Batch Training With "+som_epochs+" Epochs Per Stage");
+                    break;
                     case 'd':
                         som_theta = Double.valueOf(setting.substring(1));
                         System.out.println(">SOM error dampener 'theta'  set to: "+som_theta);
@@ -455,6 +462,8 @@ public class Settings implements Serializable{
                 "-P2 set SOM distance metric to Uncentered Correlation (Euclidean)\n" +
                 "-s set SOM topology to square (circle)\n" +
                 "-i[integer] set number of SOM iterations (500)\n" +
+                "-a train SOM in batch mode (false)\n" +
+                "-a[integer] set number of SOM batch epochs (5)\n" +
                 "-x[integer] set SOM error surface exponent (3)\n" +
                 "-r[power of 2] set density-equalizing cartogram resolution (32)\n" +
                 "-E disable Density-Equalizing Cartogram (false)\n" +
@@ -485,7 +494,8 @@ public class Settings implements Serializable{
         sb.append("Ensemble Runs\t"+ensemble_runs+"\n");//number of cluster runs to merge into ensemble clustering
         if(noMapping) sb.append("No Dimensional Reduction / Mapping"); //do dimensional reduction on input data?    
         if(!doSM && !noMapping) {
-            sb.append("SOM iterations\t"+som_iters+"\n"); //number of SOM iterations
+            if(som_batch) sb.append("SOM batch epochs\t"+som_epochs+"\n"); //number of SOM batch epochs
+            else sb.append("SOM iterations\t"+som_iters+"\n"); //number of SOM iterations
             sb.append("SOM minimum grid\t"+som_minGrid+"\n"); //minimum single dimension grid size of SOM (x or y)
             sb.append("SOM maximum grid\t"+som_maxGrid+"\n"); //maximum single dimension grid size of SOM (x or y)
             sb.append("SOM actual grid\t"+((som_gridSize == 0) ? ((int)Math.min(som_maxGrid, Math.max(som_minGrid, Math.sqrt(inputSize*2)))) : som_gridSize)+"\n"); //If 0, automatically set x/y to sqrt(number of data points * 2), o.w. use user value
@@ -5,6 +5,11 @@ import clusterMaker.algorithms.attributeClusterers.autosome.cluststruct.dataItem
 import clusterMaker.algorithms.attributeClusterers.autosome.cluststruct.Point;
 import clusterMaker.algorithms.attributeClusterers.autosome.launch.Settings;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /*
  * SOM.java
@@ -64,6 +69,20 @@ public class SOM implements Runnable{
     private Settings s; //user parameters
     private Node center; //mean of each attribute
     private int nodeNum = 0; //number of nodes to be trained
+    private int dim = 0; //number of attributes
+    private float[] codebook; //node weights during training, node (i,j) starts at (i*gridSize+j)*dim
+    private float[] data; //training data, row k starts at k*dim
+    private float[] dataMeans; //mean of each row, for Pearson distance
+    private float[] dataSqrs; //sum of squares of each (Pearson: centered) row
+    private int[] nodes; //nodes of the map topology, in row order
+    private boolean[] outside; //true for nodes outside the circular topology
+    private double[] kernel; //neighbourhood kernel by squared grid distance from the BMU
+    private int kernelLimit = -1; //largest squared grid distance within the radius
+    private double kernelRadius = -1; //radius the kernel was computed for
+    private float[] nodeMeans; //node means while the map is fixed, null otherwise
+    private float[] nodeSqrs; //node sums of squares while the map is fixed
+    private int bmuThreads = 1; //threads for finding the BMUs of all data
+    private ExecutorService pool;
     
     public SOM (Settings s) {
         this.input = s.input;
@@ -82,9 +101,17 @@ public class SOM implements Runnable{
 
         init();
 
-        doTraining();
-        
-        doMapping();
+        //use the CPUs not taken by other ensemble runs to find the BMUs of all data
+        bmuThreads = s.threads / Math.max(1, Math.min(s.threads, s.ensemble_runs));
+        if(bmuThreads > 1) pool = Executors.newFixedThreadPool(bmuThreads);
+        try{
+            doTraining();
+
+            doMapping();
+        }finally{
+            if(pool != null) pool.shutdown();
+            pool = null;
+        }
 
         calcError();
 
@@ -133,12 +160,68 @@ public class SOM implements Runnable{
         
         
         nodeNum = (int)((s.som_circle) ? Math.PI*Math.pow(map.length/2,2) : Math.pow(map.length,2));
+
+        initCodebook();
+    }
+
+
+    //copy map weights and training data into flat arrays for training
+    private void initCodebook(){
+        dim = trainingData[0].getSize();
+        codebook = new float[gridSize*gridSize*dim];
+        outside = new boolean[gridSize*gridSize];
+        int count = 0;
+        for(int i = 0; i < gridSize; i++){
+            for(int j = 0; j < gridSize; j++){
+                int n = i*gridSize+j;
+                for(int q = 0; q < dim; q++) codebook[n*dim+q] = map[i][j].getWeight(q);
+                outside[n] = checkCircle(i, j);
+                if(!outside[n]) count++;
+            }
+        }
+        nodes = new int[count];
+        for(int n = 0, k = 0; n < outside.length; n++) if(!outside[n]) nodes[k++] = n;
+
+        data = new float[trainingData.length*dim];
+        dataMeans = new float[trainingData.length];
+        dataSqrs = new float[trainingData.length];
+        for(int k = 0; k < trainingData.length; k++){
+            float mean = 0;
+            for(int q = 0; q < dim; q++){
+                data[k*dim+q] = trainingData[k].getWeight(q);
+                mean += data[k*dim+q];
+            }
+            mean /= dim;
+            float sqr = 0;
+            for(int q = 0; q < dim; q++){
+                float x = (s.unCentered) ? data[k*dim+q] : data[k*dim+q] - mean;
+                sqr += (double)x*x;
+            }
+            dataMeans[k] = mean;
+            dataSqrs[k] = sqr;
+        }
+        kernel = new double[2*(gridSize-1)*(gridSize-1)+1];
+        kernelRadius = -1;
+    }
+
+
+    //copy the trained weights back into the map
+    private void storeCodebook(){
+        for(int i = 0; i < gridSize; i++)
+            for(int j = 0; j < gridSize; j++)
+                for(int q = 0; q < dim; q++) map[i][j].setWeight(codebook[(i*gridSize+j)*dim+q], q);
     }
 
     
     
     public void doTraining(){
- 
+
+        if(s.som_batch){
+            doBatchTraining();
+            storeCodebook();
+            return;
+        }
+
         Random r = new Random();
         int progress = 0;
        // System.out.println(">Running SOM\n>training:\n                    |100%");
@@ -149,13 +232,13 @@ public class SOM implements Runnable{
 
                 decay = Math.exp(-i / lambda);     
 
-                int[] minCoord = findBMU(trainingData[sample]);
+                int bmu = findBMU(sample, -1);
 
                 double radius = calcRadius();
         
                 learningRate = learnRate * decay;
 
-                updateWeights(trainingData[sample], minCoord, radius, i);
+                updateWeights(sample, bmu, radius);
                // if(progress++ %((double)(iterations*2)/20) == 0) System.out.print("*");
 
             }
@@ -169,29 +252,186 @@ public class SOM implements Runnable{
             }
           }
         }
+        storeCodebook();
+    }
+
+
+    //batch training: each epoch finds the BMUs of all data, then sets every node
+    //to the kernel weighted mean of the data mapped to its neighbourhood
+    private void doBatchTraining(){
+
+        int epochs = Math.max(1, s.som_epochs);
+        double epochLambda = epochs / Math.log(halfWidth);
+        int[] bmus = new int[trainingData.length];
+        double[] sums = new double[codebook.length];
+        int[] counts = new int[gridSize*gridSize];
+        double[] mean = new double[dim];
+        for(int m = 0; m < 2; m++){
+            for(int e = 0; e < epochs; e++){
+
+                decay = Math.exp(-e / epochLambda);
+
+                setKernel(calcRadius());
+
+                findAllBMUs(bmus, m > 0 || e > 0);
+
+                //sum up the data mapped to each node
+                Arrays.fill(sums, 0);
+                Arrays.fill(counts, 0);
+                for(int k = 0; k < bmus.length; k++){
+                    counts[bmus[k]]++;
+                    for(int q = 0; q < dim; q++) sums[bmus[k]*dim+q] += data[k*dim+q];
+                }
+
+                int reach = (int)Math.min(gridSize, Math.floor(kernelRadius));
+                for(int n : nodes){
+                    int i = n / gridSize, j = n % gridSize;
+                    double weightSum = 0;
+                    Arrays.fill(mean, 0);
+                    for(int a = Math.max(0, i-reach); a <= Math.min(gridSize-1, i+reach); a++){
+                        for(int b = Math.max(0, j-reach); b <= Math.min(gridSize-1, j+reach); b++){
+                            int d2 = (a-i)*(a-i)+(b-j)*(b-j);
+                            int k = a*gridSize+b;
+                            if(d2 > kernelLimit || counts[k] == 0) continue;
+                            double h = kernel[d2];
+                            weightSum += h*counts[k];
+                            for(int q = 0; q < dim; q++) mean[q] += h*sums[k*dim+q];
+                        }
+                    }
+                    if(weightSum == 0) continue;
+                    for(int q = 0; q < dim; q++){
+                        float weight = codebook[n*dim+q];
+                        codebook[n*dim+q] = (float)(mean[q] / weightSum);
+                        //update mean weights
+                        if(s.Pearson) center.setWeight((((center.getWeight(q)*nodeNum)-weight)+codebook[n*dim+q])/nodeNum,q);
+                    }
+                }
+            }
+            if(m == 0) halfWidth = gridSize/4;
+        }
     }
     
     
-    private int[] findBMU(Node input){
+    //index of the node closest to data row sample
+    //guess is a node to compare to first, e.g. the BMU of the last epoch, or -1
+    private int findBMU(int sample, int guess){
         
-        int[] minCoord = new int[2];
+        int bmu = 0;
         double minDist = Double.MAX_VALUE;
+        if(guess >= 0){
+            bmu = guess;
+            minDist = distance(guess, sample, minDist);
+        }
         
-        for(int i = 0; i < map.length; i++){
-            for(int j = 0; j < map[i].length; j++){
-                if(checkCircle(i, j)) continue;
-                double dist = (!s.Pearson && !s.unCentered) ? map[i][j].getEuclideanDist(input)
-                               : (s.unCentered) ? map[i][j].getUnCenteredDist(input)
-                               : map[i][j].getPearsonDist(input);
-                if(dist < minDist) {
-                    minDist = dist;
-                    minCoord[0] = i;
-                    minCoord[1] = j;
-                }
+        for(int n : nodes){
+            if(n == guess) continue;
+            double dist = distance(n, sample, minDist);
+            if(dist < minDist) {
+                minDist = dist;
+                bmu = n;
             }
         }
         
-        return minCoord;
+        return bmu;
+    }
+
+
+    //BMUs of all data rows, split over the pool if there is one.
+    //If guess is true, the BMUs in bmus are compared to first
+    private void findAllBMUs(final int[] bmus, final boolean guess){
+        //the map does not change while searching, so the node statistics can be reused
+        if(s.Pearson || s.unCentered) calcNodeStats();
+        try{
+            if(pool == null){
+                for(int k = 0; k < bmus.length; k++) bmus[k] = findBMU(k, (guess) ? bmus[k] : -1);
+                return;
+            }
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+            for(int t = 0; t < bmuThreads; t++){
+                final int from = t*bmus.length/bmuThreads;
+                final int to = (t+1)*bmus.length/bmuThreads;
+                tasks.add(new Callable<Object>(){
+                    public Object call(){
+                        for(int k = from; k < to; k++) bmus[k] = findBMU(k, (guess) ? bmus[k] : -1);
+                        return null;
+                    }
+                });
+            }
+            try{
+                for(Future<Object> future : pool.invokeAll(tasks)) future.get();
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }catch(ExecutionException e){
+                throw new RuntimeException(e.getCause());
+            }
+        }finally{
+            nodeMeans = null;
+        }
+    }
+
+
+    //mean and sum of squares of every node, computed as in distance
+    private void calcNodeStats(){
+        float[] means = new float[gridSize*gridSize];
+        nodeSqrs = new float[means.length];
+        for(int n : nodes){
+            int c = n*dim;
+            float meanNode = 0;
+            if(!s.unCentered){
+                for(int q = 0; q < dim; q++) meanNode += codebook[c+q];
+                meanNode /= dim;
+            }
+            float distSqr = 0;
+            for(int q = 0; q < dim; q++){
+                float w = (s.unCentered) ? codebook[c+q] : codebook[c+q] - meanNode;
+                distSqr += (double)w*w;
+            }
+            means[n] = meanNode;
+            nodeSqrs[n] = distSqr;
+        }
+        nodeMeans = means;
+    }
+
+
+    //distance between node n and data row sample, same as the distances of Node.
+    //The euclidean sum stops once it reaches limit, since it can only grow
+    private double distance(int n, int sample, double limit){
+        int c = n*dim, d = sample*dim;
+        if(!s.Pearson && !s.unCentered){
+            float dist = 0;
+            for(int q = 0; q < dim; q++){
+                float diff = codebook[c+q] - data[d+q];
+                dist += (double)diff*diff;
+                if(dist >= limit) break;
+            }
+            return dist;
+        }
+        float dist = 0;
+        float distSqr = 0;
+        if(nodeMeans != null){
+            float meanNode = nodeMeans[n];
+            float meanInput = dataMeans[sample];
+            if(s.unCentered) for(int q = 0; q < dim; q++) dist += codebook[c+q]*data[d+q];
+            else for(int q = 0; q < dim; q++) dist += (codebook[c+q] - meanNode)*(data[d+q] - meanInput);
+            distSqr = nodeSqrs[n];
+        }else if(s.unCentered){
+            for(int q = 0; q < dim; q++){
+                float w = codebook[c+q];
+                dist += w*data[d+q];
+                distSqr += (double)w*w;
+            }
+        }else{
+            float meanNode = 0;
+            for(int q = 0; q < dim; q++) meanNode += codebook[c+q];
+            meanNode /= dim;
+            float meanInput = dataMeans[sample];
+            for(int q = 0; q < dim; q++){
+                float w = codebook[c+q] - meanNode;
+                dist += w*(data[d+q] - meanInput);
+                distSqr += (double)w*w;
+            }
+        }
+        return 1-(dist/Math.sqrt(distSqr*dataSqrs[sample]));
     }
 
     
@@ -207,34 +447,44 @@ public class SOM implements Runnable{
     private double calcRadius(){
         return (halfWidth * decay);
     }
+
+
+    //neighbourhood kernel exp(-dist^2/(2*radius^2)) for every squared grid distance within the radius
+    private void setKernel(double radius){
+        if(radius == kernelRadius) return;
+        kernelRadius = radius;
+        kernelLimit = -1;
+        for(int d2 = 0; d2 < kernel.length; d2++){
+            double dist = Math.sqrt(d2);
+            if(dist > radius) break;
+            kernel[d2] = Math.exp(-(dist*dist) / (2 * (radius*radius)));
+            kernelLimit = d2;
+        }
+    }
     
     
-    private void updateWeights(Node input, int[] minCoord, double radius, int iteration){
-        
-          for(int i = 0; i < map.length; i++){
-              for(int j = 0; j < map[0].length; j++){
-                    if((Math.abs(i-minCoord[0])) > radius || (Math.abs(j-minCoord[1])) > radius) continue;
-                    if(checkCircle(i,j)) continue;
-                    double dist = Math.sqrt(Math.pow(i-minCoord[0],2)+Math.pow(j-minCoord[1],2));
-                    if(dist > radius) continue;
-                    for(int q = 0; q < map[i][j].getSize(); q++){
-                        float weight = map[i][j].getWeight(q);                        
-                        map[i][j].setWeight((float)(weight+(Math.exp(-Math.pow(dist, 2) / (2 * Math.pow(radius, 2))) * learningRate * (input.getWeight(q) - weight))),q);
+    private void updateWeights(int sample, int bmu, double radius){
+
+          setKernel(radius);
+          int bi = bmu / gridSize, bj = bmu % gridSize;
+          float[] bmuPos = map[bi][bj].pos;
+          int reach = (int)Math.min(gridSize, Math.floor(radius));
+          int d = sample*dim;
+          for(int i = Math.max(0, bi-reach); i <= Math.min(gridSize-1, bi+reach); i++){
+              for(int j = Math.max(0, bj-reach); j <= Math.min(gridSize-1, bj+reach); j++){
+                    int d2 = (i-bi)*(i-bi)+(j-bj)*(j-bj);
+                    if(d2 > kernelLimit || outside[i*gridSize+j]) continue;
+                    double h = kernel[d2];
+                    double rate = h * learningRate;
+                    int c = (i*gridSize+j)*dim;
+                    for(int q = 0; q < dim; q++){
+                        float weight = codebook[c+q];
+                        codebook[c+q] = (float)(weight+(rate * (data[d+q] - weight)));
                          //update mean weights
-                        if(s.Pearson) center.setWeight((((center.getWeight(q)*nodeNum)-weight)+map[i][j].getWeight(q))/nodeNum,q);
+                        if(s.Pearson) center.setWeight((((center.getWeight(q)*nodeNum)-weight)+codebook[c+q])/nodeNum,q);
                     }
-                   // System.out.println(map[i][j].pos[0]+" "+map[minCoord[0]][minCoord[1]].pos[0]+" "+(map[minCoord[0]][minCoord[1]].pos[0] - map[i][j].pos[0])+" "+(float)(map[i][j].pos[0]+(Math.exp(-Math.pow(dist, 2) / (2 * Math.pow(radius, 2))) * learningRate * (map[minCoord[0]][minCoord[1]].pos[0] - map[i][j].pos[0]))));
-                    map[i][j].pos[0] = (float)(map[i][j].pos[0]+(Math.exp(-Math.pow(dist, 2) / (2 * Math.pow(radius, 2))) * .9 * decay * (map[minCoord[0]][minCoord[1]].pos[0] - map[i][j].pos[0])));                        
-                    map[i][j].pos[1] = (float)(map[i][j].pos[1]+(Math.exp(-Math.pow(dist, 2) / (2 * Math.pow(radius, 2))) * .9 * decay * (map[minCoord[0]][minCoord[1]].pos[1] - map[i][j].pos[1])));
-                  /*  map[i][j].pos[0] = map[i][j].pos[0]+(float)((.9/(1+iteration))
-                            *Math.exp(-.01*(1+(iteration/iterations))*Math.sqrt(Math.pow(map[minCoord[0]][minCoord[1]].pos[0] - map[i][j].pos[0],2)))
-                            *Math.exp(-(1+(iteration/iterations))*Math.pow(Math.sqrt(map[i][j].getEuclideanDist(input))-Math.sqrt(map[minCoord[0]][minCoord[1]].getEuclideanDist(input)),2))
-                            *(map[minCoord[0]][minCoord[1]].pos[1] - map[i][j].pos[0]));
-                    map[i][j].pos[1] = map[i][j].pos[1]+(float)((.9/(1+iteration))
-                            *Math.exp(-.01*(1+(iteration/iterations))*Math.sqrt(Math.pow(map[minCoord[0]][minCoord[1]].pos[1] - map[i][j].pos[1],2)))
-                            *Math.exp(-(1+(iteration/iterations))*Math.pow(Math.sqrt(map[i][j].getEuclideanDist(input))-Math.sqrt(map[minCoord[0]][minCoord[1]].getEuclideanDist(input)),2))
-                            *(map[minCoord[0]][minCoord[1]].pos[1] - map[i][j].pos[1]));*/
-                    //System.out.println(map[i][j].pos[0]);
+                    map[i][j].pos[0] = (float)(map[i][j].pos[0]+(h * .9 * decay * (bmuPos[0] - map[i][j].pos[0])));                        
+                    map[i][j].pos[1] = (float)(map[i][j].pos[1]+(h * .9 * decay * (bmuPos[1] - map[i][j].pos[1])));
               }
           }
     }
@@ -243,8 +493,10 @@ public class SOM implements Runnable{
     
  
     public void doMapping(){
+        int[] bmus = new int[trainingData.length];
+        findAllBMUs(bmus, false);
         for(int i = 0; i < trainingData.length; i++){
-            int[] coordinates = findBMU(trainingData[i]);
+            int[] coordinates = new int[]{bmus[i] / gridSize, bmus[i] % gridSize};
             map[coordinates[0]][coordinates[1]].addDataItem(i);
             input[i].setPoint(new Point(coordinates));
         }
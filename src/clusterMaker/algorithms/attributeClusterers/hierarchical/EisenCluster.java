@@ -32,6 +32,7 @@
  */
 package clusterMaker.algorithms.attributeClusterers.hierarchical;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -51,6 +52,7 @@ import cytoscape.groups.CyGroupManager;
 
 import clusterMaker.ClusterMaker;
 import clusterMaker.algorithms.attributeClusterers.AbstractAttributeClusterAlgorithm;
+import clusterMaker.algorithms.attributeClusterers.DistanceKernel;
 import clusterMaker.algorithms.attributeClusterers.DistanceMetric;
 import clusterMaker.algorithms.attributeClusterers.Matrix;
 
@@ -62,6 +64,7 @@ public class EisenCluster extends AbstractAttributeClusterAlgorithm {
 
 	// Instance variables
 	ClusterMethod clusterMethod;
+	TriangularDistanceMatrix.Storage distanceStorage = TriangularDistanceMatrix.Storage.DOUBLE;
 
 	public EisenCluster(String weightAttributes[], DistanceMetric metric, 
 	                    ClusterMethod clusterMethod, CyLogger log, TaskMonitor monitor) {
@@ -73,6 +76,18 @@ public class EisenCluster extends AbstractAttributeClusterAlgorithm {
 		resetAttributes();
 	}
 
+	/**
+	 * Set how the distance matrix is stored.  Single precision and memory-mapped
+	 * storage let us cluster much larger matrices, at the cost of some precision
+	 * (and, for memory-mapped storage, speed).  Single linkage doesn't store the
+	 * distance matrix at all, so this has no effect on it.
+	 *
+	 * @param storage the storage to use
+	 */
+	public void setDistanceStorage(TriangularDistanceMatrix.Storage storage) {
+		this.distanceStorage = storage;
+	}
+
 	public String cluster(int nClusters, int nIterations, boolean transpose) { 
 		String keyword = "GENE";
 		if (transpose) keyword = "ARRY";
@@ -103,7 +118,10 @@ public class EisenCluster extends AbstractAttributeClusterAlgorithm {
 
 		// Cluster
 		TreeNode[] nodeList = treeCluster(matrix, metric, clusterMethod);
-		if (nodeList == null || nodeList.length == 0) logger.error("treeCluster returned empty tree!");
+		if (nodeList == null || nodeList.length == 0) {
+			logger.error("treeCluster returned empty tree!");
+			return "Failed";
+		}
 
 		if (metric == DistanceMetric.EUCLIDEAN || metric == DistanceMetric.CITYBLOCK) {
 			// Normalize distances to between 0 and 1
@@ -203,40 +221,55 @@ public class EisenCluster extends AbstractAttributeClusterAlgorithm {
 
 		if (debug)
 			matrix.printMatrix();
-		double[][] distanceMatrix = matrix.getDistanceMatrix(metric);
+
 		TreeNode[] result = null;
+
+		// SLINK calculates the distances it needs a row at a time, so
+		// there's no need to create the distance matrix at all
+		if (clusterMethod == ClusterMethod.SINGLE_LINKAGE) {
+			if (debug) 
+				logger.debug("Calculating single linkage hierarchical cluster");
+			return pslCluster(matrix, null, metric);
+		}
+
+		TriangularDistanceMatrix distanceMatrix = null;
+		try {
+			distanceMatrix = TriangularDistanceMatrix.create(matrix, metric, distanceStorage);
+		} catch (IOException e) {
+			logger.error("Unable to create distance matrix: "+e.getMessage(), e);
+			return null;
+		}
 		// For debugging purposes, output the distance matrix
 		// for (int row = 1; row < matrix.nRows(); row++) {
 		// 	for (int col = 0; col < row; col++) {
-		// 		System.out.print(distanceMatrix[row][col]+"\t");
+		// 		System.out.print(distanceMatrix.get(row, col)+"\t");
 		// 	}
 		// 	System.out.println();
 		// }
 
-		switch (clusterMethod) {
-			case SINGLE_LINKAGE:
-				if (debug) 
-					logger.debug("Calculating single linkage hierarchical cluster");
-				result = pslCluster(matrix, distanceMatrix, metric);
-				break;
-
-			case MAXIMUM_LINKAGE:
-				if (debug) 
-					logger.debug("Calculating maximum linkage hierarchical cluster");
-				result = pmlcluster(matrix.nRows(), distanceMatrix);
-				break;
-
-			case AVERAGE_LINKAGE:
-				if (debug) 
-					logger.debug("Calculating average linkage hierarchical cluster");
-				result = palcluster(matrix.nRows(), distanceMatrix);
-				break;
-
-			case CENTROID_LINKAGE:
-				if (debug) 
-					logger.debug("Calculating centroid linkage hierarchical cluster");
-				result = pclcluster(matrix, distanceMatrix, metric);
-				break;
+		// Release the distance matrix (and its file, if it has one) even if clustering fails
+		try {
+			switch (clusterMethod) {
+				case MAXIMUM_LINKAGE:
+					if (debug) 
+						logger.debug("Calculating maximum linkage hierarchical cluster");
+					result = NearestNeighborChain.cluster(distanceMatrix, clusterMethod);
+					break;
+
+				case AVERAGE_LINKAGE:
+					if (debug) 
+						logger.debug("Calculating average linkage hierarchical cluster");
+					result = NearestNeighborChain.cluster(distanceMatrix, clusterMethod);
+					break;
+
+				case CENTROID_LINKAGE:
+					if (debug) 
+						logger.debug("Calculating centroid linkage hierarchical cluster");
+					result = pclcluster(matrix, distanceMatrix, metric);
+					break;
+			}
+		} finally {
+			distanceMatrix.dispose();
 		}
 		return result;
 	}
@@ -260,7 +293,7 @@ public class EisenCluster extends AbstractAttributeClusterAlgorithm {
  	 * it it files for some reason.
  	 **/
 
-	private TreeNode[] pslCluster(Matrix matrix, double[][] distanceMatrix, DistanceMetric metric) {
+	private TreeNode[] pslCluster(Matrix matrix, TriangularDistanceMatrix distanceMatrix, DistanceMetric metric) {
 		int nRows = matrix.nRows();
 		int nNodes = nRows-1;
 
@@ -274,13 +307,16 @@ public class EisenCluster extends AbstractAttributeClusterAlgorithm {
 
 		int k = 0;
 		double[] temp = new double[nNodes];
+		DistanceKernel kernel = null;
+		if (distanceMatrix == null)
+			kernel = new DistanceKernel(matrix, metric);
 
 		for (int row = 0; row < nRows; row++) {
 			if (distanceMatrix != null) {
-				for (int j = 0; j < row; j++) temp[j] = distanceMatrix[row][j];
+				for (int j = 0; j < row; j++) temp[j] = distanceMatrix.get(row, j);
 			} else {
 				for (int j = 0; j < row; j++)
-					temp[j] = metric.getMetric(matrix, matrix, matrix.getWeights(), row, j);
+					temp[j] = kernel.distance(j, row);
 			}
 			for (int j = 0; j < row; j++) {
 				k = vector[j];
@@ -324,7 +360,7 @@ public class EisenCluster extends AbstractAttributeClusterAlgorithm {
  	 * @return the array of TreeNode's that describe the hierarchical clustering solution, or null if
  	 * it it files for some reason.
  	 **/
-	private TreeNode[] pclcluster(Matrix matrix, double[][] distanceMatrix, DistanceMetric metric) {
+	private TreeNode[] pclcluster(Matrix matrix, TriangularDistanceMatrix distanceMatrix, DistanceMetric metric) {
 		int nRows = matrix.nRows();
 		int nColumns = matrix.nColumns();
 		int nNodes = nRows-1;
@@ -388,145 +424,25 @@ public class EisenCluster extends AbstractAttributeClusterAlgorithm {
 			// Fix the distances
 			distID[is] = distID[nNodes-inode];
 			for (int i = 0; i < is; i++) {
-				distanceMatrix[is][i] = distanceMatrix[nNodes-inode][i];
+				distanceMatrix.set(is, i, distanceMatrix.get(nNodes-inode, i));
 			}
 
 			for (int i = is+1; i < nNodes-inode; i++) {
-				distanceMatrix[i][is] = distanceMatrix[nNodes-inode][i];
+				distanceMatrix.set(i, is, distanceMatrix.get(nNodes-inode, i));
 			}
 
 			distID[js] = -inode-1;
 			for (int i = 0; i < js; i++) {
-				distanceMatrix[js][i] = metric.getMetric(newData, newData, newData.getWeights(), js, i);
+				distanceMatrix.set(js, i, metric.getMetric(newData, newData, newData.getWeights(), js, i));
 			}
 			for (int i = js+1; i < nNodes-inode; i++) {
-				distanceMatrix[i][js] = metric.getMetric(newData, newData, newData.getWeights(), js, i);
+				distanceMatrix.set(i, js, metric.getMetric(newData, newData, newData.getWeights(), js, i));
 			}
 		}
 
 		return nodeList;
 	}
 
-	/**
-	 * The pmlcluster routine performs clustering using pairwise maximum- (complete-)
-	 * linking on the given distance matrix.
-	 * 
-	 * @param nRows The number of rows to be clustered
-	 * @param distanceMatrix The distance matrix, with rows rows, each row being filled up to the
-	 * diagonal. The elements on the diagonal are not used, as they are assumed to be
-	 * zero. The distance matrix will be modified by this routine.
-	 * @return the array of TreeNode's that describe the hierarchical clustering solution, or null if
-	 * it fails for some reason.
-	 */
-	private TreeNode[] pmlcluster(int nRows, double[][] distanceMatrix) {
-		int[] clusterID = new int[nRows];
-		TreeNode[] nodeList = new TreeNode[nRows-1]; 
-
-		for (int j = 0; j < nRows; j++) {
-			clusterID[j] = j;
-		}
-
-		int pair[] = new int[2];
-		for (int n = nRows; n > 1; n--) {
-			pair[0] = 1; pair[1] = 2;
-			if (nodeList[nRows-n] == null)
-				nodeList[nRows-n] = new TreeNode(Double.MAX_VALUE);
-			nodeList[nRows-n].setDistance(findClosestPair(n, distanceMatrix, pair));
-			int is = pair[0];
-			int js = pair[1];
-
-			// Fix the distances
-			for (int j = 0; j < js; j++)
-				distanceMatrix[js][j] = Math.max(distanceMatrix[is][j],distanceMatrix[js][j]);
-			for (int j = js+1; j < is; j++)
-				distanceMatrix[j][js] = Math.max(distanceMatrix[is][j],distanceMatrix[j][js]);
-			for (int j = is+1; j < n; j++)
-				distanceMatrix[j][js] = Math.max(distanceMatrix[j][is],distanceMatrix[j][js]);
-			for (int j = 0; j < is; j++)
-				distanceMatrix[is][j] = distanceMatrix[n-1][j];
-			for (int j = is+1; j < n-1; j++)
-				distanceMatrix[j][is] = distanceMatrix[n-1][j];
-
-			// Update cluster IDs
-			nodeList[nRows-n].setLeft(clusterID[is]);
-			nodeList[nRows-n].setRight(clusterID[js]);
-			clusterID[js] = n-nRows-1;
-			clusterID[is] = clusterID[n-1];
-		}
-		return nodeList;
-	}
-
-	/**
-	 * The pmlcluster routine performs clustering using pairwise average
-	 * linking on the given distance matrix.
-	 * 
-	 * @param nRows The number of rows to be clustered
-	 * @param distanceMatrix The distance matrix, with rows rows, each row being filled up to the
-	 * diagonal. The elements on the diagonal are not used, as they are assumed to be
-	 * zero. The distance matrix will be modified by this routine.
-	 * @return the array of TreeNode's that describe the hierarchical clustering solution, or null if
-	 * it fails for some reason.
-	 */
-	private TreeNode[] palcluster(int nRows, double[][] distanceMatrix) {
-		int[] clusterID = new int[nRows];
-		int[] number = new int[nRows];
-		TreeNode[] nodeList = new TreeNode[nRows-1]; 
-
-		// Setup a list specifying to which cluster a gene belongs, and keep track
-		// of the number of elements in each cluster (needed to calculate the
-		// average).
-		for (int j = 0; j < nRows; j++) {
-			number[j] = 1;
-			clusterID[j] = j;
-		}
-
-		int pair[] = new int[2];
-		for (int n = nRows; n > 1; n--) {
-			int sum = 0;
-			pair[IS] = 1; pair[JS] = 0;
-			if (nodeList[nRows-n] == null)
-				nodeList[nRows-n] = new TreeNode(Double.MAX_VALUE);
-			double distance = findClosestPair(n, distanceMatrix, pair);
-			nodeList[nRows-n].setDistance(distance);
-
-			// Save result
-			int is = pair[IS];
-			int js = pair[JS];
-			nodeList[nRows-n].setLeft(clusterID[is]);
-			nodeList[nRows-n].setRight(clusterID[js]);
-
-			// Fix the distances
-			sum = number[is] + number[js];
-			for (int j = 0; j < js; j++) {
-				distanceMatrix[js][j] = (distanceMatrix[is][j]*(double)number[is] + distanceMatrix[js][j]*(double)number[js])/(double)sum;
-			}
-
-			for (int j = js+1; j < is; j++) {
-				distanceMatrix[j][js] = (distanceMatrix[is][j]*(double)number[is] + distanceMatrix[j][js]*(double)number[js])/(double)sum;
-			}
-
-			for (int j = is+1; j < n; j++) {
-				distanceMatrix[j][js] = (distanceMatrix[j][is]*(double)number[is] + distanceMatrix[j][js]*(double)number[js])/(double)sum;
-			}
-
-			for (int j = 0; j < is; j++) {
-				distanceMatrix[is][j] = distanceMatrix[n-1][j];
-			}
-			for (int j = is+1; j < n-1; j++) {
-				distanceMatrix[j][is] = distanceMatrix[n-1][j];
-			}
-
-			// Update number of elements in the clusters
-			number[js] = sum;
-			number[is] = number[n-1];
-
-			// Update cluster IDs
-			clusterID[js] = n-nRows-1;
-			clusterID[is] = clusterID[n-1];
-		}
-		return nodeList;
-	}
-
 	/**
  	 * This function searches the distance matrix to find the pair with the shortest
  	 * distance between them. The indices of the pair are returned in ip and jp; the
@@ -535,22 +451,22 @@ public class EisenCluster extends AbstractAttributeClusterAlgorithm {
  	 * n          (input) int
  	 * The number of elements in the distance matrix.
  	 *
- 	 * distanceMatrix (input) double[][]
- 	 * A ragged array containing the distance matrix. The number of columns in each
+ 	 * distanceMatrix (input) TriangularDistanceMatrix
+ 	 * The lower triangle of the distance matrix. The number of columns in each
  	 * row is one less than the row index.
  	 *
  	 * pair         (output) int[2]
  	 * An array with two values representing the first and second indices of the pair
  	 * with the shortest distance.
  	 */
-	private double findClosestPair(int n, double[][] distanceMatrix, int[] pair) {
+	private double findClosestPair(int n, TriangularDistanceMatrix distanceMatrix, int[] pair) {
 		int ip = 1;
 		int jp = 0;
 		double temp;
-		double distance = distanceMatrix[1][0];
+		double distance = distanceMatrix.get(1, 0);
 		for (int i = 1; i < n; i++) {
 			for (int j = 0; j < i; j++) {
-				temp = distanceMatrix[i][j];
+				temp = distanceMatrix.get(i, j);
 				if (temp < distance) {
 					distance = temp;
 					ip = i;
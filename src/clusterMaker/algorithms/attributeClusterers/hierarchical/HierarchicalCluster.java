@@ -65,7 +65,15 @@ public class HierarchicalCluster extends AbstractAttributeClusterer {
 	                                 ClusterMethod.CENTROID_LINKAGE };
 
 
+	/**
+	 * Distance matrix storage types
+	 */
+	TriangularDistanceMatrix.Storage[] storageTypes = { TriangularDistanceMatrix.Storage.DOUBLE,
+	                                                     TriangularDistanceMatrix.Storage.FLOAT,
+	                                                     TriangularDistanceMatrix.Storage.MAPPED };
+
 	ClusterMethod clusterMethod =  ClusterMethod.AVERAGE_LINKAGE;
+	TriangularDistanceMatrix.Storage distanceStorage = TriangularDistanceMatrix.Storage.DOUBLE;
 	TreeView treeView = null;
 
 	public HierarchicalCluster() {
@@ -144,7 +152,7 @@ public class HierarchicalCluster extends AbstractAttributeClusterer {
 
 		clusterProperties.add(new Tunable("advancedParametersGroup",
 		                                  "Advanced Parameters",
-		                                  Tunable.GROUP, new Integer(2), 
+		                                  Tunable.GROUP, new Integer(3), 
 		                                  new Boolean(true), null,
 		                                  Tunable.COLLAPSABLE));
 
@@ -158,6 +166,12 @@ public class HierarchicalCluster extends AbstractAttributeClusterer {
 		                                  "Adjust loops (not common)",
 		                                  Tunable.BOOLEAN, new Boolean(adjustDiagonals)));
 
+		// How to store the distance matrix
+		clusterProperties.add(new Tunable("distanceStorage",
+		                                  "Distance matrix storage (for large data sets)",
+		                                  Tunable.LIST, new Integer(0),
+		                                  (Object)storageTypes, (Object)null, 0));
+
 		// Whether or not to create groups
 		clusterProperties.add(new Tunable("createGroups",
 		                                  "Create groups from clusters", 
@@ -211,6 +225,10 @@ public class HierarchicalCluster extends AbstractAttributeClusterer {
 		t = clusterProperties.get("adjustDiagonals");
 		if ((t != null) && (t.valueChanged() || force)) 
 			adjustDiagonals = ((Boolean) t.getValue()).booleanValue();
+
+		t = clusterProperties.get("distanceStorage");
+		if ((t != null) && (t.valueChanged() || force))
+			distanceStorage = storageTypes[((Integer) t.getValue()).intValue()];
 	}
 
 	public void doCluster(TaskMonitor monitor) {
@@ -278,6 +296,7 @@ public class HierarchicalCluster extends AbstractAttributeClusterer {
 		algorithm.setSelectedOnly(selectedOnly);
 		algorithm.setAdjustDiagonals(adjustDiagonals);
 		algorithm.setZeroMissing(zeroMissing);
+		algorithm.setDistanceStorage(distanceStorage);
 	}
 
 }
@@ -0,0 +1,203 @@
+/* vim: set ts=2: */
+/**
+ * Copyright (c) 2008 The Regents of the University of California.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions, and the following disclaimer.
+ *   2. Redistributions in binary form must reproduce the above
+ *      copyright notice, this list of conditions, and the following
+ *      disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *   3. Redistributions must acknowledge that this software was
+ *      originally developed by the UCSF Computer Graphics Laboratory
+ *      under support by the NIH National Center for Research Resources,
+ *      grant P41-RR01081.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package clusterMaker.algorithms.attributeClusterers.hierarchical;
+
+import java.util.Arrays;
+
+/**
+ * NearestNeighborChain implements the nearest-neighbor chain algorithm for
+ * hierarchical clustering with a reducible linkage (maximum and average
+ * linkage).  The classic approach searches the whole distance matrix for the
+ * closest pair at every step, which is O(n^3).  The chain algorithm instead
+ * follows a chain of nearest neighbors until it finds two clusters that are
+ * each other's nearest neighbor, merges them and carries on from the rest of
+ * the chain.  For reducible linkages every such reciprocal pair is merged by
+ * the classic algorithm too, so we get the same tree in O(n^2) time (when
+ * there are tied distances, either algorithm may pick any of the tied pairs
+ * first, so the trees may differ there).  See:
+ * Murtagh, F. (1983). A survey of recent advances in hierarchical clustering
+ * algorithms. The Computer Journal, 26(4): 354-359.
+ *
+ * The merges are found in a different order than the classic algorithm
+ * finds them, so once we're done we sort them by distance and renumber the
+ * clusters, which gives the TreeNode list in the usual form.
+ */
+class NearestNeighborChain {
+
+	/**
+	 * Cluster using the nearest-neighbor chain algorithm.
+	 *
+	 * @param distanceMatrix the lower triangle of the distance matrix.  This will
+	 * be modified by this routine.
+	 * @param clusterMethod the linkage, either MAXIMUM_LINKAGE or AVERAGE_LINKAGE
+	 * @return the array of TreeNode's that describe the hierarchical clustering solution
+	 */
+	public static TreeNode[] cluster(TriangularDistanceMatrix distanceMatrix, ClusterMethod clusterMethod) {
+		if (clusterMethod != ClusterMethod.MAXIMUM_LINKAGE && clusterMethod != ClusterMethod.AVERAGE_LINKAGE)
+			throw new IllegalArgumentException(clusterMethod+" is not supported by the nearest-neighbor chain");
+
+		boolean average = (clusterMethod == ClusterMethod.AVERAGE_LINKAGE);
+		int nRows = distanceMatrix.size();
+		int nNodes = nRows-1;
+		TreeNode[] nodeList = new TreeNode[nNodes];
+		if (nNodes <= 0) return nodeList;
+
+		// A cluster always lives in the slot of its lowest numbered row, which
+		// means that the slot number is also a member we can use to identify it.
+		// The active slots are kept in a compact list so we don't have to skip
+		// over the merged ones.
+		int[] number = new int[nRows];
+		int[] active = new int[nRows];
+		int[] activePosition = new int[nRows];
+		for (int i = 0; i < nRows; i++) {
+			number[i] = 1;
+			active[i] = i;
+			activePosition[i] = i;
+		}
+		int nActive = nRows;
+
+		int[] chain = new int[nRows];
+		int chainLength = 0;
+
+		for (int node = 0; node < nNodes; node++) {
+			if (chainLength == 0)
+				chain[chainLength++] = active[0];
+
+			int a;
+			int b;
+			double distance;
+			while (true) {
+				a = chain[chainLength-1];
+				// Start with the previous element of the chain, so that ties
+				// are broken in its favor.  This is what guarantees that we stop.
+				int previous = -1;
+				b = -1;
+				distance = Double.MAX_VALUE;
+				if (chainLength > 1) {
+					previous = chain[chainLength-2];
+					b = previous;
+					distance = getDistance(distanceMatrix, a, b);
+				}
+
+				for (int k = 0; k < nActive; k++) {
+					int c = active[k];
+					if (c == a) continue;
+					double d = getDistance(distanceMatrix, a, c);
+					if (d < distance) {
+						distance = d;
+						b = c;
+					}
+				}
+
+				if (b == previous)
+					break;
+				chain[chainLength++] = b;
+			}
+			chainLength -= 2;
+
+			// Merge a and b into the lower slot
+			int js = Math.min(a, b);
+			int is = Math.max(a, b);
+			nodeList[node] = new TreeNode(is, js, distance);
+
+			int sum = number[is] + number[js];
+			for (int k = 0; k < nActive; k++) {
+				int c = active[k];
+				if (c == is || c == js) continue;
+				double dIs = getDistance(distanceMatrix, is, c);
+				double dJs = getDistance(distanceMatrix, js, c);
+				double newDistance;
+				if (average)
+					newDistance = (dIs*(double)number[is] + dJs*(double)number[js])/(double)sum;
+				else
+					newDistance = Math.max(dIs, dJs);
+				setDistance(distanceMatrix, js, c, newDistance);
+			}
+			number[js] = sum;
+
+			// Remove "is" from the active list
+			int position = activePosition[is];
+			nActive--;
+			active[position] = active[nActive];
+			activePosition[active[position]] = position;
+		}
+
+		// Put the merges in order of distance.  Arrays.sort is stable, so when
+		// there are ties, a merge stays after the merges that formed its parts.
+		Arrays.sort(nodeList, new NodeComparator());
+
+		// Now translate the slot numbers into cluster numbers: rows are
+		// numbered from 0, and the cluster created by node i is -i-1.
+		int[] parent = new int[nRows];
+		int[] clusterID = new int[nRows];
+		for (int i = 0; i < nRows; i++) {
+			parent[i] = i;
+			clusterID[i] = i;
+		}
+		for (int node = 0; node < nNodes; node++) {
+			int rootLeft = findRoot(parent, nodeList[node].getLeft());
+			int rootRight = findRoot(parent, nodeList[node].getRight());
+			nodeList[node].setLeft(clusterID[rootLeft]);
+			nodeList[node].setRight(clusterID[rootRight]);
+			parent[rootLeft] = rootRight;
+			clusterID[rootRight] = -node-1;
+		}
+		return nodeList;
+	}
+
+	private static double getDistance(TriangularDistanceMatrix distanceMatrix, int i, int j) {
+		if (i > j)
+			return distanceMatrix.get(i, j);
+		return distanceMatrix.get(j, i);
+	}
+
+	private static void setDistance(TriangularDistanceMatrix distanceMatrix, int i, int j, double value) {
+		if (i > j)
+			distanceMatrix.set(i, j, value);
+		else
+			distanceMatrix.set(j, i, value);
+	}
+
+	private static int findRoot(int[] parent, int i) {
+		int root = i;
+		while (parent[root] != root)
+			root = parent[root];
+		// Compress the path
+		while (parent[i] != root) {
+			int next = parent[i];
+			parent[i] = root;
+			i = next;
+		}
+		return root;
+	}
+}
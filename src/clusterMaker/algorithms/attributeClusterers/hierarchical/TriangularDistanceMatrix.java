@@ -0,0 +1,237 @@
+/* vim: set ts=2: */
+/**
+ * Copyright (c) 2008 The Regents of the University of California.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions, and the following disclaimer.
+ *   2. Redistributions in binary form must reproduce the above
+ *      copyright notice, this list of conditions, and the following
+ *      disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *   3. Redistributions must acknowledge that this software was
+ *      originally developed by the UCSF Computer Graphics Laboratory
+ *      under support by the NIH National Center for Research Resources,
+ *      grant P41-RR01081.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package clusterMaker.algorithms.attributeClusterers.hierarchical;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import clusterMaker.algorithms.attributeClusterers.BaseMatrix;
+import clusterMaker.algorithms.attributeClusterers.DistanceKernel;
+import clusterMaker.algorithms.attributeClusterers.DistanceMetric;
+
+/**
+ * TriangularDistanceMatrix holds the strict lower triangle of a symmetric
+ * distance matrix, which is all that the hierarchical clustering routines
+ * look at.  Row i holds the distances from element i to elements 0..i-1, so
+ * the values may be read and written as get(i,j) and set(i,j,v) with i > j.
+ *
+ * There are three ways to store the triangle, depending on how much memory
+ * we can afford:
+ * <ul>
+ * <li>DOUBLE: double precision, on the heap.  This is half the size of the
+ * full square matrix and gives exactly the same results.</li>
+ * <li>FLOAT: single precision, on the heap.  A quarter of the size of
+ * the full square matrix.</li>
+ * <li>MAPPED: single precision, in a temporary file that is memory-mapped,
+ * so the triangle doesn't count against the Java heap at all.</li>
+ * </ul>
+ */
+abstract class TriangularDistanceMatrix {
+	public enum Storage {
+		DOUBLE("Double precision (in memory)"),
+		FLOAT("Single precision (in memory)"),
+		MAPPED("Single precision (memory-mapped file)");
+
+		private String name;
+
+		Storage(String name) { this.name = name; }
+
+		public String toString() { return name; }
+	}
+
+	protected int size;
+
+	protected TriangularDistanceMatrix(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Create an empty triangle.
+	 *
+	 * @param size the number of elements
+	 * @param storage how to store the distances
+	 * @return the new triangle
+	 */
+	public static TriangularDistanceMatrix create(int size, Storage storage) throws IOException {
+		switch (storage) {
+			case FLOAT:
+				return new FloatTriangle(size);
+			case MAPPED:
+				return new MappedTriangle(size);
+		}
+		return new DoubleTriangle(size);
+	}
+
+	/**
+	 * Create a triangle and fill it in with the distances between the
+	 * rows of a matrix.
+	 *
+	 * @param data the data matrix
+	 * @param metric the distance metric to use
+	 * @param storage how to store the distances
+	 * @return the filled-in triangle
+	 */
+	public static TriangularDistanceMatrix create(BaseMatrix data, DistanceMetric metric, 
+	                                              Storage storage) throws IOException {
+		int nRows = data.nRows();
+		final TriangularDistanceMatrix triangle = create(nRows, storage);
+		DistanceKernel kernel = new DistanceKernel(data, metric);
+		kernel.forEachPair(0, nRows, new DistanceKernel.PairVisitor() {
+			public void visit(int row, int col, double distance) {
+				triangle.set(row, col, distance);
+			}
+		});
+		return triangle;
+	}
+
+	public int size() { return size; }
+
+	/**
+	 * Get the distance between two elements.
+	 *
+	 * @param row the first element
+	 * @param col the second element, which must be less than row
+	 * @return the distance
+	 */
+	public abstract double get(int row, int col);
+
+	/**
+	 * Set the distance between two elements.
+	 *
+	 * @param row the first element
+	 * @param col the second element, which must be less than row
+	 * @param value the distance
+	 */
+	public abstract void set(int row, int col, double value);
+
+	/**
+	 * Release any resources (e.g. temporary files) held by the triangle.
+	 */
+	public void dispose() {}
+
+	static class DoubleTriangle extends TriangularDistanceMatrix {
+		double[][] rows;
+
+		DoubleTriangle(int size) {
+			super(size);
+			rows = new double[size][];
+			for (int row = 0; row < size; row++)
+				rows[row] = new double[row];
+		}
+
+		public double get(int row, int col) { return rows[row][col]; }
+		public void set(int row, int col, double value) { rows[row][col] = value; }
+	}
+
+	static class FloatTriangle extends TriangularDistanceMatrix {
+		float[][] rows;
+
+		FloatTriangle(int size) {
+			super(size);
+			rows = new float[size][];
+			for (int row = 0; row < size; row++)
+				rows[row] = new float[row];
+		}
+
+		public double get(int row, int col) { return rows[row][col]; }
+		public void set(int row, int col, double value) { rows[row][col] = (float)value; }
+	}
+
+	/**
+	 * The triangle is packed row after row into a temporary file.  A single
+	 * mapping can't be larger than 2GB, so the file is mapped in segments
+	 * of whole rows.
+	 */
+	static class MappedTriangle extends TriangularDistanceMatrix {
+		// The maximum number of floats in a segment (1GB)
+		private static final long SEGMENT_FLOATS = 1L << 28;
+
+		File file;
+		RandomAccessFile raFile;
+		MappedByteBuffer[] segments;
+		int[] rowSegment;
+		int[] rowOffset;
+
+		MappedTriangle(int size) throws IOException {
+			super(size);
+			rowSegment = new int[size];
+			rowOffset = new int[size];
+
+			// Figure out the segment boundaries.  segmentStart has room for
+			// the worst case of one segment per row.
+			long[] segmentStart = new long[size+1];
+			int nSegments = 1;
+			long position = 0;
+			for (int row = 0; row < size; row++) {
+				if (position + row - segmentStart[nSegments-1] > SEGMENT_FLOATS)
+					segmentStart[nSegments++] = position;
+				rowSegment[row] = nSegments-1;
+				rowOffset[row] = (int)(position - segmentStart[nSegments-1]);
+				position += row;
+			}
+			segmentStart[nSegments] = position;
+
+			file = File.createTempFile("clusterMaker", ".dist");
+			file.deleteOnExit();
+			raFile = new RandomAccessFile(file, "rw");
+			raFile.setLength(Math.max(position, 1)*4);
+			FileChannel channel = raFile.getChannel();
+
+			segments = new MappedByteBuffer[nSegments];
+			for (int segment = 0; segment < nSegments; segment++) {
+				long length = segmentStart[segment+1] - segmentStart[segment];
+				segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart[segment]*4,
+				                                Math.max(length, 1)*4);
+			}
+		}
+
+		public double get(int row, int col) {
+			return segments[rowSegment[row]].getFloat((rowOffset[row]+col)*4);
+		}
+
+		public void set(int row, int col, double value) {
+			segments[rowSegment[row]].putFloat((rowOffset[row]+col)*4, (float)value);
+		}
+
+		public void dispose() {
+			segments = null;
+			try {
+				raFile.close();
+			} catch (IOException e) {}
+			file.delete();
+		}
+	}
+}
@@ -59,14 +59,21 @@ import cytoscape.groups.CyGroupManager;
 // clusterMaker imports
 import clusterMaker.ClusterMaker;
 import clusterMaker.algorithms.attributeClusterers.AbstractAttributeClusterAlgorithm;
+import clusterMaker.algorithms.attributeClusterers.DistanceKernel;
 import clusterMaker.algorithms.attributeClusterers.DistanceMetric;
 import clusterMaker.algorithms.attributeClusterers.Matrix;
 // import clusterMaker.algorithms.attributeClusterers.silhouette.SilhouetteResult;
 // import clusterMaker.algorithms.attributeClusterers.silhouette.SilhouetteUtil;
 
 public class KCluster extends AbstractAttributeClusterAlgorithm {
-	Random random = null;
 	HashMap<String,List<CyNode>> groupMap = null;
+	// Number of threads used to assign the elements to their closest centroid
+	int nThreads = Runtime.getRuntime().availableProcessors()-1;
+
+	// The data doesn't change, so its kernel is shared by all of the runs
+	private DistanceKernel kernel = null;
+	private Matrix kernelSource = null;
+	private DistanceMetric kernelMetric = null;
 
 	public KCluster(String weightAttributes[], DistanceMetric metric, CyLogger log, TaskMonitor monitor) {
 		this.logger = log;
@@ -83,57 +90,108 @@ public class KCluster extends AbstractAttributeClusterAlgorithm {
 
 		// System.out.println("RUnning kmeans with "+nClusters+" clusters");
 
-		random = null;
-		int nelements = matrix.nRows();
-		int ifound = 1;
+		KMeansJob job = new KMeansJob(nClusters, nIterations, matrix, metric);
+		KMeansAssigner assigner = new KMeansAssigner(job.kernel, matrix.getWeights(), nClusters, nThreads);
+		try {
+			for (int iteration = 0; iteration < job.getParts(); iteration++) {
+				if (monitor != null)
+					monitor.setPercentCompleted((int)(((double)iteration/(double)job.getParts())*100));
+				job.runRestart(assigner);
+			}
+		} finally {
+			assigner.shutdown();
+		}
 
-		int[] tclusterid = new int[nelements];
+		int ifound = job.finish(clusterID);
+		// System.out.println("ifound = "+ifound);
+		return ifound;
+	}
 
-		int[] saved = new int[nelements];
+	// The silhouette search runs the restarts on its own threads, so
+	// each restart assigns the elements on a single thread
+	protected KClusterJob getKClusterJob(int nClusters, int nIterations, Matrix matrix, DistanceMetric metric) {
+		return new KMeansJob(nClusters, nIterations, matrix, metric);
+	}
 
-		int[] mapping = new int[nClusters];
-		int[] counts = new int[nClusters];
+	private synchronized DistanceKernel getKernel(Matrix matrix, DistanceMetric metric) {
+		if (kernel == null || matrix != kernelSource || metric != kernelMetric) {
+			kernel = new DistanceKernel(matrix, metric);
+			kernelSource = matrix;
+			kernelMetric = metric;
+		}
+		return kernel;
+	}
 
+	/**
+	 * The restarts of a kmeans run.  Every restart starts from its own random
+	 * assignment and only the best solution is kept, so the restarts may run in
+	 * any order and on several threads at once.
+	 */
+	private class KMeansJob implements KClusterJob {
+		int nClusters;
+		int nIterations;
+		Matrix matrix;
+		DistanceMetric metric;
+		DistanceKernel kernel;
+
+		// The best solution so far, its error and how often it was found
+		int[] clusterID;
 		double error = Double.MAX_VALUE;
+		int ifound = 1;
 
-		// This matrix will store the centroid data
-		Matrix cData = new Matrix(nClusters, matrix.nColumns());
+		public KMeansJob(int nClusters, int nIterations, Matrix matrix, DistanceMetric metric) {
+			this.nClusters = nClusters;
+			this.nIterations = Math.max(nIterations, 1);
+			this.matrix = matrix;
+			this.metric = metric;
+			this.kernel = getKernel(matrix, metric);
+			this.clusterID = new int[matrix.nRows()];
+		}
 
-		// Outer initialization
-		if (nIterations <= 1) {
-			for (int i=0; i < clusterID.length; i++) {
-				tclusterid[i] = clusterID[i];
+		public int getParts() { return nIterations; }
+
+		public void runPart(int part) {
+			KMeansAssigner assigner = new KMeansAssigner(kernel, matrix.getWeights(), nClusters, 1);
+			try {
+				runRestart(assigner);
+			} finally {
+				assigner.shutdown();
 			}
-			nIterations = 1;
-		} else {
-			for (int i = 0; i < nelements; i++) 
-				clusterID[i] = 0;
 		}
 
-		int iteration = 0;
-		do {
+		public synchronized int finish(int[] clusters) {
+			for (int i = 0; i < clusterID.length; i++) clusters[i] = clusterID[i];
+			return ifound;
+		}
 
-			if (monitor != null)
-				monitor.setPercentCompleted((int)(((double)iteration/(double)nIterations)*100));
+		void runRestart(KMeansAssigner assigner) {
+			int nelements = matrix.nRows();
+			int[] tclusterid = new int[nelements];
+			int[] saved = new int[nelements];
+			int[] counts = new int[nClusters];
+
+			// These matrices will store the centroid data of this and the previous
+			// pass, which the assigner needs to move its bounds
+			Matrix cData = new Matrix(nClusters, matrix.nColumns());
+			Matrix previousData = new Matrix(nClusters, matrix.nColumns());
 
 			double total = Double.MAX_VALUE;
 			int counter = 0;
 			int period = 10;
 
 			// Randomly assign elements to clusters
-			if (nIterations != 0) {
-				if (!initializeNearCenter) {
-					// Use the cluster 3.0 version to be consistent
-					randomAssign(nClusters, nelements, tclusterid);
-					// if (nIterations != 0) debugAssign(nClusters, nelements, tclusterid);
-				} else {
-					tclusterid = chooseCentralElementsAsCenters(nelements, nClusters, matrix.getDistanceMatrix(metric));
-				}
+			if (!initializeNearCenter) {
+				// Use the cluster 3.0 version to be consistent.  Every restart has its
+				// own (unseeded) random, so restarts on different threads don't share one
+				randomAssign(nClusters, nelements, tclusterid, new Random());
+				// debugAssign(nClusters, nelements, tclusterid);
+			} else {
+				tclusterid = chooseCentralElementsAsCenters(nelements, nClusters, getDistanceMatrix(matrix, metric));
 			}
 
 			// Initialize
-			for (int i = 0; i < nClusters; i++) counts[i] = 0;
 			for (int i = 0; i < nelements; i++) counts[tclusterid[i]]++;
+			assigner.reset();
 
 			while (true) {
 				double previous = total;
@@ -149,6 +207,7 @@ public class KCluster extends AbstractAttributeClusterAlgorithm {
 
 				// Find the center
 				getClusterMeans(nClusters, matrix, cData, tclusterid);
+				DistanceKernel centroids = new DistanceKernel(cData, metric, matrix.getWeights());
 
 				/*
 				for (int i = 0; i < nClusters; i++) {
@@ -160,30 +219,29 @@ public class KCluster extends AbstractAttributeClusterAlgorithm {
 				}
 				*/
 
+				// Get the closest centroid of every element
+				assigner.assign(centroids, tclusterid);
+				int[] closest = assigner.getClosest();
+				double[] closestDistance = assigner.getClosestDistance();
+
 				for (int i = 0; i < nelements; i++) {
-					// Calculate the distances
-					double distance;
 					int k = tclusterid[i];
 					if (counts[k]==1) continue;
 
-					// Get the distance
-					// distance = metric(ndata,data,cdata,mask,cmask,weight,i,k,transpose);
-					distance = metric.getMetric(matrix, cData, matrix.getWeights(), i, k);
-					for (int j = 0; j < nClusters; j++) { 
-						double tdistance;
-						if (j==k) continue;
-						// tdistance = metric(ndata,data,cdata,mask,cmask,weight,i,j,transpose);
-						tdistance = metric.getMetric(matrix, cData, matrix.getWeights(), i, j);
-						if (tdistance < distance) 
-						{ 
-							distance = tdistance;
-            	counts[tclusterid[i]]--;
-            	tclusterid[i] = j;
-            	counts[j]++;
-						}
-          }
-        	total += distance;
-        }
+					int j = closest[i];
+					if (j != k) {
+						counts[k]--;
+						tclusterid[i] = j;
+						counts[j]++;
+					}
+					total += closestDistance[i];
+				}
+				assigner.commit(tclusterid);
+
+				// Keep this pass's centroids for the assigner
+				Matrix swap = previousData;
+				previousData = cData;
+				cData = swap;
 				// System.out.println("total = "+total+", previous = "+previous);
       	if (total>=previous) break;
       	/* total>=previous is FALSE on some machines even if total and previous
@@ -195,11 +253,19 @@ public class KCluster extends AbstractAttributeClusterAlgorithm {
 	        break; /* Identical solution found; break out of this loop */
     	}
 
+			addRestart(tclusterid, total);
+		}
+
+		// Keep the best solution and count the restarts that found it again
+		private synchronized void addRestart(int[] tclusterid, double total) {
+			int nelements = tclusterid.length;
 			if (nIterations<=1)
 			{ error = total;
-				break;
+				for (int i = 0; i < nelements; i++) clusterID[i] = tclusterid[i];
+				return;
 			}
 
+			int[] mapping = new int[nClusters];
 			for (int i = 0; i < nClusters; i++) mapping[i] = -1;
 
 			int element = 0;
@@ -222,54 +288,40 @@ public class KCluster extends AbstractAttributeClusterAlgorithm {
       	}
     	}
     	if (element==nelements) ifound++; /* break statement not encountered */
-  	} while (++iteration < nIterations);
-
-		// System.out.println("ifound = "+ifound+", error = "+error);
-  	return ifound;
+		}
 	}
 
 	public static void getClusterMeans(int nClusters, Matrix data, Matrix cdata, int[] clusterid) {
-
-		double[][]cmask = new double[nClusters][cdata.nColumns()];
-
-		for (int i = 0; i < nClusters; i++) {
-			for (int j = 0; j < data.nColumns(); j++) {
-				cdata.setValue(i, j, null);
-				cmask[i][j] = 0.0;
-			}
-		}
+		int nColumns = data.nColumns();
+		double[] sum = new double[nClusters*nColumns];
+		double[] cmask = new double[nClusters*nColumns];
 
 		for (int k = 0; k < data.nRows(); k++) {
-			int i = clusterid[k];
-			for (int j = 0; j < data.nColumns(); j++) {
+			int offset = clusterid[k]*nColumns;
+			for (int j = 0; j < nColumns; j++) {
 				if (data.hasValue(k,j)) {
-					double cValue = 0.0;
-					double dataValue = data.getValue(k,j).doubleValue();
-					if (cdata.hasValue(i,j)) {
-						cValue = cdata.getValue(i,j).doubleValue();
-					}
-					cdata.setValue(i,j, Double.valueOf(cValue+dataValue));
-					cmask[i][j] = cmask[i][j] + 1.0;
+					sum[offset+j] += data.doubleValue(k,j);
+					cmask[offset+j] += 1.0;
 				}
 			}
 		}
 		for (int i = 0; i < nClusters; i++) {
-			for (int j = 0; j < data.nColumns(); j++) {
-				if (cmask[i][j] > 0.0) {
-					double cData = cdata.getValue(i,j).doubleValue() / cmask[i][j];
-					cdata.setValue(i,j,Double.valueOf(cData));
-				}
+			for (int j = 0; j < nColumns; j++) {
+				if (cmask[i*nColumns+j] > 0.0)
+					cdata.setValue(i, j, sum[i*nColumns+j] / cmask[i*nColumns+j]);
+				else
+					cdata.setValue(i, j, null);
 			}
 		}
 	}
 
-	private void randomAssign (int nClusters, int nElements, int[] clusterID) {
+	private void randomAssign (int nClusters, int nElements, int[] clusterID, Random random) {
 		int n = nElements - nClusters;
 		int k = 0;
 		int i = 0;
 		for (i = 0; i < nClusters-1; i++) {
 			double p = 1.0/(nClusters-1);
-			int j = binomial(n, p);
+			int j = binomial(n, p, random);
 			n -= j;
 			j += k+1; // Assign at least one element to cluster i
 			for (;k<j; k++) clusterID[k] = i;
@@ -279,7 +331,7 @@ public class KCluster extends AbstractAttributeClusterAlgorithm {
 
 		// Create a random permutation of the cluster assignments
 		for (i = 0; i < nElements; i++) {
-			int j = (int) (i + (nElements-i)*uniform());
+			int j = (int) (i + (nElements-i)*random.nextDouble());
 			k = clusterID[j];
 			clusterID[j] = clusterID[i];
 			clusterID[i] = k;
@@ -304,10 +356,11 @@ public class KCluster extends AbstractAttributeClusterAlgorithm {
 	 * 
 	 * @param p The probability of a single event.  This should be less than or equal to 0.5.
 	 * @param n The number of trials
+	 * @param random The random number generator to use
 	 * @return An integer drawn from a binomial distribution with parameters (p, n).
 	 */
 
-	private int binomial (int n, double p) {
+	private int binomial (int n, double p, Random random) {
 		double q = 1 - p;
 		if (n*p < 30.0) /* Algorithm BINV */
 		{ 
@@ -315,7 +368,7 @@ public class KCluster extends AbstractAttributeClusterAlgorithm {
 			double a = (n+1)*s;
 			double r = Math.exp(n*Math.log(q)); /* pow() causes a crash on AIX */
 			int x = 0;
-			double u = uniform();
+			double u = random.nextDouble();
 			while(true)
 			{ 
 				if (u < r) return x;
@@ -344,8 +397,8 @@ public class KCluster extends AbstractAttributeClusterAlgorithm {
 			{ /* Step 1 */
 				int y;
 				int k;
-				double u = uniform();
-				double v = uniform();
+				double u = random.nextDouble();
+				double v = random.nextDouble();
 				u *= p4;
 				if (u <= p1) return (int)(xm-p1*v+u);
 				/* Step 2 */
@@ -419,14 +472,4 @@ public class KCluster extends AbstractAttributeClusterAlgorithm {
 		}
 	}
 
-	private double uniform() {
-		if (random == null) {
-			// Date date = new Date();
-			// random = new Random(date.getTime());
-			// Use an unseeded random so that our silhouette results are comparable
-			random = new Random();
-		}
-		return random.nextDouble();
-	}
-
 }
@@ -0,0 +1,303 @@
+/**
+ * Copyright (c) 2010 The Regents of the University of California.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions, and the following disclaimer.
+ *   2. Redistributions in binary form must reproduce the above
+ *      copyright notice, this list of conditions, and the following
+ *      disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *   3. Redistributions must acknowledge that this software was
+ *      originally developed by the UCSF Computer Graphics Laboratory
+ *      under support by the NIH National Center for Research Resources,
+ *      grant P41-RR01081.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package clusterMaker.algorithms.attributeClusterers.kmeans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import clusterMaker.algorithms.attributeClusterers.DistanceKernel;
+import clusterMaker.algorithms.attributeClusterers.DistanceMetric;
+
+/**
+ * KMeansAssigner finds the closest centroid for every element in a pass of
+ * k-means.  The elements are assigned in blocks on a thread pool, and, for
+ * the Euclidean and city-block metrics, Hamerly's triangle inequality bounds
+ * are used to skip the elements that can't change their cluster:
+ *
+ * For each element we keep a lower bound on its distance to every centroid
+ * but the one of its own cluster.  When the centroids move, the bound is
+ * lowered by the largest distance any of the other centroids moved.  If the
+ * element is still closer to its own centroid than the bound (or than half
+ * the distance from its centroid to the nearest other centroid), none of
+ * the other centroids can be closer and we don't need to calculate them.
+ *
+ * The bounds need a real metric, so they are only used when no values are
+ * missing and no column weights are negative.  The Euclidean distance of
+ * DistanceKernel is squared, so the bounds work on its square root.  The
+ * distances that decide the assignment are always calculated exactly, and
+ * an element is only skipped if the bounds are clear by a small margin, so
+ * the clusters are the same as if all distances were calculated.
+ */
+class KMeansAssigner {
+	// Elements a worker assigns at a time
+	private static final int BLOCK_SIZE = 256;
+	// Relative margin for rounding errors in the bounds
+	private static final double SLACK = 1e-9;
+
+	private DistanceKernel kernel;
+	private int nElements;
+	private int nClusters;
+	private boolean bounded;
+	private int nThreads;
+	private ExecutorService pool = null;
+
+	// The centroids of the last pass, and the assignments they were used for
+	private DistanceKernel previous = null;
+	private int[] assigned;
+	// Lower bound on the distance to all centroids but the assigned one
+	private double[] lower;
+	// The lower bound if the element moves to its closest centroid
+	private double[] lowerIfMoved;
+
+	// Results of the last pass
+	private int[] closest;
+	private double[] closestDistance;
+
+	// Per pass: how far each centroid moved and half the distance to its
+	// nearest other centroid
+	private double[] moved;
+	private double[] halfGap;
+	private double maxMoved, secondMoved;
+	private int maxMovedCluster;
+
+	/**
+	 * Create an assigner.
+	 *
+	 * @param kernel the kernel of the elements' data
+	 * @param weights the column weights the kernel was built with
+	 * @param nClusters the number of clusters
+	 * @param nThreads the number of threads to use.  Values less than 2 do
+	 *                 all of the work on the calling thread.
+	 */
+	public KMeansAssigner(DistanceKernel kernel, double[] weights, int nClusters, int nThreads) {
+		this.kernel = kernel;
+		this.nElements = kernel.nRows();
+		this.nClusters = nClusters;
+
+		DistanceMetric metric = kernel.getMetric();
+		bounded = (metric == DistanceMetric.EUCLIDEAN || metric == DistanceMetric.CITYBLOCK);
+		for (int col = 0; col < weights.length && bounded; col++)
+			bounded = weights[col] >= 0.0;
+		for (int row = 0; row < nElements && bounded; row++)
+			bounded = kernel.isComplete(row);
+
+		assigned = new int[nElements];
+		lower = new double[nElements];
+		lowerIfMoved = new double[nElements];
+		closest = new int[nElements];
+		closestDistance = new double[nElements];
+		moved = new double[nClusters];
+		halfGap = new double[nClusters];
+
+		this.nThreads = Math.min(Math.max(1, nThreads), (nElements + BLOCK_SIZE - 1) / BLOCK_SIZE);
+		if (this.nThreads > 1)
+			pool = Executors.newFixedThreadPool(this.nThreads);
+	}
+
+	/**
+	 * Release the threads.
+	 */
+	public void shutdown() {
+		if (pool != null)
+			pool.shutdown();
+		pool = null;
+	}
+
+	/**
+	 * Forget the bounds, e.g. before starting over from a new random assignment.
+	 */
+	public void reset() {
+		previous = null;
+	}
+
+	/**
+	 * Find the closest centroid for every element.  Ties are resolved the
+	 * same way as in KCluster: the element's own cluster wins, otherwise
+	 * the lowest numbered cluster.  The results are available from
+	 * {@link #getClosest} and {@link #getClosestDistance}.
+	 *
+	 * @param centroids the kernel of the centroids.  Its matrix must not be
+	 *                  changed until the next pass.
+	 * @param clusterID the current cluster of each element
+	 */
+	public void assign(final DistanceKernel centroids, final int[] clusterID) {
+		boolean useBounds = bounded && updateBounds(centroids, clusterID);
+		previous = centroids;
+		System.arraycopy(clusterID, 0, assigned, 0, nElements);
+
+		final boolean skip = useBounds;
+		if (pool == null) {
+			assignElements(centroids, skip, 0, nElements);
+			return;
+		}
+
+		final AtomicInteger nextBlock = new AtomicInteger(0);
+		final int nBlocks = (nElements + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(nThreads);
+		for (int i = 0; i < nThreads; i++) {
+			futures.add(pool.submit(new Callable<Object>() {
+				public Object call() {
+					for (int block = nextBlock.getAndIncrement(); block < nBlocks;
+					     block = nextBlock.getAndIncrement()) {
+						int start = block*BLOCK_SIZE;
+						assignElements(centroids, skip, start, Math.min(nElements, start+BLOCK_SIZE));
+					}
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<Object> f: futures)
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("K-means assignment interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("K-means assignment failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Tell the assigner which elements actually moved to their closest
+	 * cluster after a pass.  Elements that didn't move keep the bounds
+	 * for their old cluster.
+	 *
+	 * @param clusterID the cluster of each element after the pass
+	 */
+	public void commit(int[] clusterID) {
+		for (int i = 0; i < nElements; i++) {
+			if (clusterID[i] != assigned[i]) {
+				lower[i] = lowerIfMoved[i];
+				assigned[i] = clusterID[i];
+			}
+		}
+	}
+
+	public int[] getClosest() { return closest; }
+
+	public double[] getClosestDistance() { return closestDistance; }
+
+	/**
+	 * Move the bounds along with the centroids.  Returns false if the
+	 * bounds can't be used for this pass.
+	 */
+	private boolean updateBounds(DistanceKernel centroids, int[] clusterID) {
+		for (int j = 0; j < nClusters; j++) {
+			// An empty cluster has no centroid
+			if (!centroids.isComplete(j)) {
+				previous = null;
+				return false;
+			}
+		}
+
+		for (int j = 0; j < nClusters; j++) {
+			double gap = Double.POSITIVE_INFINITY;
+			for (int l = 0; l < nClusters; l++) {
+				if (l != j)
+					gap = Math.min(gap, metric(centroids.distance(j, centroids, l)));
+			}
+			halfGap[j] = gap / 2.0;
+		}
+
+		if (previous == null)
+			return false;
+
+		maxMoved = 0.0;
+		secondMoved = 0.0;
+		maxMovedCluster = -1;
+		for (int j = 0; j < nClusters; j++) {
+			moved[j] = metric(centroids.distance(j, previous, j));
+			if (moved[j] > maxMoved) {
+				secondMoved = maxMoved;
+				maxMoved = moved[j];
+				maxMovedCluster = j;
+			} else if (moved[j] > secondMoved) {
+				secondMoved = moved[j];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The distances of DistanceKernel turned into a metric
+	 */
+	private double metric(double distance) {
+		if (kernel.getMetric() == DistanceMetric.EUCLIDEAN)
+			return Math.sqrt(distance);
+		return distance;
+	}
+
+	private void assignElements(DistanceKernel centroids, boolean useBounds, int start, int end) {
+		for (int i = start; i < end; i++) {
+			int k = assigned[i];
+			double distance = kernel.distance(i, centroids, k);
+
+			if (useBounds) {
+				lower[i] -= (k == maxMovedCluster) ? secondMoved : maxMoved;
+				double bound = Math.max(lower[i], halfGap[k]);
+				if (metric(distance)*(1.0+SLACK) < bound*(1.0-SLACK)) {
+					closest[i] = k;
+					closestDistance[i] = distance;
+					continue;
+				}
+			}
+
+			// Keep the closest and the second closest distance
+			int best = k;
+			double first = distance;
+			double second = Double.POSITIVE_INFINITY;
+			for (int j = 0; j < nClusters; j++) {
+				if (j == k) continue;
+				double tdistance = kernel.distance(i, centroids, j);
+				if (tdistance < first) {
+					second = first;
+					first = tdistance;
+					best = j;
+				} else if (tdistance < second) {
+					second = tdistance;
+				}
+			}
+			closest[i] = best;
+			closestDistance[i] = first;
+			if (bounded) {
+				lower[i] = metric(best == k ? second : first);
+				lowerIfMoved[i] = metric(second);
+			}
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package clusterMaker.algorithms.attributeClusterers.kmeans;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import clusterMaker.algorithms.attributeClusterers.BaseMatrix;
+import clusterMaker.algorithms.attributeClusterers.DistanceKernel;
+import clusterMaker.algorithms.attributeClusterers.DistanceMetric;
+
+public class KMeansAssignerTest {
+
+	private BaseMatrix createMatrix(Random random, int rows, int cols, boolean missing) {
+		BaseMatrix matrix = new BaseMatrix(rows, cols);
+		for (int row = 0; row < rows; row++) {
+			// A few well separated groups, with small integers so that there are ties
+			int group = random.nextInt(4);
+			for (int col = 0; col < cols; col++) {
+				if (missing && random.nextInt(20) == 0)
+					continue;
+				matrix.setValue(row, col, (double)(10*group + random.nextInt(6)));
+			}
+		}
+		matrix.setUniformWeights();
+		return matrix;
+	}
+
+	private BaseMatrix getMeans(BaseMatrix data, int nClusters, int[] clusterID) {
+		BaseMatrix means = new BaseMatrix(nClusters, data.nColumns());
+		for (int i = 0; i < nClusters; i++) {
+			for (int j = 0; j < data.nColumns(); j++) {
+				double sum = 0.0;
+				int count = 0;
+				for (int k = 0; k < data.nRows(); k++) {
+					if (clusterID[k] == i && data.hasValue(k, j)) {
+						sum += data.doubleValue(k, j);
+						count++;
+					}
+				}
+				if (count > 0)
+					means.setValue(i, j, sum/count);
+			}
+		}
+		return means;
+	}
+
+	/**
+	 * Run k-means passes with the assigner and by calculating all of the
+	 * distances the way KCluster used to, and check that every pass ends
+	 * up with the same clusters.
+	 */
+	private void compare(BaseMatrix data, DistanceMetric metric, int nClusters, int nThreads, Random random) {
+		int n = data.nRows();
+		DistanceKernel kernel = new DistanceKernel(data, metric);
+		KMeansAssigner assigner = new KMeansAssigner(kernel, data.getWeights(), nClusters, nThreads);
+		try {
+			int[] expected = new int[n];
+			for (int i = 0; i < n; i++)
+				expected[i] = (i < nClusters) ? i : random.nextInt(nClusters);
+			int[] actual = Arrays.copyOf(expected, n);
+			int[] expectedCounts = new int[nClusters];
+			for (int i = 0; i < n; i++)
+				expectedCounts[expected[i]]++;
+			int[] actualCounts = Arrays.copyOf(expectedCounts, nClusters);
+
+			for (int pass = 0; pass < 20; pass++) {
+				DistanceKernel centroids = new DistanceKernel(getMeans(data, nClusters, expected), metric, data.getWeights());
+
+				double expectedTotal = 0.0;
+				for (int i = 0; i < n; i++) {
+					int k = expected[i];
+					if (expectedCounts[k] == 1) continue;
+					double distance = kernel.distance(i, centroids, k);
+					for (int j = 0; j < nClusters; j++) {
+						if (j == k) continue;
+						double tdistance = kernel.distance(i, centroids, j);
+						if (tdistance < distance) {
+							distance = tdistance;
+							expectedCounts[expected[i]]--;
+							expected[i] = j;
+							expectedCounts[j]++;
+						}
+					}
+					expectedTotal += distance;
+				}
+
+				assigner.assign(centroids, actual);
+				double actualTotal = 0.0;
+				for (int i = 0; i < n; i++) {
+					int k = actual[i];
+					if (actualCounts[k] == 1) continue;
+					int j = assigner.getClosest()[i];
+					if (j != k) {
+						actualCounts[k]--;
+						actual[i] = j;
+						actualCounts[j]++;
+					}
+					actualTotal += assigner.getClosestDistance()[i];
+				}
+				assigner.commit(actual);
+
+				assertArrayEquals(metric + " pass " + pass, expected, actual);
+				assertEquals(metric + " pass " + pass, expectedTotal, actualTotal, 0.0);
+			}
+		} finally {
+			assigner.shutdown();
+		}
+	}
+
+	@Test
+	public void testBoundedMetrics() {
+		Random random = new Random(7);
+		BaseMatrix data = createMatrix(random, 1000, 8, false);
+		for (int nClusters = 1; nClusters <= 9; nClusters += 4) {
+			compare(data, DistanceMetric.EUCLIDEAN, nClusters, 1, random);
+			compare(data, DistanceMetric.CITYBLOCK, nClusters, 1, random);
+			compare(data, DistanceMetric.EUCLIDEAN, nClusters, 3, random);
+		}
+	}
+
+	@Test
+	public void testUnboundedMetrics() {
+		Random random = new Random(11);
+		BaseMatrix missing = createMatrix(random, 600, 6, true);
+		compare(missing, DistanceMetric.EUCLIDEAN, 5, 2, random);
+		compare(missing, DistanceMetric.CITYBLOCK, 5, 1, random);
+		BaseMatrix data = createMatrix(random, 600, 6, false);
+		compare(data, DistanceMetric.CORRELATION, 5, 2, random);
+	}
+}
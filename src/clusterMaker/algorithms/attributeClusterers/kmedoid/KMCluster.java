@@ -83,13 +83,8 @@ public class KMCluster extends AbstractAttributeClusterAlgorithm {
 
 		int iteration = 0;
 
-		// Start by calculating the pairwise distances
-		double[][] distances = new double[matrix.nRows()][matrix.nRows()];
-		for (int i = 0; i < matrix.nRows(); i++) {
-			for (int j = 0; j < matrix.nRows(); j++) {
-				distances[i][j] = metric.getMetric(matrix, matrix, matrix.getWeights(), i, j);
-			}
-		}
+		// The pairwise distances are only calculated once for all of the runs
+		double[][] distances = getDistanceMatrix(matrix, metric);
 
 		int[] centers;
 		if (initializeNearCenter) {
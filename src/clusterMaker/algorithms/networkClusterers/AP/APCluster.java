@@ -69,6 +69,8 @@ public class APCluster extends AbstractNetworkClusterer  {
 	
 	double lambda = .5;
 	int rNumber = 8;
+	int convergenceNumber = 10;
+	int maxThreads = 0;
 	double preference = -1;
 	RunAP runAP = null;
 
@@ -101,7 +103,7 @@ public class APCluster extends AbstractNetworkClusterer  {
 		 */
 		clusterProperties.add(new Tunable("tunables_panel",
 		                                  "AP Tuning",
-		                                  Tunable.GROUP, new Integer(3)));
+		                                  Tunable.GROUP, new Integer(5)));
 
 		// Lambda Parameter
 		clusterProperties.add(new Tunable("lambda",
@@ -120,6 +122,18 @@ public class APCluster extends AbstractNetworkClusterer  {
 		                                  Tunable.INTEGER, new Integer(rNumber),
 		                                  (Object)null, (Object)null, 0));
 
+		// Number of iterations without changes before we stop
+		clusterProperties.add(new Tunable("convergenceIterations",
+		                                  "Stop after this many unchanged iterations (0 to disable)",
+		                                  Tunable.INTEGER, new Integer(convergenceNumber),
+		                                  (Object)null, (Object)null, 0));
+
+		// Maximum number of CPU's to use
+		clusterProperties.add(new Tunable("maxThreads",
+		                                  "Maximum number of threads",
+		                                  Tunable.INTEGER, new Integer(maxThreads),
+		                                  (Object)null, (Object)null, 0));
+
 	       
 		// Use the standard edge attribute handling stuff....
 		edgeAttributeHandler = new EdgeAttributeHandler(clusterProperties, true);
@@ -154,6 +168,14 @@ public class APCluster extends AbstractNetworkClusterer  {
 		if ((t != null) && (t.valueChanged() || force))
 			rNumber = ((Integer) t.getValue()).intValue();
 
+		t = clusterProperties.get("convergenceIterations");
+		if ((t != null) && (t.valueChanged() || force))
+			convergenceNumber = ((Integer) t.getValue()).intValue();
+
+		t = clusterProperties.get("maxThreads");
+		if ((t != null) && (t.valueChanged() || force))
+			maxThreads = ((Integer) t.getValue()).intValue();
+
 		edgeAttributeHandler.updateSettings(force);
 	}
 
@@ -168,7 +190,7 @@ public class APCluster extends AbstractNetworkClusterer  {
 		DistanceMatrix matrix = edgeAttributeHandler.getMatrix();
 
 		//Cluster the nodes
-		runAP = new RunAP(matrix, lambda, preference, rNumber, logger, debug);
+		runAP = new RunAP(matrix, lambda, preference, rNumber, convergenceNumber, maxThreads, logger, debug);
 
 		List<NodeCluster> clusters = runAP.run(monitor);
 
@@ -198,6 +220,8 @@ public class APCluster extends AbstractNetworkClusterer  {
 	public void setParams(List<String>params) {
 		params.add("lambda="+lambda);
 		params.add("rNumber="+rNumber);
+		params.add("convergenceIterations="+convergenceNumber);
+		params.add("maxThreads="+maxThreads);
 		params.add("preference="+preference);
 		super.setParams(params);
 	}
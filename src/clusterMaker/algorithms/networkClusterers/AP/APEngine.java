@@ -0,0 +1,402 @@
+package clusterMaker.algorithms.networkClusterers.AP;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cern.colt.function.IntIntDoubleFunction;
+import cern.colt.matrix.DoubleFactory2D;
+import cern.colt.matrix.DoubleMatrix2D;
+
+/**
+ * The message exchange of affinity propagation on primitive arrays. The
+ * similarities, responsibilities and availabilities of all non-zero cells of
+ * the similarity matrix are kept in parallel arrays sorted by row and column
+ * (compressed sparse rows), so an iteration only needs two sequential passes:
+ * the first updates the responsibilities and sums up the positive ones per
+ * column, the second updates the availabilities, the maximum availability
+ * per row for the next iteration and the exemplar of every node.
+ *
+ * With more than one thread the rows are handed out to the workers in
+ * blocks.  The responsibilities of a row only depend on that row, but the
+ * positive responsibilities are summed up per column, so the column sums
+ * get a pass of their own over blocks of columns (using a column index into
+ * the cells) before the availabilities of the rows are updated.  Each column
+ * is summed in the same row order as in the sequential pass, so the results
+ * don't depend on the number of threads.
+ */
+public class APEngine {
+	// Number of rows or columns a worker claims at a time
+	private static final int BLOCK_SIZE = 256;
+
+	private double lambda; /*lambda value from 0 to 1 dampens messages passed to avoid numberical oscillation*/
+	private int nRows;
+
+	// The non-zero cells of row i are rowStart[i] to rowStart[i+1]-1
+	private int[] rowStart;
+	private int[] columns;
+	// The position of the diagonal cell of each row, -1 if it is zero
+	private int[] diagonal;
+
+	private double[] similarity;
+	private double[] responsibility;
+	private double[] availability;
+
+	// max(a(i,k)+s(i,k)) over k != i, used by the next responsibility update
+	private double[] availabilityEvidence;
+	// sum(max(0,r(i,k))) over i != k
+	private double[] responsibilityEvidence;
+
+	private int[] exemplars;
+
+	// The cells of column k are columnCells[columnStart[k]] to
+	// columnCells[columnStart[k+1]-1], ordered by row.  Only used by the workers.
+	private int[] columnStart = null;
+	private int[] columnCells = null;
+
+	private int nThreads;
+	private ExecutorService pool = null;
+
+	public APEngine(DoubleMatrix2D s_matrix, double lambda) {
+		this(s_matrix, lambda, 1);
+	}
+
+	/**
+	 * Create the engine for a similarity matrix.
+	 *
+	 * @param s_matrix the similarity matrix with the preferences on the diagonal
+	 * @param lambda the damping factor
+	 * @param nThreads the number of threads to exchange the messages with.  Values
+	 *                 less than 2 do all of the work on the calling thread.
+	 */
+	public APEngine(DoubleMatrix2D s_matrix, double lambda, int nThreads) {
+		this.lambda = lambda;
+		this.nThreads = Math.max(1, nThreads);
+		this.nRows = s_matrix.rows();
+
+		// Collect the non-zero cells in row order
+		final long nColumns = s_matrix.columns();
+		final long[][] keys = new long[1][(int)Math.min(Integer.MAX_VALUE-8, s_matrix.cardinality())];
+		final int[] count = new int[1];
+		s_matrix.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int col, double value) {
+				if (count[0] == keys[0].length)
+					keys[0] = Arrays.copyOf(keys[0], Math.max(16, 2*count[0]));
+				keys[0][count[0]++] = row*nColumns+col;
+				return value;
+			}
+		});
+		long[] cells = keys[0];
+		int nCells = count[0];
+		Arrays.sort(cells, 0, nCells);
+
+		rowStart = new int[nRows+1];
+		columns = new int[nCells];
+		diagonal = new int[nRows];
+		similarity = new double[nCells];
+		responsibility = new double[nCells];
+		availability = new double[nCells];
+		Arrays.fill(diagonal, -1);
+		for (int p = 0; p < nCells; p++) {
+			int row = (int)(cells[p] / nColumns);
+			int col = (int)(cells[p] % nColumns);
+			columns[p] = col;
+			similarity[p] = s_matrix.getQuick(row, col);
+			rowStart[row+1]++;
+			if (row == col)
+				diagonal[row] = p;
+		}
+		for (int row = 0; row < nRows; row++)
+			rowStart[row+1] += rowStart[row];
+
+		availabilityEvidence = new double[nRows];
+		responsibilityEvidence = new double[(int)nColumns];
+		exemplars = new int[nRows];
+		Arrays.fill(exemplars, -1);
+
+		// All availabilities start at 0
+		for (int row = 0; row < nRows; row++) {
+			double max = -Double.MAX_VALUE;
+			for (int p = rowStart[row]; p < rowStart[row+1]; p++) {
+				if (columns[p] != row)
+					max = Math.max(max, similarity[p]);
+			}
+			availabilityEvidence[row] = max;
+		}
+
+		if (this.nThreads > 1 && nRows > BLOCK_SIZE) {
+			columnStart = new int[(int)nColumns+1];
+			for (int p = 0; p < nCells; p++)
+				columnStart[columns[p]+1]++;
+			for (int col = 0; col < nColumns; col++)
+				columnStart[col+1] += columnStart[col];
+			int[] fill = Arrays.copyOf(columnStart, (int)nColumns);
+			columnCells = new int[nCells];
+			for (int p = 0; p < nCells; p++)
+				columnCells[fill[columns[p]]++] = p;
+			pool = Executors.newFixedThreadPool(this.nThreads);
+		}
+	}
+
+	public int rows() { return nRows; }
+
+	/**
+	 * Stop the worker threads.  The engine can't iterate any more afterwards,
+	 * but the exemplars are still available.
+	 */
+	public void shutdown() {
+		if (pool != null)
+			pool.shutdownNow();
+		pool = null;
+	}
+
+	/**
+	 * Exchange messages between the responsibilities and availabilities for
+	 * a single iteration of affinity propagation.
+	 *
+	 * @return the number of nodes whose exemplar changed in this iteration, or -1
+	 *         if we were interrupted while waiting for the workers
+	 */
+	public int iterate() {
+		if (pool == null) {
+			Arrays.fill(responsibilityEvidence, 0.0);
+			updateResponsibilities(0, nRows);
+			return updateAvailabilities(0, nRows);
+		}
+
+		if (runWorkers(Worker.RESPONSIBILITIES, nRows) < 0)
+			return -1;
+		if (runWorkers(Worker.COLUMN_SUMS, responsibilityEvidence.length) < 0)
+			return -1;
+		return runWorkers(Worker.AVAILABILITIES, nRows);
+	}
+
+	/**
+	 * Update the responsibilities of the rows from start to end-1 and add
+	 * their positive values to the responsibility evidence of each column.
+	 */
+	private void updateResponsibilities(int start, int end) {
+		for (int row = start; row < end; row++) {
+			double evidence = availabilityEvidence[row];
+			for (int p = rowStart[row]; p < rowStart[row+1]; p++) {
+				double newValue = similarity[p] - evidence;
+				responsibility[p] = responsibility[p]*lambda+newValue*(1-lambda);
+				if (columns[p] != row)
+					responsibilityEvidence[columns[p]] += Math.max(0.0, responsibility[p]);
+			}
+		}
+	}
+
+	/**
+	 * Update the responsibilities of the rows from start to end-1 without
+	 * touching the column sums.
+	 */
+	private void updateRowResponsibilities(int start, int end) {
+		for (int row = start; row < end; row++) {
+			double evidence = availabilityEvidence[row];
+			for (int p = rowStart[row]; p < rowStart[row+1]; p++) {
+				double newValue = similarity[p] - evidence;
+				responsibility[p] = responsibility[p]*lambda+newValue*(1-lambda);
+			}
+		}
+	}
+
+	/**
+	 * Sum up the positive off-diagonal responsibilities of the columns from
+	 * start to end-1.
+	 */
+	private void sumColumns(int start, int end) {
+		for (int col = start; col < end; col++) {
+			double sum = 0.0;
+			for (int c = columnStart[col]; c < columnStart[col+1]; c++) {
+				int p = columnCells[c];
+				if (p != diagonal[col])
+					sum += Math.max(0.0, responsibility[p]);
+			}
+			responsibilityEvidence[col] = sum;
+		}
+	}
+
+	/**
+	 * Update the availabilities of the rows from start to end-1, the
+	 * availability evidence for the next iteration and the exemplars.
+	 *
+	 * @return the number of rows whose exemplar changed
+	 */
+	private int updateAvailabilities(int start, int end) {
+		int changed = 0;
+		for (int row = start; row < end; row++) {
+			double max = -Double.MAX_VALUE;
+			for (int p = rowStart[row]; p < rowStart[row+1]; p++) {
+				int col = columns[p];
+				double newValue;
+				if (row != col) {
+					double self = diagonal[col] < 0 ? 0.0 : responsibility[diagonal[col]];
+					newValue = Math.min(0.0, self + responsibilityEvidence[col] - Math.max(0.0, responsibility[p]));
+				} else {
+					newValue = responsibilityEvidence[col];
+				}
+				availability[p] = availability[p]*lambda+newValue*(1-lambda);
+				if (row != col)
+					max = Math.max(max, availability[p]+similarity[p]);
+			}
+			availabilityEvidence[row] = max;
+
+			int exemplar = findExemplar(row);
+			if (exemplar != exemplars[row]) {
+				exemplars[row] = exemplar;
+				changed++;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * The exemplar k for element i maximizes a(i,k) + r(i,k). Cells that are
+	 * not stored count as 0, and of equal values the lowest k wins.
+	 */
+	private int findExemplar(int row) {
+		double max_value = -1000;
+		int exemplar = 0;
+		int next = 0;
+		for (int p = rowStart[row]; p < rowStart[row+1]; p++) {
+			int col = columns[p];
+			if (col > next && 0.0 > max_value) {
+				// The first column we skipped
+				max_value = 0.0;
+				exemplar = next;
+			}
+			double sum = availability[p] + responsibility[p];
+			if (sum > max_value) {
+				max_value = sum;
+				exemplar = col;
+			}
+			next = col+1;
+		}
+		if (next < nRows && 0.0 > max_value)
+			exemplar = next;
+		return exemplar;
+	}
+
+	/**
+	 * Find the exemplars of the rows from start to end-1 that don't have one yet.
+	 */
+	private void findMissingExemplars(int start, int end) {
+		for (int row = start; row < end; row++) {
+			if (exemplars[row] < 0)
+				exemplars[row] = findExemplar(row);
+		}
+	}
+
+	/**
+	 * Return the exemplar of element i as of the last iteration.
+	 */
+	public int getExemplar(int i) {
+		if (exemplars[i] < 0)
+			exemplars[i] = findExemplar(i);
+		return exemplars[i];
+	}
+
+	/**
+	 * Return the exemplars of all elements as of the last iteration.  The
+	 * exemplars are found along with the availabilities, so this only has to
+	 * search if we haven't iterated yet.
+	 */
+	public int[] getExemplars() {
+		if (pool == null || runWorkers(Worker.EXEMPLARS, nRows) < 0)
+			findMissingExemplars(0, nRows);
+		return exemplars;
+	}
+
+	/**
+	 * Run one pass over all rows or columns on the worker threads and wait
+	 * for it to finish.
+	 *
+	 * @return the sum of the worker results, or -1 if we were interrupted
+	 */
+	private int runWorkers(int pass, int count) {
+		AtomicInteger nextBlock = new AtomicInteger(0);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>(nThreads);
+		for (int i = 0; i < nThreads; i++)
+			futures.add(pool.submit(new Worker(pass, count, nextBlock)));
+
+		int result = 0;
+		try {
+			for (Future<Integer> f: futures)
+				result += f.get().intValue();
+		} catch (InterruptedException e) {
+			for (Future<Integer> f: futures)
+				f.cancel(true);
+			Thread.currentThread().interrupt();
+			return -1;
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Affinity propagation failed", e.getCause());
+		}
+		return result;
+	}
+
+	/**
+	 * Claim a block of rows or columns at a time and run one pass over it
+	 * until there aren't any blocks left.
+	 */
+	private class Worker implements Callable<Integer> {
+		static final int RESPONSIBILITIES = 0;
+		static final int COLUMN_SUMS = 1;
+		static final int AVAILABILITIES = 2;
+		static final int EXEMPLARS = 3;
+
+		int pass;
+		int count;
+		AtomicInteger nextBlock;
+
+		Worker(int pass, int count, AtomicInteger nextBlock) {
+			this.pass = pass;
+			this.count = count;
+			this.nextBlock = nextBlock;
+		}
+
+		public Integer call() {
+			int nBlocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			int changed = 0;
+			for (int block = nextBlock.getAndIncrement(); block < nBlocks;
+			     block = nextBlock.getAndIncrement()) {
+				int start = block*BLOCK_SIZE;
+				int end = Math.min(count, start+BLOCK_SIZE);
+				switch (pass) {
+				case RESPONSIBILITIES:
+					updateRowResponsibilities(start, end);
+					break;
+				case COLUMN_SUMS:
+					sumColumns(start, end);
+					break;
+				case AVAILABILITIES:
+					changed += updateAvailabilities(start, end);
+					break;
+				case EXEMPLARS:
+					findMissingExemplars(start, end);
+					break;
+				}
+			}
+			return new Integer(changed);
+		}
+	}
+
+	public DoubleMatrix2D getResponsibilityMatrix() { return toMatrix(responsibility); }
+
+	public DoubleMatrix2D getAvailabilityMatrix() { return toMatrix(availability); }
+
+	private DoubleMatrix2D toMatrix(double[] values) {
+		DoubleMatrix2D matrix = DoubleFactory2D.sparse.make(nRows, responsibilityEvidence.length);
+		for (int row = 0; row < nRows; row++) {
+			for (int p = rowStart[row]; p < rowStart[row+1]; p++)
+				matrix.setQuick(row, columns[p], values[p]);
+		}
+		return matrix;
+	}
+}
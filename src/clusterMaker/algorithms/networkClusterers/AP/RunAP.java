@@ -38,6 +38,8 @@ public class RunAP {
 	private double lambda; /*lambda value from 0 to 1 dampens messages passed to avoid numberical oscillation*/
 	private double pref; //preference parameter determines cluster density. Larger Parameter equals more Clusters. If < 0, automatically set to avg edge_weight threshold
 	private int number_iterations; //number of inflation/expansion cycles
+	private int convergence_iterations; //stop if the exemplars did not change for this many iterations (0 = never)
+	private int nThreads = Runtime.getRuntime().availableProcessors()-1;
 
 	//private double clusteringThresh; Threshold used to remove weak edges between distinct clusters
 	//private double maxResidual; The maximum residual to look for
@@ -49,15 +51,15 @@ public class RunAP {
 	public final static String GROUP_ATTRIBUTE = "__APGroups";
 	protected int clusterCount = 0;
 	private DistanceMatrix distanceMatrix = null;
-	private ResponsibilityMatrix r_matrix = null;
-	private AvailabilityMatrix a_matrix = null;
+	private APEngine engine = null;
+	private int[] exemplars = null;
 	private DoubleMatrix2D s_matrix = null;
 	private DoubleMatrix1D pref_vector = null;
 	private boolean debug;
 
 	public RunAP( DistanceMatrix dMat,
 	              double lambdaParameter, double preferenceParameter, int num_iterations, 
-	              CyLogger logger, boolean debug)
+	              int convergence_iterations, int maxThreads, CyLogger logger, boolean debug)
 	{
 		this.distanceMatrix = dMat;
 	       
@@ -72,6 +74,9 @@ public class RunAP {
 			lambda = 1;
 
 		this.number_iterations = num_iterations;
+		this.convergence_iterations = convergence_iterations;
+		if (maxThreads > 0)
+			nThreads = maxThreads;
 		
 		this.logger = logger;
 		nodes = distanceMatrix.getNodes();
@@ -84,8 +89,7 @@ public class RunAP {
 		}
 
 		// System.out.println("lambda = "+lambda);
-		r_matrix = new ResponsibilityMatrix(s_matrix, lambda);
-		a_matrix = new AvailabilityMatrix(s_matrix, lambda);
+		engine = new APEngine(s_matrix, lambda, nThreads);
 
 		// logger.info("Iterations = "+num_iterations);
 	}
@@ -108,16 +112,33 @@ public class RunAP {
 			distanceMatrix.printMatrix(logger, s_matrix);
 		}
 		
-		for (int i=0; i<number_iterations; i++)
-		{
-			monitor.setStatus("Exchanging messages: iteration "+i);
-			iterate_message_exchange(monitor, i);
-
-			if (canceled) {
-				monitor.setStatus("canceled");
-				return null;
+		int unchanged = 0;
+		try {
+			for (int i=0; i<number_iterations; i++)
+			{
+				monitor.setStatus("Exchanging messages: iteration "+i);
+				int changed = iterate_message_exchange(monitor, i);
+
+				if (canceled || changed < 0) {
+					monitor.setStatus("canceled");
+					return null;
+				}
+				monitor.setPercentCompleted((i*100)/number_iterations);
+
+				if (changed > 0)
+					unchanged = 0;
+				else
+					unchanged++;
+
+				if (convergence_iterations > 0 && unchanged >= convergence_iterations) {
+					logger.info("Exemplars converged after "+(i+1)+" iterations");
+					break;
+				}
 			}
-			monitor.setPercentCompleted((i*100)/number_iterations);
+
+			exemplars = engine.getExemplars();
+		} finally {
+			engine.shutdown();
 		}
 
 		if (debug) {
@@ -164,49 +185,27 @@ public class RunAP {
 	}	
 
 	//Exchange Messages between Responsibility and Availibility Matrix for Single Iteration of Affinity Propogation
-	public void iterate_message_exchange(TaskMonitor monitor, int iteration){
+	//Returns the number of nodes that changed their exemplar
+	public int iterate_message_exchange(TaskMonitor monitor, int iteration){
 
 		logger.debug("Iteration "+iteration);
 
-		// Calculate the availability maxima
-		a_matrix.updateEvidence();
-
-		// OK, now calculate the responsibility matrix
-		r_matrix.update(a_matrix);
+		int changed = engine.iterate();
 
 		if (debug) {
 			logger.debug("Responsibility matrix: ");
-			distanceMatrix.printMatrix(logger, r_matrix.getMatrix());
-		}
-
-		// Get the maximum positive responsibilities
-		r_matrix.updateEvidence();
-
-		// Now, update the availability matrix
-		a_matrix.update(r_matrix);
-
-		if (debug) {
+			distanceMatrix.printMatrix(logger, engine.getResponsibilityMatrix());
 			logger.debug("Availability matrix: ");
-			distanceMatrix.printMatrix(logger, a_matrix.getMatrix());
+			distanceMatrix.printMatrix(logger, engine.getAvailabilityMatrix());
+			logger.debug(changed+" exemplars changed");
 		}
+		return changed;
 	}
 
 	
 	//return exemplar k for element i => Maximizer of a(i,k) + r(i,k)
 	private int get_exemplar(int i) {
-	
-		double max_value = -1000;
-		int exemplar = 0;
-		double sum;
-
-		for(int k = 0; k < s_matrix.rows(); k++) {
-			sum = a_matrix.get(i,k) + r_matrix.get(i,k);
-
-			if(sum > max_value){
-				max_value = sum;
-				exemplar = k;
-			}
-		}
+		int exemplar = exemplars[i];
 		logger.debug("Exemplar for "+i+" is "+exemplar);
 	  return exemplar;
 	}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2010 The Regents of the University of California.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions, and the following disclaimer.
+ *   2. Redistributions in binary form must reproduce the above
+ *      copyright notice, this list of conditions, and the following
+ *      disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *   3. Redistributions must acknowledge that this software was
+ *      originally developed by the UCSF Computer Graphics Laboratory
+ *      under support by the NIH National Center for Research Resources,
+ *      grant P41-RR01081.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.MCL;
+
+/**
+ * ColumnPruner implements the MCL resource controls that keep the flow
+ * matrix sparse.  It is applied to each column as it comes out of the
+ * expansion step, so the full expanded matrix never has to be held in
+ * memory.  For each column we:
+ * <ol>
+ * <li>drop all of the values beneath the pruning threshold,</li>
+ * <li>if more than selectNumber values are left, keep only the selectNumber
+ *     largest (selection),</li>
+ * <li>if what is left accounts for less than recoverPct of the column's mass
+ *     and fewer than recoverNumber values are left, keep the recoverNumber
+ *     largest values of the original column instead (recovery).</li>
+ * </ol>
+ * A selectNumber or recoverNumber of 0 turns that step off.  The pruner holds
+ * no state beyond its settings, so a single one can be shared between threads.
+ */
+class ColumnPruner {
+	private double threshold;
+	private int selectNumber;
+	private int recoverNumber;
+	private double recoverPct;
+
+	/**
+	 * Create a pruner.
+	 *
+	 * @param threshold values beneath this are dropped
+	 * @param selectNumber the maximum number of values to keep in a column (0 for no limit)
+	 * @param recoverNumber the number of values to recover when pruning was too aggressive (0 for none)
+	 * @param recoverPct the fraction (0-1) of the column mass that pruning should preserve
+	 */
+	public ColumnPruner(double threshold, int selectNumber, int recoverNumber, double recoverPct) {
+		this.threshold = threshold;
+		this.selectNumber = selectNumber;
+		this.recoverNumber = recoverNumber;
+		this.recoverPct = recoverPct;
+	}
+
+	/**
+	 * Prune a column.  The column is a segment of two parallel arrays holding
+	 * the row numbers and values.  The values we keep are moved to the front
+	 * of the segment (in no particular order).
+	 *
+	 * @param rows the row numbers
+	 * @param values the values
+	 * @param offset the start of the column in the arrays
+	 * @param length the number of values in the column
+	 * @return the number of values kept
+	 */
+	public int prune(int[] rows, double[] values, int offset, int length) {
+		double total = 0.0;
+		double kept = 0.0;
+		int end = offset+length;
+
+		// Move everything at or above the threshold to the front
+		int count = 0;
+		for (int k = offset; k < end; k++) {
+			double value = values[k];
+			total += value;
+			if (value >= threshold) {
+				swap(rows, values, offset+count, k);
+				kept += value;
+				count++;
+			}
+		}
+
+		// Selection
+		if (selectNumber > 0 && count > selectNumber) {
+			selectLargest(rows, values, offset, count, selectNumber);
+			count = selectNumber;
+			kept = 0.0;
+			for (int k = offset; k < offset+count; k++)
+				kept += values[k];
+		}
+
+		// Recovery
+		if (recoverNumber > count && kept < recoverPct*total) {
+			count = Math.min(recoverNumber, length);
+			selectLargest(rows, values, offset, length, count);
+		}
+		return count;
+	}
+
+	/**
+	 * Quickselect: reorder the segment so that its first k entries are the
+	 * k largest values.
+	 */
+	private static void selectLargest(int[] rows, double[] values, int offset, int length, int k) {
+		if (k <= 0 || k >= length) return;
+
+		int left = offset;
+		int right = offset+length-1;
+		int target = offset+k-1;
+		while (left < right) {
+			// Median of three keeps us away from the worst case on sorted data
+			int mid = (left+right) >>> 1;
+			if (values[mid] > values[left]) swap(rows, values, mid, left);
+			if (values[right] > values[left]) swap(rows, values, right, left);
+			if (values[right] > values[mid]) swap(rows, values, right, mid);
+			double pivot = values[mid];
+
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (values[i] > pivot) i++;
+				while (values[j] < pivot) j--;
+				if (i <= j) {
+					swap(rows, values, i, j);
+					i++;
+					j--;
+				}
+			}
+			if (target <= j)
+				right = j;
+			else if (target >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	private static void swap(int[] rows, double[] values, int a, int b) {
+		if (a == b) return;
+		int r = rows[a];
+		rows[a] = rows[b];
+		rows[b] = r;
+		double v = values[a];
+		values[a] = values[b];
+		values[b] = v;
+	}
+}
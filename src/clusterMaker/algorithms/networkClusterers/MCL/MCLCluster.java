@@ -72,6 +72,9 @@ public class MCLCluster extends AbstractNetworkClusterer  {
 	double clusteringThresh = 1e-15;
 	double maxResidual = 0.001;
 	int maxThreads = 0;
+	int selectNumber = 1100;
+	int recoverNumber = 1400;
+	double recoverPct = 90.0;
 	RunMCL runMCL = null;
 
 	public MCLCluster() {
@@ -115,7 +118,7 @@ public class MCLCluster extends AbstractNetworkClusterer  {
 		edgeAttributeHandler = new EdgeAttributeHandler(clusterProperties, true);
 
 		clusterProperties.add(new Tunable("mclAdvancedGroup", "MCL Advanced Settings",
-		                                  Tunable.GROUP, new Integer(4),
+		                                  Tunable.GROUP, new Integer(7),
 		                                  new Boolean(true), null, Tunable.COLLAPSABLE));
 		// Clustering Threshold
 		clusterProperties.add(new Tunable("clusteringThresh",
@@ -135,6 +138,24 @@ public class MCLCluster extends AbstractNetworkClusterer  {
 		                                  Tunable.DOUBLE, new Double(maxResidual),
 		                                  (Object)null, (Object)null, 0));
 
+		// Selection number
+		clusterProperties.add(new Tunable("selectNumber",
+		                                  "Maximum entries kept per column (0 for no limit)",
+		                                  Tunable.INTEGER, new Integer(selectNumber),
+		                                  (Object)null, (Object)null, 0));
+
+		// Recovery number
+		clusterProperties.add(new Tunable("recoverNumber",
+		                                  "Entries to recover per column (0 for none)",
+		                                  Tunable.INTEGER, new Integer(recoverNumber),
+		                                  (Object)null, (Object)null, 0));
+
+		// Recovery percentage
+		clusterProperties.add(new Tunable("recoverPct",
+		                                  "Recover if less than this percent of mass is kept",
+		                                  Tunable.DOUBLE, new Double(recoverPct),
+		                                  (Object)null, (Object)null, 0));
+
 		// Maximum number of CPU's to use
 		clusterProperties.add(new Tunable("maxThreads",
 		                                  "Maximum number of threads",
@@ -170,6 +191,18 @@ public class MCLCluster extends AbstractNetworkClusterer  {
 		if ((t != null) && (t.valueChanged() || force))
 			maxThreads = ((Integer) t.getValue()).intValue();
 
+		t = clusterProperties.get("selectNumber");
+		if ((t != null) && (t.valueChanged() || force))
+			selectNumber = ((Integer) t.getValue()).intValue();
+
+		t = clusterProperties.get("recoverNumber");
+		if ((t != null) && (t.valueChanged() || force))
+			recoverNumber = ((Integer) t.getValue()).intValue();
+
+		t = clusterProperties.get("recoverPct");
+		if ((t != null) && (t.valueChanged() || force))
+			recoverPct = ((Double) t.getValue()).doubleValue();
+
 		t = clusterProperties.get("iterations");
 		if ((t != null) && (t.valueChanged() || force))
 			rNumber = ((Integer) t.getValue()).intValue();
@@ -198,6 +231,7 @@ public class MCLCluster extends AbstractNetworkClusterer  {
 		                    clusteringThresh, maxResidual, maxThreads, logger);
 
 		runMCL.setDebug(debug);
+		runMCL.setResourceLimits(selectNumber, recoverNumber, recoverPct);
 
 		if (canceled) return;
 
@@ -234,6 +268,9 @@ public class MCLCluster extends AbstractNetworkClusterer  {
 		params.add("rNumber="+rNumber);
 		params.add("clusteringThresh="+clusteringThresh);
 		params.add("maxResidual="+maxResidual);
+		params.add("selectNumber="+selectNumber);
+		params.add("recoverNumber="+recoverNumber);
+		params.add("recoverPct="+recoverPct);
 		super.setParams(params);
 	}
 }
@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2010 The Regents of the University of California.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions, and the following disclaimer.
+ *   2. Redistributions in binary form must reproduce the above
+ *      copyright notice, this list of conditions, and the following
+ *      disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *   3. Redistributions must acknowledge that this software was
+ *      originally developed by the UCSF Computer Graphics Laboratory
+ *      under support by the NIH National Center for Research Resources,
+ *      grant P41-RR01081.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.MCL;
+
+import cern.colt.function.IntIntDoubleFunction;
+import cern.colt.matrix.DoubleMatrix2D;
+
+/**
+ * MCLMatrix is a compressed sparse column matrix of primitives that holds the
+ * MCL flow matrix.  The non-zero values of column j are in
+ * values[colPtr[j]..colPtr[j+1]) and their row numbers are in the same range of
+ * rowIdx.  Rows within a column are not kept in any particular order.
+ *
+ * Since MCL only ever works on whole columns (every column is a probability
+ * distribution), the column operations are done in a single fused pass: raise
+ * to a power, prune, normalize and compute the residual, rather than the
+ * separate sweeps we need with a hash-based matrix.
+ */
+class MCLMatrix {
+	private int rows;
+	private int columns;
+	int[] colPtr;
+	int[] rowIdx;
+	double[] values;
+
+	/**
+	 * Create a matrix from already compressed arrays.  The arrays are
+	 * used as-is, not copied.
+	 */
+	MCLMatrix(int rows, int columns, int[] colPtr, int[] rowIdx, double[] values) {
+		this.rows = rows;
+		this.columns = columns;
+		this.colPtr = colPtr;
+		this.rowIdx = rowIdx;
+		this.values = values;
+	}
+
+	/**
+	 * Compress a Colt matrix into column form.
+	 *
+	 * @param matrix the matrix to copy
+	 * @return the compressed copy
+	 */
+	static MCLMatrix fromMatrix(DoubleMatrix2D matrix) {
+		final int nColumns = matrix.columns();
+		final int[] ptr = new int[nColumns+1];
+		matrix.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int column, double value) {
+				ptr[column+1]++;
+				return value;
+			}
+		});
+
+		for (int col = 0; col < nColumns; col++)
+			ptr[col+1] += ptr[col];
+
+		final int[] rowIdx = new int[ptr[nColumns]];
+		final double[] values = new double[ptr[nColumns]];
+		final int[] next = new int[nColumns];
+		System.arraycopy(ptr, 0, next, 0, nColumns);
+		matrix.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int column, double value) {
+				int k = next[column]++;
+				rowIdx[k] = row;
+				values[k] = value;
+				return value;
+			}
+		});
+
+		return new MCLMatrix(matrix.rows(), nColumns, ptr, rowIdx, values);
+	}
+
+	public int rows() { return rows; }
+	public int columns() { return columns; }
+	public int cardinality() { return colPtr[columns]; }
+
+	/**
+	 * Return the value of a cell.  This scans the column, so it's
+	 * only meant for debugging output.
+	 */
+	public double get(int row, int column) {
+		for (int k = colPtr[column]; k < colPtr[column+1]; k++) {
+			if (rowIdx[k] == row)
+				return values[k];
+		}
+		return 0.0;
+	}
+
+	/**
+	 * Apply a function to each non-zero cell, column by column.  Unlike
+	 * the Colt version, the value returned by the function is ignored.
+	 */
+	public void forEachNonZero(IntIntDoubleFunction function) {
+		for (int col = 0; col < columns; col++) {
+			for (int k = colPtr[col]; k < colPtr[col+1]; k++)
+				function.apply(rowIdx[k], col, values[k]);
+		}
+	}
+
+	/**
+	 * Threshold and normalize the matrix so that each column sums to 1.
+	 * Columns that end up with nothing in them get a 1 on the diagonal.
+	 *
+	 * @param threshold the maximum value that we will take as a "zero" value
+	 * @param prune if 'false', don't prune this pass
+	 * @return the maximum residual over all columns after normalization
+	 */
+	public double normalize(double threshold, boolean prune) {
+		return columnPass(1.0, threshold, prune);
+	}
+
+	/**
+	 * Inflate the matrix: raise each value to the power, prune values that
+	 * are beneath the threshold, normalize each column and return the maximum
+	 * residual, all in one pass over the data.
+	 *
+	 * @param power the inflation parameter
+	 * @param threshold the maximum value that we will take as a "zero" value
+	 * @return the maximum residual over all columns after normalization
+	 */
+	public double inflate(double power, double threshold) {
+		return columnPass(power, threshold, true);
+	}
+
+	/**
+	 * Release any space left over from pruning.
+	 */
+	public void trimToSize() {
+		int nnz = colPtr[columns];
+		if (nnz == rowIdx.length) return;
+		int[] newRows = new int[nnz];
+		double[] newValues = new double[nnz];
+		System.arraycopy(rowIdx, 0, newRows, 0, nnz);
+		System.arraycopy(values, 0, newValues, 0, nnz);
+		rowIdx = newRows;
+		values = newValues;
+	}
+
+	/**
+	 * The fused column pass.  Values are compacted in place as we prune,
+	 * which works because a column never grows: the only column that gains
+	 * a cell is one that was emptied, and that one had at least one cell to
+	 * begin with (we make sure of that up front).
+	 */
+	private double columnPass(double power, double threshold, boolean prune) {
+		addMissingDiagonals();
+
+		boolean square = (power == 2.0);
+		boolean pow = (power != 1.0);
+		double residual = 0.0;
+		int write = 0;
+		int start = colPtr[0];
+		for (int col = 0; col < columns; col++) {
+			int end = colPtr[col+1];
+			int colStart = write;
+			double sum = 0.0;
+			for (int k = start; k < end; k++) {
+				double value = values[k];
+				if (square)
+					value = value*value;
+				else if (pow)
+					value = Math.pow(value, power);
+				if ((prune && value < threshold) || value == 0.0)
+					continue;
+				rowIdx[write] = rowIdx[k];
+				values[write] = value;
+				sum += value;
+				write++;
+			}
+
+			if (sum == 0.0) {
+				// Column summed to zero -- set the diagonal to 1
+				write = colStart;
+				rowIdx[write] = col;
+				values[write] = 1.0;
+				write++;
+			} else {
+				double sumSquares = 0.0;
+				for (int k = colStart; k < write; k++) {
+					double value = values[k]/sum;
+					values[k] = value;
+					sumSquares += value*value;
+				}
+				residual = Math.max(residual, 1.0 - sumSquares);
+			}
+
+			start = end;
+			colPtr[col+1] = write;
+		}
+		return residual;
+	}
+
+	/**
+	 * Make sure that every column has at least one cell by putting a
+	 * 1 on the diagonal of empty columns.  Normalization would do this anyway,
+	 * but this way the column pass never has to grow the arrays.
+	 */
+	private void addMissingDiagonals() {
+		int empty = 0;
+		for (int col = 0; col < columns; col++) {
+			if (colPtr[col] == colPtr[col+1])
+				empty++;
+		}
+		if (empty == 0) return;
+
+		int nnz = colPtr[columns];
+		int[] newPtr = new int[columns+1];
+		int[] newRows = new int[nnz+empty];
+		double[] newValues = new double[nnz+empty];
+		int write = 0;
+		for (int col = 0; col < columns; col++) {
+			int length = colPtr[col+1] - colPtr[col];
+			if (length == 0) {
+				newRows[write] = col;
+				newValues[write] = 1.0;
+				write++;
+			} else {
+				System.arraycopy(rowIdx, colPtr[col], newRows, write, length);
+				System.arraycopy(values, colPtr[col], newValues, write, length);
+				write += length;
+			}
+			newPtr[col+1] = write;
+		}
+		colPtr = newPtr;
+		rowIdx = newRows;
+		values = newValues;
+	}
+}
@@ -35,10 +35,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -60,10 +56,6 @@ import clusterMaker.algorithms.NodeCluster;
 import clusterMaker.algorithms.DistanceMatrix;
 
 import cern.colt.function.IntIntDoubleFunction;
-import cern.colt.matrix.DoubleFactory2D;
-import cern.colt.matrix.DoubleMatrix1D;
-import cern.colt.matrix.DoubleMatrix2D;
-import cern.colt.matrix.impl.SparseDoubleMatrix2D;
 
 public class RunMCL {
 
@@ -79,9 +71,10 @@ public class RunMCL {
 	protected int clusterCount = 0;
 	private boolean createMetaNodes = false;
 	private DistanceMatrix distanceMatrix = null;
-	private DoubleMatrix2D matrix = null;
+	private MCLMatrix matrix = null;
 	private boolean debug = false;
 	private int nThreads = Runtime.getRuntime().availableProcessors()-1;
+	private SparseMatrixMultiplier multiplier = null;
 	
 	public RunMCL(DistanceMatrix dMat, double inflationParameter, int num_iterations, 
 	              double clusteringThresh, double maxResidual, int maxThreads, CyLogger logger )
@@ -94,19 +87,37 @@ public class RunMCL {
 		this.logger = logger;
 		nodes = distanceMatrix.getNodes();
 		edges = distanceMatrix.getEdges();
-		this.matrix = distanceMatrix.getDistanceMatrix();
+		this.matrix = MCLMatrix.fromMatrix(distanceMatrix.getDistanceMatrix());
 		if (maxThreads > 0)
 			nThreads = maxThreads;
 		else
 			nThreads = Runtime.getRuntime().availableProcessors()-1;
+		multiplier = new SparseMatrixMultiplier(nThreads);
 		// logger.info("InflationParameter = "+inflationParameter);
 		// logger.info("Iterations = "+num_iterations);
 		// logger.info("Clustering Threshold = "+clusteringThresh);
 	}
 
-	public void halt () { canceled = true; }
+	public void halt () {
+		canceled = true;
+		multiplier.halt();
+	}
 
 	public void setDebug(boolean debug) { this.debug = debug; }
+
+	/**
+	 * Set the resource controls that are applied to each column after
+	 * expansion.  These bound the number of values kept per column, and
+	 * hence the memory and time used by each iteration.
+	 *
+	 * @param selectNumber the maximum number of values to keep in a column (0 for no limit)
+	 * @param recoverNumber the number of values to recover if pruning removed too much (0 for none)
+	 * @param recoverPct the percentage of each column's mass that pruning should preserve
+	 */
+	public void setResourceLimits(int selectNumber, int recoverNumber, double recoverPct) {
+		multiplier.setPruner(new ColumnPruner(clusteringThresh, selectNumber, 
+		                                      recoverNumber, recoverPct/100.0));
+	}
 	
 	public List<NodeCluster> run(TaskMonitor monitor)
 	{
@@ -125,7 +136,7 @@ public class RunMCL {
 		printMatrix(matrix);
 
 		// Normalize
-		normalize(matrix, clusteringThresh, false);
+		matrix.normalize(clusteringThresh, false);
 
 		debugln("Normalized matrix:");
 		printMatrix(matrix);
@@ -133,7 +144,6 @@ public class RunMCL {
 		// logger.info("Calculating clusters");
 
 		double residual = 1.0;
-		IntIntDoubleFunction myPow = new MatrixPow(inflationParameter);
 		// debugln("residual = "+residual+" maxResidual = "+maxResidual);
 		for (int i=0; (i<number_iterations)&&(residual>maxResidual); i++)
 		{
@@ -143,14 +153,14 @@ public class RunMCL {
 				monitor.setStatus("Iteration: "+(i+1)+" expanding ");
 				// debugln("Iteration: "+(i+1)+" expanding ");
 				// printMatrixInfo(matrix);
-				if (nThreads > 1) {
-					matrix = multiplyMatrix(matrix, matrix);
-				} else {
-					DoubleMatrix2D newMatrix = DoubleFactory2D.sparse.make(matrix.rows(), matrix.columns());
-					matrix = matrix.zMult(matrix, newMatrix);
+				MCLMatrix newMatrix = multiplier.multiply(matrix, matrix);
+				if (newMatrix == null) {
+					monitor.setStatus("canceled");
+					return null;
 				}
+				matrix = newMatrix;
 				// Normalize
-				normalize(matrix, clusteringThresh, false);
+				matrix.normalize(clusteringThresh, false);
 				logger.info("Expansion "+(i+1)+" took "+(System.currentTimeMillis()-t)+"ms");
 			}
 
@@ -163,9 +173,9 @@ public class RunMCL {
 				monitor.setStatus("Iteration: "+(i+1)+" inflating");
 				// debugln("Iteration: "+(i+1)+" inflating");
 				// printMatrixInfo(matrix);
-				matrix.forEachNonZero(myPow);
-				// Normalize
-				normalize(matrix, clusteringThresh, true);
+				// Raise to the inflation power, prune, normalize and
+				// calculate the residuals all in one pass
+				residual = matrix.inflate(inflationParameter, clusteringThresh);
 				logger.info("Inflation "+(i+1)+" took "+(System.currentTimeMillis()-t)+"ms");
 			}
 
@@ -173,7 +183,6 @@ public class RunMCL {
 			// debugln("^ "+(i+1)+" after inflation");
 
 			matrix.trimToSize();
-			residual = calculateResiduals(matrix);
 			// debugln("Iteration: "+(i+1)+" residual: "+residual);
 
 			if (canceled) {
@@ -228,76 +237,13 @@ public class RunMCL {
 		return new ArrayList<NodeCluster>(clusters);
 	}	
 
-	/**
-	 * This method does threshold and normalization.  First, we get rid of
-	 * any cells that have a value beneath our threshold and in the same pass
-	 * calculate all of the column sums.  Then we use the column sums to normalize
-	 * each column such that all of the cells in the column sum to 1.
-	 *
-	 * @param matrix the (sparse) data matrix we're operating on
-	 * @param clusteringThresh the maximum value that we will take as a "zero" value
-	 * @param prune if 'false', don't prune this pass
-	 */
-	private void normalize(DoubleMatrix2D matrix, double clusteringThresh, boolean prune)
-	{
-		// Remove any really low values and create the sums array
-		double [] sums = new double[matrix.columns()];
-		matrix.forEachNonZero(new MatrixZeroAndSum(prune, clusteringThresh, sums));
-
-		// Finally, adjust the values
-		matrix.forEachNonZero(new MatrixNormalize(sums));
-
-		// Last step -- find any columns that summed to zero and set the diagonal to 1
-		for (int col = 0; col < sums.length; col++) {
-			if (sums[col] == 0.0) {
-				// debugln("Column "+col+" sums to 0");
-				matrix.set(col,col,1.0);
-			}
-		}
-	}
-
-	/**
-	 * This method normalizes the weights to between 0 and 1.
-	 *
-	 * @param matrix the (sparse) data matrix we're operating on
-	 * @param min the minimum weight
-	 * @param max the maximum weight
-	 */
-	private void normalizeWeights(DoubleMatrix2D matrix, double min, double max) {
-		matrix.forEachNonZero(new MatrixNormalizeWeights(min, max));
-	}
-
-	/**
-	 * This method calculates the residuals.  Calculate the sum and
-	 * sum of squares for each row, then return the maximum residual.
-	 *
-	 * @param matrix the (sparse) data matrix we're operating on
-	 * @return residual value
-	 */
-	private double calculateResiduals(DoubleMatrix2D matrix) {
-		// Calculate and return the residuals
-		double[] sums = new double[matrix.columns()];
-		double [] sumSquares = new double[matrix.columns()];
-		matrix.forEachNonZero(new MatrixSumAndSumSq(sums, sumSquares));
-		double residual = 0.0;
-		for (int i = 0; i < sums.length; i++) {
-			residual = Math.max(residual, sums[i] - sumSquares[i]);
-		}
-		return residual;
-	}
-
-
 	/**
 	 * Debugging routine to print out information about a matrix
 	 *
 	 * @param matrix the matrix we're going to print out information about
 	 */
-	private void printMatrixInfo(DoubleMatrix2D matrix) {
+	private void printMatrixInfo(MCLMatrix matrix) {
 		debugln("Matrix("+matrix.rows()+", "+matrix.columns()+")");
-		if (matrix instanceof SparseDoubleMatrix2D)
-			debugln(" matrix is sparse");
-		else
-			debugln(" matrix is dense");
 		debugln(" cardinality is "+matrix.cardinality());
 	}
 
@@ -306,7 +252,9 @@ public class RunMCL {
 	 *
 	 * @param matrix the matrix we're going to print out information about
 	 */
-	private void printMatrix(DoubleMatrix2D matrix) {
+	private void printMatrix(MCLMatrix matrix) {
+		if (!debug) return;
+
 		for (int row = 0; row < matrix.rows(); row++) {
 			debug(nodes.get(row).getIdentifier()+":\t");
 			for (int col = 0; col < matrix.columns(); col++) {
@@ -314,12 +262,7 @@ public class RunMCL {
 			}
 			debugln();
 		}
-		debugln("Matrix("+matrix.rows()+", "+matrix.columns()+")");
-		if (matrix instanceof SparseDoubleMatrix2D)
-			debugln(" matrix is sparse");
-		else
-			debugln(" matrix is dense");
-		debugln(" cardinality is "+matrix.cardinality());
+		printMatrixInfo(matrix);
 	}
 
 	private void debugln(String message) {
@@ -334,176 +277,6 @@ public class RunMCL {
 		if (debug) System.out.print(message);
 	}
 
-	private DoubleMatrix2D multiplyMatrix(DoubleMatrix2D A, DoubleMatrix2D B) {
-		int m = A.rows();
-		int n = A.columns();
-		int p = B.columns();
-
-		// Create views into B
-		final DoubleMatrix1D[] Brows= new DoubleMatrix1D[n];
-		for (int i = n; --i>=0; ) Brows[i] = B.viewRow(i);
-
-		// Create a series of 1D vectors
-		final DoubleMatrix1D[] Crows= new DoubleMatrix1D[n];
-		for (int i = m; --i>=0; ) Crows[i] = B.like1D(m);
-
-		// Create the thread pools
-		final ExecutorService[] threadPools = new ExecutorService[nThreads];
-		for (int pool = 0; pool < threadPools.length; pool++) {
-				threadPools[pool] = Executors.newFixedThreadPool(1);
-		}
-
-		A.forEachNonZero(
-			new cern.colt.function.IntIntDoubleFunction() {
-				public double apply(int row, int column, double value) {
-
-					Runnable r = new ThreadedDotProduct(value, Brows[column], Crows[row]);
-					threadPools[row%nThreads].submit(r);
-					return value;
-				}
-			}
-		);
-
-		for (int pool = 0; pool < threadPools.length; pool++) {
-			threadPools[pool].shutdown();
-			try {
-				boolean result = threadPools[pool].awaitTermination(7, TimeUnit.DAYS);
-			} catch (Exception e) {}
-		}
-		// Recreate C
-		return create2DMatrix(Crows);
-	}
-
-	private DoubleMatrix2D create2DMatrix (DoubleMatrix1D[] rows) {
-		int columns = rows[0].size();
-		DoubleMatrix2D C = DoubleFactory2D.sparse.make(rows.length, columns);
-		for (int row = 0; row < rows.length; row++) {
-			for (int col = 0; col < columns; col++) {
-				double value = rows[row].getQuick(col);
-				if (value != 0.0)
-					C.setQuick(row, col, value);
-			}
-		}
-		return C;
-	}
-
-	private class ThreadedDotProduct implements Runnable {
-		double value;
-		DoubleMatrix1D Bcol;
-		DoubleMatrix1D Crow;
-		// final cern.jet.math.PlusMult fun = cern.jet.math.PlusMult.plusMult(0);
-
-		ThreadedDotProduct(double value, DoubleMatrix1D Bcol, 
-		                   DoubleMatrix1D Crow) {
-			this.value = value;
-			this.Bcol = Bcol;
-			this.Crow = Crow;
-		}
-
-		public void run() {
-			// fun.multiplicator = value;
-			for (int k = 0; k < Bcol.size(); k++) {
-				if (Bcol.getQuick(k) != 0.0) {
-					Crow.setQuick(k, Crow.getQuick(k)+Bcol.getQuick(k)*value);
-				}
-			}
-			// Crow.assign(Bcol, fun);
-		}
-	}
-
-	/**
-	 * The MatrixPow class raises the value of each non-zero cell of the matrix
-	 * to the power passed in it's constructor.
-	 */
-	private class MatrixPow implements IntIntDoubleFunction {
-		double pow;
-
-		public MatrixPow(double power) {
-			this.pow = power;
-		}
-		
-		public double apply(int row, int column, double value) {
-			if (canceled) { return 0.0; }
-			return Math.pow(value,pow);
-		}
-	}
-
-	/**
-	 * The MatrixZeroAndSum looks through all non-zero cells in a matrix
-	 * and if the value of the cell is beneath "threshold" it is set to
-	 * zero.  All non-zero cells in a column are added together to return
-	 * the sum of each column.
-	 */
-	private class MatrixZeroAndSum implements IntIntDoubleFunction {
-		double threshold;
-		double [] colSums;
-		boolean prune;
-
-		public MatrixZeroAndSum (boolean prune, double threshold, double[] colSums) {
-			this.threshold = threshold;
-			this.colSums = colSums;
-			this.prune = prune;
-		}
-
-		public double apply(int row, int column, double value) {
-			if (prune && (value < threshold))
-				return 0.0;
-			colSums[column] += value;
-			return value;
-		}
-	}
-
-	/**
-	 * The MatrixSumAndSumSq looks through all non-zero cells in a matrix
-	 * and calculates the sums and sum of squares for each column.
-	 */
-	private class MatrixSumAndSumSq implements IntIntDoubleFunction {
-		double [] sumSquares;
-		double [] colSums;
-
-		public MatrixSumAndSumSq (double[] colSums, double[] sumSquares) {
-			this.sumSquares = sumSquares;
-			this.colSums = colSums;
-		}
-		public double apply(int row, int column, double value) {
-			colSums[column] += value;
-			sumSquares[column] += value*value;
-			return value;
-		}
-	}
-
-	/**
-	 * The MatrixNormalize class takes as input an array of sums for
-	 * each column in the matrix and uses that to normalize the sum of the
-	 * column to 1.  If the sum of the column is 0, the diagonal is set to 1.
-	 */
-	private class MatrixNormalize implements IntIntDoubleFunction {
-		double [] colSums;
-
-		public MatrixNormalize(double[] colSums) {
-			this.colSums = colSums;
-		}
-
-		public double apply(int row, int column, double value) {
-			if (canceled) { return 0.0; }
-			return value/colSums[column];
-		}
-	}
-
-	private class MatrixNormalizeWeights implements IntIntDoubleFunction {
-		double min;
-		double max;
-
-		public MatrixNormalizeWeights(double min, double max) {
-			this.min = min;
-			this.max = max;
-		}
-
-		public double apply(int row, int column, double value) {
-			return (value - min) / (max - min);
-		}
-	}
-
 	private class ClusterMatrix implements IntIntDoubleFunction {
 		Map<Integer, NodeCluster> clusterMap;
 
@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2010 The Regents of the University of California.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions, and the following disclaimer.
+ *   2. Redistributions in binary form must reproduce the above
+ *      copyright notice, this list of conditions, and the following
+ *      disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *   3. Redistributions must acknowledge that this software was
+ *      originally developed by the UCSF Computer Graphics Laboratory
+ *      under support by the NIH National Center for Research Resources,
+ *      grant P41-RR01081.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.MCL;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SparseMatrixMultiplier computes the sparse product C = A*B used by the
+ * MCL expansion step.  The operands are column-compressed MCLMatrix objects,
+ * and column j of C is the sum of the columns of A selected (and weighted)
+ * by the entries of column j of B.  The columns of C are computed in small
+ * blocks.  The worker threads pull the next unclaimed block from a shared
+ * counter, so a thread that gets a run of cheap columns just takes more
+ * blocks rather than sitting idle while another thread works through a
+ * dense one.  Each worker has its own dense accumulator and index list, so
+ * computing a column doesn't allocate anything beyond the column's result.
+ * If a ColumnPruner has been set, each column is pruned as soon as it has
+ * been computed, so the unpruned product is never stored.
+ */
+class SparseMatrixMultiplier {
+	// Number of columns a worker claims at a time
+	private static final int BLOCK_SIZE = 32;
+
+	private int nThreads;
+	private volatile boolean canceled = false;
+	private ColumnPruner pruner = null;
+
+	/**
+	 * Create a multiplier.
+	 *
+	 * @param nThreads the number of worker threads to use.  Values less
+	 *                 than 2 do all of the work on the calling thread.
+	 */
+	public SparseMatrixMultiplier(int nThreads) {
+		this.nThreads = Math.max(1, nThreads);
+	}
+
+	public void halt() { canceled = true; }
+
+	/**
+	 * Set the pruner to apply to each column of the result.
+	 *
+	 * @param pruner the pruner, or null to keep every non-zero value
+	 */
+	public void setPruner(ColumnPruner pruner) { this.pruner = pruner; }
+
+	/**
+	 * Multiply A by B.
+	 *
+	 * @param A the left-hand matrix
+	 * @param B the right-hand matrix (may be the same object as A)
+	 * @return a new matrix holding A*B, or null if we were canceled
+	 */
+	public MCLMatrix multiply(MCLMatrix A, MCLMatrix B) {
+		if (A.columns() != B.rows())
+			throw new IllegalArgumentException("Matrix dimensions don't match: "+
+			                                   A.rows()+"x"+A.columns()+" * "+
+			                                   B.rows()+"x"+B.columns());
+
+		final int rows = A.rows();
+		final int columns = B.columns();
+
+		final int[][] resultRows = new int[columns][];
+		final double[][] resultValues = new double[columns][];
+
+		final int nBlocks = (columns + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final AtomicInteger nextBlock = new AtomicInteger(0);
+
+		int workers = Math.min(nThreads, nBlocks);
+		if (workers <= 1) {
+			new ColumnWorker(A, B, nextBlock, nBlocks, resultRows, resultValues).call();
+		} else {
+			ExecutorService pool = Executors.newFixedThreadPool(workers);
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>(workers);
+			for (int i = 0; i < workers; i++) {
+				futures.add(pool.submit(new ColumnWorker(A, B, nextBlock, nBlocks,
+				                                         resultRows, resultValues)));
+			}
+			try {
+				for (Future<Integer> f: futures)
+					f.get();
+			} catch (InterruptedException e) {
+				canceled = true;
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Matrix multiplication failed", e.getCause());
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+
+		if (canceled) return null;
+
+		// Now pack the columns into the result
+		int[] colPtr = new int[columns+1];
+		for (int col = 0; col < columns; col++)
+			colPtr[col+1] = colPtr[col] + resultRows[col].length;
+
+		int[] rowIdx = new int[colPtr[columns]];
+		double[] values = new double[colPtr[columns]];
+		for (int col = 0; col < columns; col++) {
+			int length = resultRows[col].length;
+			System.arraycopy(resultRows[col], 0, rowIdx, colPtr[col], length);
+			System.arraycopy(resultValues[col], 0, values, colPtr[col], length);
+			// Let the garbage collector have these as we go
+			resultRows[col] = null;
+			resultValues[col] = null;
+		}
+		return new MCLMatrix(rows, columns, colPtr, rowIdx, values);
+	}
+
+	/**
+	 * Compute a block of columns of the result at a time until there
+	 * aren't any blocks left.  We use the standard sparse accumulator:
+	 * a dense column of sums, a flag for each row we've touched, and a list
+	 * of those rows so we can gather and reset without a full sweep.
+	 */
+	private class ColumnWorker implements Callable<Integer> {
+		MCLMatrix a;
+		MCLMatrix b;
+		AtomicInteger nextBlock;
+		int nBlocks;
+		int[][] resultRows;
+		double[][] resultValues;
+		double[] accumulator;
+		boolean[] occupied;
+		int[] touched;
+		double[] gathered;
+
+		ColumnWorker(MCLMatrix a, MCLMatrix b, AtomicInteger nextBlock, int nBlocks,
+		             int[][] resultRows, double[][] resultValues) {
+			this.a = a;
+			this.b = b;
+			this.nextBlock = nextBlock;
+			this.nBlocks = nBlocks;
+			this.resultRows = resultRows;
+			this.resultValues = resultValues;
+			this.accumulator = new double[a.rows()];
+			this.occupied = new boolean[a.rows()];
+			this.touched = new int[a.rows()];
+			this.gathered = new double[a.rows()];
+		}
+
+		public Integer call() {
+			int columnsDone = 0;
+			int columns = b.columns();
+			int block;
+			while (!canceled && (block = nextBlock.getAndIncrement()) < nBlocks) {
+				int end = Math.min(columns, (block+1)*BLOCK_SIZE);
+				for (int col = block*BLOCK_SIZE; col < end; col++) {
+					multiplyColumn(col);
+					columnsDone++;
+				}
+			}
+			return new Integer(columnsDone);
+		}
+
+		private void multiplyColumn(int col) {
+			int[] aPtr = a.colPtr;
+			int[] aRows = a.rowIdx;
+			double[] aValues = a.values;
+			int nTouched = 0;
+			for (int bk = b.colPtr[col]; bk < b.colPtr[col+1]; bk++) {
+				int k = b.rowIdx[bk];
+				double bValue = b.values[bk];
+				for (int ak = aPtr[k]; ak < aPtr[k+1]; ak++) {
+					int row = aRows[ak];
+					if (!occupied[row]) {
+						occupied[row] = true;
+						touched[nTouched++] = row;
+					}
+					accumulator[row] += aValues[ak]*bValue;
+				}
+			}
+
+			// Gather the non-zero values (compacting touched as we go)
+			// and reset the accumulator
+			int nnz = 0;
+			for (int t = 0; t < nTouched; t++) {
+				int row = touched[t];
+				double value = accumulator[row];
+				if (value != 0.0) {
+					touched[nnz] = row;
+					gathered[nnz] = value;
+					nnz++;
+				}
+				accumulator[row] = 0.0;
+				occupied[row] = false;
+			}
+
+			if (pruner != null)
+				nnz = pruner.prune(touched, gathered, 0, nnz);
+
+			int[] rowsOut = new int[nnz];
+			double[] valuesOut = new double[nnz];
+			System.arraycopy(touched, 0, rowsOut, 0, nnz);
+			System.arraycopy(gathered, 0, valuesOut, 0, nnz);
+			resultRows[col] = rowsOut;
+			resultValues[col] = valuesOut;
+		}
+	}
+}
@@ -4,6 +4,7 @@ import cytoscape.CyNetwork;
 import cytoscape.logger.CyLogger;
 import cytoscape.task.TaskMonitor;
 
+import giny.model.Edge;
 import giny.model.GraphPerspective;
 import giny.model.Node;
 
@@ -53,6 +54,8 @@ import java.util.*;
 public class MCODEAlgorithm {
 	private boolean cancelled = false;
 	private TaskMonitor taskMonitor = null;
+	private int nThreads = Runtime.getRuntime().availableProcessors()-1;
+	private MCODENodeScorer scorer = null;
 
 	//data structure for storing information required for each node
 	private class NodeInfo {
@@ -144,6 +147,22 @@ public class MCODEAlgorithm {
 	 */
 	public void setCancelled(boolean cancelled) {
 		this.cancelled = cancelled;
+		if (cancelled && scorer != null) {
+			scorer.halt();
+		}
+	}
+
+	/**
+	 * Set the number of threads used to score the nodes
+	 *
+	 * @param maxThreads The maximum number of threads, 0 to use all but one of the available processors
+	 */
+	public void setMaxThreads(int maxThreads) {
+		if (maxThreads > 0) {
+			nThreads = maxThreads;
+		} else {
+			nThreads = Runtime.getRuntime().availableProcessors()-1;
+		}
 	}
 
 	/**
@@ -214,34 +233,62 @@ public class MCODEAlgorithm {
 				}
 			}
 		});
-		//iterate over all nodes and calculate MCODE score
+		//take a snapshot of the network for the scorer
+		int[] nodeIndices = new int[inputNetwork.getNodeCount()];
+		int i = 0;
+		Iterator nodes = inputNetwork.nodesIterator();
+		while (nodes.hasNext()) {
+			nodeIndices[i++] = ((Node) nodes.next()).getRootGraphIndex();
+		}
+		int[] edgeSources = new int[inputNetwork.getEdgeCount()];
+		int[] edgeTargets = new int[inputNetwork.getEdgeCount()];
+		i = 0;
+		Iterator edges = inputNetwork.edgesIterator();
+		while (edges.hasNext()) {
+			Edge e = (Edge) edges.next();
+			edgeSources[i] = e.getSource().getRootGraphIndex();
+			edgeTargets[i++] = e.getTarget().getRootGraphIndex();
+		}
+		//calculate the node information and MCODE score of all nodes in parallel
+		//TODO: add support for other scoring functions (low priority)
+		scorer = new MCODENodeScorer(nodeIndices, edgeSources, edgeTargets, nThreads);
+		if (cancelled || !scorer.score(params.isIncludeLoops(), params.getDegreeCutoff(), taskMonitor)) {
+			return;
+		}
+		int[] numNodeNeighbors = scorer.getNeighborhoodSizes();
+		double[] densities = scorer.getDensities();
+		int[] coreLevels = scorer.getCoreLevels();
+		double[] coreDensities = scorer.getCoreDensities();
+		double[] scores = scorer.getScores();
+
+		//iterate over all nodes in network order and store their information and score
 		NodeInfo nodeInfo = null;
 		double nodeScore;
 		ArrayList al;
-		int i = 0;
-		Iterator nodes = inputNetwork.nodesIterator();
-		while (nodes.hasNext() && (!cancelled)) {
-			Node n = (Node) nodes.next();
-			nodeInfo = calcNodeInfo(inputNetwork, n.getRootGraphIndex());
-			nodeInfoHashMap.put(new Integer(n.getRootGraphIndex()), nodeInfo);
-			//score node TODO: add support for other scoring functions (low priority)
-			nodeScore = scoreNode(nodeInfo);
+		for (i = 0; i < nodeIndices.length; i++) {
+			int node = scorer.indexOf(nodeIndices[i]);
+			nodeInfo = new NodeInfo();
+			nodeInfo.density = densities[node];
+			nodeInfo.numNodeNeighbors = numNodeNeighbors[node];
+			nodeInfo.nodeNeighbors = scorer.getNeighborhood(node);
+			nodeInfo.coreLevel = coreLevels[node];
+			nodeInfo.coreDensity = coreDensities[node];
+			nodeInfo.score = scores[node];
+			nodeInfoHashMap.put(new Integer(nodeIndices[i]), nodeInfo);
+			nodeScore = nodeInfo.score;
 			//save score for later use in TreeMap
 			//add a list of nodes to each score in case nodes have the same score
 			if (nodeScoreSortedMap.containsKey(new Double(nodeScore))) {
 				//already have a node with this score, add it to the list
 				al = (ArrayList) nodeScoreSortedMap.get(new Double(nodeScore));
-				al.add(new Integer(n.getRootGraphIndex()));
+				al.add(new Integer(nodeIndices[i]));
 			} else {
 				al = new ArrayList();
-				al.add(new Integer(n.getRootGraphIndex()));
+				al.add(new Integer(nodeIndices[i]));
 				nodeScoreSortedMap.put(new Double(nodeScore), al);
 			}
-			if (taskMonitor != null) {
-				i++;
-				taskMonitor.setPercentCompleted((i * 100) / inputNetwork.getNodeCount());
-			}
 		}
+		scorer = null;
 		nodeScoreResultsMap.put(resultTitle, nodeScoreSortedMap);
 		nodeInfoResultsMap.put(resultTitle, nodeInfoHashMap);
 
@@ -416,23 +463,6 @@ public class MCODEAlgorithm {
 		return gpCluster;
 	}
 
-	/**
-	 * Score node using the formula from original MCODE paper.
-	 * This formula selects for larger, denser cores.
-	 * This is a utility function for the algorithm.
-	 *
-	 * @param nodeInfo The internal data structure to fill with node information
-	 * @return The score of this node.
-	 */
-	private double scoreNode(NodeInfo nodeInfo) {
-		if (nodeInfo.numNodeNeighbors > params.getDegreeCutoff()) {
-			nodeInfo.score = nodeInfo.coreDensity * (double) nodeInfo.coreLevel;
-		} else {
-			nodeInfo.score = 0.0;
-		}
-		return (nodeInfo.score);
-	}
-
 	/**
 	 * Score a cluster.  Currently this ranks larger, denser clusters higher, although
 	 * in the future other scoring functions could be created
@@ -451,79 +481,6 @@ public class MCODEAlgorithm {
 		return (score);
 	}
 
-	/**
-	 * Calculates node information for each node according to the original MCODE publication.
-	 * This information is used to score the nodes in the scoring stage.
-	 * This is a utility function for the algorithm.
-	 *
-	 * @param inputNetwork The input network for reference
-	 * @param nodeIndex    The index of the node in the input network to score
-	 * @return A NodeInfo object containing node information required for the algorithm
-	 */
-	private NodeInfo calcNodeInfo(CyNetwork inputNetwork, int nodeIndex) {
-		int[] neighborhood;
-
-		String callerID = "MCODEAlgorithm.calcNodeInfo";
-		if (inputNetwork == null) {
-			logger.error("In " + callerID + ": gpInputGraph was null.");
-			return null;
-		}
-
-		//get neighborhood of this node (including the node)
-		int[] neighbors = inputNetwork.neighborsArray(nodeIndex);
-		if (neighbors.length < 2) {
-			//if there are no neighbors or just one neighbor, nodeInfo calculation is trivial
-			NodeInfo nodeInfo = new NodeInfo();
-			if (neighbors.length == 1) {
-				nodeInfo.coreLevel = 1;
-				nodeInfo.coreDensity = 1.0;
-				nodeInfo.density = 1.0;
-			}
-			return (nodeInfo);
-		}
-		//add original node to extract complete neighborhood
-		Arrays.sort(neighbors);
-		if (Arrays.binarySearch(neighbors, nodeIndex) < 0) {
-			neighborhood = new int[neighbors.length + 1];
-			System.arraycopy(neighbors, 0, neighborhood, 1, neighbors.length);
-			neighborhood[0] = nodeIndex;
-		} else {
-			neighborhood = neighbors;
-		}
-
-		//extract neighborhood subgraph
-		GraphPerspective gpNodeNeighborhood = inputNetwork.createGraphPerspective(neighborhood);
-		if (gpNodeNeighborhood == null) {
-			//this shouldn't happen
-			logger.error("In " + callerID + ": gpNodeNeighborhood was null.");
-			return null;
-		}
-
-		//calculate the node information for each node
-		NodeInfo nodeInfo = new NodeInfo();
-		//density
-		if (gpNodeNeighborhood != null) {
-			nodeInfo.density = calcDensity(gpNodeNeighborhood, params.isIncludeLoops());
-		}
-		nodeInfo.numNodeNeighbors = neighborhood.length;
-		//calculate the highest k-core
-		GraphPerspective gpCore = null;
-		Integer k = null;
-		Object[] returnArray = getHighestKCore(gpNodeNeighborhood);
-		k = (Integer) returnArray[0];
-		gpCore = (GraphPerspective) returnArray[1];
-		nodeInfo.coreLevel = k.intValue();
-		//calculate the core density - amplifies the density of heavily interconnected regions and attenuates
-		//that of less connected regions
-		if (gpCore != null) {
-			nodeInfo.coreDensity = calcDensity(gpCore, params.isIncludeLoops());
-		}
-		//record neighbor array for later use in cluster detection step
-		nodeInfo.nodeNeighbors = neighborhood;
-
-		return (nodeInfo);
-	}
-
 	/**
 	 * Find the high-scoring central region of the cluster.
 	 * This is a utility function for the algorithm.
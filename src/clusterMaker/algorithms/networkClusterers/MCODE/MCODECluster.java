@@ -82,6 +82,7 @@ public class MCODECluster extends AbstractNetworkClusterer  {
 	int degreeCutoff = 2;
 	int kCore = 2;
 	int maxDepth = 100;
+	int maxThreads = 0;
 
 
 	MCODEParameterSet currentParamsCopy;
@@ -130,7 +131,7 @@ public class MCODECluster extends AbstractNetworkClusterer  {
 
 				clusterProperties.add(new Tunable("scoring_panel",
 				                                  "Network Scoring",
-				                                  Tunable.GROUP, new Integer(2), new Boolean(true), 
+				                                  Tunable.GROUP, new Integer(3), new Boolean(true), 
 				                                  null, Tunable.COLLAPSABLE));
 
 				{
@@ -141,6 +142,12 @@ public class MCODECluster extends AbstractNetworkClusterer  {
 					clusterProperties.add(new Tunable("degreeCutoff",
 					                                  "Degree Cutoff", 
 					                                  Tunable.INTEGER, new Integer(degreeCutoff)));
+
+					// Maximum number of CPU's to use
+					clusterProperties.add(new Tunable("maxThreads",
+					                                  "Maximum number of threads",
+					                                  Tunable.INTEGER, new Integer(maxThreads),
+					                                  (Object)null, (Object)null, 0));
 				}
 
 				clusterProperties.add(new Tunable("cluster_panel",
@@ -207,6 +214,11 @@ public class MCODECluster extends AbstractNetworkClusterer  {
 			currentParamsCopy.setDegreeCutoff(degreeCutoff);
 		}
 
+		t = clusterProperties.get("maxThreads");
+		if ((t != null) && (t.valueChanged() || force)) {
+			maxThreads = ((Integer) t.getValue()).intValue();
+		}
+
 		t = clusterProperties.get("haircut");
 		if ((t != null) && (t.valueChanged() || force)) {
 			haircut = ((Boolean) t.getValue()).booleanValue();
@@ -259,7 +271,7 @@ public class MCODECluster extends AbstractNetworkClusterer  {
 
 		MCODECurrentParameters.getInstance().setParams(currentParamsCopy, "MCODE Result", network.getIdentifier());
 
-		runMCODE = new RunMCODE(logger, RESCORE, clusterAttributeName, network);
+		runMCODE = new RunMCODE(logger, RESCORE, clusterAttributeName, network, maxThreads);
 		List<NodeCluster> clusters = runMCODE.run(monitor);
 		if (canceled) {
 			logger.info("Canceled by user");
@@ -301,6 +313,7 @@ public class MCODECluster extends AbstractNetworkClusterer  {
 		params.add("nodeScoreCutoff="+currentParamsCopy.getNodeScoreCutoff());
 		params.add("fluff="+currentParamsCopy.isFluff());
 		params.add("haircut="+currentParamsCopy.isHaircut());
+		params.add("maxThreads="+maxThreads);
 		super.setParams(params);
 	}
 }
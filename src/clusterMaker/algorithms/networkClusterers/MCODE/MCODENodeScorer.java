@@ -0,0 +1,559 @@
+/**
+ * Copyright (c) 2010 The Regents of the University of California.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions, and the following disclaimer.
+ *   2. Redistributions in binary form must reproduce the above
+ *      copyright notice, this list of conditions, and the following
+ *      disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *   3. Redistributions must acknowledge that this software was
+ *      originally developed by the UCSF Computer Graphics Laboratory
+ *      under support by the NIH National Center for Research Resources,
+ *      grant P41-RR01081.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.MCODE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cytoscape.task.TaskMonitor;
+
+/**
+ * MCODENodeScorer calculates the MCODE node weights (neighborhood density,
+ * highest k-core of the neighborhood and its density) for every node of a
+ * network.  The network is copied once into compressed sparse rows, so
+ * scoring a node doesn't need to create any GraphPerspectives, and the nodes
+ * are spread over a thread pool in blocks.  Each thread keeps its own
+ * buffers for the neighborhoods, so no memory is allocated per node.
+ *
+ * The highest k-core of a neighborhood is found with the help of the core
+ * numbers of the whole network, which are calculated once in linear time.
+ * They bound the core numbers inside every neighborhood, and in most cases
+ * a single peel of the neighborhood at that bound finds its highest k-core.
+ * Only if that peel leaves nothing is the neighborhood fully decomposed.
+ *
+ * Nodes are numbered by ascending root graph index, and all results are
+ * returned as arrays indexed by that number.  Every node is scored by a
+ * single thread, so the results don't depend on the number of threads.
+ */
+class MCODENodeScorer {
+	// Nodes a worker scores at a time
+	private static final int BLOCK_SIZE = 256;
+
+	private int n;
+	// Sorted root graph indices of the nodes
+	private int[] rootIndices;
+	// Distinct neighbors of each node, sorted, and the number of edges to each
+	private int[] rowPtr;
+	private int[] colIdx;
+	private int[] edgeCount;
+	private int maxDegree = 0;
+	// Core number of each node in the whole network
+	private int[] coreNumber;
+
+	private int nThreads;
+	private volatile boolean canceled = false;
+	private TaskMonitor monitor = null;
+	private AtomicInteger scored = new AtomicInteger(0);
+	private int lastProgress = 0;
+
+	private int[] neighborhoodSize;
+	private double[] density;
+	private int[] coreLevel;
+	private double[] coreDensity;
+	private double[] score;
+
+	/**
+	 * Take a snapshot of a network.
+	 *
+	 * @param nodes the root graph indices of the nodes
+	 * @param sources the root graph index of the source of every edge
+	 * @param targets the root graph index of the target of every edge
+	 * @param nThreads the number of threads to score with.  Values less than 2
+	 *                 do all of the work on the calling thread.
+	 */
+	public MCODENodeScorer(int[] nodes, int[] sources, int[] targets, int nThreads) {
+		this.n = nodes.length;
+		this.nThreads = Math.max(1, nThreads);
+		rootIndices = new int[n];
+		System.arraycopy(nodes, 0, rootIndices, 0, n);
+		Arrays.sort(rootIndices);
+
+		// Every edge is stored in the rows of both ends, loops only once
+		int[] from = new int[sources.length];
+		int[] to = new int[sources.length];
+		int[] count = new int[n+1];
+		for (int e = 0; e < sources.length; e++) {
+			from[e] = indexOf(sources[e]);
+			to[e] = indexOf(targets[e]);
+			if (from[e] < 0 || to[e] < 0)
+				continue;
+			count[from[e]+1]++;
+			if (from[e] != to[e])
+				count[to[e]+1]++;
+		}
+		for (int i = 0; i < n; i++)
+			count[i+1] += count[i];
+		int[] adjacent = new int[count[n]];
+		int[] fill = new int[n];
+		System.arraycopy(count, 0, fill, 0, n);
+		for (int e = 0; e < sources.length; e++) {
+			if (from[e] < 0 || to[e] < 0)
+				continue;
+			adjacent[fill[from[e]]++] = to[e];
+			if (from[e] != to[e])
+				adjacent[fill[to[e]]++] = from[e];
+		}
+
+		// Collapse parallel edges into a single entry with an edge count
+		rowPtr = new int[n+1];
+		colIdx = new int[adjacent.length];
+		edgeCount = new int[adjacent.length];
+		int next = 0;
+		for (int i = 0; i < n; i++) {
+			Arrays.sort(adjacent, count[i], count[i+1]);
+			rowPtr[i] = next;
+			for (int k = count[i]; k < count[i+1]; k++) {
+				if (next > rowPtr[i] && colIdx[next-1] == adjacent[k]) {
+					edgeCount[next-1]++;
+				} else {
+					colIdx[next] = adjacent[k];
+					edgeCount[next++] = 1;
+				}
+			}
+			maxDegree = Math.max(maxDegree, count[i+1] - count[i]);
+		}
+		rowPtr[n] = next;
+
+		computeCoreNumbers();
+	}
+
+	/**
+	 * Compute the core number of every node in the whole network with the
+	 * O(m) bucket algorithm of Batagelj and Zaversnik.  A loop adds one to
+	 * the degree of its node.  The k-core of a neighborhood is always part
+	 * of the k-core of the network, so these are upper bounds for the core
+	 * numbers inside any neighborhood.
+	 */
+	private void computeCoreNumbers() {
+		coreNumber = new int[n];
+		for (int i = 0; i < n; i++) {
+			for (int k = rowPtr[i]; k < rowPtr[i+1]; k++)
+				coreNumber[i] += edgeCount[k];
+		}
+
+		int[] bin = new int[maxDegree+1];
+		int[] pos = new int[n];
+		int[] vert = new int[n];
+		for (int i = 0; i < n; i++)
+			bin[coreNumber[i]]++;
+		int start = 0;
+		for (int d = 0; d <= maxDegree; d++) {
+			int num = bin[d];
+			bin[d] = start;
+			start += num;
+		}
+		for (int i = 0; i < n; i++) {
+			pos[i] = bin[coreNumber[i]]++;
+			vert[pos[i]] = i;
+		}
+		for (int d = maxDegree; d > 0; d--)
+			bin[d] = bin[d-1];
+		bin[0] = 0;
+
+		for (int p = 0; p < n; p++) {
+			int v = vert[p];
+			for (int k = rowPtr[v]; k < rowPtr[v+1]; k++) {
+				int w = colIdx[k];
+				if (w == v)
+					continue;
+				for (int e = 0; e < edgeCount[k] && coreNumber[w] > coreNumber[v]; e++) {
+					// Move w one bucket down
+					int dw = coreNumber[w];
+					int pw = pos[w];
+					int pf = bin[dw];
+					int f = vert[pf];
+					if (f != w) {
+						pos[w] = pf;
+						vert[pw] = f;
+						pos[f] = pw;
+						vert[pf] = w;
+					}
+					bin[dw]++;
+					coreNumber[w]--;
+				}
+			}
+		}
+	}
+
+	public void halt() { canceled = true; }
+
+	public int getNodeCount() { return n; }
+
+	/**
+	 * Return the number of a node, or a negative value if the node isn't part
+	 * of the network.
+	 *
+	 * @param rootGraphIndex the root graph index of the node
+	 */
+	public int indexOf(int rootGraphIndex) {
+		return Arrays.binarySearch(rootIndices, rootGraphIndex);
+	}
+
+	public int getRootIndex(int node) { return rootIndices[node]; }
+
+	/**
+	 * Return the core number of every node in the whole network.
+	 */
+	public int[] getCoreNumbers() { return coreNumber; }
+
+	/**
+	 * Return the root graph indices of the neighborhood of a node the way
+	 * MCODE stores it: the node itself first (unless it has a loop) followed
+	 * by its sorted neighbors.  Nodes with less than two neighbors don't have
+	 * a neighborhood and get null.
+	 */
+	public int[] getNeighborhood(int node) {
+		if (neighborhoodSize[node] == 0)
+			return null;
+		int[] neighborhood = new int[neighborhoodSize[node]];
+		int next = 0;
+		if (neighborhoodSize[node] > rowPtr[node+1] - rowPtr[node])
+			neighborhood[next++] = rootIndices[node];
+		for (int k = rowPtr[node]; k < rowPtr[node+1]; k++)
+			neighborhood[next++] = rootIndices[colIdx[k]];
+		return neighborhood;
+	}
+
+	public int[] getNeighborhoodSizes() { return neighborhoodSize; }
+
+	public double[] getDensities() { return density; }
+
+	public int[] getCoreLevels() { return coreLevel; }
+
+	public double[] getCoreDensities() { return coreDensity; }
+
+	public double[] getScores() { return score; }
+
+	/**
+	 * Score all of the nodes.
+	 *
+	 * @param includeLoops include the possibility of loops in the densities
+	 * @param degreeCutoff nodes with neighborhoods of this size or smaller
+	 *                     get a score of 0
+	 * @param monitor the monitor to report the progress to, or null
+	 * @return false if scoring was canceled
+	 */
+	public boolean score(final boolean includeLoops, final int degreeCutoff, TaskMonitor monitor) {
+		canceled = false;
+		this.monitor = monitor;
+		scored.set(0);
+		lastProgress = 0;
+		neighborhoodSize = new int[n];
+		density = new double[n];
+		coreLevel = new int[n];
+		coreDensity = new double[n];
+		score = new double[n];
+
+		final AtomicInteger nextBlock = new AtomicInteger(0);
+		final int nBlocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int workers = Math.min(nThreads, nBlocks);
+		if (workers < 2) {
+			new Worker(nextBlock, nBlocks, includeLoops, degreeCutoff).call();
+			return !canceled;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>(workers);
+			for (int i = 0; i < workers; i++)
+				futures.add(pool.submit(new Worker(nextBlock, nBlocks, includeLoops, degreeCutoff)));
+			for (Future<Object> f: futures)
+				f.get();
+		} catch (InterruptedException e) {
+			canceled = true;
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Node scoring failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return !canceled;
+	}
+
+	private synchronized void progress(int count) {
+		if (monitor == null)
+			return;
+		int percent = (int)(((long)scored.addAndGet(count) * 100) / n);
+		if (percent > lastProgress) {
+			lastProgress = percent;
+			monitor.setPercentCompleted(percent);
+		}
+	}
+
+	/**
+	 * Scores blocks of nodes until there are none left.
+	 */
+	private class Worker implements Callable<Object> {
+		private AtomicInteger nextBlock;
+		private int nBlocks;
+		private boolean includeLoops;
+		private int degreeCutoff;
+
+		// Position of each node in the current neighborhood, -1 if it's not in it
+		private int[] local;
+		// The nodes of the current neighborhood
+		private int[] members;
+		// Degrees inside the neighborhood, which become core numbers
+		private int[] degree;
+		// Bucket sort by degree for the core decomposition
+		private int[] bin;
+		private int[] pos;
+		private int[] vert;
+
+		Worker(AtomicInteger nextBlock, int nBlocks, boolean includeLoops, int degreeCutoff) {
+			this.nextBlock = nextBlock;
+			this.nBlocks = nBlocks;
+			this.includeLoops = includeLoops;
+			this.degreeCutoff = degreeCutoff;
+			local = new int[n];
+			Arrays.fill(local, -1);
+			members = new int[maxDegree+1];
+			degree = new int[maxDegree+1];
+			bin = new int[maxDegree+2];
+			pos = new int[maxDegree+1];
+			vert = new int[maxDegree+1];
+		}
+
+		public Object call() {
+			for (int block = nextBlock.getAndIncrement(); block < nBlocks && !canceled;
+			     block = nextBlock.getAndIncrement()) {
+				int start = block*BLOCK_SIZE;
+				int end = Math.min(n, start+BLOCK_SIZE);
+				for (int node = start; node < end; node++)
+					scoreNode(node);
+				progress(end-start);
+			}
+			return null;
+		}
+
+		private void scoreNode(int node) {
+			int neighbors = rowPtr[node+1] - rowPtr[node];
+			if (neighbors >= 2) {
+				weighNeighborhood(node);
+			} else if (neighbors == 1) {
+				// With just one neighbor the weights are trivial
+				coreLevel[node] = 1;
+				coreDensity[node] = 1.0;
+				density[node] = 1.0;
+			}
+
+			// The score from the original MCODE paper selects for larger, denser cores
+			if (neighborhoodSize[node] > degreeCutoff)
+				score[node] = coreDensity[node] * (double) coreLevel[node];
+		}
+
+		private void weighNeighborhood(int node) {
+			// Collect the neighborhood, including the node itself
+			int size = 0;
+			for (int k = rowPtr[node]; k < rowPtr[node+1]; k++) {
+				local[colIdx[k]] = size;
+				members[size++] = colIdx[k];
+			}
+			if (local[node] < 0) {
+				local[node] = size;
+				members[size++] = node;
+			}
+			neighborhoodSize[node] = size;
+
+			density[node] = neighborhoodDensity(size, -1);
+			int k = peelAtBound(size);
+			if (k < 0)
+				k = coreDecomposition(size);
+			coreLevel[node] = k;
+			if (k > 0)
+				coreDensity[node] = neighborhoodDensity(size, k);
+
+			for (int i = 0; i < size; i++)
+				local[members[i]] = -1;
+		}
+
+		/**
+		 * The density of the neighborhood as MCODEAlgorithm.calcDensity defines
+		 * it, restricted to the members with the given core number if core
+		 * is not negative.
+		 */
+		private double neighborhoodDensity(int size, int core) {
+			int nodeCount = 0, edges = 0, loops = 0, loopCount = 0;
+			for (int i = 0; i < size; i++) {
+				if (core >= 0 && degree[i] != core)
+					continue;
+				nodeCount++;
+				int u = members[i];
+				for (int k = rowPtr[u]; k < rowPtr[u+1]; k++) {
+					int j = local[colIdx[k]];
+					if (j < 0 || (core >= 0 && degree[j] != core))
+						continue;
+					if (j == i) {
+						loops += edgeCount[k];
+						loopCount++;
+					} else {
+						edges += edgeCount[k];
+					}
+				}
+			}
+			// Edges between different nodes were seen from both ends
+			int actualEdgeNum = edges/2 + loops;
+			if (includeLoops)
+				actualEdgeNum -= loopCount;
+			return (double) actualEdgeNum / (double) (nodeCount * nodeCount);
+		}
+
+		/**
+		 * Try to find the highest k-core of the neighborhood without a full
+		 * decomposition.  No member can have a higher core number than its
+		 * degree in the neighborhood or its core number in the network, so
+		 * the largest of these limits is an upper bound for the highest k-core.  If peeling
+		 * the neighborhood at that bound leaves any members, they are the
+		 * highest k-core: their degree is set to the bound and that of the
+		 * others to -1, and the bound is returned.  Otherwise -1 is returned.
+		 */
+		private int peelAtBound(int size) {
+			int bound = 0;
+			for (int i = 0; i < size; i++) {
+				int u = members[i];
+				int d = 0;
+				for (int k = rowPtr[u]; k < rowPtr[u+1]; k++) {
+					if (local[colIdx[k]] >= 0)
+						d += edgeCount[k];
+				}
+				degree[i] = d;
+				bound = Math.max(bound, Math.min(d, coreNumber[u]));
+			}
+			if (bound == 0)
+				return -1;
+
+			// Remove the members that can't be in the core, and everything that
+			// falls below the bound without them
+			int top = 0;
+			for (int i = 0; i < size; i++) {
+				if (degree[i] < bound || coreNumber[members[i]] < bound) {
+					degree[i] = -1;
+					vert[top++] = i;
+				}
+			}
+			while (top > 0) {
+				int v = vert[--top];
+				int u = members[v];
+				for (int k = rowPtr[u]; k < rowPtr[u+1]; k++) {
+					int w = local[colIdx[k]];
+					if (w < 0 || w == v || degree[w] < 0)
+						continue;
+					degree[w] -= edgeCount[k];
+					if (degree[w] < bound) {
+						degree[w] = -1;
+						vert[top++] = w;
+					}
+				}
+			}
+
+			int left = 0;
+			for (int i = 0; i < size; i++) {
+				if (degree[i] >= 0) {
+					degree[i] = bound;
+					left++;
+				}
+			}
+			return left > 0 ? bound : -1;
+		}
+
+		/**
+		 * Compute the core number of every member of the neighborhood into
+		 * degree, using the bucket algorithm of Batagelj and Zaversnik, and
+		 * return the highest one.  A loop adds one to the degree of its node.
+		 */
+		private int coreDecomposition(int size) {
+			int md = 0;
+			for (int i = 0; i < size; i++) {
+				int u = members[i];
+				int d = 0;
+				for (int k = rowPtr[u]; k < rowPtr[u+1]; k++) {
+					if (local[colIdx[k]] >= 0)
+						d += edgeCount[k];
+				}
+				degree[i] = d;
+				md = Math.max(md, d);
+			}
+
+			Arrays.fill(bin, 0, md+1, 0);
+			for (int i = 0; i < size; i++)
+				bin[degree[i]]++;
+			int start = 0;
+			for (int d = 0; d <= md; d++) {
+				int num = bin[d];
+				bin[d] = start;
+				start += num;
+			}
+			for (int i = 0; i < size; i++) {
+				pos[i] = bin[degree[i]]++;
+				vert[pos[i]] = i;
+			}
+			for (int d = md; d > 0; d--)
+				bin[d] = bin[d-1];
+			bin[0] = 0;
+
+			int highest = 0;
+			for (int p = 0; p < size; p++) {
+				int v = vert[p];
+				highest = Math.max(highest, degree[v]);
+				int u = members[v];
+				for (int k = rowPtr[u]; k < rowPtr[u+1]; k++) {
+					int w = local[colIdx[k]];
+					if (w < 0 || w == v)
+						continue;
+					for (int e = 0; e < edgeCount[k] && degree[w] > degree[v]; e++) {
+						// Move w one bucket down
+						int dw = degree[w];
+						int pw = pos[w];
+						int pf = bin[dw];
+						int f = vert[pf];
+						if (f != w) {
+							pos[w] = pf;
+							vert[pw] = f;
+							pos[f] = pw;
+							vert[pf] = w;
+						}
+						bin[dw]++;
+						degree[w]--;
+					}
+				}
+			}
+			return highest;
+		}
+	}
+}
@@ -63,14 +63,15 @@ public class RunMCODE {
 	 * @param network The network to cluster
 	 * @param analyze Tells the task if we need to rescore and/or refind
 	 * @param resultSet Identifier of the current result set
-	 * @param alg reference to the algorithm for this network
+	 * @param maxThreads The maximum number of threads used for scoring, 0 for the default
 	 */
-	public RunMCODE(CyLogger logger, int analyze, String resultSet, CyNetwork network) {
+	public RunMCODE(CyLogger logger, int analyze, String resultSet, CyNetwork network, int maxThreads) {
 		this.logger = logger;
 		this.analyze = analyze;
 		this.resultSet = resultSet;
 		this.network = network;
 		this.alg = new MCODEAlgorithm(network.getIdentifier(), logger);
+		this.alg.setMaxThreads(maxThreads);
 	}
 
 	/**
@@ -0,0 +1,392 @@
+/**
+ * Copyright (c) 2010 The Regents of the University of California.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions, and the following disclaimer.
+ *   2. Redistributions in binary form must reproduce the above
+ *      copyright notice, this list of conditions, and the following
+ *      disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *   3. Redistributions must acknowledge that this software was
+ *      originally developed by the UCSF Computer Graphics Laboratory
+ *      under support by the NIH National Center for Research Resources,
+ *      grant P41-RR01081.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.SCPS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cern.colt.function.IntIntDoubleFunction;
+import cern.colt.matrix.DoubleFactory1D;
+import cern.colt.matrix.DoubleFactory2D;
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.linalg.EigenvalueDecomposition;
+
+/**
+ * LanczosSolver computes the largest eigenvalues of a sparse symmetric
+ * matrix and their eigenvectors without ever forming a dense copy of the
+ * matrix.  The matrix is kept in compressed sparse rows and only used for
+ * matrix-vector products, which are spread over a thread pool in blocks of
+ * rows.
+ *
+ * We use the thick-restart Lanczos method: the Krylov basis is grown to a
+ * fixed size with full reorthogonalization, the (small) projected matrix is
+ * decomposed, and if the wanted Ritz pairs haven't converged yet the basis is
+ * shrunk to the best Ritz vectors plus the residual and grown again.  Small
+ * matrices just get a dense decomposition.
+ *
+ * The eigenpairs are kept, so asking for more of them later starts from the
+ * ones we already have instead of from scratch.  The same path takes
+ * eigenpairs that are known in advance: a Krylov basis grown from a single
+ * vector only ever holds one vector of each eigenspace, so the copies of a
+ * repeated eigenvalue have to be given to the solver to be found at all.
+ */
+class LanczosSolver {
+	// Below this size a dense decomposition is cheaper than iterating
+	private static final int DENSE_SIZE = 500;
+	// Rows a worker multiplies at a time
+	private static final int BLOCK_SIZE = 1024;
+	private static final int MAX_RESTARTS = 500;
+	private static final double TOLERANCE = 1e-8;
+
+	private int n;
+	private int[] rowPtr;
+	private int[] colIdx;
+	private double[] values;
+	private DoubleMatrix2D matrix;
+
+	private int nThreads;
+	private ExecutorService pool = null;
+	private volatile boolean canceled = false;
+
+	// The eigenpairs computed so far, in ascending order
+	private double[] eigenValues = new double[0];
+	private double[][] eigenVectors = new double[0][];
+
+	/**
+	 * Create a solver for a symmetric matrix.
+	 *
+	 * @param matrix the matrix.  Only the non-zero values are read.
+	 * @param nThreads the number of threads for the matrix-vector products.
+	 *                 Values less than 2 do all of the work on the calling thread.
+	 */
+	public LanczosSolver(DoubleMatrix2D matrix, int nThreads) {
+		this.matrix = matrix;
+		this.n = matrix.rows();
+		this.nThreads = Math.max(1, nThreads);
+
+		rowPtr = new int[n+1];
+		matrix.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int column, double value) {
+				rowPtr[row+1]++;
+				return value;
+			}
+		});
+		for (int row = 0; row < n; row++)
+			rowPtr[row+1] += rowPtr[row];
+		colIdx = new int[rowPtr[n]];
+		values = new double[rowPtr[n]];
+		final int[] fill = new int[n];
+		System.arraycopy(rowPtr, 0, fill, 0, n);
+		matrix.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int column, double value) {
+				colIdx[fill[row]] = column;
+				values[fill[row]++] = value;
+				return value;
+			}
+		});
+	}
+
+	public void halt() { canceled = true; }
+
+	public int rows() { return n; }
+
+	/**
+	 * Return the number of eigenpairs computed so far.
+	 */
+	public int getComputed() { return eigenValues.length; }
+
+	/**
+	 * Give the solver eigenvectors that are already known.  They all belong to
+	 * value, which has to be the largest eigenvalue of the matrix, and there
+	 * have to be as many of them as it has copies.  They are used as they are
+	 * by the Lanczos method and replaced by the dense decomposition.
+	 *
+	 * @param value the largest eigenvalue of the matrix
+	 * @param vectors its eigenvectors, orthogonal to each other
+	 */
+	public void setLargestEigenpairs(double value, double[][] vectors) {
+		eigenValues = new double[vectors.length];
+		eigenVectors = new double[vectors.length][];
+		for (int x = 0; x < vectors.length; x++) {
+			double[] v = vectors[x].clone();
+			scale(1.0/Math.sqrt(dot(v, v)), v);
+			eigenValues[x] = value;
+			eigenVectors[x] = v;
+		}
+	}
+
+	/**
+	 * Compute the nev largest eigenvalues and their eigenvectors, unless we
+	 * already have them.
+	 *
+	 * @param nev the number of eigenpairs to compute
+	 */
+	public void solve(int nev) {
+		canceled = false;
+		nev = Math.max(1, Math.min(nev, n));
+		if (nev <= eigenValues.length)
+			return;
+		if (n <= DENSE_SIZE || 2*nev >= n) {
+			solveDense(nev);
+			return;
+		}
+
+		if (nThreads > 1 && n > BLOCK_SIZE)
+			pool = Executors.newFixedThreadPool(nThreads);
+		try {
+			solveLanczos(nev);
+		} finally {
+			if (pool != null)
+				pool.shutdownNow();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Return the count largest computed eigenvalues in ascending order.
+	 */
+	public DoubleMatrix1D getEigenvalues(int count) {
+		DoubleMatrix1D values = DoubleFactory1D.dense.make(count);
+		for (int x = 0; x < count; x++)
+			values.setQuick(x, eigenValues[eigenValues.length-count+x]);
+		return values;
+	}
+
+	/**
+	 * Return the eigenvectors of the count largest computed eigenvalues as
+	 * columns, in the same order as the eigenvalues.
+	 */
+	public DoubleMatrix2D getEigenvectors(int count) {
+		DoubleMatrix2D vectors = DoubleFactory2D.dense.make(n, count);
+		for (int x = 0; x < count; x++) {
+			double[] v = eigenVectors[eigenVectors.length-count+x];
+			for (int row = 0; row < n; row++)
+				vectors.setQuick(row, x, v[row]);
+		}
+		return vectors;
+	}
+
+	// We have the whole matrix anyway, so keep all of the eigenpairs
+	private void solveDense(int nev) {
+		EigenvalueDecomposition decomp = new EigenvalueDecomposition(DoubleFactory2D.dense.make(matrix.toArray()));
+		eigenValues = decomp.getRealEigenvalues().toArray();
+		DoubleMatrix2D v = decomp.getV();
+		eigenVectors = new double[n][];
+		for (int x = 0; x < n; x++)
+			eigenVectors[x] = v.viewColumn(x).toArray();
+	}
+
+	private void solveLanczos(int nev) {
+		int ncv = Math.min(n, Math.max(2*nev+1, nev+20));
+		double[][] basis = new double[ncv][];
+		double[][] t = new double[ncv][ncv];
+		double[] residual = new double[n];
+		double beta = 0.0;
+		Random random = new Random(1);
+
+		// Start with the eigenpairs we already have, largest first
+		int kept = eigenValues.length;
+		for (int x = 0; x < kept; x++) {
+			basis[x] = eigenVectors[kept-1-x];
+			t[x][x] = eigenValues[kept-1-x];
+		}
+		basis[kept] = randomVector(random, basis, kept);
+		double[] ritzValues = null;
+		double[][] ritzVectors = null;
+
+		for (int restart = 0; restart <= MAX_RESTARTS; restart++) {
+			// Grow the basis, the projection of the matrix goes into t
+			for (int j = kept; j < ncv; j++) {
+				double[] w = new double[n];
+				multiply(basis[j], w);
+				for (int i = 0; i <= j; i++)
+					t[i][j] = 0.0;
+				// Orthogonalize twice against the whole basis
+				for (int pass = 0; pass < 2; pass++) {
+					for (int i = 0; i <= j; i++) {
+						double h = dot(basis[i], w);
+						axpy(-h, basis[i], w);
+						t[i][j] += h;
+					}
+				}
+				for (int i = 0; i < j; i++)
+					t[j][i] = t[i][j];
+				beta = Math.sqrt(dot(w, w));
+				if (j+1 < ncv) {
+					if (beta < TOLERANCE) {
+						// The basis spans an invariant subspace, just carry on with a new direction
+						basis[j+1] = randomVector(random, basis, j+1);
+					} else {
+						scale(1.0/beta, w);
+						basis[j+1] = w;
+					}
+				} else {
+					residual = w;
+				}
+			}
+
+			// Ritz pairs: ascending, so the wanted ones are at the end
+			EigenvalueDecomposition decomp = new EigenvalueDecomposition(DoubleFactory2D.dense.make(t));
+			ritzValues = decomp.getRealEigenvalues().toArray();
+			ritzVectors = decomp.getV().toArray();
+
+			boolean converged = true;
+			for (int i = ncv-nev; i < ncv; i++) {
+				double error = Math.abs(beta*ritzVectors[ncv-1][i]);
+				if (error > TOLERANCE*Math.max(1.0, Math.abs(ritzValues[i])))
+					converged = false;
+			}
+			if (converged || canceled || restart == MAX_RESTARTS)
+				break;
+
+			// Restart with the best Ritz vectors and the residual
+			int keep = Math.min(nev + (ncv-nev)/2, ncv-1);
+			double[][] newBasis = new double[ncv][];
+			for (int x = 0; x < keep; x++) {
+				int column = ncv-1-x;
+				newBasis[x] = combine(basis, ritzVectors, column);
+				for (int i = 0; i < ncv; i++)
+					t[x][i] = t[i][x] = 0.0;
+				t[x][x] = ritzValues[column];
+			}
+			basis = newBasis;
+			if (beta < TOLERANCE) {
+				basis[keep] = randomVector(random, basis, keep);
+			} else {
+				scale(1.0/beta, residual);
+				basis[keep] = residual;
+			}
+			kept = keep;
+		}
+
+		if (canceled)
+			return;
+		eigenValues = new double[nev];
+		eigenVectors = new double[nev][];
+		for (int x = 0; x < nev; x++) {
+			int column = ncv-nev+x;
+			eigenValues[x] = ritzValues[column];
+			eigenVectors[x] = combine(basis, ritzVectors, column);
+		}
+	}
+
+	// The basis vectors combined with the given column of coefficients
+	private double[] combine(double[][] basis, double[][] coefficients, int column) {
+		double[] v = new double[n];
+		for (int i = 0; i < basis.length; i++)
+			axpy(coefficients[i][column], basis[i], v);
+		return v;
+	}
+
+	// A random unit vector orthogonal to the first count basis vectors
+	private double[] randomVector(Random random, double[][] basis, int count) {
+		double[] v = new double[n];
+		for (int i = 0; i < n; i++)
+			v[i] = random.nextDouble()-0.5;
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < count; i++)
+				axpy(-dot(basis[i], v), basis[i], v);
+		}
+		scale(1.0/Math.sqrt(dot(v, v)), v);
+		return v;
+	}
+
+	private static double dot(double[] x, double[] y) {
+		double sum = 0.0;
+		for (int i = 0; i < x.length; i++)
+			sum += x[i]*y[i];
+		return sum;
+	}
+
+	private static void axpy(double a, double[] x, double[] y) {
+		for (int i = 0; i < x.length; i++)
+			y[i] += a*x[i];
+	}
+
+	private static void scale(double a, double[] x) {
+		for (int i = 0; i < x.length; i++)
+			x[i] *= a;
+	}
+
+	private void multiplyRows(double[] x, double[] y, int start, int end) {
+		for (int row = start; row < end; row++) {
+			double sum = 0.0;
+			for (int p = rowPtr[row]; p < rowPtr[row+1]; p++)
+				sum += values[p]*x[colIdx[p]];
+			y[row] = sum;
+		}
+	}
+
+	/**
+	 * y = A*x.  Every row is summed up by a single thread, so the result
+	 * doesn't depend on the number of threads.
+	 */
+	private void multiply(final double[] x, final double[] y) {
+		if (pool == null) {
+			multiplyRows(x, y, 0, n);
+			return;
+		}
+
+		final AtomicInteger nextBlock = new AtomicInteger(0);
+		final int nBlocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(nThreads);
+		for (int i = 0; i < nThreads; i++) {
+			futures.add(pool.submit(new Callable<Object>() {
+				public Object call() {
+					for (int block = nextBlock.getAndIncrement(); block < nBlocks;
+					     block = nextBlock.getAndIncrement()) {
+						int start = block*BLOCK_SIZE;
+						multiplyRows(x, y, start, Math.min(n, start+BLOCK_SIZE));
+					}
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<Object> f: futures)
+				f.get();
+		} catch (InterruptedException e) {
+			canceled = true;
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Matrix multiplication failed", e.getCause());
+		}
+	}
+}
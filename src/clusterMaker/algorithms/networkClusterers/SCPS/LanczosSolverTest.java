@@ -0,0 +1,132 @@
+package clusterMaker.algorithms.networkClusterers.SCPS;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import cern.colt.matrix.DoubleFactory2D;
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.SparseDoubleMatrix2D;
+import cern.colt.matrix.linalg.EigenvalueDecomposition;
+
+public class LanczosSolverTest {
+
+	private static final double TOLERANCE = 1e-8;
+
+	/**
+	 * Build a similarity matrix S of the given number of connected components,
+	 * each a random tree plus a few random edges, with ones on the diagonal
+	 * like the one from RunSCPS.getSMat.
+	 */
+	private DoubleMatrix2D createSMat(Random random, int components, int size) {
+		int n = components*size;
+		DoubleMatrix2D sMat = new SparseDoubleMatrix2D(n, n);
+		for (int c = 0; c < components; c++) {
+			int first = c*size;
+			for (int i = 0; i < size; i++) {
+				sMat.setQuick(first+i, first+i, 1.0);
+				int others = (i == 0) ? 0 : 1 + random.nextInt(3);
+				for (int e = 0; e < others; e++) {
+					int j = (e == 0) ? random.nextInt(i) : random.nextInt(size);
+					if (j == i)
+						continue;
+					double value = 0.05 + random.nextDouble();
+					sMat.setQuick(first+i, first+j, value);
+					sMat.setQuick(first+j, first+i, value);
+				}
+			}
+		}
+		return sMat;
+	}
+
+	private double[] getDegrees(DoubleMatrix2D sMat) {
+		double[] degrees = new double[sMat.rows()];
+		for (int i = 0; i < degrees.length; i++)
+			degrees[i] = sMat.viewRow(i).zSum();
+		return degrees;
+	}
+
+	// L = D^-1/2 * S * D^-1/2
+	private DoubleMatrix2D getLMat(DoubleMatrix2D sMat) {
+		int n = sMat.rows();
+		double[] degrees = getDegrees(sMat);
+		DoubleMatrix2D lMat = new SparseDoubleMatrix2D(n, n);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				double value = sMat.getQuick(i, j);
+				if (value != 0.0)
+					lMat.setQuick(i, j, value/Math.sqrt(degrees[i]*degrees[j]));
+			}
+		}
+		return lMat;
+	}
+
+	// D^1/2 * 1_c for each component c, the eigenvectors of eigenvalue 1 of L
+	private double[][] getComponentVectors(DoubleMatrix2D sMat, int components, int size) {
+		double[] degrees = getDegrees(sMat);
+		double[][] vectors = new double[components][sMat.rows()];
+		for (int c = 0; c < components; c++) {
+			for (int i = c*size; i < (c+1)*size; i++)
+				vectors[c][i] = Math.sqrt(degrees[i]);
+		}
+		return vectors;
+	}
+
+	/**
+	 * Solve for the nev largest eigenpairs with the Lanczos method and check
+	 * them against a dense decomposition of the same matrix.
+	 */
+	private void compare(int components, int size, int nev) {
+		Random random = new Random(components);
+		DoubleMatrix2D sMat = createSMat(random, components, size);
+		DoubleMatrix2D lMat = getLMat(sMat);
+		int n = lMat.rows();
+		assertTrue("the Lanczos path is used", n > 500 && 2*nev < n);
+
+		LanczosSolver solver = new LanczosSolver(lMat, 2);
+		solver.setLargestEigenpairs(1.0, getComponentVectors(sMat, components, size));
+		solver.solve(nev);
+		assertTrue(solver.getComputed() >= nev);
+
+		EigenvalueDecomposition decomp = new EigenvalueDecomposition(DoubleFactory2D.dense.make(lMat.toArray()));
+		DoubleMatrix1D expected = decomp.getRealEigenvalues();
+		DoubleMatrix1D actual = solver.getEigenvalues(nev);
+		for (int x = 0; x < nev; x++)
+			assertEquals("eigenvalue "+x, expected.get(n-nev+x), actual.get(x), TOLERANCE);
+
+		// Any basis of a repeated eigenvalue will do, so check the vectors by their residuals
+		DoubleMatrix2D vectors = solver.getEigenvectors(nev);
+		for (int x = 0; x < nev; x++) {
+			DoubleMatrix1D v = vectors.viewColumn(x);
+			DoubleMatrix1D lv = lMat.zMult(v, null);
+			assertEquals(1.0, v.zDotProduct(v), TOLERANCE);
+			for (int i = 0; i < n; i++)
+				assertEquals("residual of eigenvector "+x, actual.get(x)*v.get(i), lv.get(i), 1e-6);
+			for (int y = 0; y < x; y++)
+				assertEquals(0.0, v.zDotProduct(vectors.viewColumn(y)), 1e-6);
+		}
+	}
+
+	@Test
+	public void testOneComponent() {
+		compare(1, 800, 50);
+	}
+
+	@Test
+	public void testTenComponents() {
+		compare(10, 80, 50);
+	}
+
+	@Test
+	public void testFortyComponents() {
+		compare(40, 20, 50);
+	}
+
+	@Test
+	public void testMoreComponentsThanEigenvalues() {
+		compare(100, 8, 50);
+	}
+}
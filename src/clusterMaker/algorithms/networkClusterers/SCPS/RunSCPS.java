@@ -61,12 +61,6 @@ import cern.colt.matrix.DoubleFactory2D;
 import cern.colt.matrix.DoubleMatrix1D;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.SparseDoubleMatrix2D;
-import cern.colt.matrix.linalg.EigenvalueDecomposition;
-import cern.colt.matrix.linalg.SingularValueDecomposition;
-
-
-
-import cern.colt.matrix.linalg.Algebra;
 import cern.colt.list.IntArrayList;
 import cern.colt.list.DoubleArrayList;
 
@@ -74,7 +68,8 @@ import clusterMaker.algorithms.networkClusterers.SCPS.KCluster;
 
 public class RunSCPS {
 
-       
+        //Number of eigenvalues we start with to choose K if it isn't given
+        private static final int INITIAL_EIGENVALUES = 20;
        
         private List<CyNode> nodes;
         private List<CyEdge> edges;
@@ -89,9 +84,14 @@ public class RunSCPS {
         
 	private double epsilon;
 	private int kvalue;
+	private int maxK;
         private int rnumber;
 	private DoubleMatrix2D LMat;
         private int numComponents;
+        private int nThreads = Runtime.getRuntime().availableProcessors()-1;
+        private LanczosSolver solver = null;
+        private SpectrumCache spectrumCache = null;
+        private String cacheKey = null;
 
         private  HashMap<Integer, NodeCluster> clusterMap;
 
@@ -100,12 +100,15 @@ public class RunSCPS {
 
         
 
-        public RunSCPS(DistanceMatrix dMat, double epsilon, int kvalue, int rnumber, CyLogger logger )
+        public RunSCPS(DistanceMatrix dMat, double epsilon, int kvalue, int maxK, int rnumber, int maxThreads, CyLogger logger )
         {
                 this.distanceMatrix = dMat;
                 this.epsilon = epsilon;
                 this.kvalue = kvalue;
+		this.maxK = maxK;
 		this.rnumber = rnumber; 
+		if (maxThreads > 0)
+			this.nThreads = maxThreads;
                 
                 this.logger = logger;
 		this.clusterMap = new HashMap<Integer,NodeCluster>();
@@ -121,7 +124,17 @@ public class RunSCPS {
 	}
 
 
-        public void halt () { canceled = true; }
+        //Reuse the eigenpairs stored under key if the Laplacian hasn't changed, and store ours there
+        public void setSpectrumCache(SpectrumCache spectrumCache, String key){
+		this.spectrumCache = spectrumCache;
+		this.cacheKey = key;
+	}
+
+        public void halt () {
+		canceled = true;
+		if (solver != null)
+			solver.halt();
+	}
 
         public List<NodeCluster> run(TaskMonitor monitor)
         {
@@ -132,18 +145,33 @@ public class RunSCPS {
 	    DoubleMatrix2D sMat = getSMat(this.distanceMatrix);
 	    DoubleMatrix2D LMat = getLMat(sMat);
 	    
+	    //Only the top eigenvectors are used, so don't decompose the whole matrix
 	    monitor.setStatus("Calculating Eigenvalues");
-	    EigenvalueDecomposition decomp = new EigenvalueDecomposition(LMat);
-	    DoubleMatrix2D eigenVect = decomp.getV();
-	    DoubleMatrix1D eigenVal = decomp.getRealEigenvalues();
+	    long fingerprint = SpectrumCache.fingerprint(LMat);
+	    solver = null;
+	    if(spectrumCache != null)
+		solver = spectrumCache.get(cacheKey, fingerprint);
+	    if(solver == null){
+		solver = new LanczosSolver(LMat, nThreads);
+		solver.setLargestEigenpairs(1.0, getComponentVectors(sMat));
+	    }
+	    else
+		logger.info("Reusing "+solver.getComputed()+" eigenvalues from the last run");
 
-	    
-	    monitor.setStatus("Calculating K value");
+	    if(this.kvalue > -1){
+		solver.solve(this.kvalue);
+		k = Math.min(this.kvalue, solver.getComputed());
+	    }
+	    else{
+		monitor.setStatus("Calculating K value");
+		k = estimateK(solver);
+	    }
 
-	    if(this.kvalue > -1)
-		k = this.kvalue;
-	    else
-	       k = getK(eigenVal,.3);
+	    if (canceled)
+		return null;
+
+	    if(spectrumCache != null)
+		spectrumCache.put(cacheKey, fingerprint, solver);
 		       
 	    System.out.println("K is " + k);
 
@@ -154,7 +182,7 @@ public class RunSCPS {
 	    }
 
 	    monitor.setStatus("Creating uMatrix for kMeans");
-	    DoubleMatrix2D uMat = getUMat(eigenVect,k);
+	    DoubleMatrix2D uMat = getUMat(solver.getEigenvectors(k),k);
             monitor.setStatus("Running kmeans clustering");
 	    doKMeansClustering(uMat,sMat);
 
@@ -290,72 +318,111 @@ public class RunSCPS {
 
        }
        
-         //Calculate negative square root of matrix using singular value decomposition
-         public DoubleMatrix2D getNegSqrRoot(DoubleMatrix2D A){
-
-	     //A = USV, where S is Diagnol Matrix
-	     SingularValueDecomposition decomp = new SingularValueDecomposition(A);
-	     DoubleMatrix2D U = decomp.getU();
-	     DoubleMatrix2D S = decomp.getS();
-	     DoubleMatrix2D V = decomp.getV();
-
-	     //S^1/2 = Square root of every value in diangol matrix
-	     for(int i = 0; i < S.rows(); i++)
-		 S.set(i,i,Math.pow(S.get(i,i),.5));
-		
-
-	     //A^1/2 = VS^1/2U
-	     Algebra alg = new Algebra();
-	     DoubleMatrix2D sqrtA = alg.mult(alg.mult(V,S),U);
+	// L = D^-1/2 * S * D^-1/2.  D is diagonal, so this just scales S_ij by 1/sqrt(D_ii*D_jj)
+	public DoubleMatrix2D getLMat(DoubleMatrix2D sMat){
 
-	    
+		final double[] scale = getDegrees(sMat);
+		for(int i = 0; i < scale.length; i++)
+			scale[i] = Math.pow(scale[i],-.5);
 
-	     //return A^-1/2
-	     return alg.inverse(sqrtA);
-	     
-	     
-	 }
+		DoubleMatrix2D lMat = sMat.copy();
+		lMat.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int column, double value) {
+				return value*scale[row]*scale[column];
+			}
+		});
+		return lMat;
+	}
 
-         //Return Negative Sqrt of a Diagnol Matrix
-         public DoubleMatrix2D getNegSqrRootDMat(DoubleMatrix2D dMat){
 
-	     for(int i = 0; i < dMat.rows(); i++)
-		 dMat.set(i,i,Math.pow(dMat.get(i,i),-.5));
+	//D is Diagonal Matrix formed of vertex degree Dii = Sum Columns j over row Si
+	public double[] getDegrees(DoubleMatrix2D sMat){
 
-	     return dMat;
-	 }
+		final double[] degrees = new double[sMat.rows()];
+		sMat.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int column, double value) {
+				degrees[row] += value;
+				return value;
+			}
+		});
+		return degrees;
+	}
 
 
-	// L = D^-1/2 * S * D^-1/2
-	public DoubleMatrix2D getLMat(DoubleMatrix2D sMat){
+	//L has eigenvalue 1 once per connected component c of S, with eigenvector D^1/2 * 1_c
+	public double[][] getComponentVectors(DoubleMatrix2D sMat){
 
-	        Algebra alg = new Algebra();
-		DoubleMatrix2D dMat = getDMat(sMat);
-		DoubleMatrix2D transDMat = getNegSqrRootDMat(dMat);
-	
-		return alg.mult(transDMat,alg.mult(sMat,transDMat));
+		final int n = sMat.rows();
+		final IntArrayList[] neighbors = new IntArrayList[n];
+		for(int i = 0; i < n; i++)
+			neighbors[i] = new IntArrayList();
+		sMat.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int column, double value) {
+				neighbors[row].add(column);
+				return value;
+			}
+		});
+
+		double[] degrees = getDegrees(sMat);
+		int[] component = new int[n];
+		Arrays.fill(component, -1);
+		List<double[]> vectors = new ArrayList<double[]>();
+		IntArrayList queue = new IntArrayList();
+		for(int start = 0; start < n; start++){
+
+			if(component[start] > -1)
+				continue;
+
+			double[] v = new double[n];
+			component[start] = vectors.size();
+			queue.clear();
+			queue.add(start);
+			for(int q = 0; q < queue.size(); q++){
+
+				int i = queue.get(q);
+				v[i] = Math.sqrt(degrees[i]);
+				for(int x = 0; x < neighbors[i].size(); x++){
+					int j = neighbors[i].get(x);
+					if(component[j] < 0){
+						component[j] = vectors.size();
+						queue.add(j);
+					}
+				}
+			}
+			vectors.add(v);
+		}
+		return vectors.toArray(new double[vectors.size()][]);
 	}
 
 
-	//D is Diagonal Matrix formed of vertex degree Dii = Sum Columns j over row Si
-	public DoubleMatrix2D getDMat(DoubleMatrix2D sMat){
-	
-	
-		DoubleMatrix2D dMat = sMat.like();
-
-		for(int i = 0; i < sMat.rows(); i++){
+        
+	//Get K from as few of the top eigenvalues as possible: start with a few and double them
+	//until getK stops within the ones we have, or we have maxK+1 of them
+	public int estimateK(LanczosSolver solver){
+
+		int limit = solver.rows();
+		if(maxK > 0)
+			limit = Math.min(maxK+1, limit);
+
+		int nev = Math.min(Math.max(INITIAL_EIGENVALUES, solver.getComputed()), limit);
+		while(true){
+
+			solver.solve(nev);
+			if(canceled)
+				return 0;
+
+			int count = Math.min(solver.getComputed(), limit);
+			int k = getK(solver.getEigenvalues(count),.3);
+			if(k < count || count >= limit){
+				if(maxK > 0)
+					k = Math.min(k, maxK);
+				return k;
+			}
 
-			//set the Diagnal (i,i) to sum of columns over row i
-			dMat.set(i,i, sMat.viewRow(i).zSum());
+			nev = Math.min(2*nev, limit);
 		}
-
-		
-		return dMat;	
-
 	}
 
-
-        
 	//Get K using eigenvetors of S Matrix
 	public int getK(DoubleMatrix1D eigenVal, double minLambda){
 
@@ -70,7 +70,10 @@ public class SCPSCluster extends AbstractNetworkClusterer  {
 	double epsilon = 1.02;
 	int rNumber = 50;
 	int knumber = -1;
+	int maxK = 100;
+	int maxThreads = 0;
 	RunSCPS runSCPS = null;
+	SpectrumCache spectrumCache = new SpectrumCache();
 
 	public SCPSCluster() {
 		super();
@@ -101,7 +104,7 @@ public class SCPSCluster extends AbstractNetworkClusterer  {
 		 */
 		clusterProperties.add(new Tunable("tunables_panel",
 		                                  "SCPS Tuning",
-		                                  Tunable.GROUP, new Integer(3)));
+		                                  Tunable.GROUP, new Integer(5)));
 
 		// Lambda Parameter
 		clusterProperties.add(new Tunable("epsilon",
@@ -123,6 +126,18 @@ public class SCPSCluster extends AbstractNetworkClusterer  {
                                                   Tunable.INTEGER, new Integer(knumber),
                                                   (Object)null, (Object)null, 0));
 
+		// Upper bound for K when it is estimated from the eigenvalues
+		clusterProperties.add(new Tunable("maxK",
+		                                  "Maximum number of clusters to estimate",
+		                                  Tunable.INTEGER, new Integer(maxK),
+		                                  (Object)null, (Object)null, 0));
+
+		// Maximum number of CPU's to use
+		clusterProperties.add(new Tunable("maxThreads",
+		                                  "Maximum number of threads",
+		                                  Tunable.INTEGER, new Integer(maxThreads),
+		                                  (Object)null, (Object)null, 0));
+
 	       
 		// Use the standard edge attribute handling stuff....
 		edgeAttributeHandler = new EdgeAttributeHandler(clusterProperties, true);
@@ -149,6 +164,14 @@ public class SCPSCluster extends AbstractNetworkClusterer  {
 		if ((t != null) && (t.valueChanged() || force))
 			knumber = ((Integer) t.getValue()).intValue();
 
+		t = clusterProperties.get("maxK");
+		if ((t != null) && (t.valueChanged() || force))
+			maxK = ((Integer) t.getValue()).intValue();
+
+		t = clusterProperties.get("maxThreads");
+		if ((t != null) && (t.valueChanged() || force))
+			maxThreads = ((Integer) t.getValue()).intValue();
+
 	       
 		t = clusterProperties.get("iterations");
 		if ((t != null) && (t.valueChanged() || force))
@@ -169,7 +192,12 @@ public class SCPSCluster extends AbstractNetworkClusterer  {
 		
 
 		//Cluster the nodes
-		runSCPS = new RunSCPS(matrix, epsilon, knumber, rNumber, logger);
+		runSCPS = new RunSCPS(matrix, epsilon, knumber, maxK, rNumber, maxThreads, logger);
+
+		// The eigenvalues only depend on the network and the edge weights
+		List<String> matrixParams = new ArrayList<String>();
+		edgeAttributeHandler.setParams(matrixParams);
+		runSCPS.setSpectrumCache(spectrumCache, networkID+matrixParams);
 
 		List<NodeCluster> clusters = runSCPS.run(monitor);
 
@@ -200,6 +228,8 @@ public class SCPSCluster extends AbstractNetworkClusterer  {
 		params.add("epsilon="+epsilon);
 		params.add("rNumber="+rNumber);
 		params.add("knumber="+knumber);
+		params.add("maxK="+maxK);
+		params.add("maxThreads="+maxThreads);
 		super.setParams(params);
 	}
 }
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2010 The Regents of the University of California.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions, and the following disclaimer.
+ *   2. Redistributions in binary form must reproduce the above
+ *      copyright notice, this list of conditions, and the following
+ *      disclaimer in the documentation and/or other materials provided
+ *      with the distribution.
+ *   3. Redistributions must acknowledge that this software was
+ *      originally developed by the UCSF Computer Graphics Laboratory
+ *      under support by the NIH National Center for Research Resources,
+ *      grant P41-RR01081.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE REGENTS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+ * OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.SCPS;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cern.colt.function.IntIntDoubleFunction;
+import cern.colt.matrix.DoubleMatrix2D;
+
+/**
+ * SpectrumCache keeps the eigensolvers (with the eigenpairs they have
+ * computed) of the last few SCPS runs, one per network and edge attribute
+ * setting.  An entry is only reused if the Laplacian it was computed for has
+ * the same fingerprint, so re-running SCPS with a different number of
+ * clusters or k-means iterations skips the eigensolve, while any change to the
+ * network or the edge weights starts over.
+ */
+class SpectrumCache {
+	// Every entry holds the matrix and its eigenvectors, so don't keep too many
+	private static final int MAX_ENTRIES = 4;
+
+	private Map<String, CachedSpectrum> entries = new LinkedHashMap<String, CachedSpectrum>(16, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<String, CachedSpectrum> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private static class CachedSpectrum {
+		long fingerprint;
+		LanczosSolver solver;
+
+		CachedSpectrum(long fingerprint, LanczosSolver solver) {
+			this.fingerprint = fingerprint;
+			this.solver = solver;
+		}
+	}
+
+	/**
+	 * Return the solver stored under key if it was made for a matrix with
+	 * the given fingerprint, null otherwise.
+	 */
+	public synchronized LanczosSolver get(String key, long fingerprint) {
+		CachedSpectrum entry = entries.get(key);
+		if (entry == null || entry.fingerprint != fingerprint)
+			return null;
+		return entry.solver;
+	}
+
+	public synchronized void put(String key, long fingerprint, LanczosSolver solver) {
+		entries.put(key, new CachedSpectrum(fingerprint, solver));
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Compute a fingerprint of the size and non-zero cells of a matrix.  The
+	 * cells are combined with a sum, so the order they are visited in
+	 * doesn't matter.
+	 */
+	public static long fingerprint(DoubleMatrix2D matrix) {
+		final long[] sum = new long[1];
+		matrix.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int column, double value) {
+				long h = ((long)row << 32) ^ column;
+				h = mix(h ^ mix(Double.doubleToLongBits(value)));
+				sum[0] += h;
+				return value;
+			}
+		});
+		return mix(sum[0] ^ mix(((long)matrix.rows() << 32) ^ matrix.columns()));
+	}
+
+	// The finalizer of the 64 bit MurmurHash3
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -1,18 +1,22 @@
 package clusterMaker.algorithms.networkClusterers.TransClust;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
 
+import cern.colt.function.IntIntDoubleFunction;
 import cern.colt.matrix.DoubleMatrix2D;
 import clusterMaker.algorithms.DistanceMatrix;
 import clusterMaker.algorithms.NodeCluster;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.costmatrixcreation.dataTypes.Edges;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.iterativeclustering.ClusteringResult;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.iterativeclustering.IteratorThread;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
 import cytoscape.CyEdge;
 import cytoscape.CyNode;
 import cytoscape.logger.CyLogger;
@@ -27,11 +31,22 @@ public class RunTransClust {
 	protected int clusterCount = 0;
 	private DistanceMatrix distanceMatrix = null;
 	private double threshold;
+	private TaskContext context;
 
 	public RunTransClust( DistanceMatrix dMat,double threshold, CyLogger logger)
+	{
+		this(dMat, threshold, new TaskContext(), logger);
+	}
+
+	/**
+	 * @param context The configuration of this run, it is not shared with
+	 * any other run.
+	 */
+	public RunTransClust( DistanceMatrix dMat,double threshold, TaskContext context, CyLogger logger)
 	{
 		this.distanceMatrix = dMat;
 		this.threshold = threshold;
+		this.context = context;
 		this.logger = logger;
 	}
 	
@@ -42,10 +57,6 @@ public class RunTransClust {
 		DoubleMatrix2D matrix = this.distanceMatrix.getDistanceMatrix(threshold, true);
 
 		nodes = distanceMatrix.getNodes();
-		HashMap<String, CyNode> nodeHash = new HashMap<String, CyNode>();
-		for (CyNode node : nodes) {
-			nodeHash.put(node.getIdentifier(), node);
-		}
 
 		HashMap<String,Integer> integers2proteins = new HashMap<String, Integer>();
 		HashMap<Integer,String>  proteins2integers = new HashMap<Integer, String>();
@@ -56,26 +67,13 @@ public class RunTransClust {
 			count++;
 		}
 		
-		Edges es = new Edges(this.nodes.size()*this.nodes.size(), this.nodes.size());
-		count = 0;
-		for (int i = 0; i < this.nodes.size(); i++) {
-			CyNode cyNodeI = this.nodes.get(i);
-			es.startPositions[integers2proteins.get(cyNodeI.getIdentifier())] = count;
-			for (int j = 0; j < this.nodes.size(); j++) {
-				CyNode cyNodeJ = this.nodes.get(j);
-					es.sources[count] = i;
-					es.targets[count] = j;
-					es.values[count] = (float) distanceMatrix.getEdgeValueFromMatrix(i, j);
-					count++;
-			}
-			es.endPositions[integers2proteins.get(cyNodeI.getIdentifier())] = count-1;
-		}
+		Edges es = createEdges(matrix);
 		
 		Semaphore s = new Semaphore(1);
-		TaskConfig.mode = TaskConfig.COMPARISON_MODE;
-		IteratorThread it = new IteratorThread(es,integers2proteins,proteins2integers,s);
-		TaskConfig.minThreshold = threshold;
-		TaskConfig.maxThreshold = threshold;
+		this.context.mode = TaskConfig.COMPARISON_MODE;
+		this.context.minThreshold = threshold;
+		this.context.maxThreshold = threshold;
+		IteratorThread it = new IteratorThread(es,integers2proteins,proteins2integers,s,this.context);
 		try {
 			s.acquire();
 		} catch (InterruptedException e) {
@@ -95,11 +93,12 @@ public class RunTransClust {
 
 		monitor.setStatus("Assigning nodes to clusters");
 
-		String result = it.resultsStringBuffer.toString();
-		String clusters[] = result.split("\t")[2].split(";");
-		
-		
-		Map<Integer, NodeCluster> clusterMap = getClusterMap(clusters,nodeHash);
+		if (it.getResults() == null || it.getResults().isEmpty()) {
+			logger.error("TransClust didn't return a clustering");
+			return null;
+		}
+		ClusteringResult result = it.getResults().get(0);
+		Map<Integer, NodeCluster> clusterMap = getClusterMap(result);
 
 		
 		//Update node attributes in network to include clusters. Create cygroups from clustered nodes
@@ -126,28 +125,82 @@ public class RunTransClust {
 		return new ArrayList<NodeCluster>(clusters2);
 	}
 	
-private Map<Integer, NodeCluster> getClusterMap(String[] clusters, HashMap<String, CyNode> nodeHash){
-	    
-		HashMap<Integer, NodeCluster> clusterMap = new HashMap<Integer, NodeCluster>();
-		
-		for (int i = 0; i < clusters.length; i++) {
-			String elements[] = clusters[i].split(",");
-			NodeCluster nc = new NodeCluster();
-			for (int j = 0; j < elements.length; j++) {
-				if(nodeHash.containsKey(elements[j].trim())){
-					nc.add(nodeHash.get(elements[j].trim()));	
+	/**
+	 * Copies the edges of the sparse matrix into an Edges object, row by row
+	 * with the targets of each row in ascending order. Node numbers are the
+	 * indices of the matrix, which are the positions in the node list. Pairs
+	 * that are not in the matrix get the value 0, as in the matrix.
+	 */
+	private Edges createEdges(DoubleMatrix2D matrix) {
+		final int n = matrix.rows();
+		final int[] rowSizes = new int[n+1];
+		matrix.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int column, double value) {
+				if (row != column) rowSizes[row+1]++;
+				return value;
+			}
+		});
+		for (int i = 0; i < n; i++)
+			rowSizes[i+1] += rowSizes[i];
+
+		final Edges es = new Edges(rowSizes[n], n);
+		final int[] next = Arrays.copyOf(rowSizes, n);
+		matrix.forEachNonZero(new IntIntDoubleFunction() {
+			public double apply(int row, int column, double value) {
+				if (row != column) {
+					int position = next[row]++;
+					es.sources[position] = row;
+					es.targets[position] = column;
+					es.values[position] = (float) value;
 				}
+				return value;
+			}
+		});
+
+		// The sparse matrix doesn't keep its entries in order, so sort every row
+		// by target. Target and value are packed into one long to sort them together.
+		long[] row = new long[0];
+		for (int i = 0; i < n; i++) {
+			int start = rowSizes[i];
+			int end = rowSizes[i+1];
+			es.startPositions[i] = start;
+			es.endPositions[i] = end;
+			if (end - start > row.length) row = new long[end - start];
+			for (int k = start; k < end; k++)
+				row[k-start] = ((long)es.targets[k] << 32) | (Float.floatToRawIntBits(es.values[k]) & 0xffffffffL);
+			Arrays.sort(row, 0, end - start);
+			for (int k = start; k < end; k++) {
+				es.targets[k] = (int)(row[k-start] >>> 32);
+				es.values[k] = Float.intBitsToFloat((int)row[k-start]);
 			}
-			clusterCount++;
-			updateClusters(nc, clusterMap);
 		}
-		return clusterMap;
+		es.setSortedTargets(true);
+		es.setDefaultValue(0);
+		return es;
 	}
 
-	private void updateClusters(NodeCluster cluster, Map<Integer, NodeCluster> clusterMap) {
-		for (CyNode node: cluster) {
-			clusterMap.put(nodes.indexOf(node), cluster);
+	/**
+	 * Maps the position of every clustered node to its cluster. The node
+	 * numbers of the result are the positions in the node list.
+	 */
+	private Map<Integer, NodeCluster> getClusterMap(ClusteringResult result){
+	    
+		HashMap<Integer, NodeCluster> clusterMap = new HashMap<Integer, NodeCluster>();
+		NodeCluster[] clusters = new NodeCluster[result.getClusterCount()];
+		int[] assignments = result.getAssignments();
+		
+		for (int i = 0; i < assignments.length; i++) {
+			if (assignments[i] < 0) continue;
+			NodeCluster nc = clusters[assignments[i]];
+			if (nc == null) {
+				nc = new NodeCluster();
+				clusters[assignments[i]] = nc;
+				clusterCount++;
+			}
+			nc.add(nodes.get(i));
+			clusterMap.put(i, nc);
 		}
+		return clusterMap;
 	}
 	
 }
@@ -12,7 +12,7 @@ import clusterMaker.algorithms.ClusterResults;
 import clusterMaker.algorithms.DistanceMatrix;
 import clusterMaker.algorithms.NodeCluster;
 import clusterMaker.algorithms.edgeConverters.EdgeAttributeHandler;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
 import clusterMaker.ui.ClusterViz;
 import clusterMaker.ui.NewNetworkView;
 import cytoscape.CyNetwork;
@@ -38,6 +38,7 @@ public class TransClustCluster extends AbstractNetworkClusterer{
 	protected int mergeThreshold;
 	protected int maxSubclusterSize;
 	protected int maxTime;
+	protected int numberOfThreads;
 	
 	private RunTransClust runTransClust;
 	
@@ -86,22 +87,12 @@ public class TransClustCluster extends AbstractNetworkClusterer{
 		Tunable t = clusterProperties.get("maxSubclusterSize");
 		if ((t != null) && (t.valueChanged() || force)){
 			maxSubclusterSize = ((Integer) t.getValue()).intValue();
-			try {
-				TaskConfig.fixedParameterMax = new Integer(maxSubclusterSize);
-			} catch (Exception e) {
-				TaskConfig.fixedParameterMax = 20;
-			}
 		}
 		
 
 		t = clusterProperties.get("maxTime");
 		if ((t != null) && (t.valueChanged() || force)){
 			maxTime = ((Integer) t.getValue()).intValue();
-			try {
-				TaskConfig.fpMaxTimeMillis = new Integer(maxTime)*1000;
-			} catch (Exception e) {
-				// TODO: handle exception
-			}
 		}
 		
 
@@ -109,33 +100,35 @@ public class TransClustCluster extends AbstractNetworkClusterer{
 		t = clusterProperties.get("mergeSimilar");
 		if ((t != null) && (t.valueChanged() || force)){
 			mergeSimilar = ((Boolean) t.getValue()).booleanValue();
-			if(!mergeSimilar){
-				TaskConfig.upperBound = Float.MAX_VALUE;
-			}
 		}
 			
 
 		t = clusterProperties.get("mergeThreshold");
 		if ((t != null) && (t.valueChanged() || force)){
 			mergeThreshold = ((Integer) t.getValue()).intValue();
-			try {
-				if(mergeSimilar){
-					TaskConfig.upperBound = new Float(mergeThreshold);
-				}else{
-					TaskConfig.upperBound = Float.MAX_VALUE;
-				}
-			} catch (Exception e) {
-				TaskConfig.upperBound = Float.MAX_VALUE;
-			}
 		}
 		
 		t = clusterProperties.get("numberOfThreads");
 			if ((t != null) && (t.valueChanged() || force)){
-				TaskConfig.maxNoThreads = ((Integer) t.getValue()).intValue();
+				numberOfThreads = ((Integer) t.getValue()).intValue();
 			}
 		
 	}
 
+	/**
+	 * Creates the TransClust configuration for one run from our tunables.
+	 * Each run gets its own context, so the settings of one network are not
+	 * seen by a run on another network.
+	 */
+	private TaskContext createContext() {
+		TaskContext context = new TaskContext();
+		context.fixedParameterMax = maxSubclusterSize;
+		context.fpMaxTimeMillis = maxTime*1000L;
+		context.upperBound = mergeSimilar ? mergeThreshold : Float.MAX_VALUE;
+		context.maxNoThreads = numberOfThreads;
+		return context;
+	}
+
 	/**
  	 * Perform the actual clustering.  For TransClust, there are really
  	 * two steps:
@@ -163,7 +156,7 @@ public class TransClustCluster extends AbstractNetworkClusterer{
 		
 		//Cluster the nodes
 		
-		runTransClust = new RunTransClust(matrix,threshold,logger);
+		runTransClust = new RunTransClust(matrix,threshold,createContext(),logger);
 
 		List<NodeCluster> clusters = runTransClust.run(monitor);
 
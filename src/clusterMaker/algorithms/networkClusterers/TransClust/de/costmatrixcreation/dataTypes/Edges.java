@@ -14,6 +14,14 @@ public class Edges {
 	
 	public int proteinNumber;
 	
+	/* the value of all pairs without an edge, otherwise InOut.min is used */
+	private float defaultValue;
+	
+	private boolean hasDefaultValue = false;
+	
+	/* true if the targets of every protein are in ascending order */
+	private boolean sortedTargets = false;
+	
 	public Edges(int size, int proteinNumber){
 		this.proteinNumber = proteinNumber;
 		this.sources = new int[size];
@@ -89,6 +97,27 @@ public class Edges {
 		return target-1;
 	}
 
+	public void setDefaultValue(float value){
+		this.defaultValue = value;
+		this.hasDefaultValue = true;
+	}
+	
+	public boolean hasDefaultValue(){
+		return this.hasDefaultValue;
+	}
+	
+	public float getDefaultValue(){
+		return this.defaultValue;
+	}
+	
+	public void setSortedTargets(boolean sortedTargets){
+		this.sortedTargets = sortedTargets;
+	}
+	
+	public boolean hasSortedTargets(){
+		return this.sortedTargets;
+	}
+
 	public int[] getTargets() {
 		return targets;
 	}
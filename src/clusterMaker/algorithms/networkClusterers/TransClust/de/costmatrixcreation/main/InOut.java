@@ -671,13 +671,21 @@ public class InOut {
 		int startPosition = es.getStartPosition(source);
 		int endPosition = es.getEndPosition(source);
 		
-		for (int i = startPosition; i < endPosition; i++) {
-			
-			int target2 = es.getTarget(i);
-			if(target==target2) return es.getValue(i);
-			
+		if(es.hasSortedTargets()){
+			if(startPosition<endPosition){
+				int i = Arrays.binarySearch(es.targets, startPosition, endPosition, target);
+				if(i>=0) return es.getValue(i);
+			}
+		}else{
+			for (int i = startPosition; i < endPosition; i++) {
+				
+				int target2 = es.getTarget(i);
+				if(target==target2) return es.getValue(i);
+				
+			}
 		}
 		
+		if(es.hasDefaultValue()) return es.getDefaultValue();
 		return InOut.min;
 		
 	}
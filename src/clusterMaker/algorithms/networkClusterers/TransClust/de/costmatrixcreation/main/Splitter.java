@@ -1,6 +1,7 @@
 package clusterMaker.algorithms.networkClusterers.TransClust.de.costmatrixcreation.main;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Vector;
@@ -48,6 +49,12 @@ public class Splitter {
 	public static Vector<Vector<Integer>> splitIntoConnectedComponents(Edges es, HashMap<Integer,String> proteins2integers,float threshold,boolean mergenNodes){
 		
 		Vector<Vector<Integer>> v = new Vector<Vector<Integer>>();
+		
+		// pairs without an edge are connected as well if their value is above the threshold
+		if(es.hasDefaultValue()&&es.getDefaultValue()>threshold){
+			return splitWithDefaultValue(es, proteins2integers, threshold, mergenNodes);
+		}
+		
 		int[] distribution = new int[es.size2()+1];
 		boolean[] already = new boolean[es.size2()];
 		for (int i = 0; i < already.length; i++) {
@@ -71,65 +78,93 @@ public class Splitter {
 		
 	}
 	
+	private static int getStartPosition(Edges es, HashMap<Integer, String> proteins2integers, int element, boolean mergeNodes) {
+		if(mergeNodes) return es.getStartPosition(Integer.parseInt(proteins2integers.get(element)));
+		return es.getStartPosition(element);
+	}
+	
+	private static int getEndPosition(Edges es, HashMap<Integer, String> proteins2integers, int element, boolean mergeNodes) {
+		if(mergeNodes) return es.getEndPosition(Integer.parseInt(proteins2integers.get(element)));
+		return es.getEndPosition(element);
+	}
+	
 	private static void findCluster(Edges es, Vector<Integer> cluster, HashMap<Integer, String> proteins2integers, Integer element, boolean[] already, float threshold,boolean mergeNodes) {
 
-		int startPosition=0;
-		int endPosition = 0;
-
-		if(mergeNodes){
-			startPosition = es.getStartPosition(Integer.parseInt(proteins2integers.get(element)));
-			endPosition = es.getEndPosition(Integer.parseInt(proteins2integers.get(element)));
-		}else{
-			startPosition = es.getStartPosition(element);
-			endPosition = es.getEndPosition(element);
-		}
-		
-		//TODO
-//		if(Config.defaultCostsForMissingEdges>threshold){
-//			for (int i = 1; i < es.proteinNumber; i++) {
-//				cluster.add(i);
-//				already[i]= true;
-//			}
-//		}
-//		
-//		
-//		
-//		if(Config.useMinSimilarityOfBothDirections){
-//			for (int i = startPosition; i <=endPosition; i++) {
-//				if(endPosition==-1)	continue;
-//				int target = es.getTarget(i);
-//				if(already[target]) continue;
-//				if(InOut.getEdgeValue(element, target, es)>threshold){
-//					cluster.add(target);
-//					already[target]= true;
-//					findCluster(es, cluster,proteins2integers, target, already, threshold,mergeNodes);
-//				}
-//			}
-//		}else{
-//			for (int i = 0; i < es.proteinNumber; i++) {
-//				if(already[i]) continue;
-//				if(InOut.getEdgeValue(element, i, es)>threshold){
-//					cluster.add(i);
-//					already[i]= true;
-//					findCluster(es, cluster,proteins2integers, i, already, threshold,mergeNodes);
-//				}
-//			}
-//		}
+		// depth first search with its own stack, the components of large networks
+		// are too deep for recursion. position and end are the edges left per level.
+		int[] position = new int[16];
+		int[] end = new int[16];
+		int top = 0;
+		position[0] = getStartPosition(es, proteins2integers, element, mergeNodes);
+		end[0] = getEndPosition(es, proteins2integers, element, mergeNodes);
 		
-		
-		
-		for (int i = startPosition; i < endPosition; i++) {
+		while(top>=0){
+			if(position[top]>=end[top]){
+				top--;
+				continue;
+			}
+			int i = position[top]++;
 			int target = es.getTarget(i);
 			if(!already[target]){
 				double value = es.getValue(i);
 				if(value>threshold){
 					cluster.add(target);
 					already[target]= true;
-					findCluster(es, cluster,proteins2integers, target, already, threshold,mergeNodes);
+					top++;
+					if(top==position.length){
+						position = Arrays.copyOf(position, 2*top);
+						end = Arrays.copyOf(end, 2*top);
+					}
+					position[top] = getStartPosition(es, proteins2integers, target, mergeNodes);
+					end[top] = getEndPosition(es, proteins2integers, target, mergeNodes);
 				}
 			}
 		}
 		
 	}// end findClusters
+	
+	/*
+	 * Two elements are connected unless they have an edge with a value up to the
+	 * threshold. Breadth first search that only walks over the elements not yet
+	 * assigned, every element is either taken from that list or skipped because of
+	 * one of the edges of the current element, so this is linear in the edges.
+	 */
+	private static Vector<Vector<Integer>> splitWithDefaultValue(Edges es, HashMap<Integer, String> proteins2integers, float threshold, boolean mergeNodes) {
+		
+		Vector<Vector<Integer>> v = new Vector<Vector<Integer>>();
+		int n = es.size2();
+		int[] remaining = new int[n];
+		for (int i = 0; i < n; i++) remaining[i] = i;
+		int remainingCount = n;
+		// blocked[j] == element+1 if element and j have an edge up to the threshold
+		int[] blocked = new int[n];
+		
+		while(remainingCount>0){
+			Vector<Integer> cluster = new Vector<Integer>();
+			cluster.add(remaining[--remainingCount]);
+			for (int c = 0; c < cluster.size(); c++) {
+				int element = cluster.get(c);
+				int startPosition = getStartPosition(es, proteins2integers, element, mergeNodes);
+				int endPosition = getEndPosition(es, proteins2integers, element, mergeNodes);
+				for (int i = startPosition; i < endPosition; i++) {
+					if(es.getValue(i)<=threshold) blocked[es.getTarget(i)] = element+1;
+				}
+				int kept = 0;
+				for (int i = 0; i < remainingCount; i++) {
+					int other = remaining[i];
+					if(blocked[other]==element+1){
+						remaining[kept++] = other;
+					}else{
+						cluster.add(other);
+					}
+				}
+				remainingCount = kept;
+			}
+			v.add(cluster);
+		}
+		return v;
+		
+	}
+	
 
 }
@@ -0,0 +1,366 @@
+/*
+ * Created on 17. October 2026
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * This class is a realisation of the ICCEdges interface. The costs for all
+ * edges (i,j) with i<j are saved row by row as a packed upper triangle of
+ * floats in a file that is memory-mapped, so the costs are kept outside of
+ * the Java heap and are only paged in by the operating system when they are
+ * used.
+ *
+ * The file is either a temporary file (when created with a size only, e.g.
+ * by the {@link clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.LayoutFactory.EnumCCEdgesStructure}),
+ * which is deleted as soon as it is mapped, or the data section of a binary cost matrix file (.bcm) written with
+ * {@link #writeCostMatrix(File, String[], ICCEdges, double)}. Binary cost
+ * matrix files are mapped read-only; a segment of the file is only copied
+ * (outside of the heap) if a cost in it is changed, so the file itself is
+ * never modified and can be mapped again for the next run.
+ *
+ * Normalisation does not rewrite the file, instead the costs are scaled when
+ * they are read.
+ */
+public class CCMappedArray implements ICCEdges {
+
+	/* the first four bytes of a binary cost matrix file: "TCBM" */
+	public static final int MAGIC = 0x5443424D;
+	public static final int VERSION = 1;
+	public static final String FILE_EXTENSION = ".bcm";
+
+	/* floats per mapped segment, a single mapping is limited to 2GB */
+	private static final int SEGMENT_SHIFT = 28;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	private int size;
+	private File file;
+	private long offset;
+	private boolean temporary;
+	private ByteBuffer[] segments;
+
+	/* the factors the stored positive and negative costs are multiplied with */
+	private double positiveScale = 1, negativeScale = 1;
+
+	private float maxFromNormalisation, minFromNormalisation;
+	private double l, r, minFromNormalisationWithThreshold, maxFromNormalisationWithThreshold;
+
+	/**
+	 * Creates the edges for a component of the given size in a temporary
+	 * file. All costs are initially zero.
+	 *
+	 * @param size
+	 *            The number of nodes in the component.
+	 */
+	public CCMappedArray (int size) {
+		initCCEdges(size);
+	}
+
+	/**
+	 * Maps the costs of an existing file read-only.
+	 *
+	 * @param file
+	 *            The file the costs are saved in.
+	 * @param offset
+	 *            The position of the first cost in the file.
+	 * @param size
+	 *            The number of nodes in the component.
+	 * @throws IOException
+	 *             If the file is too short or cannot be mapped.
+	 */
+	public CCMappedArray (File file, long offset, int size) throws IOException {
+		this.size = size;
+		this.file = file;
+		this.offset = offset;
+		this.temporary = false;
+		map(FileChannel.MapMode.READ_ONLY);
+	}
+
+	public CCMappedArray clone(){
+		CCMappedArray clone;
+		try {
+			if (this.temporary) {
+				clone = new CCMappedArray(this.size);
+				for (int s = 0; s < this.segments.length; s++) {
+					copy(this.segments[s], clone.segments[s]);
+				}
+			} else {
+				clone = new CCMappedArray(this.file, this.offset, this.size);
+				for (int s = 0; s < this.segments.length; s++) {
+					if (this.segments[s].isReadOnly()) continue;
+					clone.segments[s] = ByteBuffer.allocateDirect(this.segments[s].capacity());
+					copy(this.segments[s], clone.segments[s]);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to map the cost matrix " + this.file, e);
+		}
+		clone.positiveScale = this.positiveScale;
+		clone.negativeScale = this.negativeScale;
+		clone.l = this.l;
+		clone.r = this.r;
+		clone.minFromNormalisation = this.minFromNormalisation;
+		clone.maxFromNormalisation = this.maxFromNormalisation;
+		clone.minFromNormalisationWithThreshold = this.minFromNormalisationWithThreshold;
+		clone.maxFromNormalisationWithThreshold = this.maxFromNormalisationWithThreshold;
+		return clone;
+	}
+
+	/**
+	 * Here a new temporary file for the costs is created and mapped, but
+	 * costs still need to be added.
+	 *
+	 * @param size
+	 *            The number of nodes in the component.
+	 */
+	public void initCCEdges(int size) {
+		this.size = size;
+		this.offset = 0;
+		this.temporary = true;
+		this.positiveScale = 1;
+		this.negativeScale = 1;
+		File tempFile = null;
+		try {
+			tempFile = File.createTempFile("transclust", FILE_EXTENSION);
+			this.file = tempFile;
+			RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+			try {
+				raf.setLength(4 * pairs(size));
+			} finally {
+				raf.close();
+			}
+			map(FileChannel.MapMode.READ_WRITE);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to create a cost matrix file for "
+					+ size + " nodes", e);
+		} finally {
+			/*
+			 * the mapping stays valid after the file is deleted and its space
+			 * is freed when the mapping is garbage collected. Where a mapped
+			 * file cannot be deleted (Windows), it is deleted when the JVM exits.
+			 */
+			if (tempFile != null && !tempFile.delete() && tempFile.exists()) {
+				tempFile.deleteOnExit();
+			}
+		}
+	}
+
+	private static void copy(ByteBuffer from, ByteBuffer to) {
+		/* a duplicate shares the contents but not the position */
+		ByteBuffer source = from.duplicate();
+		source.clear();
+		to.clear();
+		to.put(source);
+		to.clear();
+	}
+
+	private static long pairs(int size) {
+		return ((long) size * (size - 1)) / 2;
+	}
+
+	private void map(FileChannel.MapMode mode) throws IOException {
+		long count = pairs(this.size);
+		int segmentCount = (int) ((count + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		this.segments = new ByteBuffer[segmentCount];
+		RandomAccessFile raf = new RandomAccessFile(this.file,
+				mode == FileChannel.MapMode.READ_WRITE ? "rw" : "r");
+		try {
+			if (raf.length() < this.offset + 4 * count) {
+				throw new IOException("The cost matrix " + this.file + " is too short for "
+						+ this.size + " nodes");
+			}
+			FileChannel channel = raf.getChannel();
+			for (int s = 0; s < segmentCount; s++) {
+				long first = (long) s << SEGMENT_SHIFT;
+				long length = Math.min(count - first, 1L << SEGMENT_SHIFT);
+				this.segments[s] = channel.map(mode, this.offset + 4 * first, 4 * length);
+			}
+		} finally {
+			/* the mappings stay valid after the file is closed */
+			raf.close();
+		}
+	}
+
+	/* the position of (i,j) with i<j in the packed upper triangle */
+	private long index(int node_i, int node_j) {
+		return (long) node_i * this.size - ((long) node_i * (node_i + 1)) / 2 + (node_j - node_i - 1);
+	}
+
+	private float getRaw(long index) {
+		return this.segments[(int) (index >>> SEGMENT_SHIFT)].getFloat((int) (index & SEGMENT_MASK) << 2);
+	}
+
+	private void setRaw(long index, float value) {
+		int s = (int) (index >>> SEGMENT_SHIFT);
+		if (this.segments[s].isReadOnly()) {
+			ByteBuffer writable = ByteBuffer.allocateDirect(this.segments[s].capacity());
+			copy(this.segments[s], writable);
+			this.segments[s] = writable;
+		}
+		this.segments[s].putFloat((int) (index & SEGMENT_MASK) << 2, value);
+	}
+
+	private float scale(float raw) {
+		if (raw > 0) {
+			return (float) (raw * this.positiveScale);
+		} else {
+			return (float) (raw * this.negativeScale);
+		}
+	}
+
+	/**
+	 * Sets the cost for deleting the edge between node i and node j.
+	 *
+	 * @param node_i
+	 *            The value of the first edge node.
+	 * @param node_j
+	 *            The value of the second edge node.
+	 * @param cost
+	 *            The cost of adding or deleting the edge (i,j).
+	 */
+	public void setEdgeCost(int node_i, int node_j, float cost) {
+		if (node_i == node_j) return;
+		long index = node_i < node_j ? index(node_i, node_j) : index(node_j, node_i);
+		/* the scales keep the sign, so the current scaling can be undone */
+		if (cost > 0) {
+			setRaw(index, (float) (cost / this.positiveScale));
+		} else {
+			setRaw(index, (float) (cost / this.negativeScale));
+		}
+	}
+
+	/**
+	 * Gets the cost for adding or deleting the edge (i,j).
+	 *
+	 * @param node_i
+	 *            The value of the first edge node.
+	 * @param node_j
+	 *            The value of the second edge node.
+	 * @return cost The cost of adding or deleting the edge (i,j).
+	 */
+	public float getEdgeCost(int node_i, int node_j) {
+		if (node_i < node_j) {
+			return scale(getRaw(index(node_i, node_j)));
+		} else if (node_i > node_j) {
+			return scale(getRaw(index(node_j, node_i)));
+		}
+		return 0;
+	}
+
+	/**
+	 * Normalises the values between 0 and 1.
+	 */
+	public void normalise() {
+		//find max and min:
+		if(this.size < 2) return;
+		float min = getEdgeCost(0, 1);
+		float max = getEdgeCost(0, 1);
+		long count = pairs(this.size);
+		for (long k = 0; k < count; k++) {
+			float cost = scale(getRaw(k));
+			if(Math.abs(cost) > max) max = Math.abs(cost);
+			if(cost < min) min = cost;
+		}
+		maxFromNormalisation = max;
+		minFromNormalisation = min;
+
+		if(max==0) return;
+		this.positiveScale /= max;
+		this.negativeScale /= max;
+	}
+
+	public void normaliseWithThreshold(double alpha) {
+		//find max and min:
+		if(this.size < 2) return;
+		float min = getEdgeCost(0, 1);
+		float max = getEdgeCost(0, 1);
+		long count = pairs(this.size);
+		for (long k = 0; k < count; k++) {
+			float cost = scale(getRaw(k));
+			if(cost > max) max = cost;
+			if(cost < min) min = cost;
+		}
+		maxFromNormalisationWithThreshold = max;
+		minFromNormalisationWithThreshold = min;
+		//range of the normalised values: l & r
+		if(Math.abs(min) < Math.abs(max)) {
+			l = -alpha * Math.abs(min) / max;
+			r = 1;
+		} else {
+			l = -1;
+			r = alpha * max / Math.abs(min);
+		}
+		if(max > 0) this.positiveScale *= r / max;
+		if(min < 0) this.negativeScale *= l / min;
+	}
+
+	/**
+	 * Undo the normalisation done by normalise()
+	 */
+	public void denormalise() {
+		if(maxFromNormalisation==0) return;
+		this.positiveScale *= maxFromNormalisation;
+		this.negativeScale *= maxFromNormalisation;
+	}
+
+	/**
+	 * Undo the normalisation done by normaliseWithThreshold
+	 */
+	public void denormaliseWithThreshold() {
+		if(maxFromNormalisationWithThreshold > 0) this.positiveScale *= maxFromNormalisationWithThreshold / r;
+		if(minFromNormalisationWithThreshold < 0) this.negativeScale *= minFromNormalisationWithThreshold / l;
+	}
+
+	/**
+	 * Writes a binary cost matrix file that the {@link CostMatrixReader} can
+	 * map without parsing the costs. The file
+	 * starts with a header (magic number, version, number of nodes, reduction
+	 * cost and the object ids as length-prefixed UTF-8 strings) followed by
+	 * the costs of all pairs i<j row by row as big-endian floats.
+	 *
+	 * @param file
+	 *            The file to write to.
+	 * @param ids
+	 *            The object ids of the nodes.
+	 * @param edges
+	 *            The edge costs.
+	 * @param reductionCost
+	 *            The costs accumulated during a reduction, 0 if not reduced.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public static void writeCostMatrix(File file, String[] ids, ICCEdges edges,
+			double reductionCost) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(ids.length);
+			out.writeDouble(reductionCost);
+			for (int i = 0; i < ids.length; i++) {
+				byte[] id = ids[i].getBytes("UTF-8");
+				out.writeInt(id.length);
+				out.write(id);
+			}
+			for (int i = 0; i < ids.length; i++) {
+				for (int j = i + 1; j < ids.length; j++) {
+					out.writeFloat(edges.getEdgeCost(i, j));
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+}
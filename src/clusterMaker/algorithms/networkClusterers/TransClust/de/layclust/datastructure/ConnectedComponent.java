@@ -10,11 +10,9 @@ import java.util.Hashtable;
 
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.fixedparameterclustering.FixedParameterTreeNode;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.greedy.GreedyClusterer;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.LayoutFactory;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.postprocessing.IPostProcessing;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.postprocessing.PostProcessingFactory;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.InvalidTypeException;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
 
 /**
  * This class describes a connected component of a graph.
@@ -27,7 +25,7 @@ public class ConnectedComponent {
 	@Override
 	public Object clone() throws CloneNotSupportedException {
 		// TODO Auto-generated method stub
-		ConnectedComponent clone = new ConnectedComponent(this.ccEdges.clone(), this.objectIDs.clone(), this.ccPath);
+		ConnectedComponent clone = new ConnectedComponent(this.ccEdges.clone(), this.objectIDs.clone(), this.ccPath, this.getContext());
 		clone.ccPositions = this.ccPositions.clone();
 		return clone;
 	}
@@ -83,15 +81,24 @@ public class ConnectedComponent {
 	 * this needs to be added to the clustering score at the end! 
 	 */
 	private double reductionCost = 0.0;
+	
+	/* the configuration of the run this component is clustered in */
+	private TaskContext context = null;
 
 	public ConnectedComponent(ICCEdges ccEdges, String[] object_ids, 
 			String ccPath) {
+		this(ccEdges, object_ids, ccPath, new TaskContext());
+	}
+
+	public ConnectedComponent(ICCEdges ccEdges, String[] object_ids, 
+			String ccPath, TaskContext context) {
 
 		this.ccEdges = ccEdges;
 		this.objectIDs = object_ids;
 		this.node_no = object_ids.length;
 		this.clusters = new int[node_no];
 		this.ccPath = ccPath;
+		this.context = context;
 //		this.ccEdges.normalise();
 		
 		
@@ -176,6 +183,32 @@ public class ConnectedComponent {
 
 	}
 
+	/**
+	 * Gets the configuration of the run this component belongs to. If none
+	 * was given, the current values of the static config classes are used.
+	 * 
+	 * @return The context of this component.
+	 */
+	public TaskContext getContext() {
+		if (this.context == null) {
+			this.context = new TaskContext();
+		}
+		return this.context;
+	}
+
+	/**
+	 * Sets the configuration of the run this component belongs to, also for
+	 * the reduced component if there is one.
+	 * 
+	 * @param context The context of this component.
+	 */
+	public void setContext(TaskContext context) {
+		this.context = context;
+		if (this.reducedConnectedComponent != null) {
+			this.reducedConnectedComponent.setContext(context);
+		}
+	}
+
 	/**
 	 * This class checks whether two positions are equal. NOTE both input arrays
 	 * must be of equal size for this method to work correctly, but in the
@@ -520,6 +553,7 @@ public class ConnectedComponent {
 		ConnectedComponent newCC = new ConnectedComponent(this.ccEdges,
 				this.objectIDs.clone(), this.ccPath,true);
 		newCC.reductionCost = this.reductionCost;
+		newCC.context = this.context;
 		return newCC;
 	}
 	
@@ -527,6 +561,7 @@ public class ConnectedComponent {
 		ConnectedComponent newCC = new ConnectedComponent(this.ccEdges,
 				this.objectIDs, this.ccPath,true);
 		newCC.reductionCost = this.reductionCost;
+		newCC.context = this.context;
 		try {
 			newCC.setReducedConnectedComponent(this.getReducedConnectedComponent().copy());
 		} catch (Exception e) {
@@ -536,7 +571,7 @@ public class ConnectedComponent {
 	
 	
 	public double[][] copyCCPositions(){
-		int dim = TaskConfig.dimension;
+		int dim = getContext().dimension;
 		double[][] copiedPos = new double[this.node_no][dim];
 		for(int i=0;i<this.node_no;i++){
 			for(int j=0;j<dim;j++){
@@ -595,21 +630,14 @@ public class ConnectedComponent {
 			subIDs[i] = intsInCluster.get(i).toString();
 		}
 		
-		try {
-			ICCEdges subEdges = LayoutFactory.getCCEdgesEnumByClass(TaskConfig.ccEdgesClass).createCCEdges(size);
-			for (int i = 0; i < subIDs.length; i++) {
-				for (int j = 0; j < i; j++) {
-					subEdges.setEdgeCost(i, j, this.ccEdges.getEdgeCost(Integer.parseInt(subIDs[i]), Integer.parseInt(subIDs[j])));
-				}			
-			}
-
-		ConnectedComponent subCC = new ConnectedComponent(subEdges, subIDs, this.ccPath); 
-		
-		return subCC;
-		} catch (InvalidTypeException e) {
-			e.printStackTrace();
+		ICCEdges subEdges = getContext().ccEdgesEnum.createCCEdges(size);
+		for (int i = 0; i < subIDs.length; i++) {
+			for (int j = 0; j < i; j++) {
+				subEdges.setEdgeCost(i, j, this.ccEdges.getEdgeCost(Integer.parseInt(subIDs[i]), Integer.parseInt(subIDs[j])));
+			}			
 		}
-		return null;
+
+		return new ConnectedComponent(subEdges, subIDs, this.ccPath, getContext());
 		
 	}
 
@@ -637,7 +665,7 @@ public class ConnectedComponent {
 		
 		if(fptn.size==cc.getNodeNumber()) return false;
 		
-		ICCEdges ccedges = TaskConfig.ccEdgesEnum.createCCEdges(fptn.size);
+		ICCEdges ccedges = cc.getContext().ccEdgesEnum.createCCEdges(fptn.size);
 		for (int i = 0; i < fptn.size; i++) {
 			for (int j = i+1; j < fptn.size; j++) {
 				ccedges.setEdgeCost(i, j,  fptn.edgeCosts[i][j]);
@@ -1,14 +1,19 @@
 package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
 
 /**
- * This class is used to read a Cost-Matrix from a .cm-file.
+ * This class is used to read a Cost-Matrix from a .cm-file. Binary cost
+ * matrices (.bcm-files, see {@link CCMappedArray}) are not parsed, their
+ * costs are memory-mapped.
  * 
  * @author Nils Kleinboelting
  */
@@ -20,15 +25,35 @@ public class CostMatrixReader {
 	private Object[] values = null;
 	private String cmPath = "";
 	private double reductionCost = 0.0;
+	/* the mapped costs of a binary cost matrix */
+	private ICCEdges mappedEdges = null;
+	/* the configuration of the run the connected component is read for */
+	private TaskContext context;
 	
 	/**
-	 * Creates a CostMatrixReader object.
+	 * Creates a CostMatrixReader object for a run with the current values of
+	 * the config classes.
 	 * 
 	 * @param file The cost matrix file.
 	 */
 	public CostMatrixReader(File file) {
+		this(file, new TaskContext());
+	}
+	
+	/**
+	 * Creates a CostMatrixReader object.
+	 * 
+	 * @param file The cost matrix file.
+	 * @param context The configuration of the run the connected component is read for.
+	 */
+	public CostMatrixReader(File file, TaskContext context) {
+		this.context = context;
 		try {
 		cmPath = file.toString();
+		if(cmPath.endsWith(CCMappedArray.FILE_EXTENSION)){
+			readBinaryCostMatrix(file);
+			return;
+		}
 		FileReader fr = new FileReader(file); 
 		BufferedReader br = new BufferedReader(fr); 
 		String line;
@@ -69,24 +94,76 @@ public class CostMatrixReader {
 			System.exit(-1);
 		}
 	}
+	/**
+	 * Reads the header of a binary cost matrix and maps the costs that follow
+	 * it.
+	 * 
+	 * @param file The binary cost matrix file.
+	 * @throws IOException If the file is not a binary cost matrix.
+	 */
+	private void readBinaryCostMatrix(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file), 1 << 16));
+		long offset;
+		try {
+			if(in.readInt() != CCMappedArray.MAGIC){
+				throw new IOException(cmPath + " is not a binary cost matrix");
+			}
+			int version = in.readInt();
+			if(version != CCMappedArray.VERSION){
+				throw new IOException(cmPath + " has an unsupported version: " + version);
+			}
+			this.node_no = in.readInt();
+			this.reductionCost = in.readDouble();
+			offset = 20;
+			this.ids = new String[this.node_no];
+			for(int i = 0; i < node_no; i++) {
+				byte[] id = new byte[in.readInt()];
+				in.readFully(id);
+				ids[i] = new String(id, "UTF-8");
+				offset += 4 + id.length;
+			}
+		} finally {
+			in.close();
+		}
+		this.mappedEdges = new CCMappedArray(file, offset, this.node_no);
+	}
+
 	/**
 	 * Returns an instance of ConnectedComponent.
 	 * 
 	 * @return instance of ConnectedComponent
-	 * @throws LayoutTypeException If an incorrect type for ICCEdges is given in TaskConfig.
+	 * @throws LayoutTypeException If an incorrect type for ICCEdges is given in the context.
 	 */
 	public ConnectedComponent getConnectedComponent(){
+		if(this.mappedEdges != null){
+			ConnectedComponent comp = new ConnectedComponent(mappedEdges, ids, cmPath, this.context);
+			comp.setReductionCost(this.reductionCost);
+			return comp;
+		}
 		//create ICCedges:
-		ICCEdges ccEdges = TaskConfig.ccEdgesEnum.createCCEdges(node_no);
+		ICCEdges ccEdges = this.context.ccEdgesEnum.createCCEdges(node_no);
 		for (int i = 0; i < values.length; i++) {
 			float[] vals = (float[]) values[i];
 			for (int j = 0; j < vals.length; j++) {
 				ccEdges.setEdgeCost(i, j+i+1, vals[j]);
 			}
 		}
-		ConnectedComponent comp = new ConnectedComponent(ccEdges, ids, cmPath);
+		ConnectedComponent comp = new ConnectedComponent(ccEdges, ids, cmPath, this.context);
 			comp.setReductionCost(this.reductionCost);
 		return comp;
 	}
 	
+	/**
+	 * Writes the cost matrix that was read as a binary cost matrix, so that
+	 * it can be mapped instead of parsed the next time it is used.
+	 * 
+	 * @param file The binary cost matrix file (.bcm) to write.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void writeBinaryCostMatrix(File file) throws IOException {
+		CCMappedArray.writeCostMatrix(file, ids, getConnectedComponent().getCCEdges(),
+				this.reductionCost);
+	}
+	
 }
@@ -1,7 +1,6 @@
 package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.fixedparameterclustering;
 
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
 
 public class FixedParameterClusterer {
 
@@ -9,16 +8,20 @@ public class FixedParameterClusterer {
 	private double maxK;
 	private FixedParameterTreeNode solution;
 	private long startTime;
+	private long maxTimeMillis;
+	/* true if the time ran out before a solution was found */
+	private boolean stopped = false;
 	
 	
 
 	public FixedParameterClusterer(ConnectedComponent cc) {
 		this.cc = cc;
+		this.maxTimeMillis = cc.getContext().fpMaxTimeMillis;
 		this.maxK = 0;
 		startTime = System.currentTimeMillis();
 		while (solution == null) {
-			if(System.currentTimeMillis()-startTime>TaskConfig.fpMaxTimeMillis){
-				TaskConfig.fpStopped = true;
+			if(System.currentTimeMillis()-startTime>this.maxTimeMillis){
+				this.stopped = true;
 				return;
 			}
 			FixedParameterTreeNode fptn = initFirstTreeNode();
@@ -30,11 +33,12 @@ public class FixedParameterClusterer {
 
 	public FixedParameterClusterer(ConnectedComponent cc, double maxK) {
 		this.cc = cc;
+		this.maxTimeMillis = cc.getContext().fpMaxTimeMillis;
 		this.maxK = maxK/2;
 		startTime = System.currentTimeMillis();
 		while (solution == null) {
-			if(System.currentTimeMillis()-startTime>TaskConfig.fpMaxTimeMillis){
-				TaskConfig.fpStopped = true;
+			if(System.currentTimeMillis()-startTime>this.maxTimeMillis){
+				this.stopped = true;
 				return;
 			}
 			FixedParameterTreeNode fptn = initFirstTreeNode();
@@ -45,6 +49,14 @@ public class FixedParameterClusterer {
 //		System.out.println("mergeCount " + mergeCount + " setForbiddenCount " + setForbiddenCount + " calculateMergeCount " + calculateMergeCostCount + " calculateForbiddenCount " + calculateForbiddenCostCount );
 	}
 
+	/**
+	 * @return true if the maximal time was exceeded and the component was
+	 *         not clustered
+	 */
+	public boolean isStopped() {
+		return this.stopped;
+	}
+
 	public void assingCluster(int[] nodes2clusters, int clusterNr, int node_i,
 			boolean[] already, float[][] edges) {
 
@@ -125,8 +137,8 @@ public class FixedParameterClusterer {
 
 	public void cluster(FixedParameterTreeNode fptn) {
 //		          System.out.println("fptn.costs = " + fptn.costs);
-		if(System.currentTimeMillis()-startTime>TaskConfig.fpMaxTimeMillis){
-			TaskConfig.fpStopped = true;
+		if(System.currentTimeMillis()-startTime>this.maxTimeMillis){
+			this.stopped = true;
 			return;
 		}
 //		fptn = reductionicf(fptn);
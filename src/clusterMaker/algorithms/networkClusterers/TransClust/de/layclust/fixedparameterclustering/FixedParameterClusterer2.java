@@ -5,7 +5,6 @@ import java.util.Arrays;
 import java.util.HashSet;
 
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
 
 public class FixedParameterClusterer2 {
 	private ConnectedComponent cc;
@@ -17,9 +16,12 @@ public class FixedParameterClusterer2 {
 	private float solution[][];
 	private long treesize;
 	private int depth;
+	private long maxTimeMillis;
+	private boolean stopped = false;
 	
 	public FixedParameterClusterer2(ConnectedComponent cc, double maxK){
 		this.cc = cc;
+		this.maxTimeMillis = cc.getContext().fpMaxTimeMillis;
 		this.maxK = maxK/2;
 		this.startTime = System.currentTimeMillis();
 		this.graph = new float[this.cc.getNodeNumber()][this.cc.getNodeNumber()];
@@ -41,8 +43,8 @@ public class FixedParameterClusterer2 {
 		
 		findNextEdge();
 		while(this.solutionCost<0){
-			if(System.currentTimeMillis()-startTime>TaskConfig.fpMaxTimeMillis){
-				TaskConfig.fpStopped = true;
+			if(System.currentTimeMillis()-startTime>this.maxTimeMillis){
+				this.stopped = true;
 				return;
 			}
 			cluster();
@@ -51,10 +53,14 @@ public class FixedParameterClusterer2 {
 		
 		buildSolution();
 		
-		TaskConfig.fpStopped = true;
+		this.stopped = true;
 		
 	}
 
+	public boolean isStopped() {
+		return this.stopped;
+	}
+
 	private void buildSolution() {
 		
 		
@@ -96,8 +102,8 @@ public class FixedParameterClusterer2 {
 	}
 	private void cluster() {
 		treesize++;
-		if(System.currentTimeMillis()-startTime>TaskConfig.fpMaxTimeMillis){
-			TaskConfig.fpStopped = true;
+		if(System.currentTimeMillis()-startTime>this.maxTimeMillis){
+			this.stopped = true;
 			return;
 		}
 		reductionicf();
@@ -0,0 +1,742 @@
+/*
+ * Created on 17. October 2026
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.fixedparameterclustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
+
+/**
+ * Finds a clustering of minimal costs for a connected component, like the
+ * {@link FixedParameterClusterer}, but fast enough for components of a few
+ * hundred nodes.
+ *
+ * The search tree is the same: each node branches on a positive edge, which
+ * is either merged or forbidden, and the edge with the highest difference
+ * between the costs of the two branches is chosen. Instead of searching with
+ * a growing maximal cost, the search is a branch and bound that starts with
+ * the costs of a known clustering (e.g. the greedy one) and prunes every
+ * branch whose costs plus a lower bound of the remaining costs exceed the
+ * costs of the best clustering found so far. The lower bounds are those of
+ * merging or forbidding each edge and a packing of conflict triples that
+ * share no pair.
+ *
+ * There is only one edge matrix per thread. Merging and forbidding change it
+ * in place and write what they overwrote into an undo log, so going back up
+ * the tree restores the matrix without copying it. The lower bounds of
+ * merging and forbidding every pair are kept up to date with each step, so
+ * choosing the next edge does not need to look for conflict triples again.
+ *
+ * For large components the top of the search tree is split into subtrees,
+ * which are searched by a pool of threads. All threads share the costs of the
+ * best clustering found so far, so a good clustering found by one thread
+ * prunes the search of all others.
+ */
+public class ParallelFixedParameterClusterer {
+
+	/* components with fewer nodes are searched by a single thread */
+	static final int MIN_NODES_FOR_THREADS = 50;
+
+	/* the number of subtrees per thread the top of the search tree is split into */
+	private static final int SUBTREES_PER_THREAD = 8;
+
+	private static final int MERGE = 0;
+	private static final int FORBID = 1;
+
+	private ConnectedComponent cc;
+	private long startTime;
+	private long maxTimeMillis;
+
+	/*
+	 * a clustering is only accepted, and a branch only searched, if its costs
+	 * do not exceed this limit. It starts at the given costs and is set just
+	 * below the costs of each clustering that is found.
+	 */
+	private volatile double limit;
+	private int[] bestClusters = null;
+
+	/* true if the time ran out before the search was finished */
+	private volatile boolean stopped = false;
+
+	/**
+	 * Searches for a clustering of minimal costs without a known upper bound.
+	 *
+	 * @param cc
+	 *            The connected component to be clustered.
+	 */
+	public ParallelFixedParameterClusterer(ConnectedComponent cc) {
+		this(cc, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Searches for a clustering of minimal costs and sets it as the
+	 * clustering of the component, unless the maximal time is exceeded.
+	 *
+	 * @param cc
+	 *            The connected component to be clustered.
+	 * @param maxK
+	 *            The costs of a known clustering of the component, which are
+	 *            the upper bound of the search.
+	 */
+	public ParallelFixedParameterClusterer(ConnectedComponent cc, double maxK) {
+		this.cc = cc;
+		TaskContext context = cc.getContext();
+		this.maxTimeMillis = context.fpMaxTimeMillis;
+		this.startTime = System.currentTimeMillis();
+		this.limit = maxK + tolerance(maxK);
+
+		State root = new State(cc);
+		int threads = 1;
+		if (context.useThreads && cc.getNodeNumber() >= MIN_NODES_FOR_THREADS) {
+			threads = Math.max(1, context.maxNoThreads);
+		}
+		if (threads > 1) {
+			searchInParallel(root, threads);
+		} else {
+			search(root, Integer.MAX_VALUE, null);
+		}
+
+		/* rounding may let the search miss a clustering with exactly the given costs */
+		if (this.bestClusters == null) {
+			this.stopped = true;
+		}
+		if (this.stopped) return;
+		buildClusters();
+	}
+
+	/**
+	 * @return true if the maximal time was exceeded and the component was
+	 *         not clustered
+	 */
+	public boolean isStopped() {
+		return this.stopped;
+	}
+
+	private void buildClusters() {
+		int clusterNr = 0;
+		for (int i = 0; i < this.bestClusters.length; i++) {
+			clusterNr = Math.max(clusterNr, this.bestClusters[i] + 1);
+		}
+		this.cc.initialiseClusterInfo(clusterNr);
+		this.cc.setClusteringScore(this.cc
+				.calculateClusteringScore(this.bestClusters));
+		this.cc.setClusters(this.bestClusters);
+		this.cc.calculateClusterDistribution();
+	}
+
+	/**
+	 * Splits the top of the search tree into subtrees and searches them with
+	 * a pool of threads, in the order in which a single thread would search
+	 * them.
+	 */
+	private void searchInParallel(final State root, int threads) {
+		int splitDepth = 1;
+		while ((1 << splitDepth) < threads * SUBTREES_PER_THREAD) {
+			splitDepth++;
+		}
+		final List<int[]> subtrees = new ArrayList<int[]>();
+		search(root.copy(), splitDepth, subtrees);
+		if (subtrees.isEmpty() || this.stopped) return;
+
+		final AtomicInteger nextSubtree = new AtomicInteger(0);
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int t = 0; t < Math.min(threads, subtrees.size()); t++) {
+			tasks.add(new Callable<Object>() {
+				public Object call() {
+					State state = root.copy();
+					int k;
+					while (!stopped && (k = nextSubtree.getAndIncrement()) < subtrees.size()) {
+						int mark = state.mark();
+						state.replay(subtrees.get(k));
+						search(state, Integer.MAX_VALUE, null);
+						state.undo(mark);
+					}
+					return null;
+				}
+			});
+		}
+		ExecutorService es = Executors.newFixedThreadPool(tasks.size());
+		try {
+			for (Future<Object> future : es.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.stopped = true;
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			es.shutdown();
+		}
+	}
+
+	/**
+	 * Searches the tree below the current state depth-first. The state is the
+	 * same afterwards. If subtrees is given, the nodes at splitDepth are not
+	 * searched, instead the decisions that lead to them are added to
+	 * subtrees, three ints (branch, i, j) per decision.
+	 */
+	private void search(State state, int splitDepth, List<int[]> subtrees) {
+		int capacity = 64;
+		int[] edgeI = new int[capacity];
+		int[] edgeJ = new int[capacity];
+		int[] first = new int[capacity];
+		int[] next = new int[capacity];
+		int[] branches = new int[capacity];
+		int[] marks = new int[capacity];
+		double[] mergeBounds = new double[capacity];
+		double[] forbidBounds = new double[capacity];
+
+		int[] edge = new int[2];
+		double[] bounds = new double[2];
+		if (!chooseEdge(state, edge, bounds)) return;
+		int start = state.mark();
+		int depth = 0;
+		edgeI[0] = edge[0];
+		edgeJ[0] = edge[1];
+		mergeBounds[0] = bounds[MERGE];
+		forbidBounds[0] = bounds[FORBID];
+		first[0] = bounds[MERGE] <= bounds[FORBID] ? MERGE : FORBID;
+		next[0] = 0;
+
+		long visited = 0;
+		while (depth >= 0) {
+			if ((++visited & 255) == 0 && timeIsUp()) {
+				state.undo(start);
+				return;
+			}
+			if (next[depth] == 2) {
+				depth--;
+				if (depth >= 0) state.undo(marks[depth]);
+				continue;
+			}
+			int branch = next[depth] == 0 ? first[depth] : 1 - first[depth];
+			next[depth]++;
+			double bound = branch == MERGE ? mergeBounds[depth] : forbidBounds[depth];
+			if (state.costs + bound > this.limit) continue;
+
+			marks[depth] = state.mark();
+			branches[depth] = branch;
+			if (branch == MERGE) {
+				state.merge(edgeI[depth], edgeJ[depth]);
+			} else {
+				state.forbid(edgeI[depth], edgeJ[depth]);
+			}
+			if (!chooseEdge(state, edge, bounds)) {
+				state.undo(marks[depth]);
+				continue;
+			}
+			if (depth + 1 == splitDepth) {
+				int[] path = new int[3 * splitDepth];
+				for (int d = 0; d < splitDepth; d++) {
+					path[3 * d] = branches[d];
+					path[3 * d + 1] = edgeI[d];
+					path[3 * d + 2] = edgeJ[d];
+				}
+				subtrees.add(path);
+				state.undo(marks[depth]);
+				continue;
+			}
+
+			depth++;
+			if (depth == capacity) {
+				capacity *= 2;
+				edgeI = grow(edgeI, capacity);
+				edgeJ = grow(edgeJ, capacity);
+				first = grow(first, capacity);
+				next = grow(next, capacity);
+				branches = grow(branches, capacity);
+				marks = grow(marks, capacity);
+				mergeBounds = grow(mergeBounds, capacity);
+				forbidBounds = grow(forbidBounds, capacity);
+			}
+			edgeI[depth] = edge[0];
+			edgeJ[depth] = edge[1];
+			mergeBounds[depth] = bounds[MERGE];
+			forbidBounds[depth] = bounds[FORBID];
+			first[depth] = bounds[MERGE] <= bounds[FORBID] ? MERGE : FORBID;
+			next[depth] = 0;
+		}
+	}
+
+	/**
+	 * Chooses the edge to branch on. An edge with one branch exceeding the
+	 * limit is taken first, since it only has one branch left. Otherwise it
+	 * is the positive edge with the highest difference between the lower
+	 * bounds of merging and forbidding it.
+	 *
+	 * @return false if there is nothing to branch on, because the state is a
+	 *         clustering, which has been offered as solution, or because both
+	 *         branches of an edge would exceed the limit.
+	 */
+	private boolean chooseEdge(State state, int[] edge, double[] bounds) {
+		int n = state.n;
+		double epsilon = tolerance(state.costs);
+		double room = this.limit - state.costs;
+		double highest = -1;
+		boolean forced = false;
+		boolean conflict = false;
+		for (int i = 0; i < n; i++) {
+			if (!state.active[i]) continue;
+			float[] wi = state.w[i];
+			double[] icpI = state.icp[i];
+			double[] icfI = state.icf[i];
+			for (int j = i + 1; j < n; j++) {
+				if (!state.active[j] || wi[j] <= 0) continue;
+				double p = icpI[j];
+				double f = icfI[j];
+				if (p > epsilon) conflict = true;
+				/* every clustering either merges or separates i and j */
+				if (Math.min(p, f) > room) return false;
+				boolean oneBranch = Math.max(p, f) > room;
+				if (forced && !oneBranch) continue;
+				double difference = Math.abs(p - f);
+				if (difference > highest || (oneBranch && !forced)) {
+					highest = difference;
+					forced = oneBranch;
+					edge[0] = i;
+					edge[1] = j;
+				}
+			}
+		}
+		if (!conflict && !findConflictWithoutCosts(state, edge)) {
+			offerSolution(state);
+			return false;
+		}
+		bounds[MERGE] = state.icp[edge[0]][edge[1]];
+		bounds[FORBID] = state.icf[edge[0]][edge[1]];
+		if (state.costs + Math.min(bounds[MERGE], bounds[FORBID]) > this.limit) return false;
+		return forced || state.costs + state.packingBound() <= this.limit;
+	}
+
+	/**
+	 * Looks for a positive edge whose nodes disagree about a third node,
+	 * which costs nothing to resolve because the non-positive edge is zero.
+	 * Only called if there is no conflict with costs, so it is rarely needed.
+	 */
+	private boolean findConflictWithoutCosts(State state, int[] edge) {
+		int n = state.n;
+		for (int i = 0; i < n; i++) {
+			if (!state.active[i]) continue;
+			float[] wi = state.w[i];
+			for (int j = i + 1; j < n; j++) {
+				if (!state.active[j] || wi[j] <= 0) continue;
+				float[] wj = state.w[j];
+				for (int k = 0; k < n; k++) {
+					if (!state.active[k] || k == i || k == j) continue;
+					if ((wi[k] > 0) != (wj[k] > 0)) {
+						edge[0] = i;
+						edge[1] = j;
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private synchronized void offerSolution(State state) {
+		if (state.costs > this.limit) return;
+		this.bestClusters = state.clusters();
+		this.limit = state.costs - tolerance(state.costs);
+	}
+
+	private boolean timeIsUp() {
+		if (System.currentTimeMillis() - this.startTime > this.maxTimeMillis) {
+			this.stopped = true;
+		}
+		return this.stopped;
+	}
+
+	/* costs closer than this are treated as equal, to allow for rounding */
+	private static double tolerance(double costs) {
+		return 1e-6 * (1 + Math.abs(costs));
+	}
+
+	private static int[] grow(int[] array, int length) {
+		int[] grown = new int[length];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private static double[] grow(double[] array, int length) {
+		double[] grown = new double[length];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	/* the costs a third node adds to merging two nodes with edges x and y to it */
+	private static float mergeCosts(float x, float y) {
+		if (x > 0 && y <= 0) return Math.min(x, -y);
+		if (x <= 0 && y > 0) return Math.min(-x, y);
+		return 0;
+	}
+
+	/* the costs a third node adds to forbidding the edge of two nodes with edges x and y to it */
+	private static float forbidCosts(float x, float y) {
+		if (x > 0 && y > 0) return Math.min(x, y);
+		return 0;
+	}
+
+	/**
+	 * The edge matrix of one thread with the lower bounds for merging (icp)
+	 * and forbidding (icf) each pair of nodes. A merged node lives on in the
+	 * row of the node it was merged into, the other row is set inactive.
+	 */
+	private static class State {
+
+		int n;
+		float[][] w;
+		double[][] icp;
+		double[][] icf;
+		boolean[] active;
+		/* the node each inactive node was merged into, -1 for active nodes */
+		int[] mergedInto;
+		double costs = 0;
+
+		/* undo log, five ints per step: branch, i, j, float position, double position */
+		private int[] steps = new int[80];
+		private int stepCount = 0;
+		private float[] floats = new float[1024];
+		private int floatCount = 0;
+		private double[] doubles = new double[1024];
+		private int doubleCount = 0;
+
+		/* rows used while merging and undoing a merge */
+		private float[] merged;
+		private float[] before;
+		private boolean[][] used;
+
+		State(ConnectedComponent cc) {
+			this.n = cc.getNodeNumber();
+			this.w = new float[this.n][this.n];
+			this.icp = new double[this.n][this.n];
+			this.icf = new double[this.n][this.n];
+			this.active = new boolean[this.n];
+			this.mergedInto = new int[this.n];
+			this.merged = new float[this.n];
+			this.before = new float[this.n];
+			for (int i = 0; i < this.n; i++) {
+				this.active[i] = true;
+				this.mergedInto[i] = -1;
+				for (int j = i + 1; j < this.n; j++) {
+					float cost = cc.getCCEdges().getEdgeCost(i, j);
+					this.w[i][j] = cost;
+					this.w[j][i] = cost;
+				}
+			}
+			for (int i = 0; i < this.n; i++) {
+				for (int j = i + 1; j < this.n; j++) {
+					calculateBounds(i, j);
+				}
+			}
+		}
+
+		private State(State other) {
+			this.n = other.n;
+			this.w = new float[this.n][];
+			this.icp = new double[this.n][];
+			this.icf = new double[this.n][];
+			for (int i = 0; i < this.n; i++) {
+				this.w[i] = other.w[i].clone();
+				this.icp[i] = other.icp[i].clone();
+				this.icf[i] = other.icf[i].clone();
+			}
+			this.active = other.active.clone();
+			this.mergedInto = other.mergedInto.clone();
+			this.costs = other.costs;
+			this.merged = new float[this.n];
+			this.before = new float[this.n];
+		}
+
+		State copy() {
+			return new State(this);
+		}
+
+		private void calculateBounds(int u, int v) {
+			float[] wu = this.w[u];
+			float[] wv = this.w[v];
+			double p = 0;
+			double f = 0;
+			for (int k = 0; k < this.n; k++) {
+				if (!this.active[k] || k == u || k == v) continue;
+				p += mergeCosts(wu[k], wv[k]);
+				f += forbidCosts(wu[k], wv[k]);
+			}
+			if (wu[v] > 0) f += wu[v];
+			this.icp[u][v] = p;
+			this.icp[v][u] = p;
+			this.icf[u][v] = f;
+			this.icf[v][u] = f;
+		}
+
+		/* merges node j into node i */
+		void merge(int i, int j) {
+			logStep(MERGE, i, j);
+			float[] wi = this.w[i];
+			float[] wj = this.w[j];
+			ensureFloats(this.n);
+			System.arraycopy(wi, 0, this.floats, this.floatCount, this.n);
+			this.floatCount += this.n;
+			ensureDoubles(2 * this.n + 1);
+			this.doubles[this.doubleCount++] = this.costs;
+			System.arraycopy(this.icp[i], 0, this.doubles, this.doubleCount, this.n);
+			this.doubleCount += this.n;
+			System.arraycopy(this.icf[i], 0, this.doubles, this.doubleCount, this.n);
+			this.doubleCount += this.n;
+
+			this.costs += this.icp[i][j];
+			for (int k = 0; k < this.n; k++) {
+				this.merged[k] = (this.active[k] && k != i && k != j) ? wi[k] + wj[k] : wi[k];
+			}
+			/* the rows i and j are replaced by the merged row in the bounds of all other pairs */
+			updateOtherPairs(i, j, this.merged, wi, 1);
+			for (int k = 0; k < this.n; k++) {
+				if (!this.active[k] || k == i || k == j) continue;
+				wi[k] = this.merged[k];
+				this.w[k][i] = this.merged[k];
+			}
+			this.active[j] = false;
+			this.mergedInto[j] = i;
+			for (int v = 0; v < this.n; v++) {
+				if (this.active[v] && v != i) calculateBounds(i, v);
+			}
+		}
+
+		/*
+		 * adds sign times the change of the bounds of all pairs without i and
+		 * j if the rows before and after are replaced by the merged row
+		 */
+		private void updateOtherPairs(int i, int j, float[] after, float[] before, int sign) {
+			float[] wj = this.w[j];
+			for (int u = 0; u < this.n; u++) {
+				if (!this.active[u] || u == i || u == j) continue;
+				double[] icpU = this.icp[u];
+				double[] icfU = this.icf[u];
+				for (int v = u + 1; v < this.n; v++) {
+					if (!this.active[v] || v == i || v == j) continue;
+					double p = mergeCosts(after[u], after[v])
+							- mergeCosts(before[u], before[v])
+							- mergeCosts(wj[u], wj[v]);
+					double f = forbidCosts(after[u], after[v])
+							- forbidCosts(before[u], before[v])
+							- forbidCosts(wj[u], wj[v]);
+					if (p != 0) {
+						icpU[v] += sign * p;
+						this.icp[v][u] = icpU[v];
+					}
+					if (f != 0) {
+						icfU[v] += sign * f;
+						this.icf[v][u] = icfU[v];
+					}
+				}
+			}
+		}
+
+		private void undoMerge(int i, int j, int floatPosition, int doublePosition) {
+			float[] wi = this.w[i];
+			/* wi is still the merged row, the row before is in the log */
+			float[] before = this.before;
+			System.arraycopy(this.floats, floatPosition, before, 0, this.n);
+			updateOtherPairs(i, j, wi, before, -1);
+			this.active[j] = true;
+			this.mergedInto[j] = -1;
+			for (int k = 0; k < this.n; k++) {
+				wi[k] = before[k];
+				this.w[k][i] = before[k];
+			}
+			this.costs = this.doubles[doublePosition];
+			for (int k = 0; k < this.n; k++) {
+				double p = this.doubles[doublePosition + 1 + k];
+				double f = this.doubles[doublePosition + 1 + this.n + k];
+				this.icp[i][k] = p;
+				this.icp[k][i] = p;
+				this.icf[i][k] = f;
+				this.icf[k][i] = f;
+			}
+		}
+
+		/* forbids the positive edge between node i and node j */
+		void forbid(int i, int j) {
+			float x = this.w[i][j];
+			logStep(FORBID, i, j);
+			ensureFloats(1);
+			this.floats[this.floatCount++] = x;
+			ensureDoubles(1);
+			this.doubles[this.doubleCount++] = this.costs;
+
+			updateForbidden(i, j, x, 1);
+			this.w[i][j] = Float.NEGATIVE_INFINITY;
+			this.w[j][i] = Float.NEGATIVE_INFINITY;
+			this.costs += x;
+		}
+
+		/*
+		 * adds sign times the change of the bounds if the edge between i and j
+		 * goes from x to forbidden. Only the pairs with i or j change.
+		 */
+		private void updateForbidden(int i, int j, float x, int sign) {
+			for (int v = 0; v < this.n; v++) {
+				if (!this.active[v] || v == i || v == j) continue;
+				float vj = this.w[v][j];
+				float vi = this.w[v][i];
+				double p = mergeCosts(Float.NEGATIVE_INFINITY, vj) - mergeCosts(x, vj);
+				double f = -forbidCosts(x, vj);
+				this.icp[i][v] += sign * p;
+				this.icp[v][i] = this.icp[i][v];
+				this.icf[i][v] += sign * f;
+				this.icf[v][i] = this.icf[i][v];
+				p = mergeCosts(Float.NEGATIVE_INFINITY, vi) - mergeCosts(x, vi);
+				f = -forbidCosts(x, vi);
+				this.icp[j][v] += sign * p;
+				this.icp[v][j] = this.icp[j][v];
+				this.icf[j][v] += sign * f;
+				this.icf[v][j] = this.icf[j][v];
+			}
+			this.icf[i][j] -= sign * x;
+			this.icf[j][i] = this.icf[i][j];
+		}
+
+		private void undoForbid(int i, int j, int floatPosition, int doublePosition) {
+			float x = this.floats[floatPosition];
+			updateForbidden(i, j, x, -1);
+			this.w[i][j] = x;
+			this.w[j][i] = x;
+			this.costs = this.doubles[doublePosition];
+		}
+
+		/*
+		 * a lower bound of the costs still to come: conflict triples that
+		 * share no pair each cost at least their cheapest pair
+		 */
+		double packingBound() {
+			if (this.used == null) this.used = new boolean[this.n][this.n];
+			for (int i = 0; i < this.n; i++) {
+				Arrays.fill(this.used[i], false);
+			}
+			double bound = 0;
+			for (int k = 0; k < this.n; k++) {
+				if (!this.active[k]) continue;
+				float[] wk = this.w[k];
+				for (int u = 0; u < this.n; u++) {
+					if (!this.active[u] || u == k || wk[u] <= 0 || this.used[k][u]) continue;
+					float[] wu = this.w[u];
+					for (int v = u + 1; v < this.n; v++) {
+						if (!this.active[v] || v == k || wk[v] <= 0 || wu[v] >= 0
+								|| this.used[k][v] || this.used[u][v]) continue;
+						bound += Math.min(Math.min(wk[u], wk[v]), -wu[v]);
+						this.used[k][u] = this.used[u][k] = true;
+						this.used[k][v] = this.used[v][k] = true;
+						this.used[u][v] = this.used[v][u] = true;
+						break;
+					}
+				}
+			}
+			return bound;
+		}
+
+		/* applies the decisions of a path found while splitting the search tree */
+		void replay(int[] path) {
+			for (int d = 0; d < path.length; d += 3) {
+				if (path[d] == MERGE) {
+					merge(path[d + 1], path[d + 2]);
+				} else {
+					forbid(path[d + 1], path[d + 2]);
+				}
+			}
+		}
+
+		int mark() {
+			return this.stepCount;
+		}
+
+		/* undoes all steps after the mark */
+		void undo(int mark) {
+			while (this.stepCount > mark) {
+				this.stepCount -= 5;
+				int s = this.stepCount;
+				if (this.steps[s] == MERGE) {
+					undoMerge(this.steps[s + 1], this.steps[s + 2], this.steps[s + 3], this.steps[s + 4]);
+				} else {
+					undoForbid(this.steps[s + 1], this.steps[s + 2], this.steps[s + 3], this.steps[s + 4]);
+				}
+				this.floatCount = this.steps[s + 3];
+				this.doubleCount = this.steps[s + 4];
+			}
+		}
+
+		private void logStep(int branch, int i, int j) {
+			if (this.stepCount + 5 > this.steps.length) {
+				this.steps = grow(this.steps, 2 * this.steps.length);
+			}
+			this.steps[this.stepCount++] = branch;
+			this.steps[this.stepCount++] = i;
+			this.steps[this.stepCount++] = j;
+			this.steps[this.stepCount++] = this.floatCount;
+			this.steps[this.stepCount++] = this.doubleCount;
+		}
+
+		private void ensureFloats(int count) {
+			if (this.floatCount + count > this.floats.length) {
+				float[] grown = new float[Math.max(2 * this.floats.length, this.floatCount + count)];
+				System.arraycopy(this.floats, 0, grown, 0, this.floatCount);
+				this.floats = grown;
+			}
+		}
+
+		private void ensureDoubles(int count) {
+			if (this.doubleCount + count > this.doubles.length) {
+				this.doubles = grow(this.doubles, Math.max(2 * this.doubles.length, this.doubleCount + count));
+			}
+		}
+
+		/*
+		 * the clusters of a state without conflicts: the nodes connected by
+		 * positive edges, and every merged node in the cluster of the node it
+		 * was merged into
+		 */
+		int[] clusters() {
+			int[] clusterOfActive = new int[this.n];
+			Arrays.fill(clusterOfActive, -1);
+			int[] stack = new int[this.n];
+			int clusterNr = 0;
+			for (int i = 0; i < this.n; i++) {
+				if (!this.active[i] || clusterOfActive[i] != -1) continue;
+				int top = 0;
+				stack[top++] = i;
+				clusterOfActive[i] = clusterNr;
+				while (top > 0) {
+					int u = stack[--top];
+					for (int v = 0; v < this.n; v++) {
+						if (this.active[v] && clusterOfActive[v] == -1 && this.w[u][v] > 0) {
+							clusterOfActive[v] = clusterNr;
+							stack[top++] = v;
+						}
+					}
+				}
+				clusterNr++;
+			}
+			int[] nodes2clusters = new int[this.n];
+			for (int i = 0; i < this.n; i++) {
+				int node = i;
+				while (this.mergedInto[node] != -1) {
+					node = this.mergedInto[node];
+				}
+				nodes2clusters[i] = clusterOfActive[node];
+			}
+			return nodes2clusters;
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.fixedparameterclustering;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.CC2DArray;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.greedy.GreedyClusterer;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
+
+public class ParallelFixedParameterClustererTest {
+
+	private static final double TOLERANCE = 1e-4;
+
+	private TaskContext createContext(int threads) {
+		TaskContext context = new TaskContext();
+		context.fpMaxTimeMillis = 60000;
+		context.useThreads = threads > 1;
+		context.maxNoThreads = threads;
+		return context;
+	}
+
+	/**
+	 * A component with random costs between -5 and 5, where a quarter of the
+	 * costs are zero, so that there are conflicts without any costs.
+	 */
+	private ConnectedComponent createRandomComponent(Random random, int n, TaskContext context) {
+		CC2DArray edges = new CC2DArray(n);
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				float cost = random.nextInt(4) == 0 ? 0 : (float) (random.nextDouble() * 10 - 5);
+				edges.setEdgeCost(i, j, cost);
+			}
+		}
+		return new ConnectedComponent(edges, createIds(n), null, context);
+	}
+
+	/**
+	 * A component of planted clusters of 2 to n/5 nodes, where the sign of
+	 * the costs of the given part of the pairs is flipped.
+	 */
+	private ConnectedComponent createPlantedComponent(Random random, int n, double noise, TaskContext context) {
+		int[] planted = new int[n];
+		int cluster = 0, left = 0;
+		for (int i = 0; i < n; i++) {
+			if (left == 0) {
+				cluster++;
+				left = 2 + random.nextInt(Math.max(2, n / 5));
+			}
+			planted[i] = cluster;
+			left--;
+		}
+		CC2DArray edges = new CC2DArray(n);
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				float cost = (float) (0.5 + random.nextDouble() * 10);
+				boolean same = planted[i] == planted[j];
+				if (random.nextDouble() < noise) same = !same;
+				edges.setEdgeCost(i, j, same ? cost : -cost);
+			}
+		}
+		return new ConnectedComponent(edges, createIds(n), null, context);
+	}
+
+	private String[] createIds(int n) {
+		String[] ids = new String[n];
+		for (int i = 0; i < n; i++) {
+			ids[i] = Integer.toString(i);
+		}
+		return ids;
+	}
+
+	/* the minimal costs of all clusterings, by enumerating every partition of the nodes */
+	private double enumerate(ConnectedComponent cc, int[] clusters, int node, int clusterNr) {
+		if (node == clusters.length) {
+			return cc.calculateClusteringScore(clusters);
+		}
+		double best = Double.POSITIVE_INFINITY;
+		for (int c = 0; c <= clusterNr; c++) {
+			clusters[node] = c;
+			best = Math.min(best, enumerate(cc, clusters, node + 1, Math.max(clusterNr, c + 1)));
+		}
+		return best;
+	}
+
+	private double greedyScore(ConnectedComponent cc) {
+		ConnectedComponent greedy = cc.copy(true);
+		new GreedyClusterer(greedy);
+		return greedy.getClusteringScore();
+	}
+
+	/**
+	 * Checks that the clusterer was not stopped and that the clustering it
+	 * set has the costs it reports.
+	 */
+	private double cluster(ConnectedComponent cc, double maxK) {
+		ParallelFixedParameterClusterer clusterer = (maxK == Double.POSITIVE_INFINITY)
+				? new ParallelFixedParameterClusterer(cc)
+				: new ParallelFixedParameterClusterer(cc, maxK);
+		assertFalse("stopped", clusterer.isStopped());
+		assertEquals(cc.calculateClusteringScore(cc.getClusters()), cc.getClusteringScore(), TOLERANCE);
+		return cc.getClusteringScore();
+	}
+
+	/**
+	 * Clusters random components of up to 9 nodes and compares the costs
+	 * with those of the best of all clusterings.
+	 */
+	private void compareWithEnumeration(boolean greedyBound, long seed) {
+		Random random = new Random(seed);
+		for (int k = 0; k < 300; k++) {
+			int n = 3 + random.nextInt(7);
+			ConnectedComponent cc = createRandomComponent(random, n, createContext(1));
+			double expected = enumerate(cc, new int[n], 0, 0);
+			double maxK = greedyBound ? greedyScore(cc) : Double.POSITIVE_INFINITY;
+			double actual = cluster(cc.copy(true), maxK);
+			assertEquals("component " + k + " with " + n + " nodes", expected, actual, TOLERANCE);
+		}
+	}
+
+	@Test
+	public void testWithoutBound() {
+		compareWithEnumeration(false, 1);
+	}
+
+	@Test
+	public void testWithGreedyBound() {
+		compareWithEnumeration(true, 2);
+	}
+
+	/**
+	 * Components large enough to be searched by several threads have to be
+	 * clustered with the same costs as by a single thread.
+	 */
+	@Test
+	public void testThreads() {
+		Random random = new Random(3);
+		for (int k = 0; k < 6; k++) {
+			int n = ParallelFixedParameterClusterer.MIN_NODES_FOR_THREADS + random.nextInt(10);
+			ConnectedComponent cc = createPlantedComponent(random, n, 0.02, createContext(1));
+			double maxK = greedyScore(cc);
+			double single = cluster(cc.copy(true), maxK);
+
+			ConnectedComponent threaded = cc.copy(true);
+			threaded.setContext(createContext(4));
+			assertEquals("component " + k + " with " + n + " nodes", single, cluster(threaded, maxK), TOLERANCE);
+			assertTrue(single <= maxK + TOLERANCE);
+		}
+	}
+}
@@ -37,18 +37,18 @@ public class KmeansClusterer implements IGeometricClusterer {
 	
 	/**
 	 * Initialises the object with a {@link ConnectedComponent} and 
-	 * also the other global properties from the Config file.
+	 * also the other global properties from its run configuration.
 	 */
 	public void initGeometricClusterer(ConnectedComponent cc) {
 		this.cc = cc;
 		this.maxK = cc.getNodeNumber();
-		if(this.maxK>GeometricClusteringConfig.kLimit){
-			this.maxK = GeometricClusteringConfig.kLimit;
+		if(this.maxK>cc.getContext().kLimit){
+			this.maxK = cc.getContext().kLimit;
 		}
 		this.bestCosts = Double.MAX_VALUE;
 		this.center = new double[cc.getCCPostions(0).length];
 		this.span = calculateCenterAndSpan(cc.getCCPositions(), center);
-		this.maxRuns = GeometricClusteringConfig.maxInitStartConfigs;
+		this.maxRuns = cc.getContext().maxInitStartConfigs;
 		this.listOfElementsSortedByCosts = new int[this.cc.getNodeNumber()];
 	}
 
@@ -8,7 +8,6 @@ import java.util.concurrent.ExecutorService;
 
 
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
 
 public class SingleLinkageClusterer implements IGeometricClusterer{
 
@@ -41,16 +40,16 @@ public class SingleLinkageClusterer implements IGeometricClusterer{
 	
 	
 	public void initGeometricClusterer(ConnectedComponent cc){
-		if(TaskConfig.useThreads){
-			es = java.util.concurrent.Executors.newFixedThreadPool(TaskConfig.maxNoThreads);	
+		this.cc = cc;
+		if(cc.getContext().useThreads){
+			es = java.util.concurrent.Executors.newFixedThreadPool(cc.getContext().maxNoThreads);	
 		}else{
 			es = java.util.concurrent.Executors.newFixedThreadPool(1);
 		}
-		this.cc = cc;
-		this.minDistance = GeometricClusteringConfig.minDistance;
-		this.maxDistance = GeometricClusteringConfig.maxDistance;
-		this.stepsize = GeometricClusteringConfig.stepsize;
-		this.stepsizeFactor = GeometricClusteringConfig.stepsizeFactor;
+		this.minDistance = cc.getContext().minDistance;
+		this.maxDistance = cc.getContext().maxDistance;
+		this.stepsize = cc.getContext().stepsize;
+		this.stepsizeFactor = cc.getContext().stepsizeFactor;
 		this.distances = new float[this.cc.getNodeNumber()][this.cc.getNodeNumber()];
 		this.sortedDistances = new float[(((this.cc.getNodeNumber()-1)*this.cc.getNodeNumber())/2)+1];
 		int k =0;
@@ -175,8 +174,8 @@ public class SingleLinkageClusterer implements IGeometricClusterer{
 	public void runForSortedArray(int a, int b) throws InterruptedException, ExecutionException{
 		ArrayList<CalculateClustersTask> test = new ArrayList<CalculateClustersTask>();
 		if((b-a)<20){
-			if(TaskConfig.useThreads){
-				es = java.util.concurrent.Executors.newFixedThreadPool(TaskConfig.maxNoThreads);	
+			if(this.cc.getContext().useThreads){
+				es = java.util.concurrent.Executors.newFixedThreadPool(this.cc.getContext().maxNoThreads);	
 			}else{
 				es = java.util.concurrent.Executors.newFixedThreadPool(1);
 			}
@@ -243,8 +242,8 @@ public class SingleLinkageClusterer implements IGeometricClusterer{
 					bestStep = Arrays.binarySearch(this.sortedDistances, (float) calculateClustersTask.distance);
 				}
 			}
-			if(TaskConfig.useThreads){
-				es = java.util.concurrent.Executors.newFixedThreadPool(TaskConfig.maxNoThreads);	
+			if(this.cc.getContext().useThreads){
+				es = java.util.concurrent.Executors.newFixedThreadPool(this.cc.getContext().maxNoThreads);	
 			}else{
 				es = java.util.concurrent.Executors.newFixedThreadPool(1);
 			}
@@ -0,0 +1,72 @@
+/*
+ * Created on 17. October 2026
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.iterativeclustering;
+
+/**
+ * The clustering found by the {@link IteratorThread} for one threshold. The
+ * objects are identified by the numbers they have in the edges, so callers
+ * don't need to parse the object ids out of the results string.
+ */
+public class ClusteringResult {
+
+	private final double threshold;
+
+	/* cluster number for every object, -1 if the object was not clustered */
+	private final int[] assignments;
+
+	private final int clusterCount;
+
+	private final double costs;
+
+	/**
+	 * @param threshold
+	 *            The threshold the clustering was done for.
+	 * @param assignments
+	 *            The cluster number of every object, numbered from 0 to
+	 *            clusterCount-1.
+	 * @param clusterCount
+	 *            The number of clusters.
+	 * @param costs
+	 *            The sum of the clustering costs of all connected components.
+	 */
+	public ClusteringResult(double threshold, int[] assignments, int clusterCount,
+			double costs) {
+		this.threshold = threshold;
+		this.assignments = assignments;
+		this.clusterCount = clusterCount;
+		this.costs = costs;
+	}
+
+	/**
+	 * @return the threshold the clustering was done for
+	 */
+	public double getThreshold() {
+		return this.threshold;
+	}
+
+	/**
+	 * @return the cluster number for every object, -1 if the object was not
+	 *         clustered
+	 */
+	public int[] getAssignments() {
+		return this.assignments;
+	}
+
+	/**
+	 * @return the number of clusters
+	 */
+	public int getClusterCount() {
+		return this.clusterCount;
+	}
+
+	/**
+	 * @return the sum of the clustering costs of all connected components,
+	 *         including the costs of merging similar objects
+	 */
+	public double getCosts() {
+		return this.costs;
+	}
+
+}
@@ -11,6 +11,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
 import java.util.concurrent.Semaphore;
@@ -21,9 +22,7 @@ import clusterMaker.algorithms.networkClusterers.TransClust.TransClustCluster;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.clusteranalysis.Fmeassure;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.costmatrixcreation.dataTypes.Edges;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.costmatrixcreation.main.ArgsParseException;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.costmatrixcreation.main.Config;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.costmatrixcreation.main.InOut;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.costmatrixcreation.main.Splitter;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ICCEdges;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.ClusteringManager;
@@ -31,6 +30,7 @@ import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmana
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.InvalidInputFileException;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.InvalidTypeException;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
 
 
 public class IteratorThread extends Thread {
@@ -42,19 +42,34 @@ public class IteratorThread extends Thread {
 	private HashMap<Integer,String>  proteins2integers;
 	private HashMap<String,Integer> integers2proteins;
 	public StringBuffer resultsStringBuffer;
+	private List<ClusteringResult> results;
 	public double dummyCosts= 0;
 	private Semaphore s;
+	private TaskContext context;
+	/* the connected components for all thresholds of this run */
+	private ThresholdSweep sweep;
 	
 	public IteratorThread(float upperBound){
+		this.context = new TaskContext();
 		this.upperBound = upperBound;
 	}
 	
 	public IteratorThread(){
-		upperBound = TaskConfig.upperBound;
+		this.context = new TaskContext();
+		upperBound = this.context.upperBound;
 	}
 	
 	public IteratorThread(Edges es, HashMap<String,Integer> integers2proteins, HashMap<Integer,String>  proteins2integers, Semaphore s){
-		upperBound = TaskConfig.upperBound;
+		this(es, integers2proteins, proteins2integers, s, new TaskContext());
+	}
+	
+	/**
+	 * Creates a thread that clusters the given edges with the given run
+	 * configuration. The semaphore is released when the thread is done.
+	 */
+	public IteratorThread(Edges es, HashMap<String,Integer> integers2proteins, HashMap<Integer,String>  proteins2integers, Semaphore s, TaskContext context){
+		this.context = context;
+		upperBound = context.upperBound;
 		this.es = es;
 		this.proteins2integers = proteins2integers;
 		this.integers2proteins = integers2proteins;
@@ -68,8 +83,8 @@ public class IteratorThread extends Thread {
 		try{
 			Hashtable<String,Hashtable<String,Boolean>> clusterReference =null;
 			HashMap<String, String> referenceHash = new HashMap<String, String>();
-			if(TaskConfig.goldstandardPath!=null){
-				clusterReference = readGoldStandardFile();
+			if(this.context.goldstandardPath!=null){
+				clusterReference = readGoldStandardFile(this.context.goldstandardPath);
 				for (String key: clusterReference.keySet()) {
 					Hashtable<String, Boolean> h = clusterReference.get(key);
 					for (String id : h.keySet()) {
@@ -77,8 +92,6 @@ public class IteratorThread extends Thread {
 					}
 				}
 			}
-			boolean dummy = Config.createSimilarityFile;
-			Config.createSimilarityFile = false;
 //			HashMap<String,Integer> integers2proteins = new HashMap<String, Integer>();
 //			HashMap<Integer,String>  proteins2integers = new HashMap<Integer, String>();
 //			Edges es = InOut.readSimilarityFile(Config.similarityFile, proteins2integers, integers2proteins);
@@ -111,10 +124,10 @@ public class IteratorThread extends Thread {
 			}
 			
 			
-			if(TaskConfig.knownAssignmentsFile!=null){
+			if(this.context.knownAssignmentsFile!=null){
 				HashMap<String, Boolean> knownAssignments = new HashMap<String, Boolean>();
 				Vector<Vector<String>> v = new Vector<Vector<String>>();
-				BufferedReader knownAssignmentsReader = new BufferedReader(new FileReader(TaskConfig.knownAssignmentsFile));
+				BufferedReader knownAssignmentsReader = new BufferedReader(new FileReader(this.context.knownAssignmentsFile));
 				String line;
 				String old = "";
 				Vector<String> v2 = new Vector<String>();
@@ -187,25 +200,38 @@ public class IteratorThread extends Thread {
 			
 			
 			
-			Config.createSimilarityFile = dummy;
-			if(TaskConfig.mode==TaskConfig.COMPARISON_MODE){
+			this.sweep = new ThresholdSweep(es, proteins2integers);
+			
+			if(this.context.mode==TaskConfig.COMPARISON_MODE){
 //				BufferedWriter bw = new BufferedWriter(new FileWriter(TaskConfig.clustersPath));
 				resultsStringBuffer = new StringBuffer();
+				results = new ArrayList<ClusteringResult>();
 				log.info("");
 				log.info("");
 				log.info("Clustering Mode: cluster iterativ");
 				log.info("");
-				log.info("Threshold range: " + TaskConfig.minThreshold + " to " + TaskConfig.maxThreshold + "");
-				log.info("Stepsize: " + TaskConfig.thresholdStepSize + "");
+				log.info("Threshold range: " + this.context.minThreshold + " to " + this.context.maxThreshold + "");
+				log.info("Stepsize: " + this.context.thresholdStepSize + "");
 				log.info("");
 				log.info("");
 				
-				for (double threshold = TaskConfig.minThreshold; threshold <= TaskConfig.maxThreshold; threshold=Math.rint((threshold+TaskConfig.thresholdStepSize)*100000)/100000) {
+				/* the merged objects are the same for all thresholds */
+				Vector<Vector<Integer>> mergableNodes = this.sweep.splitIntoConnectedComponents(upperBound);
+				Hashtable<Integer, Vector<Integer>> mergedNodes = new Hashtable<Integer, Vector<Integer>>();
+				for (int i = 0; i < mergableNodes.size(); i++) {
+					Vector<Integer> v2 = mergableNodes.get(i);
+					for (int j = 0; j < v2.size(); j++) {
+						mergedNodes.put(v2.get(j),v2);
+					}
+				}
+				/* the layout positions of the representants for the previous threshold */
+				double[][] lastPositions = new double[proteins2integers.size()][];
+				
+				for (double threshold = this.context.minThreshold; threshold <= this.context.maxThreshold; threshold=Math.rint((threshold+this.context.thresholdStepSize)*100000)/100000) {
 					
 					log.info("calculating clusters for threshold " + threshold + "");
 					log.info("");
-					Vector<Vector<Integer>> v = Splitter.splitIntoConnectedComponents(es, proteins2integers, (float) threshold, false);
-					Vector<Vector<Integer>> mergableNodes = Splitter.splitIntoConnectedComponents(es, proteins2integers, upperBound, false);
+					Vector<Vector<Integer>> v = this.sweep.splitIntoConnectedComponents((float) threshold);
 //					for (int i = 0; i < es.targets.length; i++) {
 //						System.out.println(es.sources[i] + "\t" + es.targets[i] + "\t" + es.values[i]);
 //					}
@@ -216,14 +242,8 @@ public class IteratorThread extends Thread {
 //					
 //					System.out.println(v.size());
 					
-					Hashtable<Integer, Vector<Integer>> mergedNodes = new Hashtable<Integer, Vector<Integer>>();
-					for (int i = 0; i < mergableNodes.size(); i++) {
-						Vector<Integer> v2 = mergableNodes.get(i);
-						for (int j = 0; j < v2.size(); j++) {
-							mergedNodes.put(v2.get(j),v2);
-						}
-					}
 					Vector<ConnectedComponent> connectedComponents = new Vector<ConnectedComponent>();
+					Vector<Vector<Integer>> componentRepresentants = new Vector<Vector<Integer>>();
 					boolean already[] = new boolean[proteins2integers.size()];
 					for (Vector<Integer> vector : v) {
 						int count = 0;
@@ -238,7 +258,7 @@ public class IteratorThread extends Thread {
 								count++;
 							}
 						}
-						ICCEdges cc2d2 = TaskConfig.ccEdgesEnum.createCCEdges(count);
+						ICCEdges cc2d2 = this.context.ccEdgesEnum.createCCEdges(count);
 						String[] ids = new String[count];
 						Arrays.fill(ids, "");
 						for (int i = 0; i < representants.size(); i++) {
@@ -252,7 +272,7 @@ public class IteratorThread extends Thread {
 								float costs = 0;
 								for (int k = 0; k < merged1.size(); k++) {
 									for (int k2 = 0; k2 < merged2.size(); k2++) {
-										if(InOut.getEdgeValue(merged1.get(k), merged2.get(k2), es)<TaskConfig.lowerBound){
+										if(InOut.getEdgeValue(merged1.get(k), merged2.get(k2), es)<this.context.lowerBound){
 											costs-=100000;
 										}else{
 											costs+=(float) (InOut.getEdgeValue(merged1.get(k), merged2.get(k2), es)-threshold);
@@ -263,18 +283,27 @@ public class IteratorThread extends Thread {
 							}
 						}
 						
-						ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null);
+						ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null,this.context);
+						if(this.context.warmStartLayouts) setLastPositions(cc, representants, lastPositions);
 						connectedComponents.add(cc);
+						componentRepresentants.add(representants);
 					}
 					
 					Hashtable<String,Hashtable<String,Boolean>> clusters = new Hashtable<String, Hashtable<String,Boolean>>();
-					ClusteringManager cm = new ClusteringManager(null);
+					ClusteringManager cm = new ClusteringManager(null, this.context);
 					ArrayList<Semaphore> allSemaphores = new ArrayList<Semaphore>();
-					Semaphore maxThreadSemaphore = new Semaphore(TaskConfig.maxNoThreads, true);
+					Semaphore maxThreadSemaphore = new Semaphore(this.context.maxNoThreads, true);
+					/* the partition for the typed result, before overlaps are added */
+					int[] assignments = new int[proteins2integers.size()];
+					Arrays.fill(assignments, -1);
+					int clusterCount = 0;
+					double costs = 0;
 					for(int i=0;i<connectedComponents.size();i++){
 						Semaphore semaphore = new Semaphore(1);
 						allSemaphores.add(semaphore);
 						cm.runClusteringForOneConnectedComponent(connectedComponents.get(i), null, semaphore, maxThreadSemaphore,System.currentTimeMillis());
+						costs += connectedComponents.get(i).getClusteringScore() + connectedComponents.get(i).getReductionCost();
+						if(this.context.warmStartLayouts) keepPositions(connectedComponents.get(i), componentRepresentants.get(i), lastPositions);
 						int[] elements2cluster = connectedComponents.get(i).getClusters();
 						
 						for (int j = 0; j < connectedComponents.get(i).getNumberOfClusters(); j++) {
@@ -285,15 +314,19 @@ public class IteratorThread extends Thread {
 									for (int l = 0; l < ids.length; l++) {
 										String dummyids[] = ids[l].split("_HSP");
 										cluster.put(dummyids[0], true);
+										Integer node = integers2proteins.get(dummyids[0]);
+										if(node!=null) assignments[node] = clusterCount;
 									}
 									
 								}
 							}
 							if(cluster.size()!=0){
 								clusters.put(new Random().nextDouble()+"", cluster);
+								clusterCount++;
 							}
 						}
 					}
+					results.add(new ClusteringResult(threshold, assignments, clusterCount, costs));
 					
 					
 					HashSet<String> singletons = new HashSet<String>();
@@ -313,7 +346,7 @@ public class IteratorThread extends Thread {
 //					================Overlapping========================
 //					
 					
-					if(TaskConfig.overlap){
+					if(this.context.overlap){
 						Vector<Vector<Integer>> clustersVector = new Vector<Vector<Integer>>();
 						
 						for (String key : clusters.keySet()) {
@@ -337,7 +370,7 @@ public class IteratorThread extends Thread {
 							clusters.put(coun+"",cluster);
 							coun++;
 						}
-					}else if(TaskConfig.fuzzy){
+					}else if(this.context.fuzzy){
 						float fuzzy[][] = new float[clusters.size()][proteins2integers.size()];
 						float simSum[] = new float[proteins2integers.size()];
 						
@@ -380,7 +413,7 @@ public class IteratorThread extends Thread {
 									column++;
 									continue;
 								}
-								if(fuzzy[row][column]>TaskConfig.fuzzyThreshold){
+								if(fuzzy[row][column]>this.context.fuzzyThreshold){
 									cluster.put(id1, true);
 									countoverlaps++;
 								}
@@ -388,9 +421,9 @@ public class IteratorThread extends Thread {
 							}
 							row++;
 						}
-					}else if(TaskConfig.UseLimitK){
+					}else if(this.context.useLimitK){
 						
-						ICCEdges cc2d2 =TaskConfig.ccEdgesEnum.createCCEdges(proteins2integers.size());
+						ICCEdges cc2d2 =this.context.ccEdgesEnum.createCCEdges(proteins2integers.size());
 						String[] ids = new String[proteins2integers.size()];
 						for (String key : integers2proteins.keySet()) {
 							ids[integers2proteins.get(key)] = key;
@@ -399,7 +432,7 @@ public class IteratorThread extends Thread {
 								cc2d2.setEdgeCost(integers2proteins.get(key2), integers2proteins.get(key), (InOut.getEdgeValue(integers2proteins.get(key2), integers2proteins.get(key), es)- (float) threshold));
 							}
 						}
-						ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null);
+						ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null,this.context);
 						int[] elements2cluster = cc.getClusters();
 						clusters = new Hashtable<String, Hashtable<String,Boolean>>();
 						for (int j = 0; j < cc.getNumberOfClusters(); j++) {
@@ -527,24 +560,24 @@ public class IteratorThread extends Thread {
 					resultsStringBuffer.append("\n");
 				}
 				 
-			}else if(TaskConfig.mode==TaskConfig.HIERARICHAL_MODE){
+			}else if(this.context.mode==TaskConfig.HIERARICHAL_MODE){
 				
-				BufferedWriter bw = new BufferedWriter(new FileWriter(TaskConfig.clustersPath));
+				BufferedWriter bw = new BufferedWriter(new FileWriter(this.context.clustersPath));
 				
 				log.info("");
 				log.info("");
 				log.info("Clustering Mode: cluster hierarchical");
 				log.info("");
-				log.info("Threshold range: " + TaskConfig.minThreshold + " to " + TaskConfig.maxThreshold + "");
-				log.info("Stepsize: " + TaskConfig.thresholdStepSize + "");
+				log.info("Threshold range: " + this.context.minThreshold + " to " + this.context.maxThreshold + "");
+				log.info("Stepsize: " + this.context.thresholdStepSize + "");
 				log.info("");
 				log.info("");
 				
 				
-				if(TaskConfig.clusterHierarchicalComplete){
-					if(!TaskConfig.reducedMatrix) upperBound = Float.POSITIVE_INFINITY;
+				if(this.context.clusterHierarchicalComplete){
+					if(!this.context.reducedMatrix) upperBound = Float.POSITIVE_INFINITY;
 					Hashtable<String, Hashtable<String, Boolean>> clusters = new Hashtable<String, Hashtable<String,Boolean>>();
-					Vector<Vector<Integer>> mergableNodes = Splitter.splitIntoConnectedComponents(es, proteins2integers, (float) upperBound, false);
+					Vector<Vector<Integer>> mergableNodes = this.sweep.splitIntoConnectedComponents((float) upperBound);
 					Hashtable<Integer, Vector<Integer>> mergedNodes = new Hashtable<Integer, Vector<Integer>>();
 					for (int i = 0; i < mergableNodes.size(); i++) {
 						Vector<Integer> v2 = mergableNodes.get(i);
@@ -552,7 +585,7 @@ public class IteratorThread extends Thread {
 							mergedNodes.put(v2.get(j),v2);
 						}
 					}
-					for (double threshold = TaskConfig.maxThreshold; threshold >= TaskConfig.minThreshold; threshold=Math.rint((threshold-TaskConfig.thresholdStepSize)*100000)/100000) {
+					for (double threshold = this.context.maxThreshold; threshold >= this.context.minThreshold; threshold=Math.rint((threshold-this.context.thresholdStepSize)*100000)/100000) {
 						log.info("calculating clusters for threshold " + threshold + "");
 						log.info("");
 						clusters = calculateHierarichal2(threshold,bw,es,proteins2integers,integers2proteins,clusterReference,clusters,mergedNodes,referenceHash);
@@ -563,10 +596,10 @@ public class IteratorThread extends Thread {
 					
 				}else{
 					
-					if(!TaskConfig.reducedMatrix) upperBound = Float.POSITIVE_INFINITY;
+					if(!this.context.reducedMatrix) upperBound = Float.POSITIVE_INFINITY;
 					Hashtable<String, Hashtable<String, Boolean>> clusters = new Hashtable<String, Hashtable<String,Boolean>>();
 					Vector<String> singletons = new Vector<String>();
-					Vector<Vector<Integer>> mergableNodes = Splitter.splitIntoConnectedComponents(es, proteins2integers, (float) upperBound, false);
+					Vector<Vector<Integer>> mergableNodes = this.sweep.splitIntoConnectedComponents((float) upperBound);
 					Hashtable<Integer, Vector<Integer>> mergedNodes = new Hashtable<Integer, Vector<Integer>>();
 					for (int i = 0; i < mergableNodes.size(); i++) {
 						Vector<Integer> v2 = mergableNodes.get(i);
@@ -574,7 +607,7 @@ public class IteratorThread extends Thread {
 							mergedNodes.put(v2.get(j),v2);
 						}
 					}
-					for (double threshold = TaskConfig.minThreshold; threshold <= TaskConfig.maxThreshold; threshold=Math.rint((threshold+TaskConfig.thresholdStepSize)*100000)/100000) {
+					for (double threshold = this.context.minThreshold; threshold <= this.context.maxThreshold; threshold=Math.rint((threshold+this.context.thresholdStepSize)*100000)/100000) {
 						log.info("calculating clusters for threshold " + threshold + "");
 						log.info("");
 						clusters = calculateHierarichal(threshold,bw,es,proteins2integers,integers2proteins,clusterReference,clusters,singletons,mergedNodes);
@@ -583,7 +616,7 @@ public class IteratorThread extends Thread {
 					bw.flush();
 					bw.close();
 				}
-				if(TaskConfig.gui){
+				if(this.context.gui){
 //					this.gui.visualizationTab.removeAll();
 //					this.gui.visualizationTab.add(this.gui.visualizationTab.buildVisualizationsPanelHierarchical(TaskConfig.clustersPath));
 //					this.gui.tabsPanelOptionsVisualizations.addComponentatIndex("Visualization", null, this.gui.visualizationTab, "Visualization", TransClustGui.VISUALIZATION_TAB);
@@ -599,6 +632,44 @@ public class IteratorThread extends Thread {
 	 }
 
 
+	/**
+	 * Starts the layout of a component with the positions its representants
+	 * had for the previous threshold. Components only split up as the
+	 * threshold rises, so these positions already separate the parts that are
+	 * likely to become clusters. Nothing is set if a representant has no
+	 * position, e.g. because its component was solved without a layout.
+	 */
+	private void setLastPositions(ConnectedComponent cc, Vector<Integer> representants, double[][] lastPositions) {
+		if(representants.size()<2) return;
+		double[][] positions = new double[representants.size()][];
+		for (int i = 0; i < positions.length; i++) {
+			if(lastPositions[representants.get(i)]==null) return;
+			positions[i] = lastPositions[representants.get(i)].clone();
+		}
+		cc.setCCPositions(positions);
+	}
+
+	/**
+	 * Remembers the layout positions of a clustered component for the next
+	 * threshold.
+	 */
+	private void keepPositions(ConnectedComponent cc, Vector<Integer> representants, double[][] lastPositions) {
+		double[][] positions = cc.getCCPositions();
+		if(positions==null) return;
+		for (int i = 0; i < representants.size(); i++) {
+			lastPositions[representants.get(i)] = positions[i];
+		}
+	}
+
+	/**
+	 * @return the clustering for each threshold in the order they were
+	 *         calculated, null if not run in the comparison mode
+	 */
+	public List<ClusteringResult> getResults() {
+		return results;
+	}
+
+
 	private void rearrange(
 			Hashtable<String, Hashtable<String, Boolean>> clusters, Edges es,
 			HashMap<String, Integer> integers2proteins) {
@@ -648,7 +719,7 @@ public class IteratorThread extends Thread {
 	private void merge(Hashtable<String, Hashtable<String, Boolean>> clusters,
 			Edges es, HashMap<String, Integer> integers2proteins, double threshold) {
 		
-		while(clusters.size()>TaskConfig.limitK){
+		while(clusters.size()>this.context.limitK){
 //			System.out.println(clusters.size() + "\t" + TaskConfig.limitK);
 			int i = 0;
 			double bestCosts = Double.NEGATIVE_INFINITY;
@@ -718,8 +789,8 @@ public class IteratorThread extends Thread {
 		
 		Vector<ConnectedComponent> connectedComponents = new Vector<ConnectedComponent>();
 		
-		if(threshold==TaskConfig.maxThreshold){
-			Vector<Vector<Integer>> v = Splitter.splitIntoConnectedComponents(es, proteins2integers, (float) threshold, false);
+		if(threshold==this.context.maxThreshold){
+			Vector<Vector<Integer>> v = this.sweep.splitIntoConnectedComponents((float) threshold);
 			
 			boolean already[] = new boolean[proteins2integers.size()];
 			for (Vector<Integer> vector : v) {
@@ -735,7 +806,7 @@ public class IteratorThread extends Thread {
 						count++;
 					}
 				}
-				ICCEdges cc2d2 = TaskConfig.ccEdgesEnum.createCCEdges(count);
+				ICCEdges cc2d2 = this.context.ccEdgesEnum.createCCEdges(count);
 				String[] ids = new String[count];
 				Arrays.fill(ids, "");
 				for (int i = 0; i < representants.size(); i++) {
@@ -756,7 +827,7 @@ public class IteratorThread extends Thread {
 					}
 				}
 				
-				ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null);
+				ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null,this.context);
 				connectedComponents.add(cc);
 			}	
 		}else{
@@ -782,7 +853,7 @@ public class IteratorThread extends Thread {
 					mergedNodes.put(v2.get(j),v2);
 				}
 			}
-			Vector<Vector<Integer>> v = Splitter.splitIntoConnectedComponents(es, proteins2integers, (float) threshold, false);
+			Vector<Vector<Integer>> v = this.sweep.splitIntoConnectedComponents((float) threshold);
 			
 			boolean already[] = new boolean[proteins2integers.size()];
 			for (Vector<Integer> vector : v) {
@@ -798,7 +869,7 @@ public class IteratorThread extends Thread {
 						count++;
 					}
 				}
-				ICCEdges cc2d2 =TaskConfig.ccEdgesEnum.createCCEdges(count);
+				ICCEdges cc2d2 =this.context.ccEdgesEnum.createCCEdges(count);
 				String[] ids = new String[count];
 				Arrays.fill(ids, "");
 				for (int i = 0; i < representants.size(); i++) {
@@ -819,16 +890,16 @@ public class IteratorThread extends Thread {
 					}
 				}
 				
-				ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null);
+				ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null,this.context);
 				connectedComponents.add(cc);
 			}	
 		}
 				
 		
 		clusters = new Hashtable<String, Hashtable<String,Boolean>>();
-		ClusteringManager cm = new ClusteringManager(null);
+		ClusteringManager cm = new ClusteringManager(null, this.context);
 		ArrayList<Semaphore> allSemaphores = new ArrayList<Semaphore>();
-		Semaphore maxThreadSemaphore = new Semaphore(TaskConfig.maxNoThreads, true);
+		Semaphore maxThreadSemaphore = new Semaphore(this.context.maxNoThreads, true);
 		for(int i=0;i<connectedComponents.size();i++){
 			Semaphore semaphore = new Semaphore(1);
 			allSemaphores.add(semaphore);
@@ -860,7 +931,7 @@ public class IteratorThread extends Thread {
 		}
 		
 		Hashtable<String,Hashtable<String,Boolean>> clustersCopy = (Hashtable<String, Hashtable<String, Boolean>>) clusters.clone();
-		if(TaskConfig.goldstandardPath!=null){
+		if(this.context.goldstandardPath!=null){
 			ArrayList<String> dummyRemove2 = new ArrayList<String>();
 			
 			for (Iterator iterator2 = clusters.keySet().iterator(); iterator2
@@ -1009,8 +1080,8 @@ public class IteratorThread extends Thread {
 	private Hashtable<String, Hashtable<String,Boolean>> calculateHierarichal(double threshold, BufferedWriter bw, Edges es, HashMap<Integer, String> proteins2integers, HashMap<String, Integer> integers2proteins, Hashtable<String, Hashtable<String, Boolean>> clusterReference, Hashtable<String, Hashtable<String, Boolean>> clusters, Vector<String> singletons, Hashtable<Integer, Vector<Integer>> mergedNodes) throws IOException, ArgsParseException, InvalidInputFileException, InvalidTypeException {
 		
 		Vector<ConnectedComponent> connectedComponents = new Vector<ConnectedComponent>();
-		if(threshold==TaskConfig.minThreshold){
-			Vector<Vector<Integer>> v = Splitter.splitIntoConnectedComponents(es, proteins2integers, (float) threshold, false);
+		if(threshold==this.context.minThreshold){
+			Vector<Vector<Integer>> v = this.sweep.splitIntoConnectedComponents((float) threshold);
 			
 			boolean already[] = new boolean[proteins2integers.size()];
 			for (Vector<Integer> vector : v) {
@@ -1026,7 +1097,7 @@ public class IteratorThread extends Thread {
 						count++;
 					}
 				}
-				ICCEdges cc2d2 = TaskConfig.ccEdgesEnum.createCCEdges(count);
+				ICCEdges cc2d2 = this.context.ccEdgesEnum.createCCEdges(count);
 				String[] ids = new String[count];
 				Arrays.fill(ids, "");
 				for (int i = 0; i < representants.size(); i++) {
@@ -1047,7 +1118,7 @@ public class IteratorThread extends Thread {
 					}
 				}
 				
-				ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null);
+				ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null,this.context);
 				connectedComponents.add(cc);
 			}
 		}else{
@@ -1075,7 +1146,7 @@ public class IteratorThread extends Thread {
 						count++;
 					}
 				}
-				ICCEdges cc2d2 = TaskConfig.ccEdgesEnum.createCCEdges(count);
+				ICCEdges cc2d2 = this.context.ccEdgesEnum.createCCEdges(count);
 				String[] ids = new String[count];
 				Arrays.fill(ids, "");
 				for (int i = 0; i < representants.size(); i++) {
@@ -1096,7 +1167,7 @@ public class IteratorThread extends Thread {
 					}
 				}
 				
-				ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null);
+				ConnectedComponent cc = new ConnectedComponent(cc2d2,ids,null,this.context);
 				connectedComponents.add(cc);
 				
 				
@@ -1121,9 +1192,9 @@ public class IteratorThread extends Thread {
 		}
 		
 		clusters = new Hashtable<String, Hashtable<String,Boolean>>();
-		ClusteringManager cm = new ClusteringManager(null);
+		ClusteringManager cm = new ClusteringManager(null, this.context);
 		ArrayList<Semaphore> allSemaphores = new ArrayList<Semaphore>();
-		Semaphore maxThreadSemaphore = new Semaphore(TaskConfig.maxNoThreads, true);
+		Semaphore maxThreadSemaphore = new Semaphore(this.context.maxNoThreads, true);
 		for(int i=0;i<connectedComponents.size();i++){
 			Semaphore semaphore = new Semaphore(1);
 			allSemaphores.add(semaphore);
@@ -0,0 +1,153 @@
+/*
+ * Created on 17. October 2026
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.iterativeclustering;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+
+import clusterMaker.algorithms.networkClusterers.TransClust.de.costmatrixcreation.dataTypes.Edges;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.costmatrixcreation.main.Splitter;
+
+/**
+ * Splits the objects into connected components for any number of thresholds
+ * without searching the edges again for each threshold.
+ *
+ * The edges are sorted by their value once. Going through them from the
+ * highest value downwards with a union-find gives the edges that join two
+ * components, at most one less than the number of objects. The components
+ * for a threshold are then the components of the joining edges with a value
+ * above the threshold, which is a prefix of these edges, so each threshold
+ * only costs time linear in the number of objects.
+ *
+ * Two objects are connected if the edge in either direction is above the
+ * threshold, which is the same as in the {@link Splitter} for symmetric
+ * edges. If pairs without an edge are connected as well, because the default
+ * value of the edges is above the threshold, the {@link Splitter} is used.
+ */
+public class ThresholdSweep {
+
+	private Edges es;
+	private HashMap<Integer, String> proteins2integers;
+	private int nodeNumber;
+
+	/* the edges that join two components, by descending value */
+	private int[] joinSources;
+	private int[] joinTargets;
+	private float[] joinValues;
+
+	/* the union-find of the last threshold */
+	private int[] parent;
+
+	/**
+	 * Sorts the edges and finds the edges that join two components.
+	 *
+	 * @param es
+	 *            The edges between the objects.
+	 * @param proteins2integers
+	 *            The ids of the objects, only needed for the {@link Splitter}.
+	 */
+	public ThresholdSweep(Edges es, HashMap<Integer, String> proteins2integers) {
+		this.es = es;
+		this.proteins2integers = proteins2integers;
+		this.nodeNumber = es.size2();
+		this.parent = new int[this.nodeNumber];
+
+		/*
+		 * sort by value, highest first. The value is turned into an int with
+		 * the same order and put in front of the position of the edge.
+		 */
+		long[] order = new long[es.size()];
+		int count = 0;
+		for (int i = 0; i < es.size(); i++) {
+			float value = es.getValue(i);
+			if (Float.isNaN(value) || es.getSource(i) == es.getTarget(i)) continue;
+			int bits = Float.floatToIntBits(value);
+			bits ^= (bits >> 31) & 0x7fffffff;
+			order[count++] = ((long) ~bits << 32) | i;
+		}
+		Arrays.sort(order, 0, count);
+
+		resetComponents();
+		int joins = 0;
+		this.joinSources = new int[Math.max(0, this.nodeNumber - 1)];
+		this.joinTargets = new int[this.joinSources.length];
+		this.joinValues = new float[this.joinSources.length];
+		for (int k = 0; k < count && joins < this.joinSources.length; k++) {
+			int i = (int) order[k];
+			if (union(es.getSource(i), es.getTarget(i))) {
+				this.joinSources[joins] = es.getSource(i);
+				this.joinTargets[joins] = es.getTarget(i);
+				this.joinValues[joins] = es.getValue(i);
+				joins++;
+			}
+		}
+		this.joinSources = Arrays.copyOf(this.joinSources, joins);
+		this.joinTargets = Arrays.copyOf(this.joinTargets, joins);
+		this.joinValues = Arrays.copyOf(this.joinValues, joins);
+	}
+
+	/**
+	 * Splits the objects into the components that are connected by edges
+	 * above the threshold. The components are ordered by their smallest
+	 * object, the objects of a component in ascending order.
+	 *
+	 * @param threshold
+	 *            The threshold.
+	 * @return The components.
+	 */
+	public synchronized Vector<Vector<Integer>> splitIntoConnectedComponents(float threshold) {
+		if (this.es.hasDefaultValue() && this.es.getDefaultValue() > threshold) {
+			return Splitter.splitIntoConnectedComponents(this.es, this.proteins2integers, threshold, false);
+		}
+
+		resetComponents();
+		for (int k = 0; k < this.joinValues.length && this.joinValues[k] > threshold; k++) {
+			union(this.joinSources[k], this.joinTargets[k]);
+		}
+
+		Vector<Vector<Integer>> v = new Vector<Vector<Integer>>();
+		int[] component = new int[this.nodeNumber];
+		Arrays.fill(component, -1);
+		for (int i = 0; i < this.nodeNumber; i++) {
+			int root = find(i);
+			if (component[root] == -1) {
+				component[root] = v.size();
+				v.add(new Vector<Integer>());
+			}
+			v.get(component[root]).add(i);
+		}
+		return v;
+	}
+
+	private void resetComponents() {
+		for (int i = 0; i < this.nodeNumber; i++) {
+			this.parent[i] = i;
+		}
+	}
+
+	private int find(int i) {
+		while (this.parent[i] != i) {
+			/* path halving */
+			this.parent[i] = this.parent[this.parent[i]];
+			i = this.parent[i];
+		}
+		return i;
+	}
+
+	/* returns false if i and j already were in the same component */
+	private boolean union(int i, int j) {
+		int rootI = find(i);
+		int rootJ = find(j);
+		if (rootI == rootJ) return false;
+		if (rootI < rootJ) {
+			this.parent[rootJ] = rootI;
+		} else {
+			this.parent[rootI] = rootJ;
+		}
+		return true;
+	}
+
+}
@@ -4,6 +4,8 @@
  */
 package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout;
 
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
+
 /**
  * This is the interface for any parameter objects for the layout algorithms. The classes 
  * implementing this should contain a set of global variables for all the parameters that
@@ -20,11 +22,23 @@ public interface IParameters{
 	 * Sets the parameters of this instance with values from the config.
 	 */
 	public void readParametersFromConfig();
+	/**
+	 * Sets the parameters of this instance with values from the given run configuration.
+	 * 
+	 * @param context The configuration of the run these parameters are used in.
+	 */
+	public void readParametersFromContext(TaskContext context);
 	
 	/**
 	 * Changes the parameters in the config class to the ones in this instance.
 	 */
 	public void saveParametersToConfig();
+	/**
+	 * Changes the parameters in the given run configuration to the ones in this instance.
+	 * 
+	 * @param context The configuration of the run these parameters were trained for.
+	 */
+	public void saveParametersToContext(TaskContext context);
 
 	/**
 	 * Here this instance of IParameters is set with totally new and random values that
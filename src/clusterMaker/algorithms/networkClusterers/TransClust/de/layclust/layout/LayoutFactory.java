@@ -7,6 +7,7 @@ package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.CC1DArray;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.CC2DArray;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.CCHash;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.CCMappedArray;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.CCSymmetricArray;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ICCEdges;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.forcend.FORCEnDLayouter;
@@ -109,8 +110,21 @@ public class LayoutFactory {
 	 */
 	public static EnumLayouterClass[] getEnumArrayFromLayoutersString() 
 		throws InvalidTypeException{
+		return getEnumArrayFromLayoutersString(TaskConfig.layouterClasses);
+	}
+	
+	/**
+	 * Turns the given layouters into an array of enum types respective to the
+	 * layouters in the order they should be carried out in.
+	 * 
+	 * @param layouterClasses The class names of the layouters, separated by commas.
+	 * @return An array of {@link EnumLayouterClass}.
+	 * @throws LayoutTypeException If the given layouter does not exist.
+	 */
+	public static EnumLayouterClass[] getEnumArrayFromLayoutersString(String layouterClasses) 
+		throws InvalidTypeException{
 		
-		String[] inputLayouting = TaskConfig.layouterClasses.split("\\s*,\\s*");
+		String[] inputLayouting = layouterClasses.split("\\s*,\\s*");
 		EnumLayouterClass[] allPossLayouters = EnumLayouterClass.values();
 		
 		EnumLayouterClass[] layouterEnumsInProcessingOrder = 
@@ -139,7 +153,8 @@ public class LayoutFactory {
 	public enum EnumCCEdgesStructure {
 		CC2DARRAY("CC2DArray", 0),
 		CCSYMMETRICARRAY("CCSymmetricArray", 1),
-		CCHASH("CCHash", 2),CC1DARRAY("CC1DArray", 3);
+		CCHASH("CCHash", 2),CC1DARRAY("CC1DArray", 3),
+		CCMAPPEDARRAY("CCMappedArray", 4);
 		
 		// ==================================//
 		// ADD ADDITIONAL CC EDGES IMPLEMENTATIONS HERE!!	   //
@@ -165,6 +180,7 @@ public class LayoutFactory {
 			else if(intvalue == 1){ return new CCSymmetricArray(size); }
 			else if(intvalue == 2){ return new CCHash(size); }
 			else if(intvalue == 3){ return new CC1DArray(size); }
+			else if(intvalue == 4){ return new CCMappedArray(size); }
 			// ==================================//
 			// ADD ADDITIONAL CC EDGES IMPLEMENTATIONS HERE!!	   //
 			// ==================================//
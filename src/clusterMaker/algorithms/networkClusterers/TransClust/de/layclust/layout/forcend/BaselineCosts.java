@@ -0,0 +1,131 @@
+/*
+ * Created on 17. October 2026
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.forcend;
+
+import java.util.Arrays;
+
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ICCEdges;
+
+/**
+ * Splits the edge costs of a connected component into one baseline cost that
+ * most node pairs share (usually the cost of all missing edges) and the list
+ * of pairs whose cost differs from it. The forces caused by the baseline cost
+ * can then be approximated with a {@link ForceTree}, while the forces of the
+ * remaining pairs are corrected exactly.
+ *
+ * The costs must not change while an instance is in use, so it has to be
+ * created after {@link ICCEdges#normalise()}.
+ */
+class BaselineCosts {
+
+	/*
+	 * if more than this fraction of all pairs differ from the baseline, the
+	 * approximation does not save enough to be worth the memory
+	 */
+	private static final double MAX_EXCEPTION_FRACTION = 0.05;
+
+	private final float baseline;
+
+	/* the exceptional pairs of node i are in ptr[i] to ptr[i+1] (both directions) */
+	private final int[] ptr;
+	private final int[] partner;
+	private final float[] cost;
+
+	private BaselineCosts(float baseline, int[] ptr, int[] partner, float[] cost) {
+		this.baseline = baseline;
+		this.ptr = ptr;
+		this.partner = partner;
+		this.cost = cost;
+	}
+
+	/**
+	 * Finds the baseline cost of the given edges and collects all pairs that
+	 * deviate from it.
+	 *
+	 * @param edges
+	 *            The (normalised) edge costs.
+	 * @param node_no
+	 *            The number of nodes.
+	 * @return The split costs, or null if too many pairs deviate from the
+	 *         most frequent cost.
+	 */
+	public static BaselineCosts create(ICCEdges edges, int node_no) {
+		if (node_no < 2) return null;
+
+		/* majority vote over all pairs */
+		float candidate = 0;
+		long votes = 0;
+		for (int i = 0; i < node_no; i++) {
+			for (int j = i + 1; j < node_no; j++) {
+				float c = edges.getEdgeCost(i, j);
+				if (votes == 0) {
+					candidate = c;
+					votes = 1;
+				} else if (c == candidate) {
+					votes++;
+				} else {
+					votes--;
+				}
+			}
+		}
+
+		long pairs = ((long) node_no * (node_no - 1)) / 2;
+		/* every exception is stored twice, so it also has to fit into one array */
+		long limit = Math.min((long) (pairs * MAX_EXCEPTION_FRACTION),
+				(Integer.MAX_VALUE - 8) / 2);
+		int[] first = new int[16];
+		int[] second = new int[16];
+		float[] values = new float[16];
+		int n = 0;
+		int[] ptr = new int[node_no + 1];
+		for (int i = 0; i < node_no; i++) {
+			for (int j = i + 1; j < node_no; j++) {
+				float c = edges.getEdgeCost(i, j);
+				if (c == candidate) continue;
+				if (n >= limit) return null;
+				if (n == first.length) {
+					int capacity = (int) Math.min(2L * n, limit);
+					first = Arrays.copyOf(first, capacity);
+					second = Arrays.copyOf(second, capacity);
+					values = Arrays.copyOf(values, capacity);
+				}
+				first[n] = i;
+				second[n] = j;
+				values[n] = c;
+				n++;
+				ptr[i + 1]++;
+				ptr[j + 1]++;
+			}
+		}
+
+		for (int i = 0; i < node_no; i++) {
+			ptr[i + 1] += ptr[i];
+		}
+		int[] fill = new int[node_no];
+		System.arraycopy(ptr, 0, fill, 0, node_no);
+		int[] partner = new int[2 * n];
+		float[] cost = new float[2 * n];
+		for (int k = 0; k < n; k++) {
+			int i = first[k];
+			int j = second[k];
+			partner[fill[i]] = j;
+			cost[fill[i]++] = values[k];
+			partner[fill[j]] = i;
+			cost[fill[j]++] = values[k];
+		}
+		return new BaselineCosts(candidate, ptr, partner, cost);
+	}
+
+	public float getBaseline() { return this.baseline; }
+
+	public int getStart(int node) { return this.ptr[node]; }
+
+	public int getEnd(int node) { return this.ptr[node + 1]; }
+
+	public int getPartner(int k) { return this.partner[k]; }
+
+	public float getCost(int k) { return this.cost[k]; }
+
+}
@@ -1,176 +1,186 @@
 package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.forcend;
 
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ICCEdges;
 
-public class DisplacementCalculator implements Runnable {
+/**
+ * Calculates the displacement vectors for blocks of nodes. Several instances
+ * share one block counter and claim blocks until all nodes are done, so the
+ * work stays balanced even if some nodes are more expensive than others. Each
+ * node's displacement is only written by the thread that claimed it.
+ *
+ * Without a {@link ForceTree} the forces of all pairs are summed up exactly.
+ * With a tree, the forces caused by the baseline cost of {@link BaselineCosts}
+ * are approximated for far away cells and the pairs that deviate from the
+ * baseline are corrected exactly.
+ */
+public class DisplacementCalculator implements Callable<Object> {
 
+	/* number of nodes claimed at once */
+	public static final int BLOCK_SIZE = 64;
 
-//	java.util.concurrent.Callable<String>
-	/**
-	 * 
-	 */
-	private static final long serialVersionUID = 1L;
 	private double[][] allDisplacements;
-	private ConnectedComponent cc;
+	private double[][] node_pos;
+	private ICCEdges edges;
+	private int node_no;
 	private int dim;
-	private int[] list;
 	private double attraction;
 	private double repulsion;
-	private int start;
-	private int end;
-	
+	private AtomicInteger nextBlock;
+
+	private ForceTree tree;
+	private BaselineCosts costs;
+	private double theta;
+	private int[] stack = new int[64];
+
+	/**
+	 * Constructor for the exact calculation.
+	 */
 	public DisplacementCalculator(double attraction, double repulsion,
 			double[][] allDisplacements, ConnectedComponent cc, int dim,
-			int[] list,int start, int end) {
+			AtomicInteger nextBlock) {
 		super();
 		this.allDisplacements = allDisplacements;
-		this.cc = cc;
+		this.node_pos = cc.getCCPositions();
+		this.edges = cc.getCCEdges();
+		this.node_no = cc.getNodeNumber();
 		this.dim = dim;
 		this.attraction = attraction;
 		this.repulsion = repulsion;
-		this.list = list;
-		this.start = start;
-		this.end = end;
+		this.nextBlock = nextBlock;
 	}
 
-	public void run(){
-		double distance=0,dummy,displacement,force;
-		for (int i = start; i <= end; i++) {
-			for (int j = 0; j < cc.getNodeNumber(); j++) {
-//			for (int j = i+1; j < cc.getNodeNumber(); j++) {
-				
-//				double distance = calculateEuclideanDistance(cc.getCCPositions(), dim, i,j);
-				for (int d = 0; d < dim; d++) {	
-					dummy = (cc.getCCPositions()[i][d] - cc.getCCPositions()[j][d]);
-					distance += (dummy*dummy);
-				}
-				distance = Math.sqrt(distance);
-//				distance = 5;
-				if(distance<FORCEnDLayoutConfig.MIN_DISTANCE) continue;
-				/*
-				 * calculate attraction or repulsion force 
-				 * 
-				 * attraction:
-				 * 				log(d(i,j)+1) x cost(i,j) x attraction factor
-				 * 				--------------------------------------------- 
-				 * 	  		   	          number of nodes 
-				 * 
-				 * repulsion: 
-				 * 				cost(i,j) x repulsion factor
-				 *             -------------------------------
-				 *             log(d(i,j)+1) x number of nodes 
-				 * 
-				 */
-				
-				if (cc.getCCEdges().getEdgeCost(i, j)>0) {
-					force =  (Math.log(distance + 1) * cc.getCCEdges().getEdgeCost(i, j) * attraction)/distance;
-//					force =  (5 * cc.getCCEdges().getEdgeCost(i, j) * attraction)/distance;
-					for (int d = 0; d < dim; d++) {
-						displacement = (cc.getCCPositions()[j][d] - cc.getCCPositions()[i][d])*force;
-//						synchronized (allDisplacements[i]) {
-							allDisplacements[i][d] += displacement;
-//						}
-//						synchronized(allDisplacements[j]){
-//							allDisplacements[j][d] -= displacement;
-//						}
-					}
-				}else{
-					force = ((cc.getCCEdges().getEdgeCost(i, j) * repulsion)/Math.log(distance + 1))/distance;
-//					force = ((cc.getCCEdges().getEdgeCost(i, j) * repulsion)/5)/distance;
-					for (int d = 0; d < dim; d++) {
-						displacement = (cc.getCCPositions()[j][d] - cc.getCCPositions()[i][d])*force;
-//						synchronized (allDisplacements[i]) {
-							allDisplacements[i][d] += displacement;
-//						}
-//						synchronized(allDisplacements[j]){
-//							allDisplacements[j][d] -= displacement;
-//						}
-					}
+	/**
+	 * Constructor for the approximation of the baseline forces with a tree.
+	 */
+	DisplacementCalculator(double attraction, double repulsion,
+			double[][] allDisplacements, ConnectedComponent cc, int dim,
+			AtomicInteger nextBlock, ForceTree tree, BaselineCosts costs, double theta) {
+		this(attraction, repulsion, allDisplacements, cc, dim, nextBlock);
+		this.tree = tree;
+		this.costs = costs;
+		this.theta = theta;
+	}
+
+	public Object call() {
+		int blocks = (this.node_no + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		for (int block = this.nextBlock.getAndIncrement(); block < blocks;
+				block = this.nextBlock.getAndIncrement()) {
+			int end = Math.min(this.node_no, (block + 1) * BLOCK_SIZE);
+			for (int i = block * BLOCK_SIZE; i < end; i++) {
+				Arrays.fill(this.allDisplacements[i], 0);
+				if (this.tree == null) {
+					exactDisplacement(i);
+				} else {
+					approximateDisplacement(i);
 				}
 			}
-//			System.out.println();
 		}
+		return null;
 	}
-	
-
-//	@Override
-//	protected void compute() {
-////		if(list.length*(cc.getNodeNumber()-list[0])<cc.getNodeNumber()*1+1){
-//		if (list.length<=1) {
-//			for (int k = 0; k < list.length; k++) {
-//				int i = list[k];
-//			
-//				
-//				for (int j = i+1; j < cc.getNodeNumber(); j++) {
-//					
-////					double distance = calculateEuclideanDistance(cc.getCCPositions(), dim, i,j);
-//					double distance=0;
-//					double dummy = 0;
-//					for (int d = 0; d < dim; d++) {	
-//						dummy = (cc.getCCPositions()[i][d] - cc.getCCPositions()[j][d]);
-//						distance += (dummy*dummy);
-//					}
-//					distance = Math.sqrt(distance);
-//					if(distance<FORCEnDLayoutConfig.MIN_DISTANCE) continue;
-//					/*
-//					 * calculate attraction or repulsion force 
-//					 * 
-//					 * attraction:
-//					 * 				log(d(i,j)+1) x cost(i,j) x attraction factor
-//					 * 				--------------------------------------------- 
-//					 * 	  		   	          number of nodes 
-//					 * 
-//					 * repulsion: 
-//					 * 				cost(i,j) x repulsion factor
-//					 *             -------------------------------
-//					 *             log(d(i,j)+1) x number of nodes 
-//					 * 
-//					 */
-//					
-//					if (cc.getCCEdges().getEdgeCost(i, j)>0) {
-//						double force =  (Math.log(distance + 1) * cc.getCCEdges().getEdgeCost(i, j) * attraction)/distance;
-//						for (int d = 0; d < dim; d++) {
-//							double displacement = (cc.getCCPositions()[j][d] - cc.getCCPositions()[i][d])*force;
-////							synchronized (allDisplacements) {
-//								allDisplacements[i][d] += displacement;
-//								allDisplacements[j][d] -= displacement;
-////							}
-//							
-//						}
-//					}else{
-//						double force = ((cc.getCCEdges().getEdgeCost(i, j) * repulsion)/Math.log(distance + 1))/distance;
-//						for (int d = 0; d < dim; d++) {
-//							double displacement = (cc.getCCPositions()[j][d] - cc.getCCPositions()[i][d])*force;
-////							synchronized (allDisplacements) {
-//								allDisplacements[i][d] += displacement;
-//								allDisplacements[j][d] -= displacement;
-////							}
-//						}
-//					}
-//				}
-//			}
-//		} else {
-//			int midpoint = list.length / 2;
-//			int[] l1 = Arrays.copyOfRange(list, 0, midpoint);
-//			int[] l2 = Arrays.copyOfRange(list, midpoint, list.length);
-////			System.out.println(l1.length + "\t" + l2.length + "\t" + this.getPool().getActiveThreadCount() + "\t" + this.getPool().getMaximumPoolSize());
-////			System.out.println(this.getPool().getActiveThreadCount() + "\t" + this.getPool().getQueuedTaskCount() + "\t" + this.getPool().getPoolSize() + "\t" + this.getPool().getRunningThreadCount() + "\t" + this.getPool().getParallelism() + "\t" + this.getPool().getMaximumPoolSize() + "\t" + this.getPool().getAsyncMode());
-//			DisplacementCalculator s1 = new DisplacementCalculator(attraction,repulsion,allDisplacements,cc,dim,l1);
-//			DisplacementCalculator s2 = new DisplacementCalculator(attraction,repulsion,allDisplacements,cc,dim,l2);
-//			invokeAll(s1,s2);
-//		}
-//	}
-	
-	private static double calculateEuclideanDistance(double[][] node_pos,
-			int dim, int node_i, int node_j) {
+
+	/*
+	 * The force of cost on node i for a node at the given distance, to be
+	 * multiplied with the difference vector of the two positions.
+	 *
+	 * attraction:
+	 * 				log(d(i,j)+1) x cost(i,j) x attraction factor
+	 * 				---------------------------------------------
+	 * 	  		   	          number of nodes
+	 *
+	 * repulsion:
+	 * 				cost(i,j) x repulsion factor
+	 *             -------------------------------
+	 *             log(d(i,j)+1) x number of nodes
+	 */
+	private double force(double cost, double distance) {
+		if (cost > 0) {
+			return (Math.log(distance + 1) * cost * this.attraction) / distance;
+		} else {
+			return ((cost * this.repulsion) / Math.log(distance + 1)) / distance;
+		}
+	}
+
+	private double distance(double[] pos_i, double[] pos_j) {
 		double distance = 0;
-		double dummy = 0;
-		for (int d = 0; d < dim; d++) {	
-			dummy = (node_pos[node_i][d] - node_pos[node_j][d]);
-			distance += (dummy*dummy);
+		for (int d = 0; d < this.dim; d++) {
+			double dummy = pos_i[d] - pos_j[d];
+			distance += dummy * dummy;
+		}
+		return Math.sqrt(distance);
+	}
+
+	private void addDisplacement(double[] disp, double[] pos_i, double[] pos_j, double force) {
+		for (int d = 0; d < this.dim; d++) {
+			disp[d] += (pos_j[d] - pos_i[d]) * force;
+		}
+	}
+
+	private void exactDisplacement(int i) {
+		double[] disp = this.allDisplacements[i];
+		double[] pos_i = this.node_pos[i];
+		for (int j = 0; j < this.node_no; j++) {
+			if (j == i) continue;
+			double distance = distance(pos_i, this.node_pos[j]);
+			if (distance < FORCEnDLayoutConfig.MIN_DISTANCE) continue;
+			float cost = i < j ? this.edges.getEdgeCost(i, j) : this.edges.getEdgeCost(j, i);
+			addDisplacement(disp, pos_i, this.node_pos[j], force(cost, distance));
+		}
+	}
+
+	private void approximateDisplacement(int i) {
+		double[] disp = this.allDisplacements[i];
+		double[] pos_i = this.node_pos[i];
+		double baseline = this.costs.getBaseline();
+		double[] centre = new double[this.dim];
+
+		/* baseline forces of all nodes, far away cells as a whole */
+		int top = 0;
+		this.stack[top++] = 0;
+		while (top > 0) {
+			int cell = this.stack[--top];
+			if (this.tree.isLeaf(cell)) {
+				for (int k = this.tree.getStart(cell); k < this.tree.getEnd(cell); k++) {
+					int j = this.tree.getNode(k);
+					if (j == i) continue;
+					double distance = distance(pos_i, this.node_pos[j]);
+					if (distance < FORCEnDLayoutConfig.MIN_DISTANCE) continue;
+					addDisplacement(disp, pos_i, this.node_pos[j], force(baseline, distance));
+				}
+				continue;
+			}
+			for (int d = 0; d < this.dim; d++) {
+				centre[d] = this.tree.getCentre(cell, d);
+			}
+			double distance = distance(pos_i, centre);
+			if (!this.tree.contains(cell, pos_i)
+					&& this.tree.getSize(cell) < this.theta * distance) {
+				int count = this.tree.getEnd(cell) - this.tree.getStart(cell);
+				addDisplacement(disp, pos_i, centre, count * force(baseline, distance));
+				continue;
+			}
+			int children = this.tree.getChildCount(cell);
+			if (top + children > this.stack.length) {
+				this.stack = Arrays.copyOf(this.stack, 2 * (top + children));
+			}
+			int first = this.tree.getFirstChild(cell);
+			for (int c = 0; c < children; c++) {
+				this.stack[top++] = first + c;
+			}
+		}
+
+		/* replace the baseline force by the real one where the costs differ */
+		for (int k = this.costs.getStart(i); k < this.costs.getEnd(i); k++) {
+			int j = this.costs.getPartner(k);
+			double distance = distance(pos_i, this.node_pos[j]);
+			if (distance < FORCEnDLayoutConfig.MIN_DISTANCE) continue;
+			addDisplacement(disp, pos_i, this.node_pos[j],
+					force(this.costs.getCost(k), distance) - force(baseline, distance));
 		}
-		distance = Math.sqrt(distance);
-		return distance;
 	}
 
 }
@@ -37,6 +37,14 @@ public class FORCEnDLayoutConfig {
 //	public static double maximalDisplacement = 1000;
 	public static int iterations = 100;
 	public static float temperature = 100;
+	/* approximate the forces of far away nodes with a tree (false = exact) */
+	public static boolean useTreeApproximation = true;
+	/* only components with at least this many nodes are approximated */
+	public static int treeApproximationMinNodes = 1000;
+	/* a cell is far away if its size is less than theta x its distance */
+	public static double treeApproximationTheta = 0.5;
+	/* the part of the iterations run if the positions are taken from a previous threshold */
+	public static double warmStartIterations = 0.3;
 //	public static double influenceOfGraphSizeToForces = 1.3198015648987826 ;
 	// ------------------------------------------------------------------- //
 	
@@ -61,6 +69,37 @@ public class FORCEnDLayoutConfig {
 		temperature = Float.parseFloat(rb.getString("forcend.temperature").trim());
 //		influenceOfGraphSizeToForces = Double.parseDouble(rb.getString(
 //				"forcend.influenceOfGraphSizeToForces").trim());
+
+		/* optional, older config files do not have these */
+		useTreeApproximation = Boolean.parseBoolean(getOptional(rb,
+				"forcend.useTreeApproximation", ""+useTreeApproximation));
+		treeApproximationMinNodes = Integer.parseInt(getOptional(rb,
+				"forcend.treeApproximationMinNodes", ""+treeApproximationMinNodes));
+		treeApproximationTheta = Double.parseDouble(getOptional(rb,
+				"forcend.treeApproximationTheta", ""+treeApproximationTheta));
+		warmStartIterations = Double.parseDouble(getOptional(rb,
+				"forcend.warmStartIterations", ""+warmStartIterations));
+	}
+
+	/**
+	 * Gets the value of an optional parameter, so that a missing parameter
+	 * does not stop the ones after it from being read.
+	 * 
+	 * @param rb
+	 *            The PropertyResourceBundle object for the config file.
+	 * @param key
+	 *            The name of the parameter.
+	 * @param defaultValue
+	 *            The value used if the config file does not have the parameter.
+	 * @return The trimmed value from the config file or the default value.
+	 */
+	private static String getOptional(PropertyResourceBundle rb, String key,
+			String defaultValue) {
+		try {
+			return rb.getString(key).trim();
+		} catch (MissingResourceException e) {
+			return defaultValue;
+		}
 	}
 	
 	/**
@@ -76,6 +115,10 @@ public class FORCEnDLayoutConfig {
 //		confile.printParameter("forcend.maximalDisplacement", ""+FORCEnDLayoutConfig.maximalDisplacement);
 		confile.printParameter("forcend.iterations", ""+FORCEnDLayoutConfig.iterations);
 		confile.printParameter("forcend.temperature", ""+FORCEnDLayoutConfig.temperature);
+		confile.printParameter("forcend.useTreeApproximation", ""+FORCEnDLayoutConfig.useTreeApproximation);
+		confile.printParameter("forcend.treeApproximationMinNodes", ""+FORCEnDLayoutConfig.treeApproximationMinNodes);
+		confile.printParameter("forcend.treeApproximationTheta", ""+FORCEnDLayoutConfig.treeApproximationTheta);
+		confile.printParameter("forcend.warmStartIterations", ""+FORCEnDLayoutConfig.warmStartIterations);
 //		confile.printParameter("forcend.influenceOfGraphSizeToForces", ""+FORCEnDLayoutConfig.influenceOfGraphSizeToForces);
 	}
 	
@@ -4,11 +4,16 @@
  */
 package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.forcend;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
 
 /**
  * This class is a collection of static methods that are used for the layouting
@@ -75,40 +80,79 @@ public class FORCEnDLayoutUtility {
 	public static void calculateDisplacementVectors(
 			double[][] allDisplacements, ConnectedComponent cc, int dim,
 			FORCEnDParameters param, double temperature) {
-		setDisplacementsToZero(allDisplacements, cc.getNodeNumber(), dim);
+		int threads = Math.max(1, cc.getContext().maxNoThreads);
+		ExecutorService es = null;
+		if (cc.getContext().useThreads && threads > 1) {
+			es = Executors.newFixedThreadPool(threads);
+		}
+		try {
+			calculateDisplacementVectors(allDisplacements, cc, dim, param, null, es, threads);
+		} finally {
+			if (es != null) es.shutdown();
+		}
+	}
+
+	/**
+	 * Calculates the displacement vector for all nodes and saves it in a 2D
+	 * double array. If an ExecutorService is given, the nodes are distributed
+	 * in blocks over the given number of tasks. If the costs are split into a
+	 * baseline, the baseline forces of far away nodes are approximated with a
+	 * {@link ForceTree}, otherwise all pairs are calculated exactly.
+	 * 
+	 * @param allDisplacements
+	 *            The displacement values for all nodes.
+	 * @param cc
+	 *            The current ConnectedComponent object.
+	 * @param dim
+	 *            The current dimensions the layouting is run in.
+	 * @param param
+	 *            The parameters object for FORCEnD.
+	 * @param costs
+	 *            The split edge costs, or null for the exact calculation.
+	 * @param es
+	 *            The ExecutorService to run the tasks in, or null to
+	 *            calculate in the current thread.
+	 * @param threads
+	 *            The number of tasks to submit to the ExecutorService.
+	 */
+	static void calculateDisplacementVectors(
+			double[][] allDisplacements, ConnectedComponent cc, int dim,
+			FORCEnDParameters param, BaselineCosts costs, ExecutorService es,
+			int threads) {
 		double attraction = param.getAttractionFactor()/cc.getNodeNumber();
 		double repulsion = param.getRepulsionFactor()/cc.getNodeNumber();
-		int[] list = new int[cc.getNodeNumber()];
-		if(TaskConfig.useThreads){
-//			if(false){
-			ExecutorService es = java.util.concurrent.Executors.newFixedThreadPool(TaskConfig.maxNoThreads);
-			for (int i = 0; i < TaskConfig.maxNoThreads; i++) {
-				DisplacementCalculator s = new DisplacementCalculator(attraction,repulsion,allDisplacements,cc,dim,list,(int) Math.rint((double) cc.getNodeNumber()/TaskConfig.maxNoThreads)*i,Math.min((int) Math.rint((double) cc.getNodeNumber()/TaskConfig.maxNoThreads)*(i+1)-1,cc.getNodeNumber()-1));
-				
-				es.execute(s);
+		if (es != null || costs != null) {
+			ForceTree tree = null;
+			if (costs != null) {
+				tree = new ForceTree(cc.getCCPositions(), cc.getNodeNumber(), dim);
+			}
+			AtomicInteger nextBlock = new AtomicInteger(0);
+			List<DisplacementCalculator> tasks = new ArrayList<DisplacementCalculator>();
+			for (int i = 0; i < (es == null ? 1 : threads); i++) {
+				if (tree == null) {
+					tasks.add(new DisplacementCalculator(attraction, repulsion,
+							allDisplacements, cc, dim, nextBlock));
+				} else {
+					tasks.add(new DisplacementCalculator(attraction, repulsion,
+							allDisplacements, cc, dim, nextBlock, tree, costs,
+							cc.getContext().treeApproximationTheta));
+				}
+			}
+			if (es == null) {
+				tasks.get(0).call();
+				return;
 			}
-//			for (int i = 0; i < cc.getNodeNumber(); i++) {
-//				int start = i;
-//				int end = i;
-//				int estimatedOperation = cc.getNodeNumber()-i;
-//				while(estimatedOperation<((cc.getNodeNumber()*(cc.getNodeNumber()-1))/2)/TaskConfig.maxNoThreads){
-//					if(i==cc.getNodeNumber()) break;
-//					end++;
-//					i++;
-//					estimatedOperation+=cc.getNodeNumber()-i;
-//				}
-//				DisplacementCalculator s = new DisplacementCalculator(attraction,repulsion,allDisplacements,cc,dim,list,start,end);
-//				es.execute(s);
-//			}
-			
-			es.shutdown(); 
 			try {
-				es.awaitTermination(5, java.util.concurrent.TimeUnit.HOURS);
+				for (Future<Object> future: es.invokeAll(tasks)) {
+					future.get();
+				}
 			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}	
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
 		}else{
+			setDisplacementsToZero(allDisplacements, cc.getNodeNumber(), dim);
 			double distance,force,displacement;
 			for (int i = 0; i < cc.getNodeNumber(); i++) {
 				/*
@@ -159,85 +203,6 @@ public class FORCEnDLayoutUtility {
 //		
 	}
 	
-	public class DisplacementTask implements Runnable {
-		
-		private static final long serialVersionUID = 1L;
-		private double[][] allDisplacements;
-		private ConnectedComponent cc;
-		private int dim;
-		private int[] list;
-		private double attraction;
-		private double repulsion;
-		private int start;
-		private int end;
-		
-		public DisplacementTask(double attraction, double repulsion,
-				double[][] allDisplacements, ConnectedComponent cc, int dim,
-				int[] list,int start, int end) {
-			super();
-			this.allDisplacements = allDisplacements;
-			this.cc = cc;
-			this.dim = dim;
-			this.attraction = attraction;
-			this.repulsion = repulsion;
-			this.list = list;
-			this.start = start;
-			this.end = end;
-		}
-
-		public void run(){
-			for (int i = start; i <= end; i++) {
-				for (int j = i+1; j < cc.getNodeNumber(); j++) {
-					
-//					double distance = calculateEuclideanDistance(cc.getCCPositions(), dim, i,j);
-					double distance=0;
-					double dummy = 0;
-					for (int d = 0; d < dim; d++) {	
-						dummy = (cc.getCCPositions()[i][d] - cc.getCCPositions()[j][d]);
-						distance += (dummy*dummy);
-					}
-					distance = Math.sqrt(distance);
-					if(distance<FORCEnDLayoutConfig.MIN_DISTANCE) continue;
-					/*
-					 * calculate attraction or repulsion force 
-					 * 
-					 * attraction:
-					 * 				log(d(i,j)+1) x cost(i,j) x attraction factor
-					 * 				--------------------------------------------- 
-					 * 	  		   	          number of nodes 
-					 * 
-					 * repulsion: 
-					 * 				cost(i,j) x repulsion factor
-					 *             -------------------------------
-					 *             log(d(i,j)+1) x number of nodes 
-					 * 
-					 */
-					
-					if (cc.getCCEdges().getEdgeCost(i, j)>0) {
-						double force =  (Math.log(distance + 1) * cc.getCCEdges().getEdgeCost(i, j) * attraction)/distance;
-						for (int d = 0; d < dim; d++) {
-							double displacement = (cc.getCCPositions()[j][d] - cc.getCCPositions()[i][d])*force;
-							synchronized (allDisplacements) {
-								allDisplacements[i][d] += displacement;
-								allDisplacements[j][d] -= displacement;
-							}
-							
-						}
-					}else{
-						double force = ((cc.getCCEdges().getEdgeCost(i, j) * repulsion)/Math.log(distance + 1))/distance;
-						for (int d = 0; d < dim; d++) {
-							double displacement = (cc.getCCPositions()[j][d] - cc.getCCPositions()[i][d])*force;
-							synchronized (allDisplacements) {
-								allDisplacements[i][d] += displacement;
-								allDisplacements[j][d] -= displacement;
-							}
-						}
-					}
-				}
-			}
-		}
-		
-	}
 	/**
 	 * Calculates the euclidean distance between two nodes.
 	 * 
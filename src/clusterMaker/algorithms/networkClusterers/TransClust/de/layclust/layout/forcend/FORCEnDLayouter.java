@@ -1,5 +1,7 @@
 package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.forcend;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
@@ -8,7 +10,7 @@ import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.I
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.IParameters;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.LayoutFactory;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.parameter_training.ParameterTraining_SE;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
 
 public class FORCEnDLayouter implements ILayouter {
 	
@@ -20,6 +22,9 @@ public class FORCEnDLayouter implements ILayouter {
 
 	private FORCEnDParameters parameters = null;
 
+	/* the iteration of the cooling schedule the layouting starts with */
+	private int firstIteration = 0;
+
 	public FORCEnDLayouter() {
 	}
 
@@ -36,7 +41,7 @@ public class FORCEnDLayouter implements ILayouter {
 	 */
 	public void initLayouter(ConnectedComponent cc, ILayoutInitialiser li,
 			IParameters parameters) {
-		this.dim = TaskConfig.dimension;
+		this.dim = cc.getContext().dimension;
 		this.cc = cc;
 		this.parameters = (FORCEnDParameters) parameters;
 		li.run();
@@ -57,7 +62,7 @@ public class FORCEnDLayouter implements ILayouter {
 	 */
 	public void initLayouter(ConnectedComponent cc, ILayouter layouter,
 			IParameters parameters) {
-		this.dim = TaskConfig.dimension;
+		this.dim = cc.getContext().dimension;
 		this.cc = cc;
 		this.parameters = (FORCEnDParameters) parameters;
 
@@ -76,7 +81,7 @@ public class FORCEnDLayouter implements ILayouter {
 	 *            The parameters for FORCEnD.
 	 */
 	public void initLayouter(ConnectedComponent cc, IParameters parameters) {
-		this.dim = TaskConfig.dimension;
+		this.dim = cc.getContext().dimension;
 		this.cc = cc;
 		this.parameters = (FORCEnDParameters) parameters;
 
@@ -91,32 +96,67 @@ public class FORCEnDLayouter implements ILayouter {
 		}
 	}
 
+	/**
+	 * Initialises FORCEnDLayouter with positions that are already close to a
+	 * good layout, e.g. the positions the objects had for the previous
+	 * threshold of a threshold sweep. Only the last, cooler iterations are
+	 * run, their part is set by {@link TaskContext#warmStartIterations}.
+	 * 
+	 * @param cc
+	 *            The connected Component with the start positions.
+	 * @param parameters
+	 *            The parameters for FORCEnD.
+	 */
+	public void initLayouterWarmStart(ConnectedComponent cc, IParameters parameters) {
+		initLayouter(cc, parameters);
+		int iterations = this.parameters.getIterations();
+		int warmIterations = (int) Math.ceil(iterations * cc.getContext().warmStartIterations);
+		this.firstIteration = Math.max(0, iterations - warmIterations);
+	}
+
 	/**
 	 * Runs the FORCEnD algorithm to layout the objects for one
-	 * {@link ConnectedComponent}.
+	 * {@link ConnectedComponent}. If threads are enabled, one thread pool is
+	 * used for all iterations. For large components the forces of the most
+	 * frequent edge cost are approximated with a {@link ForceTree}, unless
+	 * this is switched off in the {@link TaskContext} of the component.
 	 */
 	public void run() {
+		TaskContext context = this.cc.getContext();
 		this.cc.getCCEdges().normalise();
 		int node_no = this.cc.getNodeNumber();
 		double[][] node_pos = this.cc.getCCPositions();
 
 		double[][] allDisplacements = new double[node_no][this.dim];
+
+		BaselineCosts costs = null;
+		if (context.useTreeApproximation
+				&& node_no >= context.treeApproximationMinNodes
+				&& this.dim <= ForceTree.MAX_DIMENSION) {
+			costs = BaselineCosts.create(this.cc.getCCEdges(), node_no);
+		}
+		int threads = Math.max(1, context.maxNoThreads);
+		ExecutorService es = null;
+		if (context.useThreads && threads > 1) {
+			es = Executors.newFixedThreadPool(threads);
+		}
+
 		/*
 		 * for each iteration calculate the displacement vectors and move all
 		 * nodes by this after calculation in one go
 		 */
-		
-		
-		for (int it = 0; it < this.parameters.getIterations(); it++) {
-//			for (int it = 0; it < 3; it++) {
-			/* the cooling temperature factor for this iteration */
-		
-			double temperature = FORCEnDLayoutUtility.calculateTemperature(it,node_no, this.parameters);
-			
-			FORCEnDLayoutUtility.calculateDisplacementVectors(allDisplacements,this.cc, this.dim, this.parameters,temperature);
-			FORCEnDLayoutUtility.moveAllNodesByDisplacement(allDisplacements,
-					node_pos, node_no, this.dim, temperature);
-
+		try {
+			for (int it = this.firstIteration; it < this.parameters.getIterations(); it++) {
+				/* the cooling temperature factor for this iteration */
+				double temperature = FORCEnDLayoutUtility.calculateTemperature(it,node_no, this.parameters);
+
+				FORCEnDLayoutUtility.calculateDisplacementVectors(allDisplacements,
+						this.cc, this.dim, this.parameters, costs, es, threads);
+				FORCEnDLayoutUtility.moveAllNodesByDisplacement(allDisplacements,
+						node_pos, node_no, this.dim, temperature);
+			}
+		} finally {
+			if (es != null) es.shutdown();
 		}
 		this.cc.getCCEdges().denormalise();
 	}
@@ -7,6 +7,7 @@ package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.
 import java.util.Random;
 
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.IParameters;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
 
 /**
  * This is an implementation of the IParameters interface for the FORCEnD
@@ -200,6 +201,18 @@ public class FORCEnDParameters implements IParameters {
 		//TODO add extra param here
 	}
 
+	/**
+	 * Sets the parameters of this instance with values from the given run configuration.
+	 * 
+	 * @param context The configuration of the run these parameters are used in.
+	 */
+	public void readParametersFromContext(TaskContext context) {
+		this.attractionFactor = context.attractionFactor;
+		this.repulsionFactor = context.repulsionFactor;
+		this.iterations = context.iterations;
+		this.temperature = context.temperature;
+	}
+
 
 	/**
 	 * Changes the parameters in the config class to the ones in this instance.
@@ -212,6 +225,18 @@ public class FORCEnDParameters implements IParameters {
 		FORCEnDLayoutConfig.temperature = this.temperature;
 		//TODO add extra param here
 	}
+
+	/**
+	 * Changes the parameters in the given run configuration to the ones in this instance.
+	 * 
+	 * @param context The configuration of the run these parameters were trained for.
+	 */
+	public void saveParametersToContext(TaskContext context) {
+		context.attractionFactor = this.attractionFactor;
+		context.repulsionFactor = this.repulsionFactor;
+		context.iterations = this.iterations;
+		context.temperature = this.temperature;
+	}
 	
 	
 	public void printParamters(){
@@ -0,0 +1,222 @@
+/*
+ * Created on 17. October 2026
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.forcend;
+
+import java.util.Arrays;
+
+/**
+ * A spatial tree over the current node positions in the configured number of
+ * dimensions (a quadtree in 2D, an octree in 3D, and so on). Every cell keeps
+ * the number of nodes it contains and their centre of mass, so that the
+ * baseline force a node receives from a far away group of nodes can be
+ * approximated by a single interaction with the centre of mass of the cell
+ * (Barnes-Hut approximation).
+ *
+ * The tree is rebuilt for every iteration, it is read-only afterwards and can
+ * therefore be shared by all threads calculating displacements.
+ */
+class ForceTree {
+
+	/* cells with this many nodes or less are not split any further */
+	private static final int LEAF_SIZE = 8;
+	/* stop splitting if nodes are (almost) on the same position */
+	private static final int MAX_DEPTH = 32;
+
+	/* the highest dimension the tree is built for, 2^dim children per cell */
+	public static final int MAX_DIMENSION = 8;
+
+	private final int dim;
+
+	/* the nodes ordered so that every cell covers a contiguous range */
+	private final int[] nodes;
+
+	/* per cell: range in nodes, first child and number of children */
+	private int[] start;
+	private int[] end;
+	private int[] firstChild;
+	private int[] childCount;
+	private int[] depth;
+	/* per cell: edge length and lower corner (cell*dim) */
+	private double[] size;
+	private double[] corner;
+	/* per cell: centre of mass (cell*dim) */
+	private double[] centre;
+
+	private int cellCount = 0;
+
+	/**
+	 * Builds the tree for the first node_no positions.
+	 *
+	 * @param node_pos
+	 *            The node positions.
+	 * @param node_no
+	 *            The number of nodes.
+	 * @param dim
+	 *            The dimension of the layout.
+	 */
+	public ForceTree(double[][] node_pos, int node_no, int dim) {
+		this.dim = dim;
+		this.nodes = new int[node_no];
+		for (int i = 0; i < node_no; i++) {
+			this.nodes[i] = i;
+		}
+		int capacity = Math.max(16, 2 * node_no / LEAF_SIZE);
+		this.start = new int[capacity];
+		this.end = new int[capacity];
+		this.firstChild = new int[capacity];
+		this.childCount = new int[capacity];
+		this.depth = new int[capacity];
+		this.size = new double[capacity];
+		this.corner = new double[capacity * dim];
+		this.centre = new double[capacity * dim];
+
+		/* the root is the bounding cube of all nodes */
+		double[] min = new double[dim];
+		double[] max = new double[dim];
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		for (int i = 0; i < node_no; i++) {
+			for (int d = 0; d < dim; d++) {
+				min[d] = Math.min(min[d], node_pos[i][d]);
+				max[d] = Math.max(max[d], node_pos[i][d]);
+			}
+		}
+		double rootSize = 0;
+		for (int d = 0; d < dim; d++) {
+			rootSize = Math.max(rootSize, max[d] - min[d]);
+		}
+		if (node_no == 0) {
+			Arrays.fill(min, 0);
+		}
+		if (rootSize <= 0) {
+			rootSize = 1;
+		}
+		/* make sure the maximum lies strictly inside the root cell */
+		rootSize *= 1.000001;
+		int root = newCell(0, node_no, 0, rootSize);
+		System.arraycopy(min, 0, this.corner, root * dim, dim);
+
+		int[] buffer = new int[node_no];
+		int[] counts = new int[1 << dim];
+		/* cells are appended in breadth first order, so just walk the list */
+		for (int cell = 0; cell < this.cellCount; cell++) {
+			split(cell, node_pos, buffer, counts);
+		}
+	}
+
+	private int newCell(int from, int to, int level, double edge) {
+		if (this.cellCount == this.start.length) {
+			int capacity = 2 * this.cellCount;
+			this.start = Arrays.copyOf(this.start, capacity);
+			this.end = Arrays.copyOf(this.end, capacity);
+			this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+			this.childCount = Arrays.copyOf(this.childCount, capacity);
+			this.depth = Arrays.copyOf(this.depth, capacity);
+			this.size = Arrays.copyOf(this.size, capacity);
+			this.corner = Arrays.copyOf(this.corner, capacity * this.dim);
+			this.centre = Arrays.copyOf(this.centre, capacity * this.dim);
+		}
+		int cell = this.cellCount++;
+		this.start[cell] = from;
+		this.end[cell] = to;
+		this.depth[cell] = level;
+		this.size[cell] = edge;
+		this.childCount[cell] = 0;
+		return cell;
+	}
+
+	/*
+	 * Calculates the centre of mass of a cell and, if it holds too many nodes,
+	 * distributes them over its non-empty orthants.
+	 */
+	private void split(int cell, double[][] node_pos, int[] buffer, int[] counts) {
+		int from = this.start[cell];
+		int to = this.end[cell];
+		int offset = cell * this.dim;
+		for (int k = from; k < to; k++) {
+			for (int d = 0; d < this.dim; d++) {
+				this.centre[offset + d] += node_pos[this.nodes[k]][d];
+			}
+		}
+		for (int d = 0; d < this.dim; d++) {
+			this.centre[offset + d] /= Math.max(1, to - from);
+		}
+		if (to - from <= LEAF_SIZE || this.depth[cell] >= MAX_DEPTH) return;
+
+		/* counting sort of the nodes by orthant */
+		double half = this.size[cell] / 2;
+		Arrays.fill(counts, 0);
+		for (int k = from; k < to; k++) {
+			int code = orthant(node_pos[this.nodes[k]], offset, half);
+			buffer[k] = code;
+			counts[code]++;
+		}
+		int[] position = new int[counts.length];
+		int next = from;
+		for (int code = 0; code < counts.length; code++) {
+			position[code] = next;
+			next += counts[code];
+		}
+		int[] sorted = new int[to - from];
+		for (int k = from; k < to; k++) {
+			sorted[position[buffer[k]]++ - from] = this.nodes[k];
+		}
+		System.arraycopy(sorted, 0, this.nodes, from, sorted.length);
+
+		/* children are stored contiguously */
+		next = from;
+		for (int code = 0; code < counts.length; code++) {
+			if (counts[code] == 0) continue;
+			int child = newCell(next, next + counts[code], this.depth[cell] + 1, half);
+			if (this.childCount[cell] == 0) this.firstChild[cell] = child;
+			this.childCount[cell]++;
+			/* corner may have been reallocated in newCell */
+			for (int d = 0; d < this.dim; d++) {
+				this.corner[child * this.dim + d] = this.corner[offset + d]
+						+ (((code >> d) & 1) == 1 ? half : 0);
+			}
+			next += counts[code];
+		}
+	}
+
+	private int orthant(double[] pos, int offset, double half) {
+		int code = 0;
+		for (int d = 0; d < this.dim; d++) {
+			if (pos[d] >= this.corner[offset + d] + half) code |= 1 << d;
+		}
+		return code;
+	}
+
+	public int getCellCount() { return this.cellCount; }
+
+	public int getStart(int cell) { return this.start[cell]; }
+
+	public int getEnd(int cell) { return this.end[cell]; }
+
+	public int getNode(int k) { return this.nodes[k]; }
+
+	public boolean isLeaf(int cell) { return this.childCount[cell] == 0; }
+
+	public int getFirstChild(int cell) { return this.firstChild[cell]; }
+
+	public int getChildCount(int cell) { return this.childCount[cell]; }
+
+	public double getSize(int cell) { return this.size[cell]; }
+
+	public double getCentre(int cell, int d) { return this.centre[cell * this.dim + d]; }
+
+	/**
+	 * Checks whether a position lies inside the cube of a cell.
+	 */
+	public boolean contains(int cell, double[] pos) {
+		int offset = cell * this.dim;
+		for (int d = 0; d < this.dim; d++) {
+			double low = this.corner[offset + d];
+			if (pos[d] < low || pos[d] > low + this.size[cell]) return false;
+		}
+		return true;
+	}
+
+}
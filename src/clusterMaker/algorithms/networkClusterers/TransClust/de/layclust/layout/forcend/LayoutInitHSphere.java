@@ -6,7 +6,6 @@ package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.
 
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.ILayoutInitialiser;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
 
 /**
  * This initialises the positions of the nodes from the ConnectedComponent
@@ -55,7 +54,7 @@ public class LayoutInitHSphere implements ILayoutInitialiser {
 	public void initLayoutInitialiser(ConnectedComponent cc) {
 		this.node_no = cc.getNodeNumber();
 		this.cc = cc;
-		this.dim = TaskConfig.dimension;
+		this.dim = cc.getContext().dimension;
 		node_pos = new double[node_no][this.dim];
 	}
 
@@ -17,7 +17,7 @@ import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.I
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.LayoutFactory;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.ClusterTrainingTask;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.GeneralParameterTraining;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskContext;
 
 /**
  * Implements a simple evolutionary parameter training on the complete input, which is either
@@ -79,6 +79,9 @@ public class ParameterTraining_SE implements IParameterTraining {
 	private IParameters bestPreviousIParameters = null;
 
 	private Vector<IParameters> bestConfigs = null;
+	
+	/* the configuration of the run the trained component belongs to */
+	private TaskContext context = null;
 
 	// private IParameters[] generationParameterSet = null;
 
@@ -89,20 +92,20 @@ public class ParameterTraining_SE implements IParameterTraining {
 		this.noOfGenerations = noOfGenerations;
 		this.paramComparator = new ParametersComparator();
 		this.bestConfigs = new Vector<IParameters>();
+	}
+
+	public IParameters run(ConnectedComponent cc) {
+
+		boolean terminateTraining = false;
+		this.context = cc.getContext();
 		
 		/* check how many threads are left over to see if it is possible to use threads at all
 		 *  and set noOfThreads to a minimum of 1 */
-		this.noOfThreads = TaskConfig.maxNoThreads;
+		this.noOfThreads = this.context.maxNoThreads;
 		if(this.noOfThreads ==0 || this.noOfThreads ==1){
-			TaskConfig.useThreads = false;
-//			TaskConfig.useThreadsForParameterTraining = false;
+			this.context.useThreads = false;
 			this.noOfThreads = 1;
 		}
-	}
-
-	public IParameters run(ConnectedComponent cc) {
-
-		boolean terminateTraining = false;
 
 		/*
 		 * initialise positions of the cc - the same initial positions are used
@@ -162,7 +165,7 @@ public class ParameterTraining_SE implements IParameterTraining {
 		IParameters param;
 		/* get parameters from config */
 		param = layouterEnum.createIParameters();
-		param.readParametersFromConfig();
+		param.readParametersFromContext(this.context);
 		paramsGen[0] = param;
 		/*
 		 * get the best parameter configuration for the previous training round
@@ -11,9 +11,7 @@ import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastru
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ICCEdges;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.fixedparameterclustering.FixedParameterClusterer;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.greedy.GreedyClusterer;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.ClusteringManager;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.InvalidInputFileException;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging.TaskConfig;
 // import java.util.logging.Level;
 // import java.util.logging.Logger;
 
@@ -204,7 +202,7 @@ public class PP_RearrangeAndMergeBest implements IPostProcessing {
 		
 		
 //		System.out.println("start merging");
-		ICCEdges cc2d = TaskConfig.ccEdgesEnum.createCCEdges(clusterObject.size());
+		ICCEdges cc2d = this.cc.getContext().ccEdgesEnum.createCCEdges(clusterObject.size());
 		String[] ids = new String[clusterObject.size()];
 		
 		for (int i = 0; i < ids.length; i++) {
@@ -215,7 +213,7 @@ public class PP_RearrangeAndMergeBest implements IPostProcessing {
 			}
 		}
 		ConnectedComponent cc2 = new ConnectedComponent(cc2d, ids, null,false);
-		ClusteringManager cm = new ClusteringManager(null);
+		cc2.setContext(this.cc.getContext());
 //		cm.runClusteringForOneConnectedComponent(cc2, null, null, null, System.currentTimeMillis());
 		new GreedyClusterer(cc2);
 //		long dummy = TaskConfig.fpMaxTimeMillis;
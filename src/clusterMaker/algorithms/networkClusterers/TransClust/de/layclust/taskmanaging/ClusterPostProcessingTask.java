@@ -3,7 +3,7 @@ package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskman
 import java.util.concurrent.Semaphore;
 
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.fixedparameterclustering.FixedParameterClusterer;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.fixedparameterclustering.ParallelFixedParameterClusterer;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.geometric_clustering.IGeometricClusterer;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.greedy.GreedyClusterer;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.ILayoutInitialiser;
@@ -80,19 +80,19 @@ public class ClusterPostProcessingTask implements Runnable {
 //		ccCopy2.setClusteringScore(Double.MAX_VALUE);
 //		new TreeClusterer(ccCopy2);
 
-		if(!TaskConfig.fixedParameter||cc.getNodeNumber()>=TaskConfig.fixedParameterMax) TaskConfig.fpStopped = true;
-		if(TaskConfig.fixedParameter && cc.getNodeNumber()<TaskConfig.fixedParameterMax){
-			new FixedParameterClusterer(cc,ccCopy.getClusteringScore());
+		TaskContext context = cc.getContext();
+		/* the exact clustering is only tried for small components */
+		boolean fpStopped = true;
+		if(context.fixedParameter && cc.getNodeNumber()<context.fixedParameterMax){
+			fpStopped = new ParallelFixedParameterClusterer(cc,ccCopy.getClusteringScore()).isStopped();
 		}
-		if(TaskConfig.greedy&&TaskConfig.fpStopped){
+		if(context.greedy&&fpStopped){
 			cc.setClusteringScore(Double.MAX_VALUE);
-			TaskConfig.fpStopped = false;
-		}else if(TaskConfig.fpStopped){
+		}else if(fpStopped){
 //			cc.initialiseClusterInfo(ccCopy.getNumberOfClusters());
 //			cc.setClusters(ccCopy.getClusters());
 			
 			/* ====== LAYOUTING PHASE ====== */
-			TaskConfig.fpStopped = false;
 			/* iterate over layouters */
 			ILayouter previousLayouter = null;
 			for (int i = 0; i < this.layouterEnumTypes.length; i++) {
@@ -103,7 +103,7 @@ public class ClusterPostProcessingTask implements Runnable {
 
 				if (previousLayouter == null) {
 					/* initialise cc positions if in clustering mode */
-					if(TaskConfig.mode == TaskConfig.CLUSTERING_MODE||TaskConfig.mode ==TaskConfig.COMPARISON_MODE||TaskConfig.mode ==TaskConfig.HIERARICHAL_MODE){
+					if(context.mode == TaskConfig.CLUSTERING_MODE||context.mode ==TaskConfig.COMPARISON_MODE||context.mode ==TaskConfig.HIERARICHAL_MODE){
 						ILayoutInitialiser li = this.layouterEnumTypes[i]
 						                                               .createLayoutInitialiser();
 						li.initLayoutInitialiser(cc);
@@ -113,7 +113,7 @@ public class ClusterPostProcessingTask implements Runnable {
 						layouter.initLayouter(cc, li, param);
 						layouter.run();
 						previousLayouter = layouter;
-					} else if(TaskConfig.mode == TaskConfig.GENERAL_TRAINING_MODE){
+					} else if(context.mode == TaskConfig.GENERAL_TRAINING_MODE){
 						// else positions already set for training mode
 						layouter.initLayouter(cc, param);
 						layouter.run();
@@ -131,7 +131,7 @@ public class ClusterPostProcessingTask implements Runnable {
 			}
 
 			/* ====== GEOMETRIC CLUSTERING */
-			IGeometricClusterer geoClust = TaskConfig.geometricClusteringEnum
+			IGeometricClusterer geoClust = context.geometricClusteringEnum
 					.createGeometricClusterer();
 			geoClust.initGeometricClusterer(cc);
 			geoClust.run();
@@ -141,7 +141,7 @@ public class ClusterPostProcessingTask implements Runnable {
 		
 
 		/* ====== POST-PROCESSING ====== */
-		if (TaskConfig.doPostProcessing&&cc.getClusteringScore()!=Double.MAX_VALUE) {
+		if (context.doPostProcessing&&cc.getClusteringScore()!=Double.MAX_VALUE) {
 			IPostProcessing pp = PostProcessingFactory.EnumPostProcessingClass.
 			PP_REARRANGE_AND_MERGE_BEST.createPostProcessor();
 			pp.initPostProcessing(cc);
@@ -149,7 +149,7 @@ public class ClusterPostProcessingTask implements Runnable {
 			/* run post processing */
 			pp.run();
 		}
-		if (TaskConfig.doPostProcessing&&ccCopy.getClusteringScore()!=Double.MAX_VALUE) {
+		if (context.doPostProcessing&&ccCopy.getClusteringScore()!=Double.MAX_VALUE) {
 			IPostProcessing pp = PostProcessingFactory.EnumPostProcessingClass.
 			PP_REARRANGE_AND_MERGE_BEST.createPostProcessor();
 			pp.initPostProcessing(ccCopy);
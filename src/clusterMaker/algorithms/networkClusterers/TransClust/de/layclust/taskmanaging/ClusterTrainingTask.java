@@ -91,15 +91,15 @@ public class ClusterTrainingTask implements Runnable {
 
 		
 		/* ==== CLUSTERING PHASE ==== */
-		IGeometricClusterer geocluster = TaskConfig.geometricClusteringEnum.createGeometricClusterer();
+		IGeometricClusterer geocluster = cc.getContext().geometricClusteringEnum.createGeometricClusterer();
 		geocluster.initGeometricClusterer(cc);
 		geocluster.run();
 		
 		
 		/* ====POST-PROCESSING PHASE ==== */
-		if(TaskConfig.doPostProcessing){
+		if(cc.getContext().doPostProcessing){
 			PostProcessingFactory.EnumPostProcessingClass ppEnum = 
-				TaskConfig.postProcessingEnum;
+				cc.getContext().postProcessingEnum;
 			IPostProcessing pp = ppEnum.createPostProcessor();
 			pp.initPostProcessing(cc);
 			/* note: training can only be done for one layouter at a time! */
@@ -6,6 +6,7 @@ import java.util.concurrent.Semaphore;
 import java.util.logging.Logger;
 
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.CCMappedArray;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.CostMatrixReader;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.IParameters;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.parameter_training.IParameterTraining;
@@ -32,13 +33,19 @@ public class ClusteringManager {
 	private ArrayList<Thread> allThreads;
 	private int noOfThreads;
 	
-	private static double totalScoreSum = 0; // total score for all cc
+	/* the configuration of this run, also keeps the total score for all cc */
+	private TaskContext context;
 	
 	public ClusteringManager(String cmPath){
+		this(cmPath, new TaskContext());
+	}
+	
+	public ClusteringManager(String cmPath, TaskContext context){
 		this.cmPath = cmPath;
+		this.context = context;
 		
-		String configString = TaskConfig.printConfiguration().toString();
-		if(TaskConfig.mode==TaskConfig.CLUSTERING_MODE||TaskConfig.mode==TaskConfig.GENERAL_TRAINING_MODE){
+		if(context.mode==TaskConfig.CLUSTERING_MODE||context.mode==TaskConfig.GENERAL_TRAINING_MODE){
+			String configString = TaskConfig.printConfiguration().toString();
 			log.info(configString);
 			InfoFile.appendToProjectDetails(configString);
 		}
@@ -46,9 +53,9 @@ public class ClusteringManager {
 		
 		/* check how many threads are left over to see if it is possible to use threads at all
 		 *  and set noOfThreads to a minimum of 1 */
-		this.noOfThreads = TaskConfig.maxNoThreads;
+		this.noOfThreads = context.maxNoThreads;
 		if(this.noOfThreads ==0 || this.noOfThreads ==1){
-			TaskConfig.useThreads = false;
+			context.useThreads = false;
 //			TaskConfig.useThreadsForParameterTraining = false;
 			this.noOfThreads = 1;
 		}
@@ -71,10 +78,10 @@ public class ClusteringManager {
 	public void initParametersAndCCs() throws InvalidInputFileException{
 		
 		
-		if(TaskConfig.mode==TaskConfig.CLUSTERING_MODE||TaskConfig.mode==TaskConfig.GENERAL_TRAINING_MODE){
+		if(this.context.mode==TaskConfig.CLUSTERING_MODE||this.context.mode==TaskConfig.GENERAL_TRAINING_MODE){
 //			this.connectedComponents = new ArrayList<ConnectedComponent>();
 			this.connectedComponents = new ArrayList<File>();
-			TaskConfig.transitiveConnectedComponents = null;
+			this.context.transitiveConnectedComponents = null;
 			
 			/* read the input file or directory */
 			File cmFile = new File(this.cmPath);
@@ -93,14 +100,15 @@ public class ClusteringManager {
 					/* find tcc file in directory */
 					if(filePath.endsWith(".tcc") || filePath.endsWith(".rtcc")){
 						noTCCfile = false;
-						TaskConfig.transitiveConnectedComponents = filePath;
+						this.context.transitiveConnectedComponents = filePath;
 						log.info("Transitive connected components file: "+filePath);
 						InfoFile.appendToProjectDetails("Transitive connected component file: "+filePath);
 						
 					}
 					
 					/* find cm files*/
-					if(files[i].toString().endsWith(".cm") || files[i].toString().endsWith(".rcm")){
+					if(files[i].toString().endsWith(".cm") || files[i].toString().endsWith(".rcm")
+							|| files[i].toString().endsWith(CCMappedArray.FILE_EXTENSION)){
 						noCostMatrices = false; //cm files exist	
 						connectedComponents.add(files[i]);
 						// create the connected component (cc) object and add to list
@@ -115,7 +123,7 @@ public class ClusteringManager {
 					if(noTCCfile){
 						throw new InvalidInputFileException("There are no cost matrix " +
 							"files in the input directory and also no transitive connected components file, " +
-							"or check whether the file extensions equal .cm, .rcm, or .tcc");
+							"or check whether the file extensions equal .cm, .rcm, .bcm, or .tcc");
 					}
 				}
 				
@@ -134,14 +142,14 @@ public class ClusteringManager {
 					connectedComponents.add(cmFile);
 				} else {
 					if(cmFile.toString().endsWith(".tcc")){
-						TaskConfig.transitiveConnectedComponents = cmFile.toString();
+						this.context.transitiveConnectedComponents = cmFile.toString();
 						log.info("Only a transitive connected component file is given: "+cmFile.toString());
 						InfoFile.appendToProjectDetails("Only a transitive connected component file is given: "
 								+cmFile.toString()+". Therefore NO CLUSTERING IS PERFORMED, just the the " +
 										"clusters from the TCC file are written into the clusters file.");
 					} else {
 						throw new InvalidInputFileException("Either the input cost matrix is of " +
-							"wrong file type. The file extension should be \".cm\" or \".rcm\"," +
+							"wrong file type. The file extension should be \".cm\", \".rcm\" or \".bcm\"," +
 							"or in the given TCC file is of the wrong type and should be \".tcc\".");		
 					}
 				}
@@ -152,11 +160,11 @@ public class ClusteringManager {
 		
 		/* initialise parameters from config */
 //		LayoutFactory.EnumLayouterClass[] layouterEnumTypes = TaskConfig.layouterEnumTypes;
-		layouterParameters = new IParameters[TaskConfig.layouterEnumTypes.length];
-		for(int i=0;i<TaskConfig.layouterEnumTypes.length;i++){			
+		layouterParameters = new IParameters[this.context.layouterEnumTypes.length];
+		for(int i=0;i<this.context.layouterEnumTypes.length;i++){			
 
-				IParameters param = TaskConfig.layouterEnumTypes[i].createIParameters();
-				param.readParametersFromConfig();
+				IParameters param = this.context.layouterEnumTypes[i].createIParameters();
+				param.readParametersFromContext(this.context);
 				layouterParameters[i] = param;
 		
 		}
@@ -179,14 +187,14 @@ public class ClusteringManager {
 			
 		/* initialise ClusterFile if in clustering mode */
 		ClusterFile clusterFile = null;
-		if(TaskConfig.mode == TaskConfig.CLUSTERING_MODE){
+		if(this.context.mode == TaskConfig.CLUSTERING_MODE){
 			log.fine("Running clustering in clustering mode!");
 			clusterFile = new ClusterFile();
-			clusterFile.instantiateFile(TaskConfig.clustersPath);
-			clusterFile.printPreProcessingClusters(TaskConfig.transitiveConnectedComponents);
+			clusterFile.instantiateFile(this.context.clustersPath);
+			clusterFile.printPreProcessingClusters(this.context.transitiveConnectedComponents);
 			/* check whether connectedComponents has been initialised */
 			if(this.connectedComponents==null ){
-				if(TaskConfig.transitiveConnectedComponents==null){
+				if(this.context.transitiveConnectedComponents==null){
 					log.warning("Incorrect use of the ClusteringManager, the connected components list" +
 						"hadn't been initialised. Called method to initialise this and the parameters from " +
 						"the config. Or only a TCC file was given and no connected components.");
@@ -208,12 +216,12 @@ public class ClusteringManager {
 		
 		/* go through cc list and start training for each and control thread use */
 		ArrayList<Semaphore> allSemaphores = new ArrayList<Semaphore>();
-		Semaphore maxThreadSemaphore = new Semaphore(TaskConfig.maxNoThreads, true);
+		Semaphore maxThreadSemaphore = new Semaphore(this.context.maxNoThreads, true);
 		for(int i=0;i<this.connectedComponents.size();i++){
 			Semaphore semaphore = new Semaphore(1);
 			allSemaphores.add(semaphore);
 			long time = System.currentTimeMillis();
-			CostMatrixReader cmReader = new CostMatrixReader(this.connectedComponents.get(i));
+			CostMatrixReader cmReader = new CostMatrixReader(this.connectedComponents.get(i), this.context);
 			ConnectedComponent cc = cmReader.getConnectedComponent();
 			runClusteringForOneConnectedComponent(cc, clusterFile, semaphore, maxThreadSemaphore, time);					
 		}
@@ -235,12 +243,13 @@ public class ClusteringManager {
 		
 		/* END OF CLUSTERING */	 
 		
+		double totalScoreSum = this.context.getTotalScoreSum();
 		log.info("Clustering scores sum: "+totalScoreSum);
-		if(TaskConfig.mode == TaskConfig.CLUSTERING_MODE){
+		if(this.context.mode == TaskConfig.CLUSTERING_MODE){
 				InfoFile.appendLnProjectResults("Total sum of clustering scores for given input: "+TaskUtility.round(totalScoreSum, 2));
 		}
 		/* set score to IParameters objects for general training mode */
-		if(TaskConfig.mode == TaskConfig.GENERAL_TRAINING_MODE){
+		if(this.context.mode == TaskConfig.GENERAL_TRAINING_MODE){
 			log.fine("Setting parameters score for training mode!");
 			for (IParameters parameter : this.layouterParameters) {
 				parameter.setScore(totalScoreSum);			
@@ -248,7 +257,7 @@ public class ClusteringManager {
 			}
 			
 		}
-		totalScoreSum = 0;
+		this.context.setTotalScoreSum(0);
 	}
 	
 	/**
@@ -268,7 +277,7 @@ public class ClusteringManager {
 		
 		/* check whether layouterParameters has been initialised */
 		if(this.layouterParameters==null){
-			if(TaskConfig.mode==TaskConfig.CLUSTERING_MODE||TaskConfig.mode==TaskConfig.GENERAL_TRAINING_MODE) log.warning("Incorrect use of the ClusteringManager, the layouter parameters list" +
+			if(this.context.mode==TaskConfig.CLUSTERING_MODE||this.context.mode==TaskConfig.GENERAL_TRAINING_MODE) log.warning("Incorrect use of the ClusteringManager, the layouter parameters list" +
 					"hadn't been initialised. Called method to initialise this and the connected components from " +
 					"the config");
 
@@ -281,13 +290,13 @@ public class ClusteringManager {
 		 */
 //TODO nicht sicher ob ich das if rausnehmen kann
 //		if(TaskConfig.mode == TaskConfig.CLUSTERING_MODE){
-			if(TaskConfig.doLayoutParameterTraining&&!TaskConfig.greedy){
+			if(this.context.doLayoutParameterTraining&&!this.context.greedy){
 				for(int i=0;i<this.layouterParameters.length;i++){
 					/* start parameter training for the cc */				
-					IParameterTraining paramTrain = TaskConfig.parameterTrainingEnum.createParameterTrainer();
-					paramTrain.initialise(TaskConfig.layouterEnumTypes[i], 
-							TaskConfig.noOfParameterConfigurationsPerGeneration,
-							TaskConfig.noOfGenerations);
+					IParameterTraining paramTrain = this.context.parameterTrainingEnum.createParameterTrainer();
+					paramTrain.initialise(this.context.layouterEnumTypes[i], 
+							this.context.noOfParameterConfigurationsPerGeneration,
+							this.context.noOfGenerations);
 					paramTrain.setMaxThreadSemaphoreAndThreadsList(maxThreadSemaphore, this.allThreads);
 					IParameters bestparam = paramTrain.run(cc);
 					log.fine("PARAMETER TRAINING RESULT\n: "+cc.getCcPath()+"\n"+bestparam.toString());
@@ -298,7 +307,7 @@ public class ClusteringManager {
 		
 		/* run clustering with the previously determined parameters */
 		ClusteringTask clusterTask = new ClusteringTask(cc, this.layouterParameters,
-				TaskConfig.layouterEnumTypes, clusterFile);
+				this.context.layouterEnumTypes, clusterFile);
 		clusterTask.setTime(time);
 		
 //		if(!TaskConfig.doLayoutParameterTraining&&TaskConfig.useThreads){
@@ -342,27 +351,24 @@ public class ClusteringManager {
 	}
 	
 	/**
-	 * This method adds one clustering score to the total clustering score for
-	 * the whole directory. 
-	 * 
-	 * @param score The score to be added to the total score.
+	 * @return the configuration of this run
 	 */
-	public static synchronized void addClusteringScoreToSum(double score){
-		totalScoreSum += score;
+	public TaskContext getContext() {
+		return context;
 	}
 
 	/**
 	 * @return the totalScoreSum
 	 */
 	public double getTotalScoreSum() {
-		return totalScoreSum;
+		return this.context.getTotalScoreSum();
 	}
 
 	/**
 	 * @param totalScoreSum the totalScoreSum to set
 	 */
 	public void setTotalScoreSum(double totalScoreSum) {
-		ClusteringManager.totalScoreSum = totalScoreSum;
+		this.context.setTotalScoreSum(totalScoreSum);
 	}
 	
 	/**
@@ -76,6 +76,9 @@ public class ClusteringManagerTask implements Runnable {
 							.runGeneralTraining();
 
 					/* save newly found parameters to config file */
+					for (int i = 0; i < layoutParams.length; i++) {
+						layoutParams[i].saveParametersToConfig();
+					}
 					TaskConfig
 							.saveConfigurationsToConfigFile(TaskConfig.outConfigPath);
 
@@ -11,13 +11,14 @@ import cytoscape.logger.CyLogger;
 
 import clusterMaker.algorithms.networkClusterers.TransClust.TransClustCluster;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent;
-import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.fixedparameterclustering.FixedParameterClusterer;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.fixedparameterclustering.ParallelFixedParameterClusterer;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.geometric_clustering.IGeometricClusterer;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.greedy.GreedyClusterer;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.ILayoutInitialiser;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.ILayouter;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.IParameters;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.LayoutFactory;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.forcend.FORCEnDLayouter;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.postprocessing.IPostProcessing;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.postprocessing.PP_DivideAndReclusterRecursively;
 import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.postprocessing.PP_DivideAndRecluster;
@@ -121,12 +122,12 @@ public class ClusteringTask implements Runnable {
 		
 		/* add clustering score to total score! */
 
-		ClusteringManager.addClusteringScoreToSum(score);
+		this.cc.getContext().addClusteringScoreToSum(score);
 
 		
 		/* ====== PRINT CLUSTERING INFO ====== */
 
-		if (TaskConfig.mode == TaskConfig.CLUSTERING_MODE) {
+		if (this.cc.getContext().mode == TaskConfig.CLUSTERING_MODE) {
 			String ccPath = this.cc.getCcPath();
 			int ccSize = this.cc.getNodeNumber();
 			int[] distribution = this.cc.getClusterInfo();
@@ -219,19 +220,19 @@ public class ClusteringTask implements Runnable {
 //		ccCopy2.setClusteringScore(Double.MAX_VALUE);
 //		new TreeClusterer(ccCopy2);
 		
-		if(!TaskConfig.fixedParameter||cc.getNodeNumber()>=TaskConfig.fixedParameterMax) TaskConfig.fpStopped = true;
-		if(TaskConfig.fixedParameter && cc.getNodeNumber()<TaskConfig.fixedParameterMax){
-			new FixedParameterClusterer(cc,ccCopy.getClusteringScore());
+		TaskContext context = cc.getContext();
+		/* the exact clustering is only tried for small components */
+		boolean fpStopped = true;
+		if(context.fixedParameter && cc.getNodeNumber()<context.fixedParameterMax){
+			fpStopped = new ParallelFixedParameterClusterer(cc,ccCopy.getClusteringScore()).isStopped();
 		}
-		if(TaskConfig.greedy&&TaskConfig.fpStopped){
+		if(context.greedy&&fpStopped){
 			cc.setClusteringScore(Double.MAX_VALUE);
-			TaskConfig.fpStopped = false;
-		}else if(TaskConfig.fpStopped){
+		}else if(fpStopped){
 			
 //			cc.initialiseClusterInfo(ccCopy.getNumberOfClusters());
 //			cc.setClusters(ccCopy.getClusters());
 			/* ====== LAYOUTING PHASE ====== */
-			TaskConfig.fpStopped = false;
 			/* iterate over layouters */
 			ILayouter previousLayouter = null;
 			for (int i = 0; i < this.layouterEnumTypes.length; i++) {
@@ -242,15 +243,21 @@ public class ClusteringTask implements Runnable {
 				ILayouter layouter = this.layouterEnumTypes[i].createLayouter();
 
 				if (previousLayouter == null) {
+					if(context.mode == TaskConfig.COMPARISON_MODE && cc.getCCPositions() != null
+							&& this.layouterEnumTypes[i] == LayoutFactory.EnumLayouterClass.FORCEND){
+						/* positions set by a threshold sweep, continue from them */
+						((FORCEnDLayouter) layouter).initLayouterWarmStart(cc, param);
+						layouter.run();
+						previousLayouter = layouter;
 					/* initialise cc positions if in clustering mode */
-					if(TaskConfig.mode == TaskConfig.CLUSTERING_MODE||TaskConfig.mode ==TaskConfig.COMPARISON_MODE||TaskConfig.mode ==TaskConfig.HIERARICHAL_MODE){
+					}else if(context.mode == TaskConfig.CLUSTERING_MODE||context.mode ==TaskConfig.COMPARISON_MODE||context.mode ==TaskConfig.HIERARICHAL_MODE){
 						ILayoutInitialiser li = this.layouterEnumTypes[i].createLayoutInitialiser();
 						li.initLayoutInitialiser(cc);
 						/* initialise and run layouter */
 						layouter.initLayouter(cc, li, param);
 						layouter.run();
 						previousLayouter = layouter;
-					} else if(TaskConfig.mode == TaskConfig.GENERAL_TRAINING_MODE){
+					} else if(context.mode == TaskConfig.GENERAL_TRAINING_MODE){
 						ILayoutInitialiser li = this.layouterEnumTypes[i].createLayoutInitialiser();
 						li.initLayoutInitialiser(cc);
 						/* initialise and run layouter */
@@ -275,7 +282,7 @@ public class ClusteringTask implements Runnable {
 			}
 
 			/* ====== GEOMETRIC CLUSTERING */
-			IGeometricClusterer geoClust = TaskConfig.geometricClusteringEnum
+			IGeometricClusterer geoClust = context.geometricClusteringEnum
 					.createGeometricClusterer();
 			geoClust.initGeometricClusterer(cc);
 			geoClust.run();
@@ -284,8 +291,8 @@ public class ClusteringTask implements Runnable {
 		
 
 		/* ====== POST-PROCESSING ====== */
-		if (TaskConfig.doPostProcessing&&cc.getClusteringScore()!=Double.MAX_VALUE) {
-			PostProcessingFactory.EnumPostProcessingClass ppEnum = TaskConfig.postProcessingEnum;
+		if (context.doPostProcessing&&cc.getClusteringScore()!=Double.MAX_VALUE) {
+			PostProcessingFactory.EnumPostProcessingClass ppEnum = context.postProcessingEnum;
 			IPostProcessing pp = ppEnum.createPostProcessor();
 			pp.initPostProcessing(cc);
 
@@ -309,8 +316,8 @@ public class ClusteringTask implements Runnable {
 //			pp.initPostProcessing(cc);
 //			pp.run();
 		}
-		if (TaskConfig.doPostProcessing&&ccCopy.getClusteringScore()!=Double.MAX_VALUE) {
-			PostProcessingFactory.EnumPostProcessingClass ppEnum = TaskConfig.postProcessingEnum;
+		if (context.doPostProcessing&&ccCopy.getClusteringScore()!=Double.MAX_VALUE) {
+			PostProcessingFactory.EnumPostProcessingClass ppEnum = context.postProcessingEnum;
 			IPostProcessing pp = ppEnum.createPostProcessor();
 			pp.initPostProcessing(ccCopy);
 
@@ -62,11 +62,14 @@ public class GeneralParameterTraining {
 	/* to do the actual clustering in training mode */
 	private ClusteringManager clusteringManager;
 
+	/* the configuration of the training run, the best parameters are saved to it */
+	private TaskContext context;
+
 	/* size of each generationg */
-	private int generationSize = TaskConfig.noOfParameterConfigurationsPerGeneration;
+	private int generationSize;
 
 	/* number of generations to carry out */
-	private int noOfGenerations = TaskConfig.noOfGenerations;
+	private int noOfGenerations;
 
 	private IParametersArrayComparator paramComparator = null;
 
@@ -82,6 +85,9 @@ public class GeneralParameterTraining {
 	
 	public GeneralParameterTraining(ClusteringManager clusteringManager){
 		this.clusteringManager = clusteringManager;
+		this.context = clusteringManager.getContext();
+		this.generationSize = this.context.noOfParameterConfigurationsPerGeneration;
+		this.noOfGenerations = this.context.noOfGenerations;
 		this.paramComparator = new IParametersArrayComparator();
 		this.bestConfigs = new Vector<IParameters[]>();
 	}
@@ -90,7 +96,7 @@ public class GeneralParameterTraining {
 	 * Starts the general parameter training using a simple evolutionary method
 	 * for the whole input directory (or just one file if
 	 * this was given). Saves the best found parameters of each layout algorithm to the
-	 * respective config classes. But does not create a config file.
+	 * {@link TaskContext} of the clustering manager, the config classes are left unchanged.
 	 * 
 	 * @return The best set of IParameters as an Array.
 	 * @throws InvalidInputFileException If the input file/directory is somehow 
@@ -111,8 +117,8 @@ public class GeneralParameterTraining {
 		 * initial positions are used for all training rounds
 		 */
 		for (File cc : connectedComponents) {
-			ILayoutInitialiser li = TaskConfig.layouterEnumTypes[0].createLayoutInitialiser();
-			li.initLayoutInitialiser(new CostMatrixReader(cc).getConnectedComponent());
+			ILayoutInitialiser li = this.context.layouterEnumTypes[0].createLayoutInitialiser();
+			li.initLayoutInitialiser(new CostMatrixReader(cc, this.context).getConnectedComponent());
 			li.run();
 		}
 
@@ -146,7 +152,7 @@ public class GeneralParameterTraining {
 
 		/* convert best configurations vector to array */
 		IParameters[][] bestConfigsArray = new IParameters[bestConfigs.size()]
-		                                                   [TaskConfig.layouterEnumTypes.length];
+		                                                   [this.context.layouterEnumTypes.length];
 		for (int i = 0; i < bestConfigs.size(); i++) {
 			bestConfigsArray[i] = bestConfigs.get(i);
 		}
@@ -158,7 +164,7 @@ public class GeneralParameterTraining {
 		this.bestPreviousIParameters = bestConfigsArray[0];
 		
 		for (int i = 0; i < bestConfigsArray[0].length; i++) {
-			bestConfigsArray[0][i].saveParametersToConfig();
+			bestConfigsArray[0][i].saveParametersToContext(this.context);
 		}
 		
 
@@ -171,19 +177,19 @@ public class GeneralParameterTraining {
 	}
 
 	private IParameters[][] createParameterGeneration() {
-		IParameters[][] paramsGen = new IParameters[this.generationSize][TaskConfig.
+		IParameters[][] paramsGen = new IParameters[this.generationSize][this.context.
 		                                                                 layouterEnumTypes.length];
 
 		/* add mean of best configs */
 		IParameters param = null;
-		for(int i=0;i<TaskConfig.layouterEnumTypes.length;i++){
+		for(int i=0;i<this.context.layouterEnumTypes.length;i++){
 			/* get array of best configurations for one layouter */
 			IParameters[] bestConfigsArray = new IParameters[bestConfigs.size()];
 			for (int j = 0; j < bestConfigs.size(); j++) {
 				bestConfigsArray[j] = bestConfigs.get(j)[i];
 			}
 			
-			param = TaskConfig.layouterEnumTypes[i].createIParameters();
+			param = this.context.layouterEnumTypes[i].createIParameters();
 			param.combineConfigurationsRandomly(bestConfigsArray);
 			paramsGen[0][i] = param;
 		}
@@ -193,13 +199,13 @@ public class GeneralParameterTraining {
 
 		/* add combinations of the best configurations for first third */
 		for (int i = currentPosition; i < currentPosition + third; i++) {
-			for(int j=0;j<TaskConfig.layouterEnumTypes.length;j++){
+			for(int j=0;j<this.context.layouterEnumTypes.length;j++){
 				/* get array of best configurations for one layouter */
 				IParameters[] bestConfigsArray = new IParameters[bestConfigs.size()];
 				for (int k = 0; k < bestConfigs.size(); k++) {
 					bestConfigsArray[k] = bestConfigs.get(k)[j];
 				}
-				param = TaskConfig.layouterEnumTypes[j].createIParameters();
+				param = this.context.layouterEnumTypes[j].createIParameters();
 				param.combineConfigurationsRandomly(bestConfigsArray);
 				paramsGen[i][j] = param;
 			}
@@ -208,13 +214,13 @@ public class GeneralParameterTraining {
 
 		/* add combinations of best half plus new random parameters */
 		for (int i = currentPosition; i < currentPosition + third; i++) {
-			for(int j=0;j<TaskConfig.layouterEnumTypes.length;j++){
+			for(int j=0;j<this.context.layouterEnumTypes.length;j++){
 				/* get array of best configurations for one layouter */
 				IParameters[] bestConfigsArray = new IParameters[bestConfigs.size()];
 				for (int k = 0; k < bestConfigs.size(); k++) {
 					bestConfigsArray[k] = bestConfigs.get(k)[j];
 				}
-				param = TaskConfig.layouterEnumTypes[j].createIParameters();
+				param = this.context.layouterEnumTypes[j].createIParameters();
 				param.combineParametersRandomlyAndGetNewRandom(bestConfigsArray);
 				paramsGen[i][j] = param;
 			}
@@ -316,7 +322,7 @@ public class GeneralParameterTraining {
 		
 		
 //		int initialSize = this.generationSize + 10;
-		IParameters[][] paramsGen = new IParameters[parameters.size()][TaskConfig.
+		IParameters[][] paramsGen = new IParameters[parameters.size()][this.context.
 		                                                         layouterEnumTypes.length];
 //		paramsGen[0] = clusteringManager.getLayouterParameters();
 //
@@ -344,9 +350,9 @@ public class GeneralParameterTraining {
 	 * @return The array of IParameters with random configuration.
 	 */
 	private IParameters[] createRandomParametersForLayouters(){
-		IParameters[] params = new IParameters[TaskConfig.layouterEnumTypes.length];
-		for (int i = 0; i < TaskConfig.layouterEnumTypes.length; i++) {
-			params[i] = TaskConfig.layouterEnumTypes[i].createIParameters();
+		IParameters[] params = new IParameters[this.context.layouterEnumTypes.length];
+		for (int i = 0; i < this.context.layouterEnumTypes.length; i++) {
+			params[i] = this.context.layouterEnumTypes[i].createIParameters();
 			params[i].createRandomConfiguration();
 		}
 		return params;
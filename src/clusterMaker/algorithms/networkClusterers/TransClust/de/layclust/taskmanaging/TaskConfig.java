@@ -88,7 +88,6 @@ public class TaskConfig {
 	public static String outConfigPath; // for training mode
 	public static String inputConfigPath = DEFAULTCONFIG;
 	public static String clustersPath;
-	public static String transitiveConnectedComponents;
 	public static String cmPath;
 	public static String goldstandardPath;
 	public static String infoPath;
@@ -144,6 +143,9 @@ public class TaskConfig {
 
 	public static boolean clusterHierarchicalComplete = false;
 
+	/* start the layouts of a threshold sweep from the positions of the previous threshold */
+	public static boolean warmStartLayouts = true;
+
 	public static boolean greedy = false;
 
 	public static boolean fixedParameter  = true;
@@ -151,8 +153,6 @@ public class TaskConfig {
 	public static int fixedParameterMax = 20;
 	
 	public static long fpMaxTimeMillis = 1000;
-	
-	public static boolean fpStopped = false;
 
 	public static float upperBound = Float.MAX_VALUE;
 
@@ -256,6 +256,12 @@ public class TaskConfig {
 		maxThreshold = Double.parseDouble(rb.getString("ic.maxThreshold").trim());
 		thresholdStepSize = Double.parseDouble(rb.getString("ic.thresholdStepSize").trim());
 		clusterHierarchicalComplete= Boolean.parseBoolean(rb.getString("ic.clusterHierarchicalComplete").trim());
+		/* optional, older config files do not have it */
+		try {
+			warmStartLayouts = Boolean.parseBoolean(rb.getString("ic.warmStartLayouts").trim());
+		} catch (MissingResourceException e) {
+			/* keep the default */
+		}
 		
 		
 		
@@ -313,6 +319,7 @@ public class TaskConfig {
 		confile.printParameter("ic.thresholdStepSize", ""+TaskConfig.thresholdStepSize);
 		confile.printParameter("ic.maxThreshold", ""+TaskConfig.maxThreshold);
 		confile.printParameter("ic.clusterHierarchicalComplete", ""+TaskConfig.clusterHierarchicalComplete);
+		confile.printParameter("ic.warmStartLayouts", ""+TaskConfig.warmStartLayouts);
 		
 		
 		
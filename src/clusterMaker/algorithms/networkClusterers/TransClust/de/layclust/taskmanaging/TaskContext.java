@@ -0,0 +1,192 @@
+/*
+ * Created on 17. October 2026
+ *
+ */
+package clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.taskmanaging;
+
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.geometric_clustering.GeometricClusteringConfig;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.geometric_clustering.GeometricClusteringFactory;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.LayoutFactory;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.forcend.FORCEnDLayoutConfig;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.layout.parameter_training.ParameterTrainingFactory;
+import clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.postprocessing.PostProcessingFactory;
+
+/**
+ * The configuration of one clustering run. A new instance starts with the
+ * current values of the static config classes {@link TaskConfig},
+ * {@link FORCEnDLayoutConfig} and {@link GeometricClusteringConfig}, which
+ * are filled by the console and the config file. Afterwards the instance can
+ * be changed without affecting any other run.
+ *
+ * The context is handed to the {@link ClusteringManager} and is carried by
+ * every {@link clusterMaker.algorithms.networkClusterers.TransClust.de.layclust.datastructure.ConnectedComponent},
+ * so that layouters, geometric clusterers and post-processors read their
+ * settings from the run they belong to. Several runs can therefore be carried
+ * out in parallel in one JVM.
+ */
+public class TaskContext {
+
+	/* ---- general ---- */
+	public int mode;
+	public boolean useThreads;
+	public int maxNoThreads;
+	public LayoutFactory.EnumCCEdgesStructure ccEdgesEnum;
+	public String clustersPath;
+	public String goldstandardPath;
+	public String knownAssignmentsFile;
+	public boolean gui;
+	/* the transitive connected components file found in the input of this run, or null */
+	public String transitiveConnectedComponents;
+
+	/* ---- layouting ---- */
+	public String layouterClasses;
+	public LayoutFactory.EnumLayouterClass[] layouterEnumTypes;
+	public int dimension;
+	public ParameterTrainingFactory.EnumParameterTrainingClass parameterTrainingEnum;
+	public boolean doLayoutParameterTraining;
+	public int noOfParameterConfigurationsPerGeneration;
+	public int noOfGenerations;
+
+	/* ---- FORCEnD ---- */
+	public double attractionFactor;
+	public double repulsionFactor;
+	public int iterations;
+	public float temperature;
+	public boolean useTreeApproximation;
+	public int treeApproximationMinNodes;
+	public double treeApproximationTheta;
+	public double warmStartIterations;
+
+	/* ---- geometric clustering ---- */
+	public GeometricClusteringFactory.EnumGeometricClusteringClass geometricClusteringEnum;
+	public double minDistance;
+	public double maxDistance;
+	public double stepsize;
+	public double stepsizeFactor;
+	public int kLimit;
+	public int maxInitStartConfigs;
+
+	/* ---- post-processing ---- */
+	public boolean doPostProcessing;
+	public PostProcessingFactory.EnumPostProcessingClass postProcessingEnum;
+
+	/* ---- exact and greedy clustering ---- */
+	public boolean greedy;
+	public boolean fixedParameter;
+	public int fixedParameterMax;
+	public long fpMaxTimeMillis;
+
+	/* ---- iterative clustering ---- */
+	public double minThreshold;
+	public double thresholdStepSize;
+	public double maxThreshold;
+	public boolean clusterHierarchicalComplete;
+	public boolean warmStartLayouts;
+	public float upperBound;
+	public double lowerBound;
+	public boolean reducedMatrix;
+	public boolean fuzzy;
+	public double fuzzyThreshold;
+	public boolean overlap;
+	public boolean useLimitK;
+	public int limitK;
+
+	/* sum of the clustering scores of all components clustered in this run */
+	private double totalScoreSum = 0;
+
+	/**
+	 * Creates a context with the current values of the static config classes.
+	 */
+	public TaskContext() {
+		this.mode = TaskConfig.mode;
+		this.useThreads = TaskConfig.useThreads;
+		this.maxNoThreads = TaskConfig.maxNoThreads;
+		this.ccEdgesEnum = TaskConfig.ccEdgesEnum;
+		this.clustersPath = TaskConfig.clustersPath;
+		this.goldstandardPath = TaskConfig.goldstandardPath;
+		this.knownAssignmentsFile = TaskConfig.knownAssignmentsFile;
+		this.gui = TaskConfig.gui;
+
+		this.layouterClasses = TaskConfig.layouterClasses;
+		this.layouterEnumTypes = TaskConfig.layouterEnumTypes.clone();
+		this.dimension = TaskConfig.dimension;
+		this.parameterTrainingEnum = TaskConfig.parameterTrainingEnum;
+		this.doLayoutParameterTraining = TaskConfig.doLayoutParameterTraining;
+		this.noOfParameterConfigurationsPerGeneration = TaskConfig.noOfParameterConfigurationsPerGeneration;
+		this.noOfGenerations = TaskConfig.noOfGenerations;
+
+		this.attractionFactor = FORCEnDLayoutConfig.attractionFactor;
+		this.repulsionFactor = FORCEnDLayoutConfig.repulsionFactor;
+		this.iterations = FORCEnDLayoutConfig.iterations;
+		this.temperature = FORCEnDLayoutConfig.temperature;
+		this.useTreeApproximation = FORCEnDLayoutConfig.useTreeApproximation;
+		this.treeApproximationMinNodes = FORCEnDLayoutConfig.treeApproximationMinNodes;
+		this.treeApproximationTheta = FORCEnDLayoutConfig.treeApproximationTheta;
+		this.warmStartIterations = FORCEnDLayoutConfig.warmStartIterations;
+
+		this.geometricClusteringEnum = TaskConfig.geometricClusteringEnum;
+		this.minDistance = GeometricClusteringConfig.minDistance;
+		this.maxDistance = GeometricClusteringConfig.maxDistance;
+		this.stepsize = GeometricClusteringConfig.stepsize;
+		this.stepsizeFactor = GeometricClusteringConfig.stepsizeFactor;
+		this.kLimit = GeometricClusteringConfig.kLimit;
+		this.maxInitStartConfigs = GeometricClusteringConfig.maxInitStartConfigs;
+
+		this.doPostProcessing = TaskConfig.doPostProcessing;
+		this.postProcessingEnum = TaskConfig.postProcessingEnum;
+
+		this.greedy = TaskConfig.greedy;
+		this.fixedParameter = TaskConfig.fixedParameter;
+		this.fixedParameterMax = TaskConfig.fixedParameterMax;
+		this.fpMaxTimeMillis = TaskConfig.fpMaxTimeMillis;
+
+		this.minThreshold = TaskConfig.minThreshold;
+		this.thresholdStepSize = TaskConfig.thresholdStepSize;
+		this.maxThreshold = TaskConfig.maxThreshold;
+		this.clusterHierarchicalComplete = TaskConfig.clusterHierarchicalComplete;
+		this.warmStartLayouts = TaskConfig.warmStartLayouts;
+		this.upperBound = TaskConfig.upperBound;
+		this.lowerBound = TaskConfig.lowerBound;
+		this.reducedMatrix = TaskConfig.reducedMatrix;
+		this.fuzzy = TaskConfig.fuzzy;
+		this.fuzzyThreshold = TaskConfig.fuzzyThreshold;
+		this.overlap = TaskConfig.overlap;
+		this.useLimitK = TaskConfig.UseLimitK;
+		this.limitK = TaskConfig.limitK;
+	}
+
+	/**
+	 * Sets the layouters of this run and their enum types.
+	 * 
+	 * @param layouterClasses The class names of the layouters, separated by commas.
+	 * @throws InvalidTypeException If one of the layouters does not exist.
+	 */
+	public void setLayouterClasses(String layouterClasses) throws InvalidTypeException {
+		this.layouterEnumTypes = LayoutFactory.getEnumArrayFromLayoutersString(layouterClasses);
+		this.layouterClasses = layouterClasses;
+	}
+
+	/**
+	 * Adds the score of one clustered component to the total score of this run.
+	 *
+	 * @param score The score to be added to the total score.
+	 */
+	public synchronized void addClusteringScoreToSum(double score) {
+		this.totalScoreSum += score;
+	}
+
+	/**
+	 * @return the total score of all components clustered in this run so far
+	 */
+	public synchronized double getTotalScoreSum() {
+		return this.totalScoreSum;
+	}
+
+	/**
+	 * @param totalScoreSum the totalScoreSum to set
+	 */
+	public synchronized void setTotalScoreSum(double totalScoreSum) {
+		this.totalScoreSum = totalScoreSum;
+	}
+
+}
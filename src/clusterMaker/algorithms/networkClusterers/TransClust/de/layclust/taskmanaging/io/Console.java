@@ -310,6 +310,8 @@ public class Console {
 				TaskConfig.thresholdStepSize =  Double.parseDouble(value);
 			} else if (key.equals("-chc")) {
 				TaskConfig.clusterHierarchicalComplete =  Boolean.parseBoolean(value);
+			} else if (key.equals("-ws")) {
+				TaskConfig.warmStartLayouts =  Boolean.parseBoolean(value);
 			} else if (key.equals("-fp")) {
 				TaskConfig.fixedParameter =  Boolean.parseBoolean(value);
 			} else if (key.equals("-fpt")) {
@@ -15,13 +15,7 @@ package clusterMaker.algorithms.networkClusterers.glay;
  */
 
 import java.util.*;
-import cytoscape.*;
 import cytoscape.task.TaskMonitor;
-import cern.colt.matrix.impl.SparseDoubleMatrix2D;
-import cern.colt.matrix.impl.SparseDoubleMatrix1D;
-import cern.colt.function.*;
-import giny.model.Node;
-import giny.model.Edge;
 
 public class FastGreedyAlgorithm implements GAlgorithm {
     private double modularity;
@@ -30,6 +24,14 @@ public class FastGreedyAlgorithm implements GAlgorithm {
     private int progress;
 		private boolean halt = false;
 
+    //The rows of the deltaQ matrix while we're merging
+    private int[][] rowKeys;
+    private double[][] rowValues;
+    private int[] rowSize;
+    private int[] rowMaxKey;
+    private double[] rowMaxValue;
+    private IndexedMaxHeap heap;
+
     public FastGreedyAlgorithm(){
         super();
         reset();
@@ -64,173 +66,103 @@ public class FastGreedyAlgorithm implements GAlgorithm {
 			this.halt = true;
 		}
     
-    /*Still use the sparse matrix implementation, but with improved structure*/
+    /*
+     * Clauset-Newman-Moore: every community keeps its row of the deltaQ matrix
+     * as arrays sorted by the neighbouring community, together with the
+     * largest entry of the row.  The row maxima are kept in an indexed max-heap,
+     * so the best merge is always on top of the heap.  Merging community i into
+     * j merges the two sorted rows and updates the entries of the neighbours
+     * in their own rows, so a merge costs O((|i|+|j|) log n).
+     */
     public void execute(GSimpleGraphData g, TaskMonitor monitor) {
 
         /*Initialize*/
-        
-        CyNetwork network = Cytoscape.getCurrentNetwork();
-
-        double[] ai = new double[g.nodeCount];
+        int n = g.nodeCount;
+        double[] ai = new double[n];
         double qInitial = 0;
 
-        membership = new int[g.nodeCount];
-        //int counter = 0;
-        for(int i=0; i<g.nodeCount; i++){
-             
-             //graphIndex[counter] = index;
-             membership[i] = i;
+        for(int i=0; i<n; i++){
              ai[i] = g.degree[i]/(2.0*g.edgeCount);
              qInitial -= ai[i]*ai[i];
-             //nodeDegree[i] = network.getDegree(index);
-             //counter++;
         }
 
-        //for(int i=0; i<nodeIndexes.length-1; i++){
-        //    for(int j=i+1; j<nodeIndexes.length; j++){
-        //        //If there are more than one edge connecting two nodes, reduce the degree
-        //        if(network.getEdgeCount(network.getNode(graphIndex[i]), network.getNode(graphIndex[j]), false)>1){
-        //
-        //        }
-        //    }
-        //}
-
-        SparseDoubleMatrix2D deltaQMx = new SparseDoubleMatrix2D(g.nodeCount, g.nodeCount);
-        
-        //if(this.mode == 0){
-            MaxFun func = new MaxFun();
-        //}
-        double maxDeltaQ = 0;
-        double q = 0;
-        int maxI=0;
-        int maxJ=0;
-        double deltaQ = 0;
-
-        int itojDirectedEdgecount = 0;
-        int jtoiDirectedEdgecount = 0;
-        int ijUndirectedEdgeCount = 0;
-        int ijTotalEdgeCount = 0;
-        
-        for(int i=0; i<g.nodeCount; i++){
-            for(int j=0; j<g.nodeCount; j++){
-
-                if(i == j){
-                    continue;
-                }
-                if (g.hasEdge(i, j) && i < j) {
-                    deltaQ = (1.0d/(2*g.edgeCount)-(g.degree[i]*g.degree[j])/(4.0*Math.pow(g.edgeCount, 2.0))) * 2;                    
-                    deltaQMx.setQuick(i, j, deltaQ);
-                    if(maxDeltaQ <= deltaQ){
-                        maxDeltaQ = deltaQ;
-                        maxI = i;
-                        maxJ = j;
-                    }
-                } else if(g.hasEdge(i, j) && i > j) {
-                    deltaQMx.setQuick(i, j, deltaQMx.getQuick(j, i));
-                }
-
+        //The rows of the deltaQ matrix and the largest entry of each row
+        rowKeys = new int[n][];
+        rowValues = new double[n][];
+        rowSize = new int[n];
+        rowMaxKey = new int[n];
+        rowMaxValue = new double[n];
+        heap = new IndexedMaxHeap(n);
+
+        for(int i=0; i<n; i++){
+            int[] neighbors = g.neighbors[i];
+            rowKeys[i] = new int[neighbors.length];
+            rowValues[i] = new double[neighbors.length];
+            for(int k=0; k<neighbors.length; k++){
+                int j = neighbors[k];
+                rowKeys[i][k] = j;
+                rowValues[i][k] = (1.0d/(2*g.edgeCount)-(g.degree[i]*g.degree[j])/(4.0*Math.pow(g.edgeCount, 2.0))) * 2;
             }
-        }
-                
-        //make sure i,j are ordered
-        if(maxI > maxJ){
-            //swap
-            int temp = maxI;
-            maxI = maxJ;
-            maxJ = temp;
+            rowSize[i] = neighbors.length;
+            findRowMax(i);
         }
 
+        //Every community is a linked list of its nodes
+        int[] first = new int[n];
+        int[] last = new int[n];
+        int[] next = new int[n];
+        for(int i=0; i<n; i++){
+            first[i] = i;
+            last[i] = i;
+            next[i] = -1;
+        }
 
-        q = qInitial;
+        double q = qInitial;
         int counter = 0;
-        this.progress = (int)(100.0*counter/g.nodeCount);
-				if (monitor != null)
-					monitor.setPercentCompleted(this.progress);
+        this.progress = 0;
+        if (monitor != null)
+            monitor.setPercentCompleted(this.progress);
 
-				if (halt)
-					return;
+        while(!heap.isEmpty() && heap.topValue() > 0){
+            if (halt)
+                return;
 
-        //System.out.println("qInitial:" + qInitial);
-        while(maxDeltaQ > 0){
             counter++;
-            //this.progress = (int)(100.0*counter/nodeCount);
-            q += maxDeltaQ;
+            int j = heap.top();
+            int i = rowMaxKey[j];
+            q += rowMaxValue[j];
+
+            //Merge the shorter row into the longer one
+            if(rowSize[i] > rowSize[j]){
+                int temp = i;
+                i = j;
+                j = temp;
+            }
+            merge(i, j, ai);
 
-            //System.out.println(q);
-        
-        for(int k=0; k<g.nodeCount; k++){
-                if (halt)
-                    return;
-                if(k==maxJ || k==maxI){
-                    continue;
-                }
-                else{
-                    //that k is connected to both I and J
-                    //we have an issue here, how to detect whether k is connected to i or j?
-                    
-                    if(deltaQMx.getQuick(maxI, k)!=0 && deltaQMx.getQuick(maxJ, k)!=0){
-                        deltaQMx.setQuick(maxJ, k, deltaQMx.getQuick(maxJ, k)+deltaQMx.getQuick(maxI, k));
-                        
-                        
-                        
-                        //System.out.println("added");
-                    }
-                    else if(deltaQMx.getQuick(maxI, k)==0 && deltaQMx.getQuick(maxJ, k)!=0){
-                        deltaQMx.setQuick(maxJ, k, deltaQMx.getQuick(maxJ, k)-2*ai[maxI]*ai[k]);
-                    }
-                    else if(deltaQMx.getQuick(maxJ, k)==0 && deltaQMx.getQuick(maxI, k)!=0 ){
-                        deltaQMx.setQuick(maxJ, k, deltaQMx.getQuick(maxI, k)-2*ai[maxJ]*ai[k]);
-                    }
-                    else{
-                        //both are zero
-                        //nothing is done
-                        
-                        //it seems that nothing is wrong.
-                        //but the result is not quite correct
-                        //both are zero, no need to update
-                        //System.out.println("This is wrong!");
-                        //System.out.println("Do nothing.");
-                    }
-                }
-            }//end update jth row
-        
-            int membershipI = membership[maxI];
-            int membershipJ = membership[maxJ];
-            for(int k=0;k<g.nodeCount; k++){
-                deltaQMx.setQuick(k, maxJ, deltaQMx.getQuick(maxJ, k));
-                deltaQMx.setQuick(maxI, k, 0.0);
-                deltaQMx.setQuick(k, maxI, 0.0);
-                if(membership[k] == membershipI){
-                    membership[k] = membershipJ;
-                }
+            //Move the nodes of i over to j
+            next[last[j]] = first[i];
+            last[j] = last[i];
+            first[i] = -1;
+
+            if (monitor != null && counter % 1000 == 0) {
+                this.progress = (int)(100.0*counter/n);
+                monitor.setPercentCompleted(this.progress);
             }
-            
-            ai[maxJ] = ai[maxI] + ai[maxJ];
-            ai[maxI] = 0;
-            
-            deltaQMx.trimToSize();
-            
-            maxDeltaQ = 0;
-            maxI = 0;
-            maxJ = 0;
-            func.reset();
-            
-            deltaQMx.forEachNonZero(func);
-            maxDeltaQ = func.max;
-            maxI = func.row;
-            maxJ = func.column;
-            
-            if(maxI > maxJ){
-                //swap
-                int temp = maxI;
-                maxI = maxJ;
-                maxJ = temp;
+        }
+
+        membership = new int[n];
+        for(int c=0; c<n; c++){
+            for(int k=first[c]; k>=0; k=next[k]){
+                membership[k] = c;
             }
-            
-            //System.out.println("maxDeltaQ" + maxDeltaQ);
-        }//end of while loop
-        
-        
+        }
+
+        //Let the garbage collector have the rows
+        rowKeys = null;
+        rowValues = null;
+        heap = null;
+
         //these all can be done in linear time    
         HashMap<Integer, Integer> membershipMapping = new HashMap<Integer, Integer>();
         int index=0;
@@ -269,37 +201,207 @@ public class FastGreedyAlgorithm implements GAlgorithm {
     }
  
 
-    //The max function for general Fast-Greedy Algorithm
-    private class MaxFun implements IntIntDoubleFunction{
-        public double max;
-        public int row;
-        public int column;
+    /*
+     * Merge community i into community j.  For the communities k next to
+     * i or j the new deltaQ is (CNM eq. 10)
+     *   dQ_ik + dQ_jk     if k is next to both
+     *   dQ_ik - 2 a_j a_k if k is only next to i
+     *   dQ_jk - 2 a_i a_k if k is only next to j
+     */
+    private void merge(int i, int j, double[] ai){
+        int[] keysI = rowKeys[i];
+        double[] valuesI = rowValues[i];
+        int sizeI = rowSize[i];
+        int[] keysJ = rowKeys[j];
+        double[] valuesJ = rowValues[j];
+        int sizeJ = rowSize[j];
+
+        int[] keys = new int[sizeI+sizeJ];
+        double[] values = new double[sizeI+sizeJ];
+        int size = 0;
+        int x = 0;
+        int y = 0;
+        while(x < sizeI || y < sizeJ){
+            int k;
+            double value;
+            if(y == sizeJ || (x < sizeI && keysI[x] < keysJ[y])){
+                k = keysI[x];
+                value = valuesI[x++] - 2*ai[j]*ai[k];
+            } else if(x == sizeI || keysJ[y] < keysI[x]){
+                k = keysJ[y];
+                value = valuesJ[y++] - 2*ai[i]*ai[k];
+            } else {
+                k = keysI[x];
+                value = valuesI[x++] + valuesJ[y++];
+            }
+            if(k == i || k == j){
+                continue;
+            }
+            keys[size] = k;
+            values[size++] = value;
+
+            //Update the other side of the entry
+            removeEntry(k, i);
+            setEntry(k, j, value);
+            if(rowMaxKey[k] == i || rowMaxKey[k] == j){
+                findRowMax(k);
+            } else if(value > rowMaxValue[k]){
+                rowMaxKey[k] = j;
+                rowMaxValue[k] = value;
+                heap.set(k, value);
+            }
+        }
+
+        rowKeys[j] = keys;
+        rowValues[j] = values;
+        rowSize[j] = size;
+        findRowMax(j);
 
-        public MaxFun(){
-            max = -Double.MAX_VALUE;
-            row = 0;
-            column = 0;
+        rowKeys[i] = null;
+        rowValues[i] = null;
+        rowSize[i] = 0;
+        heap.remove(i);
+
+        ai[j] = ai[i] + ai[j];
+        ai[i] = 0;
+    }
+
+    //Find the largest entry of a row and update its place in the heap
+    private void findRowMax(int row){
+        if(rowSize[row] == 0){
+            heap.remove(row);
+            return;
+        }
+        int[] keys = rowKeys[row];
+        double[] values = rowValues[row];
+        int best = 0;
+        for(int x=1; x<rowSize[row]; x++){
+            if(values[x] > values[best]){
+                best = x;
+            }
         }
+        rowMaxKey[row] = keys[best];
+        rowMaxValue[row] = values[best];
+        heap.set(row, values[best]);
+    }
 
-        public void reset(){
-            max = -Double.MAX_VALUE;
-            row = 0;
-            column = 0;
+    private void removeEntry(int row, int key){
+        int x = Arrays.binarySearch(rowKeys[row], 0, rowSize[row], key);
+        if(x < 0){
+            return;
         }
+        int tail = rowSize[row]-x-1;
+        System.arraycopy(rowKeys[row], x+1, rowKeys[row], x, tail);
+        System.arraycopy(rowValues[row], x+1, rowValues[row], x, tail);
+        rowSize[row]--;
+    }
 
-        public double apply(int row, int col, double value){
-        /*There can be some fold of multiplicity of problem, the reason is at a certain merge,
-         *When ther are more than one best merge, the choice this merge may impact the subsequent
-         *Merges. So the q-values from different implementation of the same algorithm can be
-         *slightly different
-         */
-        
-            if(max < value){
-                max = value;
-                this.row = row;
-                this.column = col;
+    private void setEntry(int row, int key, double value){
+        int x = Arrays.binarySearch(rowKeys[row], 0, rowSize[row], key);
+        if(x >= 0){
+            rowValues[row][x] = value;
+            return;
+        }
+        x = -x-1;
+        if(rowSize[row] == rowKeys[row].length){
+            int capacity = Math.max(4, 2*rowSize[row]);
+            rowKeys[row] = Arrays.copyOf(rowKeys[row], capacity);
+            rowValues[row] = Arrays.copyOf(rowValues[row], capacity);
+        }
+        int tail = rowSize[row]-x;
+        System.arraycopy(rowKeys[row], x, rowKeys[row], x+1, tail);
+        System.arraycopy(rowValues[row], x, rowValues[row], x+1, tail);
+        rowKeys[row][x] = key;
+        rowValues[row][x] = value;
+        rowSize[row]++;
+    }
+
+    /*
+     * A binary max-heap of rows that knows where each row is, so the value of
+     * a row can be changed or the row removed in O(log n).  Of two rows with
+     * the same value the lower one comes first, so the merges don't depend on
+     * the order of the updates.
+     */
+    private static class IndexedMaxHeap {
+        private int[] heap;
+        private int[] position;
+        private double[] value;
+        private int size = 0;
+
+        public IndexedMaxHeap(int capacity){
+            heap = new int[capacity];
+            position = new int[capacity];
+            value = new double[capacity];
+            Arrays.fill(position, -1);
+        }
+
+        public boolean isEmpty(){ return size == 0; }
+
+        public int top(){ return heap[0]; }
+
+        public double topValue(){ return value[heap[0]]; }
+
+        public void set(int row, double v){
+            value[row] = v;
+            if(position[row] < 0){
+                heap[size] = row;
+                position[row] = size++;
+            }
+            up(position[row]);
+            down(position[row]);
+        }
+
+        public void remove(int row){
+            int x = position[row];
+            if(x < 0){
+                return;
+            }
+            position[row] = -1;
+            size--;
+            if(x == size){
+                return;
+            }
+            heap[x] = heap[size];
+            position[heap[x]] = x;
+            up(x);
+            down(position[heap[x]]);
+        }
+
+        private boolean before(int a, int b){
+            return value[a] > value[b] || (value[a] == value[b] && a < b);
+        }
+
+        private void up(int x){
+            int row = heap[x];
+            while(x > 0){
+                int parent = (x-1)/2;
+                if(!before(row, heap[parent])){
+                    break;
+                }
+                heap[x] = heap[parent];
+                position[heap[x]] = x;
+                x = parent;
+            }
+            heap[x] = row;
+            position[row] = x;
+        }
+
+        private void down(int x){
+            int row = heap[x];
+            while(2*x+1 < size){
+                int child = 2*x+1;
+                if(child+1 < size && before(heap[child+1], heap[child])){
+                    child++;
+                }
+                if(!before(heap[child], row)){
+                    break;
+                }
+                heap[x] = heap[child];
+                position[heap[x]] = x;
+                x = child;
             }
-            return value;
+            heap[x] = row;
+            position[row] = x;
         }
     }
 }
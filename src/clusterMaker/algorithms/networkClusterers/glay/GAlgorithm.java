@@ -6,6 +6,7 @@
 package clusterMaker.algorithms.networkClusterers.glay;
 import java.util.*;
 import cytoscape.*;
+import cytoscape.task.TaskMonitor;
 import cern.colt.matrix.impl.SparseDoubleMatrix2D;
 import cern.colt.matrix.impl.SparseDoubleMatrix1D;
 import cern.colt.function.*;
@@ -17,7 +18,10 @@ import giny.model.Edge;
  */
 public interface GAlgorithm {
 
+    public void execute(GSimpleGraphData g, TaskMonitor monitor);
     public abstract double getModularity();
     public int[] getMembership();
+    public int getClusterNumber();
+    public void halt();
 
 }
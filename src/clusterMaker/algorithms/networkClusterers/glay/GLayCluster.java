@@ -62,7 +62,10 @@ import clusterMaker.ui.NewNetworkView;
 
 public class GLayCluster extends AbstractNetworkClusterer  {
 	
-	FastGreedyAlgorithm fa = null;
+	String[] algorithms = {"Fast greedy", "Louvain (multi-level)"};
+	GAlgorithm fa = null;
+	int algorithm = 0;
+	int maxThreads = 0;
 	boolean selectedOnly = false;
 	boolean createNewNetwork = false;
 	boolean undirectedEdges = true;
@@ -94,7 +97,19 @@ public class GLayCluster extends AbstractNetworkClusterer  {
 		 */
 		clusterProperties.add(new Tunable("tunables_panel",
 		                                  "GLay Options",
-		                                  Tunable.GROUP, new Integer(2)));
+		                                  Tunable.GROUP, new Integer(4)));
+
+		// The community detection algorithm
+		clusterProperties.add(new Tunable("algorithm",
+		                                  "Algorithm",
+		                                  Tunable.LIST, new Integer(algorithm),
+		                                  (Object)algorithms, (Object)null, 0));
+
+		// Maximum number of CPU's to use (Louvain only)
+		clusterProperties.add(new Tunable("maxThreads",
+		                                  "Maximum number of threads",
+		                                  Tunable.INTEGER, new Integer(maxThreads),
+		                                  (Object)null, (Object)null, 0));
 
 		// Whether or not to create a new network from the results
 		clusterProperties.add(new Tunable("selectedOnly","Cluster only selected nodes",
@@ -129,7 +144,15 @@ public class GLayCluster extends AbstractNetworkClusterer  {
 		clusterProperties.updateValues();
 		super.updateSettings(force);
 
-		Tunable t = clusterProperties.get("selectedOnly");
+		Tunable t = clusterProperties.get("algorithm");
+		if ((t != null) && (t.valueChanged() || force))
+			algorithm = ((Integer) t.getValue()).intValue();
+
+		t = clusterProperties.get("maxThreads");
+		if ((t != null) && (t.valueChanged() || force))
+			maxThreads = ((Integer) t.getValue()).intValue();
+
+		t = clusterProperties.get("selectedOnly");
 		if ((t != null) && (t.valueChanged() || force))
 			selectedOnly = ((Boolean) t.getValue()).booleanValue();
 
@@ -151,7 +174,14 @@ public class GLayCluster extends AbstractNetworkClusterer  {
 			logger.debug("Performing community clustering (GLay)");
 
     GSimpleGraphData simpleGraph = new GSimpleGraphData(network, selectedOnly, undirectedEdges);
-		fa = new FastGreedyAlgorithm();
+		if (algorithm == 1) {
+			int nThreads = maxThreads;
+			if (nThreads <= 0)
+				nThreads = Runtime.getRuntime().availableProcessors()-1;
+			fa = new LouvainAlgorithm(nThreads);
+		} else {
+			fa = new FastGreedyAlgorithm();
+		}
 		//fa.partition(simpleGraph);
 		fa.execute(simpleGraph, monitor);
 
@@ -199,6 +229,8 @@ public class GLayCluster extends AbstractNetworkClusterer  {
 	}
 
 	public void setParams(List<String>params) {
+		params.add("algorithm="+algorithms[algorithm]);
+		params.add("maxThreads="+maxThreads);
 		super.setParams(params);
 	}
 }
@@ -7,9 +7,6 @@ package clusterMaker.algorithms.networkClusterers.glay;
 
 import java.util.*;
 import cytoscape.CyNetwork;
-import cern.colt.matrix.impl.SparseDoubleMatrix2D;
-import cern.colt.matrix.impl.SparseDoubleMatrix1D;
-import cern.colt.function.*;
 import giny.model.Node;
 import giny.model.Edge;
 /**
@@ -24,7 +21,8 @@ public class GSimpleGraphData {
     public CyNetwork network;
     public int[] graphIndices;
     public int[] degree;
-    public SparseDoubleMatrix2D edgeMatrix;
+    /*The sorted indices of the nodes each node shares at least one edge with*/
+    public int[][] neighbors;
 		private boolean selectedOnly;
 		private boolean undirectedEdges;
 		private List<Node> nodeList;
@@ -46,7 +44,7 @@ public class GSimpleGraphData {
 				this.edgeCount = this.connectingEdges.size();
         this.graphIndices = new int[this.nodeCount];
         this.degree = new int[this.nodeCount];
-        this.edgeMatrix = new SparseDoubleMatrix2D(nodeCount, nodeCount);
+        this.neighbors = new int[this.nodeCount][];
         this.simplify();
     }
     
@@ -59,32 +57,65 @@ public class GSimpleGraphData {
         }
 
         //Assign edge
-        int ijEdge = 0; //Edge from i to j
-        int jiEdge = 0; //Edge from j to i
-        int ijUEdge = 0; //Undirectional edges
+        //Walk over the edges instead of all pairs of nodes.  Every pair of
+        //nodes gets a key (i*nodeCount+j, i<j), so sorting the keys brings
+        //the edges of a pair together.
+        HashMap<Integer, Integer> nodeIndex = new HashMap<Integer, Integer>();
+        for(int i=0; i<graphIndices.length; i++){
+            nodeIndex.put(new Integer(graphIndices[i]), new Integer(i));
+        }
+        long[] pairs = new long[2*connectingEdges.size()];
+        int pairCount = 0;
+        for(Edge edge: connectingEdges){
+            int i = nodeIndex.get(new Integer(edge.getSource().getRootGraphIndex())).intValue();
+            int j = nodeIndex.get(new Integer(edge.getTarget().getRootGraphIndex())).intValue();
+            if(i == j){
+                continue;
+            }
+            long key = (long)Math.min(i, j)*nodeCount+Math.max(i, j);
+            pairs[pairCount++] = key;
+            //Undirected edges are counted from both sides
+            if(undirectedEdges && !edge.isDirected()){
+                pairs[pairCount++] = key;
+            }
+        }
+        Arrays.sort(pairs, 0, pairCount);
+
+        int[] neighborCount = new int[nodeCount];
         int totalEdge = 0;
-        for(int i=0; i<graphIndices.length-1; i++){
-            for(int j=i+1; j<graphIndices.length; j++){
-                //Count the number of edges
-                if (undirectedEdges) {
-                	jiEdge = network.getEdgeCount(graphIndices[j], graphIndices[i], true); //Count un-directional
-                	ijEdge = network.getEdgeCount(graphIndices[i], graphIndices[j], true); //Count un-directional
-								} else {
-                	ijEdge = network.getEdgeCount(graphIndices[i], graphIndices[j], false); //Doesn't count un-directional
-                	jiEdge = network.getEdgeCount(graphIndices[j], graphIndices[i], true); //Count un-directional
-								}
-                //ijUEdge = network.getEdgeCount(graphIndices[i], graphIndices[j], true);
-                totalEdge = ijEdge + jiEdge;
-                this.edgeMatrix.setQuick(i, j, totalEdge); //conversion from int to double is ok.
-
-                //fix degree and edge count.
-                if(totalEdge > 1){
-                    edgeCount = edgeCount-totalEdge+1;
-                    degree[i] = degree[i]-totalEdge+1;
-                    degree[j] = degree[j]-totalEdge+1;
-                }
+        for(int k=0; k<pairCount; k+=totalEdge){
+            totalEdge = 1;
+            while(k+totalEdge < pairCount && pairs[k+totalEdge] == pairs[k]){
+                totalEdge++;
+            }
+            int i = (int)(pairs[k]/nodeCount);
+            int j = (int)(pairs[k]%nodeCount);
+            neighborCount[i]++;
+            neighborCount[j]++;
+
+            //fix degree and edge count.
+            if(totalEdge > 1){
+                edgeCount = edgeCount-totalEdge+1;
+                degree[i] = degree[i]-totalEdge+1;
+                degree[j] = degree[j]-totalEdge+1;
+            }
+        }
+
+        for(int i=0; i<nodeCount; i++){
+            neighbors[i] = new int[neighborCount[i]];
+            neighborCount[i] = 0;
+        }
+        for(int k=0; k<pairCount; k++){
+            if(k > 0 && pairs[k] == pairs[k-1]){
+                continue;
             }
+            int i = (int)(pairs[k]/nodeCount);
+            int j = (int)(pairs[k]%nodeCount);
+            neighbors[i][neighborCount[i]++] = j;
+            neighbors[j][neighborCount[j]++] = i;
         }
+        //Because of the order of the keys, every node gets its smaller
+        //neighbors in order first and then its larger ones, so they are sorted
 
         /*
          * If simplification is succesful, the toal degree should be twice of edge count
@@ -103,10 +134,7 @@ public class GSimpleGraphData {
             j = temp;
         }
 
-        if(edgeMatrix.getQuick(i, j) != 0){
-            return true;
-        }
-        return false;
+        return Arrays.binarySearch(neighbors[i], j) >= 0;
     }
 
     public void simplificationCheck(){
@@ -0,0 +1,435 @@
+package clusterMaker.algorithms.networkClusterers.glay;
+
+/**
+ * This is an implementation of the multi-level Louvain method
+ * (see Blondel et al., Fast unfolding of communities in large networks,
+ * J. Stat. Mech. (2008) P10008).  Each level moves single nodes to the
+ * neighbouring community that gains the most modularity until nothing
+ * improves any more, then collapses every community into a single node and
+ * starts over on the smaller graph.
+ *
+ * The moves of a sweep are computed in parallel against the communities as
+ * they were at the start of the sweep and applied together.  To keep two
+ * lonely nodes from swapping places forever, a node that is alone only moves
+ * to another lonely node if that one has the lower community number.  When a
+ * sweep like that doesn't improve the modularity any more, a sequential
+ * sweep (which never makes it worse) gets the final word.  The result doesn't
+ * depend on the number of threads.
+ */
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import cytoscape.task.TaskMonitor;
+
+public class LouvainAlgorithm implements GAlgorithm {
+    //Number of nodes a worker claims at a time
+    private static final int BLOCK_SIZE = 256;
+    //Smallest modularity gain that is worth another sweep
+    private static final double MIN_GAIN = 1e-7;
+
+    private double modularity;
+    private int[] membership;
+    private int clusterNumber;
+    private int progress;
+    private int nThreads;
+    private volatile boolean halt = false;
+
+    //The graph of the current level: adjacency lists (without self loops)
+    //with weights, the weight of the edges inside each node and its degree
+    private int nodeCount;
+    private int[] adjStart;
+    private int[] adj;
+    private double[] weight;
+    private double[] selfWeight;
+    private double[] k;
+    private double m;
+
+    //The community of each node and the total degree and size of each community
+    private int[] community;
+    private double[] communityDegree;
+    private int[] communitySize;
+
+    public LouvainAlgorithm(int nThreads){
+        super();
+        this.nThreads = Math.max(1, nThreads);
+        reset();
+    }
+
+    public void reset(){
+        this.modularity = 0;
+        this.membership = new int[0];
+        this.clusterNumber = 0;
+        this.progress = 0;
+    }
+
+    public double getModularity(){
+        return this.modularity;
+    }
+
+    public int[] getMembership(){
+        /*This membership correpsonds to the index in network.getNodeIndicesArray()*/
+        return this.membership;
+    }
+
+    public int getClusterNumber(){
+        return this.clusterNumber;
+    }
+
+    public int getProgress(){
+        return this.progress;
+    }
+
+    public void halt() {
+        this.halt = true;
+    }
+
+    public void execute(GSimpleGraphData g, TaskMonitor monitor) {
+        //The first level is the simplified graph itself
+        nodeCount = g.nodeCount;
+        m = g.edgeCount;
+        adjStart = new int[nodeCount+1];
+        for(int i=0; i<nodeCount; i++){
+            adjStart[i+1] = adjStart[i] + g.neighbors[i].length;
+        }
+        adj = new int[adjStart[nodeCount]];
+        weight = new double[adj.length];
+        selfWeight = new double[nodeCount];
+        k = new double[nodeCount];
+        for(int i=0; i<nodeCount; i++){
+            System.arraycopy(g.neighbors[i], 0, adj, adjStart[i], g.neighbors[i].length);
+            k[i] = g.degree[i];
+        }
+        Arrays.fill(weight, 1.0);
+
+        membership = new int[nodeCount];
+        for(int i=0; i<nodeCount; i++){
+            membership[i] = i;
+        }
+
+        ExecutorService pool = null;
+        if(nThreads > 1 && nodeCount > BLOCK_SIZE){
+            pool = Executors.newFixedThreadPool(nThreads);
+        }
+        try {
+            int level = 0;
+            while(!halt && m > 0){
+                level++;
+                if (monitor != null)
+                    monitor.setStatus("Louvain level "+level+": "+nodeCount+" nodes");
+
+                modularity = moveNodes(pool);
+                int communities = renumberCommunities();
+                for(int v=0; v<membership.length; v++){
+                    membership[v] = community[membership[v]];
+                }
+                if(communities == nodeCount){
+                    break;
+                }
+                aggregate(communities);
+
+                this.progress = (int)(100.0*(g.nodeCount-nodeCount)/Math.max(1, g.nodeCount));
+                if (monitor != null)
+                    monitor.setPercentCompleted(this.progress);
+            }
+        } finally {
+            if(pool != null){
+                pool.shutdownNow();
+            }
+        }
+
+        //Number the clusters in the order the nodes are seen
+        int[] mapping = new int[membership.length];
+        Arrays.fill(mapping, -1);
+        clusterNumber = 0;
+        for(int v=0; v<membership.length; v++){
+            if(mapping[membership[v]] < 0){
+                mapping[membership[v]] = clusterNumber++;
+            }
+            membership[v] = mapping[membership[v]];
+        }
+
+        //Let the garbage collector have the graph
+        adjStart = null;
+        adj = null;
+        weight = null;
+
+        this.progress = 100;
+        if (monitor != null)
+            monitor.setPercentCompleted(this.progress);
+    }
+
+    /*
+     * Move the nodes of the current level between communities until the
+     * modularity doesn't improve any more.
+     *
+     * @return the modularity of the communities
+     */
+    private double moveNodes(ExecutorService pool){
+        community = new int[nodeCount];
+        communityDegree = new double[nodeCount];
+        communitySize = new int[nodeCount];
+        for(int i=0; i<nodeCount; i++){
+            community[i] = i;
+            communityDegree[i] = k[i];
+            communitySize[i] = 1;
+        }
+        double q = modularity();
+
+        int[] target = new int[nodeCount];
+        boolean parallel = true;
+        while(!halt){
+            double newQ;
+            if(parallel){
+                proposeMoves(pool, target);
+                int[] previous = community;
+                community = target;
+                updateCommunities();
+                newQ = modularity();
+                if(newQ - q < MIN_GAIN){
+                    //Undo the sweep and let a sequential one decide
+                    target = community;
+                    community = previous;
+                    updateCommunities();
+                    parallel = false;
+                    continue;
+                }
+                target = previous;
+            } else {
+                sequentialSweep();
+                newQ = modularity();
+                if(newQ - q < MIN_GAIN){
+                    return newQ;
+                }
+                //Still improving, so try the parallel sweep again
+                parallel = true;
+            }
+            q = newQ;
+        }
+        return q;
+    }
+
+    private void updateCommunities(){
+        Arrays.fill(communityDegree, 0);
+        Arrays.fill(communitySize, 0);
+        for(int i=0; i<nodeCount; i++){
+            communityDegree[community[i]] += k[i];
+            communitySize[community[i]]++;
+        }
+    }
+
+    /*
+     * The modularity of the current communities:
+     *   sum over c of  L_c/m - (K_c/2m)^2
+     * with L_c the weight of the edges inside c and K_c its total degree.
+     */
+    private double modularity(){
+        double inside = 0;
+        for(int i=0; i<nodeCount; i++){
+            inside += 2*selfWeight[i];
+            for(int p=adjStart[i]; p<adjStart[i+1]; p++){
+                if(community[adj[p]] == community[i]){
+                    inside += weight[p];
+                }
+            }
+        }
+        double q = inside/(2*m);
+        for(int c=0; c<nodeCount; c++){
+            double a = communityDegree[c]/(2*m);
+            q -= a*a;
+        }
+        return q;
+    }
+
+    /*
+     * Find the best community for node i against the current communities,
+     * using the dense scratch arrays of the caller.  Moving node i from its
+     * community (without i) into community c gains
+     *   w_ic/m - K_c k_i/(2m^2)
+     * so we only compare w_ic - K_c k_i/2m.
+     */
+    private int findBestCommunity(int i, double[] linkWeight, int[] touched){
+        int own = community[i];
+        int nTouched = 0;
+        for(int p=adjStart[i]; p<adjStart[i+1]; p++){
+            int c = community[adj[p]];
+            if(linkWeight[c] == 0){
+                touched[nTouched++] = c;
+            }
+            linkWeight[c] += weight[p];
+        }
+
+        double scale = k[i]/(2*m);
+        int best = own;
+        double bestGain = linkWeight[own] - (communityDegree[own]-k[i])*scale;
+        for(int x=0; x<nTouched; x++){
+            int c = touched[x];
+            if(c == own){
+                continue;
+            }
+            double gain = linkWeight[c] - communityDegree[c]*scale;
+            if(gain > bestGain || (gain == bestGain && best != own && c < best)){
+                best = c;
+                bestGain = gain;
+            }
+        }
+        for(int x=0; x<nTouched; x++){
+            linkWeight[touched[x]] = 0;
+        }
+        linkWeight[own] = 0;
+        return best;
+    }
+
+    //Compute the moves of all nodes against the communities at the start of the sweep
+    private void proposeMoves(ExecutorService pool, final int[] target){
+        if(pool == null){
+            double[] linkWeight = new double[nodeCount];
+            int[] touched = new int[nodeCount];
+            for(int i=0; i<nodeCount; i++){
+                target[i] = findBestCommunity(i, linkWeight, touched);
+            }
+        } else {
+            final AtomicInteger nextBlock = new AtomicInteger(0);
+            final int nBlocks = (nodeCount + BLOCK_SIZE - 1)/BLOCK_SIZE;
+            List<Future<Object>> futures = new ArrayList<Future<Object>>(nThreads);
+            for(int t=0; t<nThreads; t++){
+                futures.add(pool.submit(new Callable<Object>() {
+                    public Object call(){
+                        double[] linkWeight = new double[nodeCount];
+                        int[] touched = new int[nodeCount];
+                        for(int block = nextBlock.getAndIncrement(); block < nBlocks;
+                            block = nextBlock.getAndIncrement()){
+                            int end = Math.min(nodeCount, (block+1)*BLOCK_SIZE);
+                            for(int i=block*BLOCK_SIZE; i<end; i++){
+                                target[i] = findBestCommunity(i, linkWeight, touched);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            try {
+                for(Future<Object> f: futures)
+                    f.get();
+            } catch (InterruptedException e) {
+                halt = true;
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Louvain clustering failed", e.getCause());
+            }
+        }
+
+        //Two lonely nodes that want to join each other only move one way
+        for(int i=0; i<nodeCount; i++){
+            int own = community[i];
+            if(target[i] != own && communitySize[own] == 1
+               && communitySize[target[i]] == 1 && target[i] > own){
+                target[i] = own;
+            }
+        }
+    }
+
+    //Classic Louvain sweep: move one node at a time and update the communities right away
+    private void sequentialSweep(){
+        double[] linkWeight = new double[nodeCount];
+        int[] touched = new int[nodeCount];
+        for(int i=0; i<nodeCount; i++){
+            int own = community[i];
+            int target = findBestCommunity(i, linkWeight, touched);
+            if(target != own){
+                communityDegree[own] -= k[i];
+                communitySize[own]--;
+                communityDegree[target] += k[i];
+                communitySize[target]++;
+                community[i] = target;
+            }
+        }
+    }
+
+    //Number the communities from 0 and return how many there are
+    private int renumberCommunities(){
+        int[] mapping = new int[nodeCount];
+        Arrays.fill(mapping, -1);
+        int count = 0;
+        for(int i=0; i<nodeCount; i++){
+            if(mapping[community[i]] < 0){
+                mapping[community[i]] = count++;
+            }
+            community[i] = mapping[community[i]];
+        }
+        return count;
+    }
+
+    /*
+     * Collapse every community into a single node.  The edges between two
+     * communities add up to one weighted edge and the edges inside a community
+     * become its self weight.
+     */
+    private void aggregate(int communities){
+        //The nodes of each community
+        int[] memberStart = new int[communities+1];
+        for(int i=0; i<nodeCount; i++){
+            memberStart[community[i]+1]++;
+        }
+        for(int c=0; c<communities; c++){
+            memberStart[c+1] += memberStart[c];
+        }
+        int[] members = new int[nodeCount];
+        int[] fill = Arrays.copyOf(memberStart, communities);
+        for(int i=0; i<nodeCount; i++){
+            members[fill[community[i]]++] = i;
+        }
+
+        int[] newStart = new int[communities+1];
+        int[] newAdj = new int[Math.max(16, adj.length/2)];
+        double[] newWeight = new double[newAdj.length];
+        double[] newSelf = new double[communities];
+        double[] newK = new double[communities];
+        double[] linkWeight = new double[communities];
+        int[] touched = new int[communities];
+        int size = 0;
+        for(int c=0; c<communities; c++){
+            int nTouched = 0;
+            for(int x=memberStart[c]; x<memberStart[c+1]; x++){
+                int i = members[x];
+                newSelf[c] += selfWeight[i];
+                newK[c] += k[i];
+                for(int p=adjStart[i]; p<adjStart[i+1]; p++){
+                    int d = community[adj[p]];
+                    if(d == c){
+                        //Every inner edge is seen from both ends
+                        newSelf[c] += weight[p]/2;
+                        continue;
+                    }
+                    if(linkWeight[d] == 0){
+                        touched[nTouched++] = d;
+                    }
+                    linkWeight[d] += weight[p];
+                }
+            }
+            Arrays.sort(touched, 0, nTouched);
+            if(size + nTouched > newAdj.length){
+                int capacity = Math.max(2*newAdj.length, size + nTouched);
+                newAdj = Arrays.copyOf(newAdj, capacity);
+                newWeight = Arrays.copyOf(newWeight, capacity);
+            }
+            for(int x=0; x<nTouched; x++){
+                newAdj[size] = touched[x];
+                newWeight[size++] = linkWeight[touched[x]];
+                linkWeight[touched[x]] = 0;
+            }
+            newStart[c+1] = size;
+        }
+
+        nodeCount = communities;
+        adjStart = newStart;
+        adj = newAdj;
+        weight = newWeight;
+        selfWeight = newSelf;
+        k = newK;
+    }
+}